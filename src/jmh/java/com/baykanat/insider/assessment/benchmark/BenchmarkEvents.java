@@ -0,0 +1,30 @@
+package com.baykanat.insider.assessment.benchmark;
+
+import com.baykanat.insider.assessment.api.dto.EventRequest;
+
+import java.util.List;
+import java.util.Map;
+
+/** Benchmark'ların paylaştığı örnek event'ler; her event'te tags ve metadata dolu (JSONB yolu hep ölçülür). */
+public final class BenchmarkEvents {
+
+    private BenchmarkEvents() {
+    }
+
+    public static EventRequest[] create(int count) {
+        EventRequest[] events = new EventRequest[count];
+        long timestamp = 1771156800L;
+        for (int i = 0; i < count; i++) {
+            events[i] = EventRequest.builder()
+                    .eventName(i % 3 == 0 ? "product_view" : "add_to_cart")
+                    .userId("user_" + (100_000 + i * 7919))
+                    .timestamp(timestamp + i)
+                    .channel(i % 2 == 0 ? "web" : "mobile_app")
+                    .campaignId(i % 5 == 0 ? null : "cmp_" + (i % 97))
+                    .tags(i % 4 == 0 ? List.of("electronics", "homepage") : List.of("sale"))
+                    .metadata(i % 4 == 0 ? Map.of("product_id", "prod-" + i, "price", 129.99) : Map.of("page", i))
+                    .build();
+        }
+        return events;
+    }
+}
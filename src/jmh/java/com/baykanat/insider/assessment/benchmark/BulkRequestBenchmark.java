@@ -0,0 +1,73 @@
+package com.baykanat.insider.assessment.benchmark;
+
+import com.baykanat.insider.assessment.api.dto.BulkEventRequest;
+import com.baykanat.insider.assessment.api.dto.EventRequest;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import jakarta.validation.ValidatorFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * POST /events/bulk istek yolu, 1000 event'lik gövdeyle: Jackson ile BulkEventRequest'e bağlama ve @Valid'in
+ * yaptığı Bean Validation (liste + her event'in alanları).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BulkRequestBenchmark {
+
+    private static final int BULK_SIZE = 1000;
+
+    private byte[] body;
+    private BulkEventRequest request;
+    private ObjectReader reader;
+    private ValidatorFactory validatorFactory;
+    private Validator validator;
+
+    @Setup
+    public void setUp() throws IOException {
+        ObjectMapper objectMapper = new ObjectMapper();
+        EventRequest[] events = BenchmarkEvents.create(BULK_SIZE);
+        request = BulkEventRequest.builder().events(Arrays.asList(events)).build();
+        body = objectMapper.writeValueAsBytes(request);
+        reader = objectMapper.readerFor(BulkEventRequest.class);
+        validatorFactory = Validation.buildDefaultValidatorFactory();
+        validator = validatorFactory.getValidator();
+    }
+
+    @TearDown
+    public void tearDown() {
+        validatorFactory.close();
+    }
+
+    @Benchmark
+    public BulkEventRequest bindJson() throws IOException {
+        return reader.readValue(body);
+    }
+
+    @Benchmark
+    public Set<ConstraintViolation<BulkEventRequest>> validate() {
+        return validator.validate(request);
+    }
+
+    /** Controller'a kadar olan toplam: bağlama + doğrulama. */
+    @Benchmark
+    public Set<ConstraintViolation<BulkEventRequest>> bindAndValidate() throws IOException {
+        return validator.validate(reader.<BulkEventRequest>readValue(body));
+    }
+}
@@ -0,0 +1,84 @@
+package com.baykanat.insider.assessment.benchmark;
+
+import com.baykanat.insider.assessment.api.dto.EventRequest;
+import com.baykanat.insider.assessment.domain.mapper.EventMapper;
+import com.baykanat.insider.assessment.domain.model.Event;
+import com.fasterxml.jackson.core.type.TypeReference;
+import org.mapstruct.factory.Mappers;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Consumer'daki EventMapper dönüşümleri: toEvent (tags/metadata JSONB string'e), fromRecordValue (EventRequest
+ * olduğu gibi; Map ise Jackson convertValue) ve toJsonString.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class EventMapperBenchmark {
+
+    private static final int EVENT_COUNT = 1024;
+
+    private EventRequest[] events;
+    private UUID[] keys;
+    private Map<String, Object>[] recordMaps;
+    private EventMapper eventMapper;
+    private int index;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        eventMapper = Mappers.getMapper(EventMapper.class);
+        events = BenchmarkEvents.create(EVENT_COUNT);
+        keys = new UUID[EVENT_COUNT];
+        recordMaps = new Map[EVENT_COUNT];
+        for (int i = 0; i < EVENT_COUNT; i++) {
+            keys[i] = UUID.randomUUID();
+            // Tip header'ı olmayan JSON kaydın JsonDeserializer çıktısı
+            recordMaps[i] = EventMapper.JSON_MAPPER.convertValue(events[i], new TypeReference<Map<String, Object>>() {
+            });
+        }
+    }
+
+    private int next() {
+        return index++ & (EVENT_COUNT - 1);
+    }
+
+    @Benchmark
+    public Event toEvent() {
+        int i = next();
+        return eventMapper.toEvent(events[i], keys[i]);
+    }
+
+    @Benchmark
+    public EventRequest fromRecordValueEventRequest() {
+        return eventMapper.fromRecordValue(events[next()]);
+    }
+
+    @Benchmark
+    public EventRequest fromRecordValueMap() {
+        return eventMapper.fromRecordValue(recordMaps[next()]);
+    }
+
+    @Benchmark
+    public String toJsonStringMetadata() {
+        Map<String, Object> metadata = events[next()].getMetadata();
+        return eventMapper.toJsonString(metadata);
+    }
+
+    @Benchmark
+    public String toJsonStringTags() {
+        List<String> tags = events[next()].getTags();
+        return eventMapper.toJsonString(tags);
+    }
+}
@@ -0,0 +1,131 @@
+package com.baykanat.insider.assessment.benchmark;
+
+import com.baykanat.insider.assessment.api.dto.EventRequest;
+import com.baykanat.insider.assessment.config.AppProperties;
+import com.baykanat.insider.assessment.domain.mapper.EventMapper;
+import com.baykanat.insider.assessment.infrastructure.kafka.EventWireDeserializer;
+import com.baykanat.insider.assessment.infrastructure.kafka.EventWireSerializer;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.mapstruct.factory.Mappers;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.kafka.support.serializer.JsonDeserializer;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Kafka value formatları: JSON (JsonSerializer + tip header'ı, consumer'da JsonDeserializer + EventMapper) ile
+ * EventBinaryCodec. serialize* producer CPU'sunu, deserialize* consumer çözme hızını ölçer; bytes sayacı
+ * (value + header bayt/op) kayıt boyutunu verir.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class EventSerdeBenchmark {
+
+    private static final String TOPIC = "events-ingestion";
+    private static final int EVENT_COUNT = 1024;
+
+    private EventRequest[] events;
+    private byte[][] jsonRecords;
+    private Headers[] jsonHeaders;
+    private byte[][] binaryRecords;
+    private EventWireSerializer jsonSerializer;
+    private EventWireSerializer binarySerializer;
+    private EventWireDeserializer deserializer;
+    private EventMapper eventMapper;
+    private int index;
+
+    /** Ölçülen kayıt boyutu; JMH sonuçlarında bytes/op olarak raporlanır. */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class RecordSize {
+        public long bytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            bytes = 0;
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        jsonSerializer = new EventWireSerializer(AppProperties.WireFormat.JSON);
+        binarySerializer = new EventWireSerializer(AppProperties.WireFormat.BINARY);
+        deserializer = new EventWireDeserializer();
+        // Aynı header'lar her iterasyonda yeniden kullanılır; tip header'ı silinmesin
+        deserializer.configure(Map.of(
+                JsonDeserializer.TRUSTED_PACKAGES, "com.baykanat.insider.assessment.*",
+                JsonDeserializer.REMOVE_TYPE_INFO_HEADERS, false), false);
+        eventMapper = Mappers.getMapper(EventMapper.class);
+
+        events = new EventRequest[EVENT_COUNT];
+        jsonRecords = new byte[EVENT_COUNT][];
+        jsonHeaders = new Headers[EVENT_COUNT];
+        binaryRecords = new byte[EVENT_COUNT][];
+        long timestamp = 1771156800L;
+        for (int i = 0; i < EVENT_COUNT; i++) {
+            events[i] = EventRequest.builder()
+                    .eventName(i % 3 == 0 ? "product_view" : "add_to_cart")
+                    .userId("user_" + (100_000 + i * 7919))
+                    .timestamp(timestamp + i)
+                    .channel(i % 2 == 0 ? "web" : "mobile_app")
+                    .campaignId(i % 5 == 0 ? null : "cmp_" + (i % 97))
+                    .tags(i % 4 == 0 ? List.of("electronics", "homepage") : null)
+                    .metadata(i % 4 == 0 ? Map.of("product_id", "prod-" + i, "price", 129.99) : null)
+                    .build();
+            jsonHeaders[i] = new RecordHeaders();
+            jsonRecords[i] = jsonSerializer.serialize(TOPIC, jsonHeaders[i], events[i]);
+            binaryRecords[i] = binarySerializer.serialize(TOPIC, new RecordHeaders(), events[i]);
+        }
+    }
+
+    private int next() {
+        return index++ & (EVENT_COUNT - 1);
+    }
+
+    @Benchmark
+    public byte[] serializeJson(RecordSize size) {
+        Headers headers = new RecordHeaders();
+        byte[] value = jsonSerializer.serialize(TOPIC, headers, events[next()]);
+        size.bytes += value.length + headerBytes(headers);
+        return value;
+    }
+
+    @Benchmark
+    public byte[] serializeBinary(RecordSize size) {
+        byte[] value = binarySerializer.serialize(TOPIC, new RecordHeaders(), events[next()]);
+        size.bytes += value.length;
+        return value;
+    }
+
+    /** Consumer'daki JSON yolu: JsonDeserializer + EventMapper.fromRecordValue. */
+    @Benchmark
+    public EventRequest deserializeJson() {
+        int i = next();
+        return eventMapper.fromRecordValue(deserializer.deserialize(TOPIC, jsonHeaders[i], jsonRecords[i]));
+    }
+
+    @Benchmark
+    public EventRequest deserializeBinary() {
+        return eventMapper.fromRecordValue(deserializer.deserialize(TOPIC, new RecordHeaders(), binaryRecords[next()]));
+    }
+
+    private static int headerBytes(Headers headers) {
+        int bytes = 0;
+        for (var header : headers) {
+            bytes += header.key().length() + header.value().length;
+        }
+        return bytes;
+    }
+}
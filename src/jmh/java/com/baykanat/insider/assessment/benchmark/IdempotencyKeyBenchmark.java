@@ -0,0 +1,88 @@
+package com.baykanat.insider.assessment.benchmark;
+
+import com.baykanat.insider.assessment.api.dto.EventRequest;
+import com.baykanat.insider.assessment.config.AppProperties;
+import com.baykanat.insider.assessment.domain.service.IdempotencyService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Idempotency key üretimi: önceki implementasyon (string birleştirme + her çağrıda yeni MessageDigest)
+ * ile havuzdan buffer/digest alan SHA-256 ve MurmurHash3 yolları.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class IdempotencyKeyBenchmark {
+
+    private static final int EVENT_COUNT = 1024;
+
+    private EventRequest[] events;
+    private IdempotencyService sha256Service;
+    private IdempotencyService murmur3Service;
+    private int index;
+
+    @Setup
+    public void setUp() {
+        events = new EventRequest[EVENT_COUNT];
+        long timestamp = 1771156800L;
+        for (int i = 0; i < EVENT_COUNT; i++) {
+            events[i] = EventRequest.builder()
+                    .eventName(i % 3 == 0 ? "product_view" : "add_to_cart")
+                    .userId("user_" + (100_000 + i * 7919))
+                    .timestamp(timestamp + i)
+                    .campaignId(i % 5 == 0 ? null : "cmp_" + (i % 97))
+                    .build();
+        }
+        sha256Service = new IdempotencyService(new AppProperties());
+        AppProperties murmur = new AppProperties();
+        murmur.getIdempotency().setKeyAlgorithm(AppProperties.KeyAlgorithm.MURMUR3);
+        murmur3Service = new IdempotencyService(murmur);
+    }
+
+    private EventRequest next() {
+        return events[index++ & (EVENT_COUNT - 1)];
+    }
+
+    @Benchmark
+    public UUID legacySha256() {
+        return legacyKey(next());
+    }
+
+    @Benchmark
+    public UUID pooledSha256() {
+        return sha256Service.generateKey(next());
+    }
+
+    @Benchmark
+    public UUID pooledMurmur3() {
+        return murmur3Service.generateKey(next());
+    }
+
+    /** Değişiklik öncesi IdempotencyService.generateKey (karşılaştırma tabanı). */
+    private static UUID legacyKey(EventRequest event) {
+        String raw = event.getEventName() + "|"
+                + event.getUserId() + "|"
+                + event.getTimestamp() + "|"
+                + (event.getCampaignId() != null ? event.getCampaignId() : "");
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            ByteBuffer hash = ByteBuffer.wrap(digest.digest(raw.getBytes(StandardCharsets.UTF_8)));
+            return new UUID(hash.getLong(), hash.getLong());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
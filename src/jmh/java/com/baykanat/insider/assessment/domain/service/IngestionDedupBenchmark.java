@@ -0,0 +1,60 @@
+package com.baykanat.insider.assessment.domain.service;
+
+import com.baykanat.insider.assessment.api.dto.EventRequest;
+import com.baykanat.insider.assessment.benchmark.BenchmarkEvents;
+import com.baykanat.insider.assessment.config.AppProperties;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * EventIngestionService.processBatch'in DB'siz kısmı, 1000 event'lik poll için: key üretip key → event
+ * LinkedHashMap'i kurmak ve inbox'ta olan key'leri eleyip yeni event map'ini toplamak. Inbox yanıtı sabit bir küme;
+ * duplicateRatio tekrar oranıdır. processBatch'in kullandığı paket içi keyEvents / withoutExisting çağrılır; bu yüzden
+ * benchmark servisle aynı pakettedir.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class IngestionDedupBenchmark {
+
+    private static final int BATCH_SIZE = 1000;
+
+    @Param({"0.0", "0.1"})
+    public double duplicateRatio;
+
+    private List<EventRequest> batch;
+    private Set<UUID> existingKeys;
+    private IdempotencyService idempotencyService;
+
+    @Setup
+    public void setUp() {
+        idempotencyService = new IdempotencyService(new AppProperties());
+        batch = Arrays.asList(BenchmarkEvents.create(BATCH_SIZE));
+        existingKeys = new HashSet<>();
+        int duplicates = (int) (BATCH_SIZE * duplicateRatio);
+        for (int i = 0; i < duplicates; i++) {
+            existingKeys.add(idempotencyService.generateKey(batch.get(i * BATCH_SIZE / duplicates)));
+        }
+    }
+
+    /** Key üretimi dahil: poll başına dedup maliyeti. */
+    @Benchmark
+    public Map<UUID, EventRequest> keyAndFilter() {
+        return EventIngestionService.withoutExisting(
+                EventIngestionService.keyEvents(idempotencyService, batch), existingKeys);
+    }
+}
@@ -4,7 +4,7 @@ import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.scheduling.annotation.EnableScheduling;
 
-/** Uygulama giriş noktası; @EnableScheduling ile MV refresh ve inbox cleanup. */
+/** Uygulama giriş noktası; @EnableScheduling ile MV refresh ve partition bakımı. */
 @SpringBootApplication
 @EnableScheduling
 public class AssessmentApplication {
@@ -3,7 +3,11 @@ package com.baykanat.insider.assessment.api.controller;
 import com.baykanat.insider.assessment.api.dto.BulkEventRequest;
 import com.baykanat.insider.assessment.api.dto.EventRequest;
 import com.baykanat.insider.assessment.api.dto.EventResponse;
+import com.baykanat.insider.assessment.api.dto.StreamIngestResponse;
+import com.baykanat.insider.assessment.domain.service.EventStreamIngestionService;
+import com.baykanat.insider.assessment.infrastructure.kafka.EventGroupCommitDispatcher;
 import com.baykanat.insider.assessment.infrastructure.kafka.EventKafkaProducer;
+import com.baykanat.insider.assessment.infrastructure.kafka.IngestionAdmissionControl;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
@@ -11,14 +15,22 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
-/** POST /events ve POST /events/bulk. Event Kafka'ya gönderilir, 202 döner; DB yazımı consumer'da. */
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * POST /events, POST /events/bulk ve POST /events/stream. Event Kafka'ya gönderilir, 202 döner; DB yazımı consumer'da.
+ * Kabul kontrolü açıksa istekler önce lag'e göre ayarlanan limitten geçer; aşılırsa 429.
+ */
 @Slf4j
 @RestController
 @RequestMapping("/events")
@@ -26,20 +38,34 @@ import org.springframework.web.bind.annotation.RestController;
 @Tag(name = "Event Ingestion", description = "Endpoints for ingesting events into the platform")
 public class EventController {
 
+    static final String NDJSON = "application/x-ndjson";
+
     private final EventKafkaProducer kafkaProducer;
+    private final EventStreamIngestionService streamIngestionService;
+    private final EventGroupCommitDispatcher groupCommitDispatcher;
+    private final IngestionAdmissionControl admissionControl;
 
-    /** Tek event alır, doğrular, Kafka'ya gönderir. Geçersiz payload → 400, geçerli → 202. */
+    /**
+     * Tek event alır, doğrular, Kafka'ya gönderir. Geçersiz payload → 400, geçerli → 202. Group commit açıksa event
+     * dispatcher'ın bir sonraki micro-batch'iyle gönderilir; 202 yine ack'ten sonra döner.
+     */
     @PostMapping
     @Operation(summary = "Ingest a single event", description = "Accepts and queues a single event for async processing")
     @ApiResponses({
             @ApiResponse(responseCode = "202", description = "Event accepted for processing"),
             @ApiResponse(responseCode = "400", description = "Invalid event payload"),
+            @ApiResponse(responseCode = "429", description = "Throttled while consumers catch up"),
             @ApiResponse(responseCode = "503", description = "Service temporarily unavailable (Kafka down)")
     })
     public ResponseEntity<EventResponse> ingestEvent(@Valid @RequestBody EventRequest event) throws Exception {
         log.debug("Received event: event_name={}, user_id={}", event.getEventName(), event.getUserId());
+        admissionControl.acquire(1);
 
-        kafkaProducer.send(event);
+        if (groupCommitDispatcher.isEnabled()) {
+            groupCommitDispatcher.send(event);
+        } else {
+            kafkaProducer.send(event);
+        }
 
         return ResponseEntity.status(HttpStatus.ACCEPTED)
                 .body(EventResponse.builder()
@@ -55,10 +81,12 @@ public class EventController {
     @ApiResponses({
             @ApiResponse(responseCode = "202", description = "Events accepted for processing"),
             @ApiResponse(responseCode = "400", description = "Invalid event payload(s)"),
+            @ApiResponse(responseCode = "429", description = "Throttled while consumers catch up"),
             @ApiResponse(responseCode = "503", description = "Service temporarily unavailable")
     })
     public ResponseEntity<EventResponse> ingestBulkEvents(@Valid @RequestBody BulkEventRequest bulkRequest) throws Exception {
         log.debug("Received bulk request with {} events", bulkRequest.getEvents().size());
+        admissionControl.acquire(bulkRequest.getEvents().size());
 
         kafkaProducer.sendBatch(bulkRequest.getEvents());
 
@@ -69,4 +97,38 @@ public class EventController {
                         .message("Events queued for processing")
                         .build());
     }
+
+    /**
+     * NDJSON gövdesini (isteğe bağlı gzip) satır satır okuyup Kafka'ya gönderir; gövde bellekte biriktirilmez.
+     * Geçersiz satırlar yanıtta satır numarasıyla raporlanır. Kafka gönderimi başarısız olursa okuma durur → 503.
+     * Kabul kontrolü servis içinde admission-chunk satırda bir uygulanır; izin biterse okuma durur → 429 + Retry-After,
+     * yanıt o ana kadarki sayıları ve yeniden gönderime başlanacak satırı içerir.
+     */
+    @PostMapping(value = "/stream", consumes = NDJSON)
+    @Operation(summary = "Stream ingest events", description = "Accepts newline-delimited JSON events (optionally gzip-encoded) without buffering the body")
+    @ApiResponses({
+            @ApiResponse(responseCode = "202", description = "Stream processed; invalid lines are reported per line"),
+            @ApiResponse(responseCode = "400", description = "Corrupt gzip body"),
+            @ApiResponse(responseCode = "429", description = "Throttled while consumers catch up"),
+            @ApiResponse(responseCode = "503", description = "Kafka unavailable, reading stopped")
+    })
+    public ResponseEntity<StreamIngestResponse> ingestStream(
+            @RequestHeader(value = HttpHeaders.CONTENT_ENCODING, required = false) String contentEncoding,
+            InputStream body) throws Exception {
+        InputStream in = "gzip".equalsIgnoreCase(contentEncoding) ? new GZIPInputStream(body) : body;
+
+        StreamIngestResponse response = streamIngestionService.ingest(in);
+
+        if (response.getFailedCount() > 0) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header("Retry-After", "30")
+                    .body(response);
+        }
+        if ("throttled".equals(response.getStatus())) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header("Retry-After", String.valueOf(admissionControl.getRetryAfterSeconds()))
+                    .body(response);
+        }
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(response);
+    }
 }
@@ -1,25 +1,39 @@
 package com.baykanat.insider.assessment.api.controller;
 
+import com.baykanat.insider.assessment.api.dto.MetricsBatchQueryRequest;
+import com.baykanat.insider.assessment.api.dto.MetricsBatchResponse;
 import com.baykanat.insider.assessment.api.dto.MetricsQueryParams;
 import com.baykanat.insider.assessment.api.dto.MetricsResponse;
+import com.baykanat.insider.assessment.domain.model.GroupBy;
+import com.baykanat.insider.assessment.domain.model.SplitBy;
+import com.baykanat.insider.assessment.domain.model.TagMatch;
 import com.baykanat.insider.assessment.domain.service.MetricsService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Pattern;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
-/** GET /metrics — event_metrics materialized view'dan toplam/benzersiz sayı ve zaman dilimi özeti döner. */
+/**
+ * GET /metrics — tek event_name için toplam/benzersiz sayı ve zaman dilimi özeti; POST /metrics/query — aynı pencerede
+ * birden çok event_name (ve channel) için aynı yanıtlar, tek DB sorgusunda.
+ */
 @Slf4j
 @RestController
 @RequestMapping("/metrics")
@@ -30,7 +44,10 @@ public class MetricsController {
 
     private final MetricsService metricsService;
 
-    /** event_name, from, to zorunlu; channel ve group_by (hourly/daily) isteğe bağlı. */
+    /**
+     * event_name, from, to zorunlu; channel, group_by (minute/5m/15m/hourly/daily/weekly), split_by
+     * (channel/campaign_id) + top ve tag (virgülle çoklu) + tag_match (all/any) isteğe bağlı.
+     */
     @GetMapping
     @Operation(summary = "Get aggregated metrics", description = "Returns event counts and unique user counts with time-bucketed breakdowns")
     @ApiResponses({
@@ -50,8 +67,33 @@ public class MetricsController {
             @Parameter(description = "Optional channel filter", example = "web")
             @RequestParam(value = "channel", required = false) String channel,
 
-            @Parameter(description = "Aggregation grouping: 'hourly' or 'daily'", example = "hourly")
-            @RequestParam(value = "group_by", required = false, defaultValue = "hourly") String groupBy
+            @Parameter(description = "Aggregation grouping: 'minute', '5m', '15m', 'hourly', 'daily' or 'weekly'",
+                    example = "hourly")
+            @RequestParam(value = "group_by", required = false, defaultValue = "hourly")
+            @Pattern(regexp = GroupBy.PATTERN, message = "group_by must be one of minute, 5m, 15m, hourly, daily, weekly")
+            String groupBy,
+
+            @Parameter(description = "Optional breakdown dimension: 'channel' or 'campaign_id'",
+                    example = "campaign_id")
+            @RequestParam(value = "split_by", required = false)
+            @Pattern(regexp = SplitBy.PATTERN, message = "split_by must be one of channel, campaign_id")
+            String splitBy,
+
+            @Parameter(description = "Number of split values to return, largest first (requires split_by)",
+                    example = "10")
+            @RequestParam(value = "top", required = false)
+            @Min(value = 1, message = "top must be at least 1")
+            @Max(value = SplitBy.MAX_TOP, message = "top must be at most " + SplitBy.MAX_TOP)
+            Integer top,
+
+            @Parameter(description = "Optional tag filter; comma-separated for several tags",
+                    example = "flash_sale,homepage")
+            @RequestParam(value = "tag", required = false) String tag,
+
+            @Parameter(description = "How several tags combine: 'all' (AND) or 'any' (OR)", example = "any")
+            @RequestParam(value = "tag_match", required = false)
+            @Pattern(regexp = TagMatch.PATTERN, message = "tag_match must be one of all, any")
+            String tagMatch
     ) {
         MetricsQueryParams params = MetricsQueryParams.builder()
                 .eventName(eventName)
@@ -59,9 +101,25 @@ public class MetricsController {
                 .to(to)
                 .channel(channel)
                 .groupBy(groupBy)
+                .splitBy(splitBy)
+                .top(top)
+                .tag(tag)
+                .tagMatch(tagMatch)
                 .build();
 
         MetricsResponse response = metricsService.getMetrics(params);
         return ResponseEntity.ok(response);
     }
+
+    /** Dashboard'un tüm event_name'leri için tek istek ve tek DB sorgusu; sonuçlar istek sırasıyla. */
+    @PostMapping("/query")
+    @Operation(summary = "Query metrics for many event names",
+            description = "Returns one metrics result per event name (and channel) for the same time range in a single round trip")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Metrics retrieved successfully"),
+            @ApiResponse(responseCode = "400", description = "Invalid request body")
+    })
+    public ResponseEntity<MetricsBatchResponse> queryMetrics(@Valid @RequestBody MetricsBatchQueryRequest request) {
+        return ResponseEntity.ok(metricsService.queryBatch(request));
+    }
 }
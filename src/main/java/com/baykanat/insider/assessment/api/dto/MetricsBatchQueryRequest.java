@@ -0,0 +1,59 @@
+package com.baykanat.insider.assessment.api.dto;
+
+import com.baykanat.insider.assessment.domain.model.GroupBy;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Pattern;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * POST /metrics/query gövdesi: aynı pencere için birden çok event_name (ve isteğe bağlı channel) tek sorguda.
+ * channels boşsa event_name başına tüm channel'ların toplamı, doluysa her (event_name, channel) çifti ayrı döner.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Batch metrics query for many event names in one round trip")
+public class MetricsBatchQueryRequest {
+
+    @NotEmpty(message = "event_names must not be empty")
+    @Size(max = 100, message = "Maximum 100 event names per query")
+    @JsonProperty("event_names")
+    @Schema(description = "Event names to query", example = "[\"product_view\", \"add_to_cart\", \"purchase\"]")
+    private List<@NotBlank(message = "event_names must not contain blank values") String> eventNames;
+
+    @NotNull(message = "from timestamp is required")
+    @JsonProperty("from")
+    @Schema(description = "Start of time range (Unix epoch seconds)", example = "1771113600")
+    private Long from;
+
+    @NotNull(message = "to timestamp is required")
+    @JsonProperty("to")
+    @Schema(description = "End of time range (Unix epoch seconds)", example = "1771200000")
+    private Long to;
+
+    @Size(max = 20, message = "Maximum 20 channels per query")
+    @JsonProperty("channels")
+    @Schema(description = "Optional channels; each (event_name, channel) pair is returned separately", example = "[\"web\", \"mobile_app\"]")
+    private List<@NotBlank(message = "channels must not contain blank values") String> channels;
+
+    @JsonProperty("group_by")
+    @Pattern(regexp = GroupBy.PATTERN, message = "group_by must be one of minute, 5m, 15m, hourly, daily, weekly")
+    @Schema(description = "Aggregation grouping: 'minute', '5m', '15m', 'hourly', 'daily' or 'weekly'. Default: hourly",
+            example = "hourly")
+    private String groupBy;
+
+    public String getGroupBy() {
+        return groupBy == null || groupBy.isBlank() ? "hourly" : groupBy;
+    }
+}
@@ -0,0 +1,23 @@
+package com.baykanat.insider.assessment.api.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/** POST /metrics/query yanıtı: istekteki event_names (ve channels) sırasıyla, veri olmasa da her seri için bir sonuç. */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Batch metrics response")
+public class MetricsBatchResponse {
+
+    @JsonProperty("results")
+    @Schema(description = "One metrics result per requested event name (and channel)")
+    private List<MetricsResponse> results;
+}
@@ -1,14 +1,26 @@
 package com.baykanat.insider.assessment.api.dto;
 
+import com.baykanat.insider.assessment.domain.model.GroupBy;
+import com.baykanat.insider.assessment.domain.model.SplitBy;
+import com.baykanat.insider.assessment.domain.model.TagMatch;
 import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Pattern;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
-/** GET /metrics sorgu parametreleri: event_name, from, to zorunlu; channel, group_by isteğe bağlı. */
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * GET /metrics sorgu parametreleri: event_name, from, to zorunlu; channel, group_by, split_by, top, tag ve tag_match
+ * isteğe bağlı.
+ */
 @Data
 @Builder
 @NoArgsConstructor
@@ -31,10 +43,41 @@ public class MetricsQueryParams {
     @Schema(description = "Optional channel filter", example = "web")
     private String channel;
 
-    @Schema(description = "Aggregation grouping: 'hourly' or 'daily'. Default: hourly", example = "hourly")
+    @Pattern(regexp = GroupBy.PATTERN, message = "group_by must be one of minute, 5m, 15m, hourly, daily, weekly")
+    @Schema(description = "Aggregation grouping: 'minute', '5m', '15m', 'hourly', 'daily' or 'weekly'. Default: hourly",
+            example = "hourly")
     private String groupBy;
 
+    @Pattern(regexp = SplitBy.PATTERN, message = "split_by must be one of channel, campaign_id")
+    @Schema(description = "Optional breakdown dimension: 'channel' or 'campaign_id'", example = "campaign_id")
+    private String splitBy;
+
+    @Min(value = 1, message = "top must be at least 1")
+    @Max(value = SplitBy.MAX_TOP, message = "top must be at most " + SplitBy.MAX_TOP)
+    @Schema(description = "Number of split values to return, largest first (requires split_by). Default: 10",
+            example = "10")
+    private Integer top;
+
+    @Schema(description = "Optional tag filter; comma-separated for several tags", example = "flash_sale,homepage")
+    private String tag;
+
+    @Pattern(regexp = TagMatch.PATTERN, message = "tag_match must be one of all, any")
+    @Schema(description = "How several tags combine: 'all' (AND) or 'any' (OR). Default: all", example = "any")
+    private String tagMatch;
+
     public String getGroupBy() {
         return groupBy == null || groupBy.isBlank() ? "hourly" : groupBy;
     }
+
+    /** tag parametresindeki farklı, boş olmayan etiketler (sıra korunur); filtre yoksa boş. */
+    public List<String> tagList() {
+        if (tag == null || tag.isBlank()) {
+            return List.of();
+        }
+        return Arrays.stream(tag.split(","))
+                .map(String::trim)
+                .filter(value -> !value.isEmpty())
+                .distinct()
+                .toList();
+    }
 }
@@ -10,7 +10,10 @@ import lombok.NoArgsConstructor;
 
 import java.util.List;
 
-/** Metrik yanıtı: toplam sayı, benzersiz kullanıcı sayısı, zaman dilimi breakdown'ları. */
+/**
+ * Metrik yanıtı: toplam sayı, benzersiz kullanıcı sayısı, zaman dilimi breakdown'ları; etiket filtresi ve split_by
+ * varsa onlar da.
+ */
 @Data
 @Builder
 @NoArgsConstructor
@@ -39,10 +42,26 @@ public class MetricsResponse {
     @Schema(description = "Applied channel filter (if any)", example = "web")
     private String channel;
 
+    @JsonProperty("tags")
+    @Schema(description = "Applied tag filter (if any)", example = "[\"flash_sale\", \"homepage\"]")
+    private List<String> tags;
+
+    @JsonProperty("tag_match")
+    @Schema(description = "How several tags were combined: all (AND) or any (OR)", example = "any")
+    private String tagMatch;
+
     @JsonProperty("breakdowns")
     @Schema(description = "Time-bucketed aggregation breakdown")
     private List<TimeBucket> breakdowns;
 
+    @JsonProperty("split_by")
+    @Schema(description = "Applied breakdown dimension (if any)", example = "campaign_id")
+    private String splitBy;
+
+    @JsonProperty("splits")
+    @Schema(description = "Top split values by total count, each with its own totals and breakdown")
+    private List<Split> splits;
+
     @Data
     @Builder
     @NoArgsConstructor
@@ -73,4 +92,27 @@ public class MetricsResponse {
         @Schema(description = "Unique users in this bucket", example = "872")
         private long uniqueUserCount;
     }
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Schema(description = "Aggregation for one value of the split dimension")
+    public static class Split {
+        @JsonProperty("value")
+        @Schema(description = "Channel or campaign_id", example = "summer_sale")
+        private String value;
+
+        @JsonProperty("total_count")
+        @Schema(description = "Event count for this value", example = "4210")
+        private long totalCount;
+
+        @JsonProperty("unique_user_count")
+        @Schema(description = "Unique users for this value", example = "1980")
+        private long uniqueUserCount;
+
+        @JsonProperty("breakdowns")
+        @Schema(description = "Time-bucketed aggregation breakdown for this value")
+        private List<TimeBucket> breakdowns;
+    }
 }
@@ -0,0 +1,50 @@
+package com.baykanat.insider.assessment.api.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/** POST /events/stream yanıtı: satır bazında kabul/ret/gönderim hatası sayıları ve ilk hataların satır numaraları. */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@Schema(description = "Response for NDJSON stream ingestion")
+public class StreamIngestResponse {
+
+    @Schema(description = "accepted (all valid lines queued), aborted (Kafka unavailable, reading stopped) or throttled (admission limit reached, resend from the reported line)", example = "accepted")
+    private String status;
+
+    @Schema(description = "Non-empty lines read", example = "250000")
+    private long lineCount;
+
+    @Schema(description = "Events acknowledged by Kafka", example = "249998")
+    private long acceptedCount;
+
+    @Schema(description = "Lines rejected as malformed or invalid", example = "2")
+    private long rejectedCount;
+
+    @Schema(description = "Valid events that could not be sent to Kafka", example = "0")
+    private long failedCount;
+
+    @Schema(description = "First errors with their 1-based line numbers")
+    private List<LineError> errors;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Schema(description = "Error for a single NDJSON line")
+    public static class LineError {
+        @Schema(description = "1-based line number", example = "42")
+        private long line;
+        @Schema(description = "Reason", example = "event_name is required")
+        private String message;
+    }
+}
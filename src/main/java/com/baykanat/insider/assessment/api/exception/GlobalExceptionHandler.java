@@ -1,6 +1,9 @@
 package com.baykanat.insider.assessment.api.exception;
 
+import com.baykanat.insider.assessment.domain.service.MetricsService.QueryBudgetExceededException;
+import com.baykanat.insider.assessment.domain.service.MetricsService.UnsupportedQueryException;
 import com.baykanat.insider.assessment.infrastructure.kafka.EventKafkaProducer.ServiceUnavailableException;
+import com.baykanat.insider.assessment.infrastructure.kafka.IngestionAdmissionControl.AdmissionRejectedException;
 import jakarta.validation.ConstraintViolationException;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpHeaders;
@@ -15,8 +18,9 @@ import java.time.Instant;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.zip.ZipException;
 
-/** REST hatalarını tek yerde toplar: 400 validasyon, 503 Kafka/circuit breaker, 500 diğer. */
+/** REST hatalarını tek yerde toplar: 400 validasyon, 429 kabul limiti, 503 Kafka/circuit breaker, 500 diğer. */
 @Slf4j
 @RestControllerAdvice
 public class GlobalExceptionHandler {
@@ -56,6 +60,27 @@ public class GlobalExceptionHandler {
                 .body(errorBody(HttpStatus.BAD_REQUEST, "Missing required parameter: " + ex.getParameterName(), null));
     }
 
+    /** Bozuk gzip gövdesi (POST /events/stream) → 400. */
+    @ExceptionHandler(ZipException.class)
+    public ResponseEntity<Map<String, Object>> handleCorruptGzip(ZipException ex) {
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                .body(errorBody(HttpStatus.BAD_REQUEST, "Invalid gzip body: " + ex.getMessage(), null));
+    }
+
+    /** Ham partition okuma bütçesini aşan metrik sorgusu → 400. */
+    @ExceptionHandler(QueryBudgetExceededException.class)
+    public ResponseEntity<Map<String, Object>> handleQueryBudgetExceeded(QueryBudgetExceededException ex) {
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                .body(errorBody(HttpStatus.BAD_REQUEST, ex.getMessage(), null));
+    }
+
+    /** split_by/top sorgunun diğer parametreleriyle veya metrik kaynağıyla uyumsuz → 400. */
+    @ExceptionHandler(UnsupportedQueryException.class)
+    public ResponseEntity<Map<String, Object>> handleUnsupportedQuery(UnsupportedQueryException ex) {
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                .body(errorBody(HttpStatus.BAD_REQUEST, ex.getMessage(), null));
+    }
+
     /** Circuit breaker / Kafka yok → 503 + Retry-After. */
     @ExceptionHandler(ServiceUnavailableException.class)
     public ResponseEntity<Map<String, Object>> handleServiceUnavailable(ServiceUnavailableException ex) {
@@ -69,6 +94,19 @@ public class GlobalExceptionHandler {
                 .body(errorBody(HttpStatus.SERVICE_UNAVAILABLE, ex.getMessage(), null));
     }
 
+    /** Lag'e duyarlı kabul limiti aşıldı → 429 + Retry-After. */
+    @ExceptionHandler(AdmissionRejectedException.class)
+    public ResponseEntity<Map<String, Object>> handleAdmissionRejected(AdmissionRejectedException ex) {
+        log.debug("Admission rejected: {}", ex.getMessage());
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("Retry-After", String.valueOf(ex.getRetryAfterSeconds()));
+
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .headers(headers)
+                .body(errorBody(HttpStatus.TOO_MANY_REQUESTS, ex.getMessage(), null));
+    }
+
     /** Beklenmeyen hatalar → 500, istemciye jenerik mesaj. */
     @ExceptionHandler(Exception.class)
     public ResponseEntity<Map<String, Object>> handleGenericException(Exception ex) {
@@ -5,6 +5,8 @@ import lombok.Setter;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
+import java.time.Duration;
+
 /** app.* için tip güvenli configuration (Kafka topic adları, scheduler aralıkları, inbox retention). */
 @Configuration
 @ConfigurationProperties(prefix = "app")
@@ -14,17 +16,59 @@ public class AppProperties {
 
     private KafkaTopicProperties kafka = new KafkaTopicProperties();
     private SchedulerProperties scheduler = new SchedulerProperties();
+    private PersistenceProperties persistence = new PersistenceProperties();
+    private MetricsProperties metrics = new MetricsProperties();
+    private DedupCacheProperties dedupCache = new DedupCacheProperties();
+    private IdempotencyProperties idempotency = new IdempotencyProperties();
+    private IngestionProperties ingestion = new IngestionProperties();
+    private ObservabilityProperties observability = new ObservabilityProperties();
+    private ArchiveProperties archive = new ArchiveProperties();
 
     @Getter
     @Setter
     public static class KafkaTopicProperties {
         private TopicNames topic = new TopicNames();
+        private ConsumerProcessing consumer = new ConsumerProcessing();
+        /** Producer'ın EventRequest yazdığı format; consumer her zaman iki formatı da okur. */
+        private WireFormat wireFormat = WireFormat.JSON;
 
         @Getter
         @Setter
         public static class TopicNames {
             private String eventsIngestion = "events-ingestion";
         }
+
+        @Getter
+        @Setter
+        public static class ConsumerProcessing {
+            /** Poll içi işleme: none (partition'lar sırayla), partition (partition başına paralel), key-hash. */
+            private ConsumerParallelism parallelism = ConsumerParallelism.NONE;
+            /** key-hash modunda partition başına alt batch sayısı (user_id hash'ine göre). */
+            private int subBatches = 4;
+            private PipelineProperties pipeline = new PipelineProperties();
+        }
+
+        @Getter
+        @Setter
+        public static class PipelineProperties {
+            /** decode → dedup → persist aşamaları ayrı thread'lerde; poll N yazılırken N+1 çözülür. */
+            private boolean enabled = false;
+            /** Aşamalar arası kuyrukta bekleyebilecek poll sayısı; dolunca listener bekler. */
+            private int queueCapacity = 2;
+        }
+    }
+
+    public enum WireFormat {
+        /** Spring JsonSerializer (tip header'ıyla JSON metin). */
+        JSON,
+        /** EventBinaryCodec: versiyonlu, uzunluk önekli alanlar. */
+        BINARY
+    }
+
+    public enum ConsumerParallelism {
+        NONE,
+        PARTITION,
+        KEY_HASH
     }
 
     @Getter
@@ -34,9 +78,228 @@ public class AppProperties {
         private long materializedViewRefreshRate = 60000;
         /** MV ilk yenileme gecikmesi (ms); uygulama açılışından sonra. */
         private long materializedViewRefreshInitialDelay = 30000;
-        private long inboxCleanupRate = 3600000;
+        /** Inbox key'lerinin dedup penceresi (gün); daha eski inbox partition'ları silinir. */
         private int inboxRetentionDays = 7;
         /** event_metrics MV'de kullanılan son N gün (app_config ile senkron). */
         private int mvRetentionDays = 7;
+        /** events ve inbox partition bakım aralığı (ms); açılışta bir kez hemen çalışır. */
+        private long partitionMaintenanceRate = 3600000;
+        /** Bugünden sonra önceden oluşturulacak events partition günü. */
+        private int eventsPartitionPrecreateDays = 7;
+        /** Ham events partition'larının tutulacağı gün (mv-retention-days'ten kısa olamaz); 0 = silme kapalı. */
+        private int eventsRetentionDays = 30;
+        /** Bugünden sonra önceden oluşturulacak inbox partition günü. */
+        private int inboxPartitionPrecreateDays = 7;
+    }
+
+    @Getter
+    @Setter
+    public static class PersistenceProperties {
+        /** events insert yolu: batch (JDBC batchUpdate) veya copy (binary COPY + staging tablo). */
+        private EventsInsertMode eventsInsertMode = EventsInsertMode.BATCH;
+    }
+
+    public enum EventsInsertMode {
+        BATCH,
+        COPY
+    }
+
+    @Getter
+    @Setter
+    public static class MetricsProperties {
+        /** GET /metrics kaynağı: rollup (artımlı event_metrics_hourly) veya materialized-view (event_metrics). */
+        private MetricsSource source = MetricsSource.ROLLUP;
+        /** Rollup HLL sketch hassasiyeti (4-18); standart hata ~1.04/sqrt(2^p), dense sketch 2^p bayt. */
+        private int hllPrecision = 14;
+        /** GET /metrics yanıt önbelleği. */
+        private QueryCacheProperties cache = new QueryCacheProperties();
+        /** Katmanlı sorgu yönlendiricisi: tam saatler ön-agregasyondan, kenarlar ve retention dışı günler ham veriden. */
+        private QueryRouterProperties router = new QueryRouterProperties();
+        /** Rollup çözünürlükleri (dakika, 15 dk, saat, gün); yalnızca rollup kaynağında yazılır ve okunur. */
+        private RollupProperties rollup = new RollupProperties();
+        /** MV modunda son MV yenilemesinden sonra commit olan event'lerin bellek içi dakika sayaçları. */
+        private HotWindowProperties hotWindow = new HotWindowProperties();
+    }
+
+    @Getter
+    @Setter
+    public static class HotWindowProperties {
+        /** Yalnızca materialized-view kaynağında etkilidir; instance'ın consumer'ı ve MV refresh'i aynı olmalıdır. */
+        private boolean enabled = false;
+        /** Takip edilen en eski event dakikası (şimdiden geriye); daha eski event'ler bir sonraki refresh'i bekler. */
+        private Duration window = Duration.ofHours(2);
+        /** Dakika hücresi başına HyperLogLog hassasiyeti; hücre 2^p bayt tutar (12 → 4KB, ~%1.6 hata). */
+        private int hllPrecision = 12;
+        /** MV refresh'inin eski katmanı seçmiş commit'leri bekleyeceği en uzun süre; aşılırsa katmanlar atılmaz. */
+        private Duration commitDrainTimeout = Duration.ofSeconds(5);
+    }
+
+    /**
+     * Saatlik dışındaki rollup tabloları varsayılan kapalıdır: her biri consumer batch'ine ayrı bir FOR UPDATE turu
+     * ekler, günlük kovalar ise günün tüm batch'lerince kilitlenir. Açılan çözünürlük RollupRebuildRunner tarafından
+     * arka planda events'ten kurulur.
+     */
+    @Getter
+    @Setter
+    public static class RollupProperties {
+        /** Dakikalık kovaların tutulma süresi; 0 = dakika çözünürlüğü kapalı (yazılmaz, sorgular alt katmana düşer). */
+        private Duration minuteRetention = Duration.ZERO;
+        /** 15 dakikalık kovaların tutulma süresi; 0 = kapalı. */
+        private Duration quarterHourRetention = Duration.ZERO;
+        /** Günlük kovalar (süresiz); kapalıyken günlük/haftalık sorgular saatlik kovalardan okunur. */
+        private boolean dailyEnabled = false;
+        /** campaign_id kırılımlı saatlik/günlük rollup (V13); kapalıyken split_by=campaign_id reddedilir. */
+        private boolean campaignEnabled = false;
+        /** (event_name, tag, saat) rollup'ı (V14); kapalıyken tag filtresi reddedilir. */
+        private boolean tagEnabled = false;
+    }
+
+    @Getter
+    @Setter
+    public static class QueryRouterProperties {
+        /** Kapalıyken pencere ön-agregasyona olduğu gibi gider (kenarlar saat kovalarına yuvarlanır). */
+        private boolean enabled = true;
+        /** Ham partition segmentlerini paralel okuyan thread (ve en fazla DB bağlantısı) sayısı; tüm sorgularda ortak. */
+        private int rawParallelism = 4;
+        /** Sorgu başına ham segmentlerin tahmini satır bütçesi (partition reltuples × kapsanan gün oranı). */
+        private long rawRowBudget = 50_000_000;
+    }
+
+    @Getter
+    @Setter
+    public static class QueryCacheProperties {
+        private boolean enabled = true;
+        /** Toplam ağırlık sınırı; giriş ağırlığı 1 + breakdown kova sayısı. */
+        private long maxWeight = 200_000;
+        /**
+         * Rollup modunda (ve MV modunda hot window açıkken) girişin en fazla yaşı: kaynak her batch'te değişir;
+         * 0 = bu modlarda önbellek kapalı.
+         */
+        private Duration rollupMaxStaleness = Duration.ofSeconds(1);
+    }
+
+    public enum MetricsSource {
+        ROLLUP,
+        MATERIALIZED_VIEW
+    }
+
+    @Getter
+    @Setter
+    public static class DedupCacheProperties {
+        /** Inbox sorgusunun önünde partition başına bellek içi dedup filtresi (Bloom filter + son key'ler LRU). */
+        private boolean enabled = false;
+        /** Partition başına günlük beklenen yeni key sayısı; günlük Bloom filter dilimi buna göre boyutlanır. */
+        private long expectedKeysPerDay = 30_000_000;
+        /** Dilim başına hedef yanlış pozitif oranı (yanlış pozitif yalnızca DB sorgusuna düşer). */
+        private double falsePositiveProbability = 0.01;
+        /** Partition başına DB'de var olduğu bilinen son key'lerin LRU kapasitesi. */
+        private int recentKeysCapacity = 100_000;
+        /** Aynı anda inbox'ı tarayabilecek filtre kurulumu; her tarama bir Hikari bağlantısı tutar. */
+        private int rebuildParallelism = 1;
+    }
+
+    @Getter
+    @Setter
+    public static class IdempotencyProperties {
+        /** Idempotency key hash'i: sha256 (ilk 128 bit) veya murmur3 (x64_128). Değiştirmek key'leri değiştirir. */
+        private KeyAlgorithm keyAlgorithm = KeyAlgorithm.SHA256;
+    }
+
+    public enum KeyAlgorithm {
+        SHA256,
+        MURMUR3
+    }
+
+    @Getter
+    @Setter
+    public static class IngestionProperties {
+        private StreamProperties stream = new StreamProperties();
+        private GroupCommitProperties groupCommit = new GroupCommitProperties();
+        private AdmissionProperties admission = new AdmissionProperties();
+    }
+
+    @Getter
+    @Setter
+    public static class AdmissionProperties {
+        /** Consumer lag ve producer buffer doluluğuna göre AIMD ile ayarlanan saniyelik event limiti; aşılırsa 429. */
+        private boolean enabled = false;
+        /** Lag ve buffer örnekleme aralığı (ms). */
+        private long sampleRate = 5000;
+        /** Limitin üst sınırı ve başlangıç değeri (event/sn). */
+        private int maxLimit = 30000;
+        /** Limitin alt sınırı (event/sn); aşırı yükte de bu kadar trafik kabul edilir. */
+        private int minLimit = 1000;
+        /** Lag bunun üstündeyse limit decrease-factor ile çarpılır. */
+        private long lagHigh = 500_000;
+        /** Lag bunun altındaysa limit additive-increase kadar artar; Retry-After bu seviyeye inme süresidir. */
+        private long lagLow = 100_000;
+        /** Producer buffer.memory doluluğu bunun üstündeyse limit azaltılır. */
+        private double bufferHigh = 0.8;
+        /** Örnek başına toplamsal artış (event/sn). */
+        private int additiveIncrease = 1000;
+        /** Aşırı yükte çarpımsal azalış katsayısı. */
+        private double decreaseFactor = 0.7;
+        /** Retry-After üst sınırı. */
+        private Duration maxRetryAfter = Duration.ofSeconds(60);
+    }
+
+    @Getter
+    @Setter
+    public static class GroupCommitProperties {
+        /** POST /events group commit: istekler kuyruğa, tek dispatcher micro-batch olarak gönderip flush eder. */
+        private boolean enabled = false;
+        /** Ack bekleyen en fazla event; dolunca istek hemen 503 alır. */
+        private int queueCapacity = 65536;
+        /** Batch başına en fazla event. */
+        private int maxBatchSize = 500;
+        /** Batch'in ilk event'ten sonra en fazla bekleme süresi. */
+        private Duration maxWait = Duration.ofMillis(2);
+        /** İsteğin batch ack'ini bekleme süresi; aşılırsa 503. */
+        private Duration ackTimeout = Duration.ofSeconds(2);
+    }
+
+    @Getter
+    @Setter
+    public static class StreamProperties {
+        /** POST /events/stream: ack'i beklenen en fazla event; dolunca okuma durur (bellek sınırı). */
+        private int maxInFlight = 5000;
+        /** Tek NDJSON satırının en fazla bayt sayısı; aşan satır reddedilir. */
+        private int maxLineBytes = 65536;
+        /** İstek başına en fazla event satırı. */
+        private int maxEvents = 1_000_000;
+        /** Yanıtta satır numarasıyla listelenen en fazla hata. */
+        private int maxErrors = 100;
+        /** Gövde bittikten sonra kalan ack'ler için bekleme süresi. */
+        private Duration completionTimeout = Duration.ofSeconds(30);
+        /** Kabul kontrolünden tek seferde alınan izin (event); akış bu kadar satırda bir yeniden değerlendirilir. */
+        private int admissionChunk = 1000;
+    }
+
+    @Getter
+    @Setter
+    public static class ObservabilityProperties {
+        /** Ingestion timer'ları, sayaçları, gauge'ları ve pipeline aşama meter'ları; kapalıyken hiçbiri kaydedilmez. */
+        private boolean enabled = true;
+        /** Timer'lar Prometheus için histogram kovaları yayınlar (histogram_quantile ile p99). */
+        private boolean percentileHistogram = true;
+        /** Partition'a bağlı meter'lar Kafka partition'ı ile etiketlenir; kapalıyken tek seri ("all"). */
+        private boolean partitionTag = true;
+    }
+
+    @Getter
+    @Setter
+    public static class ArchiveProperties {
+        /** Eski events partition'ları silinmeden önce sütunlu dosyalara arşivlenir; sorgular arşivi okur. */
+        private boolean enabled = false;
+        /** Arşiv dosyalarının dizini; tüm instance'larda aynı (paylaşımlı) dizin olmalı. */
+        private String directory = "./data/archive";
+        /** Açıkken ham events partition'larının PostgreSQL'de tutulacağı gün (mv-retention-days'ten kısa olamaz). */
+        private int hotRetentionDays = 14;
+        /** Row group başına satır; min/max budaması ve paralel çözme bu birimle yapılır. */
+        private int rowGroupSize = 262_144;
+        /** Sorgu başına arşiv row group'larını paralel çözen thread sayısı. */
+        private int scanParallelism = 4;
+        /** Arşiv kataloğunun (arşivlenmiş günler) dizinden yeniden okunma aralığı; kendi arşivlemesi hemen görünür. */
+        private Duration catalogRefresh = Duration.ofSeconds(30);
     }
 }
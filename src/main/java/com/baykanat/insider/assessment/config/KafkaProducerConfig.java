@@ -1,14 +1,17 @@
 package com.baykanat.insider.assessment.config;
 
+import com.baykanat.insider.assessment.infrastructure.kafka.EventWireSerializer;
 import org.apache.kafka.clients.admin.NewTopic;
 
 import java.util.Objects;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.kafka.DefaultKafkaProducerFactoryCustomizer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.kafka.config.TopicBuilder;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
 
-/** Ingestion ve DLT topic bean'leri; partition/replica sayıları burada. */
+/** Ingestion ve DLT topic bean'leri (partition/replica sayıları) ve producer value serializer'ı. */
 @Configuration
 public class KafkaProducerConfig {
 
@@ -32,4 +35,12 @@ public class KafkaProducerConfig {
                 .replicas(1)
                 .build();
     }
+
+    /** Value serializer'ı app.kafka.wire-format ile kurar (yaml'daki sınıf adı yalnızca varsayılan JSON'dur). */
+    @Bean
+    @SuppressWarnings("unchecked")
+    public DefaultKafkaProducerFactoryCustomizer eventWireSerializerCustomizer(AppProperties appProperties) {
+        return factory -> ((DefaultKafkaProducerFactory<Object, Object>) factory)
+                .setValueSerializer(new EventWireSerializer(appProperties.getKafka().getWireFormat()));
+    }
 }
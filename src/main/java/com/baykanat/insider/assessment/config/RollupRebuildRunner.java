@@ -0,0 +1,198 @@
+package com.baykanat.insider.assessment.config;
+
+import com.baykanat.insider.assessment.infrastructure.persistence.CampaignRollupJdbcRepository;
+import com.baykanat.insider.assessment.infrastructure.persistence.MetricsRollupJdbcRepository;
+import com.baykanat.insider.assessment.infrastructure.persistence.PartitionJdbcRepository;
+import com.baykanat.insider.assessment.infrastructure.persistence.PartitionJdbcRepository.PartitionInfo;
+import com.baykanat.insider.assessment.infrastructure.persistence.RollupResolution;
+import com.baykanat.insider.assessment.infrastructure.persistence.TagRollupJdbcRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Rollup tablolarını consumer'ın kaçırdığı event'ler için events'ten yeniden kurar.
+ *
+ * <p>Rollup yalnızca rollup kaynağında ve yalnızca etkin çözünürlükler için yazılır; materialized-view modunda çalışmış
+ * ya da bir çözünürlüğü kapalı açılmış instance'ın event'leri o tablolarda eksik kalır. app_config'teki
+ * rollup_synced_tables eksiksiz güncellenen tabloları tutar: her açılışta bu instance'ın yazmadığı tablolar listeden
+ * çıkarılır; rollup modunda etkin bir tablo listede yoksa kurulum arka planda başlar. Kampanya ve etiket rollup
+ * tabloları da (V13 ve V14 onları events'ten doldurmaz) aynı yoldan kurulur; yalnızca listede olmayan tabloların grubu
+ * kurulur. events partition'ı olan her saat saat kilidi altında baştan sayılır (consumer'lar o saatte kısa süre
+ * bekler), ardından günlük kovalar saatlik kovalardan kurulur; bitince tablolar listeye yazılır. Partition'ı silinmiş
+ * günlerin saatlik kovaları olduğu gibi kalır. Kurulumu session advisory lock'u alan tek instance yapar; yarıda kalırsa
+ * bir sonraki açılışta baştan başlar.
+ *
+ * <p>Geçiş sırasında tüm instance'lar aynı kaynakta çalışmalıdır: kurulum bittikten sonra materialized-view modunda
+ * yazan bir instance listeyi yeniden boşaltır.
+ */
+@Slf4j
+@Component
+@Order(2)
+@RequiredArgsConstructor
+public class RollupRebuildRunner implements ApplicationRunner {
+
+    private static final String SYNCED_KEY = "rollup_synced_tables";
+
+    /** Kurulumu tek instance'a bırakan session lock'un nesne anahtarı (saat kilitleri epoch saatini kullanır). */
+    private static final int REBUILD_LOCK_ID = -1;
+
+    private final MetricsRollupJdbcRepository metricsRollupRepository;
+    private final CampaignRollupJdbcRepository campaignRollupRepository;
+    private final TagRollupJdbcRepository tagRollupRepository;
+    private final PartitionJdbcRepository partitionRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final AppProperties appProperties;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        Set<String> maintained = maintainedTables();
+        Set<String> synced = readSynced();
+        if (synced.retainAll(maintained)) {
+            writeSynced(synced);
+            log.warn("Rollup tables are not maintained by this instance and are marked for rebuild; synced: {}",
+                    synced);
+        }
+        Set<String> pending = new LinkedHashSet<>(maintained);
+        pending.removeAll(synced);
+        if (pending.isEmpty()) {
+            return;
+        }
+        // Açılışı bloklamasın; saat başına kısa transaction'lar
+        Thread.ofVirtual().name("rollup-rebuild").start(() -> rebuild(pending));
+    }
+
+    /** Bu instance'ın consumer'ının güncellediği rollup tabloları; materialized-view modunda hiçbiri. */
+    private Set<String> maintainedTables() {
+        Set<String> tables = new LinkedHashSet<>();
+        if (appProperties.getMetrics().getSource() == AppProperties.MetricsSource.ROLLUP) {
+            tables.addAll(metricsTables());
+            if (appProperties.getMetrics().getRollup().isCampaignEnabled()) {
+                tables.addAll(campaignRollupRepository.tables());
+            }
+            if (appProperties.getMetrics().getRollup().isTagEnabled()) {
+                tables.addAll(tagRollupRepository.tables());
+            }
+        }
+        return tables;
+    }
+
+    private List<String> metricsTables() {
+        return RollupResolution.active(appProperties.getMetrics().getRollup()).stream()
+                .map(RollupResolution::table)
+                .toList();
+    }
+
+    private void rebuild(Set<String> tables) {
+        try {
+            jdbcTemplate.execute((ConnectionCallback<Void>) con -> {
+                if (!advisoryLock(con, "pg_try_advisory_lock")) {
+                    log.info("Rollup rebuild is running on another instance");
+                    return null;
+                }
+                try {
+                    if (!readSynced().containsAll(tables)) {
+                        rebuildAll(tables);
+                    }
+                } finally {
+                    advisoryLock(con, "pg_advisory_unlock");
+                }
+                return null;
+            });
+        } catch (Exception e) {
+            log.error("Rollup rebuild failed; it restarts on the next startup: {}", e.getMessage(), e);
+        }
+    }
+
+    private void rebuildAll(Set<String> tables) {
+        log.info("Rollup rebuild started for {}", tables);
+        boolean metrics = metricsTables().stream().anyMatch(tables::contains);
+        boolean campaign = campaignRollupRepository.tables().stream().anyMatch(tables::contains);
+        boolean tag = tagRollupRepository.tables().stream().anyMatch(tables::contains);
+        List<LocalDate> days = partitionRepository.listPartitions("events").stream()
+                .filter(partition -> partition.from() != null && !partition.detachPending())
+                .map(PartitionInfo::from)
+                .sorted(Comparator.reverseOrder())
+                .toList();
+        for (LocalDate day : days) {
+            long dayStart = day.atStartOfDay(ZoneOffset.UTC).toEpochSecond();
+            int buckets = 0;
+            for (int hour = 0; hour < 24; hour++) {
+                long hourStart = dayStart + hour * RollupResolution.HOUR.seconds();
+                if (metrics) {
+                    buckets += metricsRollupRepository.rebuildHour(hourStart);
+                }
+                if (campaign) {
+                    buckets += campaignRollupRepository.rebuildHour(hourStart);
+                }
+                if (tag) {
+                    buckets += tagRollupRepository.rebuildHour(hourStart);
+                }
+            }
+            if (buckets > 0) {
+                log.info("Rollup rebuild: {} rebuilt from events ({} buckets)", day, buckets);
+            }
+        }
+        int dailyBuckets = 0;
+        if (metrics) {
+            for (LocalDate day : metricsRollupRepository.findRollupDays()) {
+                dailyBuckets += metricsRollupRepository.rebuildDay(day);
+            }
+        }
+        if (campaign) {
+            for (LocalDate day : campaignRollupRepository.findRollupDays()) {
+                dailyBuckets += campaignRollupRepository.rebuildDay(day);
+            }
+        }
+        Set<String> synced = readSynced();
+        synced.addAll(tables);
+        writeSynced(synced);
+        log.info("Rollup rebuild completed: {} days from events, {} daily buckets", days.size(), dailyBuckets);
+    }
+
+    private static boolean advisoryLock(Connection con, String function) throws SQLException {
+        try (PreparedStatement ps = con.prepareStatement("SELECT " + function + "(?, ?)")) {
+            ps.setInt(1, MetricsRollupJdbcRepository.HOUR_LOCK_CLASS);
+            ps.setInt(2, REBUILD_LOCK_ID);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() && rs.getBoolean(1);
+            }
+        }
+    }
+
+    private Set<String> readSynced() {
+        List<String> values = jdbcTemplate.queryForList("SELECT value FROM app_config WHERE key = ?", String.class,
+                SYNCED_KEY);
+        Set<String> tables = new LinkedHashSet<>();
+        if (!values.isEmpty()) {
+            Arrays.stream(values.get(0).split(","))
+                    .map(String::trim)
+                    .filter(table -> !table.isEmpty())
+                    .forEach(tables::add);
+        }
+        return tables;
+    }
+
+    private void writeSynced(Set<String> tables) {
+        jdbcTemplate.update(
+                "INSERT INTO app_config (key, value) VALUES (?, ?) ON CONFLICT (key) DO UPDATE SET value = EXCLUDED.value",
+                SYNCED_KEY, String.join(",", tables));
+    }
+}
@@ -0,0 +1,91 @@
+package com.baykanat.insider.assessment.config;
+
+import com.baykanat.insider.assessment.infrastructure.persistence.CampaignRollupJdbcRepository;
+import com.baykanat.insider.assessment.infrastructure.persistence.MetricsRollupJdbcRepository;
+import com.baykanat.insider.assessment.infrastructure.persistence.RollupResolution;
+import com.baykanat.insider.assessment.infrastructure.persistence.TagRollupJdbcRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntFunction;
+import java.util.function.Predicate;
+
+/**
+ * Açılışta sketch'i olmayan rollup kovalarını (önceki sürümlerde V12, V13 ve V14'ün ilk doldurması) arka planda
+ * doldurur. Saatlik kovalar önce işlenir; günlük kovalar saatlik sketch'lerden birleştirilir. Kampanya ve etiket
+ * rollup'ları en son.
+ */
+@Slf4j
+@Component
+@Order(3)
+@RequiredArgsConstructor
+public class RollupSketchBackfillRunner implements ApplicationRunner {
+
+    private static final int PAGE_SIZE = 500;
+
+    private final MetricsRollupJdbcRepository metricsRollupRepository;
+    private final CampaignRollupJdbcRepository campaignRollupRepository;
+    private final TagRollupJdbcRepository tagRollupRepository;
+    private final AppProperties appProperties;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (appProperties.getMetrics().getSource() != AppProperties.MetricsSource.ROLLUP) {
+            return;
+        }
+        // Açılışı bloklamasın; kova başına kısa transaction'lar
+        Thread.ofVirtual().name("rollup-sketch-backfill").start(this::backfill);
+    }
+
+    private void backfill() {
+        List<RollupResolution> order = new ArrayList<>(List.of(RollupResolution.HOUR));
+        RollupResolution.active(appProperties.getMetrics().getRollup()).stream()
+                .filter(resolution -> resolution != RollupResolution.HOUR)
+                .forEach(order::add);
+        for (RollupResolution resolution : order) {
+            backfill(resolution.name(),
+                    limit -> metricsRollupRepository.findBucketsPendingBackfill(resolution, limit),
+                    metricsRollupRepository::backfillSketch);
+        }
+        if (appProperties.getMetrics().getRollup().isCampaignEnabled()) {
+            for (RollupResolution resolution : CampaignRollupJdbcRepository.RESOLUTIONS) {
+                backfill("campaign " + resolution,
+                        limit -> campaignRollupRepository.findBucketsPendingBackfill(resolution, limit),
+                        campaignRollupRepository::backfillSketch);
+            }
+        }
+        if (appProperties.getMetrics().getRollup().isTagEnabled()) {
+            backfill("tag HOUR", tagRollupRepository::findBucketsPendingBackfill, tagRollupRepository::backfillSketch);
+        }
+    }
+
+    private <B> void backfill(String label, IntFunction<List<B>> pending, Predicate<B> fill) {
+        int filled = 0;
+        try {
+            List<B> page = pending.apply(PAGE_SIZE);
+            while (!page.isEmpty()) {
+                int before = filled;
+                for (B bucket : page) {
+                    if (fill.test(bucket)) {
+                        filled++;
+                    }
+                }
+                if (filled == before) {
+                    break;
+                }
+                page = pending.apply(PAGE_SIZE);
+            }
+            if (filled > 0) {
+                log.info("Rollup sketch backfill completed: {} {} buckets", filled, label);
+            }
+        } catch (Exception e) {
+            log.error("Rollup sketch backfill failed after {} {} buckets: {}", filled, label, e.getMessage(), e);
+        }
+    }
+}
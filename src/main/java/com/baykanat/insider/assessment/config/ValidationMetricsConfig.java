@@ -0,0 +1,64 @@
+package com.baykanat.insider.assessment.config;
+
+import com.baykanat.insider.assessment.api.dto.BulkEventRequest;
+import com.baykanat.insider.assessment.api.dto.EventRequest;
+import com.baykanat.insider.assessment.infrastructure.metrics.IngestionMetrics;
+import com.baykanat.insider.assessment.infrastructure.metrics.IngestionMetrics.Stage;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.lang.NonNull;
+import org.springframework.validation.Errors;
+import org.springframework.validation.SmartValidator;
+import org.springframework.validation.Validator;
+import org.springframework.validation.beanvalidation.LocalValidatorFactoryBean;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Ingestion gövdelerinin (EventRequest, BulkEventRequest) @Valid @RequestBody doğrulamasını ingestion.validate timer'ı
+ * ile ölçer: MVC validator'ı, Spring Boot'un varsayılan Bean Validation validator'ını saran bir dekoratördür; doğrulama
+ * davranışı ve hata yanıtları değişmez. Diğer gövdeler (ör. metrik sorguları) ölçülmeden doğrulanır.
+ */
+@Configuration
+public class ValidationMetricsConfig implements WebMvcConfigurer {
+
+    private final ObjectProvider<LocalValidatorFactoryBean> validator;
+    private final ObjectProvider<IngestionMetrics> metrics;
+
+    public ValidationMetricsConfig(ObjectProvider<LocalValidatorFactoryBean> validator,
+                                   ObjectProvider<IngestionMetrics> metrics) {
+        this.validator = validator;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public Validator getValidator() {
+        return new TimedValidator(validator, metrics);
+    }
+
+    /** Her çağrıda delegate'e gider; metrik bean'i yoksa (ör. web slice testleri) ölçmeden doğrular. */
+    private record TimedValidator(ObjectProvider<LocalValidatorFactoryBean> delegate,
+                                  ObjectProvider<IngestionMetrics> metrics) implements SmartValidator {
+
+        @Override
+        public boolean supports(@NonNull Class<?> clazz) {
+            return delegate.getObject().supports(clazz);
+        }
+
+        @Override
+        public void validate(@NonNull Object target, @NonNull Errors errors) {
+            validate(target, errors, new Object[0]);
+        }
+
+        @Override
+        public void validate(@NonNull Object target, @NonNull Errors errors, @NonNull Object... validationHints) {
+            IngestionMetrics ingestionMetrics = target instanceof EventRequest || target instanceof BulkEventRequest
+                    ? metrics.getIfAvailable()
+                    : null;
+            long start = ingestionMetrics != null ? ingestionMetrics.start() : 0L;
+            delegate.getObject().validate(target, errors, validationHints);
+            if (ingestionMetrics != null) {
+                ingestionMetrics.record(Stage.VALIDATE, start);
+            }
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.baykanat.insider.assessment.domain.dedup;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Thread-safe Bloom filter. Eleman yerine 128 bit hash (h1, h2) alır; k index Kirsch–Mitzenmacher çift hash
+ * ile türetilir (h1 + i*h2). "Yok" cevabı kesindir, "olabilir" cevabı fpp olasılıkla yanlıştır.
+ */
+public final class BloomFilter {
+
+    private final AtomicLongArray words;
+    private final long bitCount;
+    private final int hashCount;
+
+    private BloomFilter(long bitCount, int hashCount) {
+        this.bitCount = bitCount;
+        this.hashCount = hashCount;
+        this.words = new AtomicLongArray((int) ((bitCount + 63) >>> 6));
+    }
+
+    /** Beklenen eleman sayısı ve hedef yanlış pozitif oranı için optimum m ve k ile oluşturur. */
+    public static BloomFilter create(long expectedInsertions, double falsePositiveProbability) {
+        if (expectedInsertions <= 0) {
+            throw new IllegalArgumentException("expectedInsertions must be positive: " + expectedInsertions);
+        }
+        if (falsePositiveProbability <= 0 || falsePositiveProbability >= 1) {
+            throw new IllegalArgumentException("falsePositiveProbability must be in (0, 1): " + falsePositiveProbability);
+        }
+        double ln2 = Math.log(2);
+        long bits = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveProbability) / (ln2 * ln2));
+        bits = Math.max(64, Math.min(bits, (long) Integer.MAX_VALUE * Long.SIZE));
+        int hashes = Math.max(1, (int) Math.round((double) bits / expectedInsertions * ln2));
+        return new BloomFilter(bits, hashes);
+    }
+
+    public void put(long h1, long h2) {
+        long combined = h1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = (combined & Long.MAX_VALUE) % bitCount;
+            int index = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long current = words.get(index);
+            while ((current & mask) == 0 && !words.compareAndSet(index, current, current | mask)) {
+                current = words.get(index);
+            }
+            combined += h2;
+        }
+    }
+
+    public boolean mightContain(long h1, long h2) {
+        long combined = h1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = (combined & Long.MAX_VALUE) % bitCount;
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+            combined += h2;
+        }
+        return true;
+    }
+
+    /** Bit dizisinin bayt cinsinden boyutu (bellek tahmini için). */
+    public long sizeInBytes() {
+        return (long) words.length() * Long.BYTES;
+    }
+
+    public int getHashCount() {
+        return hashCount;
+    }
+}
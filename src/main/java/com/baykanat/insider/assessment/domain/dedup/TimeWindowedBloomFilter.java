@@ -0,0 +1,71 @@
+package com.baykanat.insider.assessment.domain.dedup;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Günlük dilimlerden oluşan Bloom filter halkası. Her key eklendiği günün (UTC epoch day) dilimine yazılır;
+ * sorgu penceredeki tüm dilimlere bakar. Pencereden çıkan dilim, aynı yuvaya yeni gün yazılırken sıfırlanır;
+ * böylece inbox retention'ı ile aynı zaman penceresi tek bir büyük filter'ı yeniden kurmadan korunur.
+ */
+public final class TimeWindowedBloomFilter {
+
+    private final AtomicReferenceArray<Slice> slices;
+    private final long expectedInsertionsPerDay;
+    private final double falsePositiveProbability;
+
+    /** windowDays: sorgulanan gün sayısı (inbox retention + temizleme gecikmesi payı). */
+    public TimeWindowedBloomFilter(int windowDays, long expectedInsertionsPerDay, double falsePositiveProbability) {
+        if (windowDays <= 0) {
+            throw new IllegalArgumentException("windowDays must be positive: " + windowDays);
+        }
+        this.slices = new AtomicReferenceArray<>(windowDays);
+        this.expectedInsertionsPerDay = expectedInsertionsPerDay;
+        this.falsePositiveProbability = falsePositiveProbability;
+    }
+
+    /** Key'i epochDay dilimine ekler; pencereden eski günler yok sayılır. */
+    public void put(long h1, long h2, long epochDay, long today) {
+        if (epochDay <= today - slices.length()) {
+            return;
+        }
+        sliceFor(epochDay).filter.put(h1, h2);
+    }
+
+    /** Penceredeki herhangi bir dilim key'i içeriyor olabilir mi. */
+    public boolean mightContain(long h1, long h2, long today) {
+        for (int i = 0; i < slices.length(); i++) {
+            Slice slice = slices.get(i);
+            if (slice != null && slice.epochDay > today - slices.length() && slice.filter.mightContain(h1, h2)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public long sizeInBytes() {
+        long total = 0;
+        for (int i = 0; i < slices.length(); i++) {
+            Slice slice = slices.get(i);
+            if (slice != null) {
+                total += slice.filter.sizeInBytes();
+            }
+        }
+        return total;
+    }
+
+    private Slice sliceFor(long epochDay) {
+        int index = (int) Math.floorMod(epochDay, (long) slices.length());
+        Slice slice = slices.get(index);
+        while (slice == null || slice.epochDay < epochDay) {
+            Slice fresh = new Slice(epochDay, BloomFilter.create(expectedInsertionsPerDay, falsePositiveProbability));
+            if (slices.compareAndSet(index, slice, fresh)) {
+                return fresh;
+            }
+            slice = slices.get(index);
+        }
+        return slice;
+    }
+
+    private record Slice(long epochDay, BloomFilter filter) {
+    }
+}
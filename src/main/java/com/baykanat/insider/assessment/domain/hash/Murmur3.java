@@ -0,0 +1,122 @@
+package com.baykanat.insider.assessment.domain.hash;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * MurmurHash3 x64_128 (Austin Appleby, public domain). Kriptografik değil; HLL ve dedup filtreleri için
+ * hızlı ve iyi dağılımlı 64/128 bit hash. Çıktı kalıcı sketch'lere yazıldığı için algoritma değişmemeli.
+ */
+public final class Murmur3 {
+
+    private static final long C1 = 0x87c37b91114253d5L;
+    private static final long C2 = 0x4cf5ad432745937fL;
+
+    private Murmur3() {
+    }
+
+    /** UTF-8 string'in 128 bit hash'inin ilk 64 biti. */
+    public static long hash64(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        return hash128(bytes, 0, bytes.length, 0)[0];
+    }
+
+    /** {h1, h2} döner. */
+    public static long[] hash128(byte[] data, int offset, int length, long seed) {
+        long[] out = new long[2];
+        hash128(data, offset, length, seed, out);
+        return out;
+    }
+
+    /** Sonucu çağıranın dizisine yazar (out[0] = h1, out[1] = h2); sıcak yolda allocation yapmaz. */
+    public static void hash128(byte[] data, int offset, int length, long seed, long[] out) {
+        long h1 = seed;
+        long h2 = seed;
+        int blocks = length >>> 4;
+
+        for (int i = 0; i < blocks; i++) {
+            int pos = offset + (i << 4);
+            long k1 = getLongLE(data, pos);
+            long k2 = getLongLE(data, pos + 8);
+
+            h1 ^= mixK1(k1);
+            h1 = Long.rotateLeft(h1, 27);
+            h1 += h2;
+            h1 = h1 * 5 + 0x52dce729;
+
+            h2 ^= mixK2(k2);
+            h2 = Long.rotateLeft(h2, 31);
+            h2 += h1;
+            h2 = h2 * 5 + 0x38495ab5;
+        }
+
+        long k1 = 0;
+        long k2 = 0;
+        int tail = offset + (blocks << 4);
+        switch (length & 15) {
+            case 15: k2 ^= (long) (data[tail + 14] & 0xff) << 48;
+            case 14: k2 ^= (long) (data[tail + 13] & 0xff) << 40;
+            case 13: k2 ^= (long) (data[tail + 12] & 0xff) << 32;
+            case 12: k2 ^= (long) (data[tail + 11] & 0xff) << 24;
+            case 11: k2 ^= (long) (data[tail + 10] & 0xff) << 16;
+            case 10: k2 ^= (long) (data[tail + 9] & 0xff) << 8;
+            case 9:
+                k2 ^= data[tail + 8] & 0xff;
+                h2 ^= mixK2(k2);
+            case 8: k1 ^= (long) (data[tail + 7] & 0xff) << 56;
+            case 7: k1 ^= (long) (data[tail + 6] & 0xff) << 48;
+            case 6: k1 ^= (long) (data[tail + 5] & 0xff) << 40;
+            case 5: k1 ^= (long) (data[tail + 4] & 0xff) << 32;
+            case 4: k1 ^= (long) (data[tail + 3] & 0xff) << 24;
+            case 3: k1 ^= (long) (data[tail + 2] & 0xff) << 16;
+            case 2: k1 ^= (long) (data[tail + 1] & 0xff) << 8;
+            case 1:
+                k1 ^= data[tail] & 0xff;
+                h1 ^= mixK1(k1);
+            default:
+                break;
+        }
+
+        h1 ^= length;
+        h2 ^= length;
+        h1 += h2;
+        h2 += h1;
+        h1 = fmix64(h1);
+        h2 = fmix64(h2);
+        h1 += h2;
+        h2 += h1;
+        out[0] = h1;
+        out[1] = h2;
+    }
+
+    static long mixK1(long k1) {
+        k1 *= C1;
+        k1 = Long.rotateLeft(k1, 31);
+        return k1 * C2;
+    }
+
+    static long mixK2(long k2) {
+        k2 *= C2;
+        k2 = Long.rotateLeft(k2, 33);
+        return k2 * C1;
+    }
+
+    static long fmix64(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+
+    private static long getLongLE(byte[] data, int pos) {
+        return (data[pos] & 0xffL)
+                | (data[pos + 1] & 0xffL) << 8
+                | (data[pos + 2] & 0xffL) << 16
+                | (data[pos + 3] & 0xffL) << 24
+                | (data[pos + 4] & 0xffL) << 32
+                | (data[pos + 5] & 0xffL) << 40
+                | (data[pos + 6] & 0xffL) << 48
+                | (data[pos + 7] & 0xffL) << 56;
+    }
+}
@@ -11,6 +11,7 @@ import org.mapstruct.Named;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.time.ZoneOffset;
+import java.util.UUID;
 
 /** EventRequest ↔ Event ve Kafka record value → EventRequest dönüşümleri. MapStruct + JSONB için Jackson. */
 @Mapper(componentModel = "spring")
@@ -26,7 +27,7 @@ public interface EventMapper {
     @Mapping(target = "metadata", source = "request.metadata", qualifiedByName = "toJsonString")
     @Mapping(target = "id", ignore = true)
     @Mapping(target = "createdAt", ignore = true)
-    Event toEvent(EventRequest request, String idempotencyKey);
+    Event toEvent(EventRequest request, UUID idempotencyKey);
 
     /** Kafka value EventRequest ise döner, değilse Map vb. üzerinden EventRequest'e çevirir. */
     default EventRequest fromRecordValue(Object value) {
@@ -3,6 +3,7 @@ package com.baykanat.insider.assessment.domain.model;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.time.ZoneOffset;
+import java.util.UUID;
 
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -25,7 +26,7 @@ public class Event {
     private LocalDate eventDate;
     private String tags;    // JSONB (String olarak)
     private String metadata; // JSONB (String olarak)
-    private String idempotencyKey;
+    private UUID idempotencyKey;
     private Instant createdAt;
 
     /** event_timestamp → event_date (partition sütunu). */
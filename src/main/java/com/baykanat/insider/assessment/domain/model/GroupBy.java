@@ -0,0 +1,59 @@
+package com.baykanat.insider.assessment.domain.model;
+
+import java.util.Locale;
+
+/**
+ * Metrik breakdown kova genişliği (group_by). Kovalar UTC'dir; haftalık kovalar pazartesi başlar (ISO hafta,
+ * PostgreSQL DATE_TRUNC('week') ile aynı).
+ */
+public enum GroupBy {
+
+    MINUTE("minute", 60),
+    FIVE_MINUTES("5m", 300),
+    QUARTER_HOUR("15m", 900),
+    HOURLY("hourly", 3600),
+    DAILY("daily", 86400),
+    WEEKLY("weekly", 604800);
+
+    /** API doğrulaması için kabul edilen değerler (büyük/küçük harf duyarsız). */
+    public static final String PATTERN = "(?i)minute|5m|15m|hourly|daily|weekly";
+
+    /** 1970-01-01 perşembedir; pazartesiye hizalamak için kaydırma. */
+    private static final long WEEK_OFFSET = 3 * 86400L;
+
+    private final String value;
+    private final long seconds;
+
+    GroupBy(String value, long seconds) {
+        this.value = value;
+        this.seconds = seconds;
+    }
+
+    /** group_by değeri; boşsa hourly. */
+    public static GroupBy of(String value) {
+        if (value == null || value.isBlank()) {
+            return HOURLY;
+        }
+        String normalized = value.toLowerCase(Locale.ROOT);
+        for (GroupBy groupBy : values()) {
+            if (groupBy.value.equals(normalized)) {
+                return groupBy;
+            }
+        }
+        throw new IllegalArgumentException("Unsupported group_by: " + value);
+    }
+
+    public String value() {
+        return value;
+    }
+
+    public long seconds() {
+        return seconds;
+    }
+
+    /** Zamanın düştüğü kovanın başlangıcı (epoch sn). */
+    public long floor(long epochSecond) {
+        long offset = this == WEEKLY ? WEEK_OFFSET : 0;
+        return epochSecond - Math.floorMod(epochSecond + offset, seconds);
+    }
+}
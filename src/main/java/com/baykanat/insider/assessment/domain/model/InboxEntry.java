@@ -6,6 +6,7 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import java.time.Instant;
+import java.util.UUID;
 
 /** Inbox (idempotency) tablosu kaydı; işlenen event'lerin key'i burada tutulur. */
 @Data
@@ -14,6 +15,6 @@ import java.time.Instant;
 @AllArgsConstructor
 public class InboxEntry {
 
-    private String idempotencyKey;
+    private UUID idempotencyKey;
     private Instant receivedAt;
 }
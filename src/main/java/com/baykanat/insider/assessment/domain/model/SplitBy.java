@@ -0,0 +1,43 @@
+package com.baykanat.insider.assessment.domain.model;
+
+import java.util.Locale;
+
+/** Metrik yanıtının kırılım boyutu (split_by): her değer için ayrı toplam ve breakdown'lar. */
+public enum SplitBy {
+
+    CHANNEL("channel"),
+    CAMPAIGN_ID("campaign_id");
+
+    /** API doğrulaması için kabul edilen değerler (büyük/küçük harf duyarsız). */
+    public static final String PATTERN = "(?i)channel|campaign_id";
+
+    /** top verilmezse dönen kırılım sayısı. */
+    public static final int DEFAULT_TOP = 10;
+
+    /** top üst sınırı. */
+    public static final int MAX_TOP = 100;
+
+    private final String value;
+
+    SplitBy(String value) {
+        this.value = value;
+    }
+
+    /** split_by değeri; boşsa null (kırılım yok). */
+    public static SplitBy of(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        String normalized = value.toLowerCase(Locale.ROOT);
+        for (SplitBy splitBy : values()) {
+            if (splitBy.value.equals(normalized)) {
+                return splitBy;
+            }
+        }
+        throw new IllegalArgumentException("Unsupported split_by: " + value);
+    }
+
+    public String value() {
+        return value;
+    }
+}
@@ -0,0 +1,40 @@
+package com.baykanat.insider.assessment.domain.model;
+
+import java.util.Locale;
+
+/** Çoklu etiket filtresinin birleşimi (tag_match): tüm etiketler (AND) veya en az biri (OR). */
+public enum TagMatch {
+
+    ALL("all"),
+    ANY("any");
+
+    /** API doğrulaması için kabul edilen değerler (büyük/küçük harf duyarsız). */
+    public static final String PATTERN = "(?i)all|any";
+
+    /** Bir sorgudaki en fazla etiket sayısı. */
+    public static final int MAX_TAGS = 10;
+
+    private final String value;
+
+    TagMatch(String value) {
+        this.value = value;
+    }
+
+    /** tag_match değeri; boşsa ALL. */
+    public static TagMatch of(String value) {
+        if (value == null || value.isBlank()) {
+            return ALL;
+        }
+        String normalized = value.toLowerCase(Locale.ROOT);
+        for (TagMatch match : values()) {
+            if (match.value.equals(normalized)) {
+                return match;
+            }
+        }
+        throw new IllegalArgumentException("Unsupported tag_match: " + value);
+    }
+
+    public String value() {
+        return value;
+    }
+}
@@ -1,19 +1,27 @@
 package com.baykanat.insider.assessment.domain.service;
 
 import com.baykanat.insider.assessment.api.dto.EventRequest;
+import com.baykanat.insider.assessment.config.AppProperties;
 import com.baykanat.insider.assessment.domain.mapper.EventMapper;
 import com.baykanat.insider.assessment.domain.model.Event;
+import com.baykanat.insider.assessment.infrastructure.metrics.IngestionMetrics;
+import com.baykanat.insider.assessment.infrastructure.metrics.IngestionMetrics.Stage;
 import com.baykanat.insider.assessment.infrastructure.persistence.EventJdbcRepository;
 import com.baykanat.insider.assessment.infrastructure.persistence.InboxJdbcRepository;
+import com.baykanat.insider.assessment.infrastructure.persistence.CampaignRollupJdbcRepository;
+import com.baykanat.insider.assessment.infrastructure.persistence.MetricsRollupJdbcRepository;
+import com.baykanat.insider.assessment.infrastructure.persistence.TagRollupJdbcRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.util.*;
 import java.util.stream.Collectors;
 
-/** Kafka consumer tarafı: inbox ile dedup, ardından events tablosuna batch insert. Tek transaction. */
+/** Kafka consumer tarafı: inbox ile dedup, ardından events batch insert ve saatlik rollup güncellemesi. Tek transaction. */
 @Slf4j
 @Service
 @RequiredArgsConstructor
@@ -23,48 +31,86 @@ public class EventIngestionService {
     private final InboxJdbcRepository inboxRepository;
     private final IdempotencyService idempotencyService;
     private final EventMapper eventMapper;
+    private final MetricsRollupJdbcRepository metricsRollupRepository;
+    private final CampaignRollupJdbcRepository campaignRollupRepository;
+    private final TagRollupJdbcRepository tagRollupRepository;
+    private final AppProperties appProperties;
+    private final InboxDedupCache inboxDedupCache;
+    private final HotWindowMetrics hotWindowMetrics;
+    private final IngestionMetrics metrics;
 
-    /** Batch'i tek transaction'da işler: inbox'ta var mı bak, yoksa inbox + events insert. Eklenen sayıyı döner. */
+    /** Batch'i tek transaction'da işler: inbox'ta var mı bak, yoksa inbox + events insert + rollup. Eklenen sayıyı döner. */
     @Transactional
     public int processBatch(List<EventRequest> events) {
+        return processBatch(null, events);
+    }
+
+    /**
+     * Tek Kafka partition'ının batch'i; dedup partition'ın bellek içi önbelleğinden geçer ve key'ler partition ile
+     * inbox'a yazılır. kafkaPartition null ise doğrudan inbox sorgusu kullanılır.
+     */
+    @Transactional
+    public int processBatch(Integer kafkaPartition, List<EventRequest> events) {
         if (events.isEmpty()) {
             return 0;
         }
 
         // Idempotency key'leri üret, mevcut olanları kontrol et
-        Map<String, EventRequest> keyToEvent = new LinkedHashMap<>();
-        for (EventRequest event : events) {
-            String key = idempotencyService.generateKey(event);
-            keyToEvent.put(key, event);
-        }
+        long start = metrics.start();
+        Map<UUID, EventRequest> keyToEvent = keyEvents(idempotencyService, events);
+        metrics.record(Stage.KEY_HASH, kafkaPartition, start);
 
-        Set<String> existingKeys = inboxRepository.findExistingKeys(keyToEvent.keySet());
+        start = metrics.start();
+        Set<UUID> existingKeys = kafkaPartition != null
+                ? inboxDedupCache.findExistingKeys(kafkaPartition, keyToEvent.keySet())
+                : inboxRepository.findExistingKeys(keyToEvent.keySet());
+        metrics.record(Stage.INBOX_LOOKUP, kafkaPartition, start);
+        // Inbox'ta olanlar + batch içinde aynı key'le tekrar edenler
+        metrics.countDuplicates(kafkaPartition, existingKeys.size() + events.size() - keyToEvent.size());
         if (!existingKeys.isEmpty()) {
             log.debug("Deduplicating {} out of {} events", existingKeys.size(), events.size());
         }
 
-        // Sadece yeni event'ler
-        Map<String, EventRequest> newEvents = keyToEvent.entrySet().stream()
-                .filter(entry -> !existingKeys.contains(entry.getKey()))
-                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue, (a, b) -> a, LinkedHashMap::new));
+        Map<UUID, EventRequest> newEvents = withoutExisting(keyToEvent, existingKeys);
 
         if (newEvents.isEmpty()) {
             log.debug("All {} events were duplicates, skipping batch", events.size());
             return 0;
         }
 
-        // Inbox'a yaz
-        inboxRepository.batchInsert(newEvents.keySet());
-
-        // Domain'e çevir ve event'leri toplu insert et
-        List<Event> domainEvents = newEvents.entrySet().stream()
-                .map(entry -> eventMapper.toEvent(entry.getValue(), entry.getKey()))
-                .toList();
-        eventRepository.batchInsert(domainEvents);
+        int inserted = insertNewEvents(kafkaPartition, newEvents);
 
         log.info("Processed batch: {} new events inserted, {} duplicates skipped",
-                newEvents.size(), existingKeys.size());
-        return newEvents.size();
+                inserted, events.size() - inserted);
+        return inserted;
+    }
+
+    /** Batch'in key → event map'i, geliş sırasıyla; aynı key'le tekrar eden event tek girdi olur. */
+    static Map<UUID, EventRequest> keyEvents(IdempotencyService idempotencyService, List<EventRequest> events) {
+        Map<UUID, EventRequest> keyToEvent = new LinkedHashMap<>();
+        for (EventRequest event : events) {
+            keyToEvent.put(idempotencyService.generateKey(event), event);
+        }
+        return keyToEvent;
+    }
+
+    /** Sadece yeni event'ler: mevcut key'ler elenir, sıra korunur. IngestionDedupBenchmark bu iki adımı ölçer. */
+    static Map<UUID, EventRequest> withoutExisting(Map<UUID, EventRequest> keyToEvent, Set<UUID> existingKeys) {
+        return keyToEvent.entrySet().stream()
+                .filter(entry -> !existingKeys.contains(entry.getKey()))
+                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue, (a, b) -> a, LinkedHashMap::new));
+    }
+
+    /**
+     * Consumer pipeline'ının persist aşaması: key'i üretilmiş ve dedup'tan geçmiş event'leri tek transaction'da
+     * inbox + events + rollup'a yazar. Eklenen sayıyı döner.
+     */
+    @Transactional
+    public int persistNewEvents(int kafkaPartition, Map<UUID, EventRequest> newEvents) {
+        if (newEvents.isEmpty()) {
+            return 0;
+        }
+        return insertNewEvents(kafkaPartition, newEvents);
     }
 
     /** Tek event; batch pipeline'a yönlendirir. */
@@ -73,4 +119,73 @@ public class EventIngestionService {
         return processBatch(List.of(event)) > 0;
     }
 
+    /**
+     * Inbox, events ve (rollup modunda) rollup yazımı çağıranın transaction'ında; hot window commit sonrası.
+     * Rollup ve hot window yalnızca events'e gerçekten eklenen satırları görür: dedup önbelleğinin kaçırdığı bir tekrar
+     * inbox'ta yakalanmayabilir (PK received_at içerir, V10) ama events unique index'inde elenir. Eklenen sayıyı döner.
+     */
+    private int insertNewEvents(Integer kafkaPartition, Map<UUID, EventRequest> newEvents) {
+        // Inbox'a yaz; önbellek commit sonrası güncellenir
+        long start = metrics.start();
+        if (kafkaPartition != null) {
+            inboxRepository.batchInsert(newEvents.keySet(), kafkaPartition);
+            inboxDedupCache.recordInserted(kafkaPartition, newEvents.keySet());
+        } else {
+            inboxRepository.batchInsert(newEvents.keySet());
+        }
+        metrics.record(Stage.INBOX_INSERT, kafkaPartition, start);
+
+        // Domain'e çevir ve event'leri toplu insert et
+        start = metrics.start();
+        List<Event> domainEvents = newEvents.entrySet().stream()
+                .map(entry -> eventMapper.toEvent(entry.getValue(), entry.getKey()))
+                .toList();
+        List<Event> inserted = eventRepository.batchInsert(domainEvents);
+        metrics.record(Stage.EVENTS_INSERT, kafkaPartition, start);
+        metrics.countDuplicates(kafkaPartition, domainEvents.size() - inserted.size());
+        recordCommitTime(kafkaPartition, inserted.size());
+        if (inserted.isEmpty()) {
+            return 0;
+        }
+
+        // Rollup, kampanya ve etiket rollup delta'ları; inbox ile aynı transaction'da. Kova satırları FOR UPDATE ile
+        // commit'e kadar kilitli kalır; aynı saate yazan paralel parçalar burada sıraya girer (ingestion.rollup)
+        if (appProperties.getMetrics().getSource() == AppProperties.MetricsSource.ROLLUP) {
+            start = metrics.start();
+            metricsRollupRepository.applyBatch(inserted);
+            if (appProperties.getMetrics().getRollup().isCampaignEnabled()) {
+                campaignRollupRepository.applyBatch(inserted);
+            }
+            if (appProperties.getMetrics().getRollup().isTagEnabled()) {
+                tagRollupRepository.applyBatch(inserted);
+            }
+            metrics.record(Stage.ROLLUP, kafkaPartition, start);
+        }
+        // MV modunda bir sonraki refresh'e kadar bellek içi hot window; yalnızca commit olursa
+        hotWindowMetrics.recordAfterCommit(inserted);
+        return inserted.size();
+    }
+
+    /** Commit süresini (beforeCommit → afterCompletion) ölçer; eklenen satırlar yalnızca commit olursa sayılır. */
+    private void recordCommitTime(Integer kafkaPartition, int rows) {
+        if (!metrics.isEnabled() || !TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            private long start;
+
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                start = metrics.start();
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    metrics.record(Stage.COMMIT, kafkaPartition, start);
+                    metrics.countInserted(kafkaPartition, rows);
+                }
+            }
+        });
+    }
 }
@@ -0,0 +1,325 @@
+package com.baykanat.insider.assessment.domain.service;
+
+import com.baykanat.insider.assessment.api.dto.EventRequest;
+import com.baykanat.insider.assessment.api.dto.StreamIngestResponse;
+import com.baykanat.insider.assessment.config.AppProperties;
+import com.baykanat.insider.assessment.infrastructure.kafka.EventKafkaProducer;
+import com.baykanat.insider.assessment.infrastructure.kafka.IngestionAdmissionControl;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * POST /events/stream: NDJSON gövdesini satır satır okur, her satırı Jackson ile parse edip doğrular ve geçerli
+ * event'i ack beklemeden Kafka'ya gönderir. Gövde hiçbir zaman tamamı bellekte tutulmaz: satırlar yeniden kullanılan
+ * tek bir buffer'a okunur, ack'i beklenen event sayısı max-in-flight ile sınırlıdır (dolunca okuma bekler).
+ * Geçersiz satır reddedilip atlanır; Kafka gönderimi başarısız olursa okuma durur.
+ *
+ * <p>Kabul kontrolü istek başına bir kez değil, admission-chunk satırda bir izin alır; uzun bir akış da lag'e göre
+ * ayarlanan limite tabidir. İzin alınamazsa okuma o satırda durur, status "throttled" olur (controller 429 döner) ve
+ * satır hata listesinde işaretlenir; istemci gövdeyi o satırdan yeniden gönderir.
+ */
+@Slf4j
+@Service
+public class EventStreamIngestionService {
+
+    private final EventKafkaProducer kafkaProducer;
+    private final ObjectReader eventReader;
+    private final Validator validator;
+    private final AppProperties appProperties;
+    private final IngestionAdmissionControl admissionControl;
+
+    public EventStreamIngestionService(EventKafkaProducer kafkaProducer, ObjectMapper objectMapper,
+                                       Validator validator, AppProperties appProperties,
+                                       IngestionAdmissionControl admissionControl) {
+        this.kafkaProducer = kafkaProducer;
+        this.eventReader = objectMapper.readerFor(EventRequest.class);
+        this.validator = validator;
+        this.appProperties = appProperties;
+        this.admissionControl = admissionControl;
+    }
+
+    /** Gövdeyi sonuna kadar (veya Kafka hatasına kadar) işler; kalan ack'leri bekleyip satır sayılarını döner. */
+    public StreamIngestResponse ingest(InputStream body) throws IOException {
+        AppProperties.StreamProperties properties = appProperties.getIngestion().getStream();
+        StreamState state = new StreamState(properties.getMaxErrors());
+        Semaphore inFlight = new Semaphore(properties.getMaxInFlight());
+        LineReader lines = new LineReader(body, properties.getMaxLineBytes());
+        int admissionChunk = Math.max(1, properties.getAdmissionChunk());
+        int permits = 0;
+
+        while (!state.aborted && lines.next()) {
+            if (lines.isBlank()) {
+                continue;
+            }
+            long lineNumber = lines.lineNumber();
+            if (permits == 0) {
+                if (!admissionControl.tryAcquire(admissionChunk)) {
+                    state.throttle(lineNumber);
+                    break;
+                }
+                permits = admissionChunk;
+            }
+            permits--;
+            if (++state.lines > properties.getMaxEvents()) {
+                state.reject(lineNumber, "Maximum " + properties.getMaxEvents() + " events per request exceeded");
+                state.abort();
+                break;
+            }
+
+            EventRequest event = parse(lines, lineNumber, properties, state);
+            if (event == null) {
+                continue;
+            }
+
+            acquire(inFlight);
+            kafkaProducer.sendAsync(event).whenComplete((result, error) -> {
+                try {
+                    state.onSent(lineNumber, error);
+                } finally {
+                    inFlight.release();
+                }
+            });
+        }
+
+        awaitAcks(inFlight, properties, state);
+        StreamIngestResponse response = state.toResponse();
+        log.info("Stream ingestion finished: status={}, lines={}, accepted={}, rejected={}, failed={}",
+                response.getStatus(), response.getLineCount(), response.getAcceptedCount(),
+                response.getRejectedCount(), response.getFailedCount());
+        return response;
+    }
+
+    /** Satırı EventRequest'e çevirir ve doğrular; geçersizse reddedip null döner. */
+    private EventRequest parse(LineReader lines, long lineNumber, AppProperties.StreamProperties properties,
+                               StreamState state) {
+        if (lines.isTruncated()) {
+            state.reject(lineNumber, "Line exceeds " + properties.getMaxLineBytes() + " bytes");
+            return null;
+        }
+        EventRequest event;
+        try {
+            event = eventReader.readValue(lines.buffer(), 0, lines.length());
+        } catch (JsonProcessingException e) {
+            state.reject(lineNumber, "Malformed JSON: " + e.getOriginalMessage());
+            return null;
+        } catch (IOException e) {
+            state.reject(lineNumber, "Malformed JSON: " + e.getMessage());
+            return null;
+        }
+        if (event == null) {
+            state.reject(lineNumber, "Line is not a JSON object");
+            return null;
+        }
+        Set<ConstraintViolation<EventRequest>> violations = validator.validate(event);
+        if (!violations.isEmpty()) {
+            state.reject(lineNumber, violations.stream()
+                    .map(ConstraintViolation::getMessage)
+                    .sorted()
+                    .collect(Collectors.joining("; ")));
+            return null;
+        }
+        return event;
+    }
+
+    private static void acquire(Semaphore inFlight) throws InterruptedIOException {
+        try {
+            inFlight.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for Kafka acknowledgements");
+        }
+    }
+
+    /** Tüm izinler geri gelene (tüm ack'ler) kadar bekler; süre dolarsa kalanları başarısız sayar. */
+    private static void awaitAcks(Semaphore inFlight, AppProperties.StreamProperties properties, StreamState state)
+            throws InterruptedIOException {
+        try {
+            if (!inFlight.tryAcquire(properties.getMaxInFlight(),
+                    properties.getCompletionTimeout().toMillis(), TimeUnit.MILLISECONDS)) {
+                state.timeout(properties.getMaxInFlight() - inFlight.availablePermits());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for Kafka acknowledgements");
+        }
+    }
+
+    /** Sayaçlar okuma thread'i ve Kafka callback thread'inden güncellenir. */
+    private static final class StreamState {
+        private final int maxErrors;
+        private final List<StreamIngestResponse.LineError> errors = new ArrayList<>();
+        private long lines;
+        private long accepted;
+        private long rejected;
+        private long failed;
+        private boolean timedOut;
+        private boolean throttled;
+        private volatile boolean aborted;
+
+        private StreamState(int maxErrors) {
+            this.maxErrors = maxErrors;
+        }
+
+        private synchronized void reject(long line, String message) {
+            rejected++;
+            addError(line, message);
+        }
+
+        private synchronized void onSent(long line, Throwable error) {
+            if (timedOut) {
+                return;
+            }
+            if (error == null) {
+                accepted++;
+                return;
+            }
+            failed++;
+            addError(line, "Kafka send failed: " + error.getMessage());
+            aborted = true;
+        }
+
+        private synchronized void timeout(long pending) {
+            timedOut = true;
+            failed += pending;
+            aborted = true;
+        }
+
+        /** Kabul izni yok: satır sayılmaz, istemcinin yeniden göndermeye başlayacağı satır olarak raporlanır. */
+        private synchronized void throttle(long line) {
+            throttled = true;
+            aborted = true;
+            // max-errors dolu olsa da eklenir: istemci kaldığı satırı buradan öğrenir
+            errors.add(StreamIngestResponse.LineError.builder()
+                    .line(line)
+                    .message("Throttled while consumers catch up; resend from this line")
+                    .build());
+        }
+
+        private void abort() {
+            aborted = true;
+        }
+
+        private void addError(long line, String message) {
+            if (errors.size() < maxErrors) {
+                errors.add(StreamIngestResponse.LineError.builder().line(line).message(message).build());
+            }
+        }
+
+        private synchronized StreamIngestResponse toResponse() {
+            return StreamIngestResponse.builder()
+                    .status(throttled ? "throttled" : (aborted ? "aborted" : "accepted"))
+                    .lineCount(lines)
+                    .acceptedCount(accepted)
+                    .rejectedCount(rejected)
+                    .failedCount(failed)
+                    .errors(errors.isEmpty() ? null : List.copyOf(errors))
+                    .build();
+        }
+    }
+
+    /**
+     * '\n' ile ayrılmış satırları yeniden kullanılan bir buffer'a okur ('\r\n' desteklenir). maxLineBytes'ı aşan
+     * satırın geri kalanı atlanır ve satır truncated işaretlenir; bellek satır uzunluğundan bağımsız sınırlıdır.
+     */
+    static final class LineReader {
+        private static final int CHUNK_SIZE = 64 * 1024;
+
+        private final InputStream in;
+        private final byte[] chunk = new byte[CHUNK_SIZE];
+        private final byte[] line;
+        private int chunkPos;
+        private int chunkLimit;
+        private int length;
+        private boolean truncated;
+        private long lineNumber;
+        private boolean eof;
+
+        LineReader(InputStream in, int maxLineBytes) {
+            this.in = in;
+            this.line = new byte[maxLineBytes];
+        }
+
+        /** Sonraki satırı okur; gövde bittiyse false. */
+        boolean next() throws IOException {
+            if (eof) {
+                return false;
+            }
+            length = 0;
+            truncated = false;
+            boolean any = false;
+            while (true) {
+                if (chunkPos == chunkLimit) {
+                    chunkLimit = in.read(chunk);
+                    chunkPos = 0;
+                    if (chunkLimit <= 0) {
+                        chunkLimit = 0;
+                        eof = true;
+                        if (!any) {
+                            return false;
+                        }
+                        break;
+                    }
+                }
+                any = true;
+                byte b = chunk[chunkPos++];
+                if (b == '\n') {
+                    break;
+                }
+                if (length < line.length) {
+                    line[length++] = b;
+                } else {
+                    truncated = true;
+                }
+            }
+            if (!truncated && length > 0 && line[length - 1] == '\r') {
+                length--;
+            }
+            lineNumber++;
+            return true;
+        }
+
+        boolean isBlank() {
+            if (truncated) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                byte b = line[i];
+                if (b != ' ' && b != '\t' && b != '\r') {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        byte[] buffer() {
+            return line;
+        }
+
+        int length() {
+            return length;
+        }
+
+        boolean isTruncated() {
+            return truncated;
+        }
+
+        long lineNumber() {
+            return lineNumber;
+        }
+    }
+}
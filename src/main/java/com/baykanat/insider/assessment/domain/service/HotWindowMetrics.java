@@ -0,0 +1,346 @@
+package com.baykanat.insider.assessment.domain.service;
+
+import com.baykanat.insider.assessment.config.AppProperties;
+import com.baykanat.insider.assessment.domain.hash.Murmur3;
+import com.baykanat.insider.assessment.domain.model.Event;
+import com.baykanat.insider.assessment.domain.sketch.ConcurrentHyperLogLog;
+import com.baykanat.insider.assessment.domain.sketch.HyperLogLog;
+import com.baykanat.insider.assessment.infrastructure.persistence.MetricsCell;
+import com.baykanat.insider.assessment.infrastructure.persistence.MetricsJdbcRepository.SeriesSelection;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * MV modunda son MV yenilemesinden sonra commit olan event'lerin bellek içi (event_name, channel, dakika) sayaçları.
+ *
+ * <p>Consumer batch'i commit olduktan sonra event'ler bir katmana eklenir: sayım LongAdder'da, tekil kullanıcılar
+ * ConcurrentHyperLogLog'da; hücre haritası ConcurrentHashMap olduğundan paralel consumer thread'leri kilitsiz yazar.
+ * MV refresh'i başlamadan önce yeni bir katman açılır (beginRefresh). Refresh başarıyla bitince (completeRefresh)
+ * önceki katmanlar MV'de olduğu için atılır; refresh başarısızsa katmanlar kalır ve bir sonraki başarılı refresh'te
+ * atılır.
+ *
+ * <p>Batch'in katmanı commit'ten önce (beforeCommit) seçilir, event'ler afterCommit'te o katmana yazılır. beginRefresh
+ * yeni katmanı açtıktan sonra eski katmanı seçmiş transaction'ların bitmesini (afterCompletion) bekler; REFRESH
+ * snapshot'ı bu yüzden onların commit'lerinden sonradır ve atılan katmandaki her event MV'dedir. Commit ile afterCommit
+ * arasında başlayan bir refresh batch'i kaybettirmez. Bekleme commit-drain-timeout'u aşarsa refresh "drained" değildir:
+ * completeRefresh katmanları atmaz ve hotFrom'u ilerletmez, geç kalan commit'ler tutulan katmana yazar. Yeni katmanı
+ * seçip snapshot'tan önce commit olan batch hem MV'de hem yeni katmanda olabilir (refresh başına milisaniyelik bir
+ * pencere); saatin MV ve bellek kısımlarının tekil sayıları MV'deki saatlik değerler gibi toplanır.
+ *
+ * <p>Son başarılı refresh'in katmanı açıldıktan sonraki dakikalarda (hotFrom) bu instance'ın commit ettiği her event
+ * bellektedir; MetricsService bu kuyruğu ham partition yerine dakika hücrelerinden okur.
+ *
+ * <p>Sayaçlar instance'a özeldir: yalnızca bu instance'ın consumer'ının yazdığı event'leri görür ve MV'yi bu
+ * instance'ın scheduler'ının yenilediğini varsayar. Window'dan eski event dakikaları takip edilmez.
+ */
+@Slf4j
+@Service
+public class HotWindowMetrics {
+
+    private static final long MINUTE = 60;
+
+    private final AppProperties appProperties;
+    private final List<Layer> layers = new CopyOnWriteArrayList<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicLong prunedMinute = new AtomicLong();
+    private volatile Layer current;
+    /** Son başarılı refresh'in katmanının açıldığı dakika (yukarı yuvarlanmış); henüz refresh yoksa Long.MAX_VALUE. */
+    private volatile long refreshedFrom = Long.MAX_VALUE;
+
+    private final Counter recorded;
+    private final Counter tooOld;
+
+    public HotWindowMetrics(AppProperties appProperties, MeterRegistry registry) {
+        this.appProperties = appProperties;
+        this.current = new Layer(sequence.incrementAndGet(), Instant.now().getEpochSecond());
+        layers.add(current);
+        this.recorded = Counter.builder("metrics.hot.window.events")
+                .description("Hot window'a commit sonrası eklenen event sayısı")
+                .tag("result", "recorded")
+                .register(registry);
+        this.tooOld = Counter.builder("metrics.hot.window.events")
+                .description("Hot window'a commit sonrası eklenen event sayısı")
+                .tag("result", "too_old")
+                .register(registry);
+        Gauge.builder("metrics.hot.window.cells", layers,
+                        list -> list.stream().mapToLong(layer -> layer.cells().size()).sum())
+                .description("Hot window'daki (event_name, channel, dakika) hücre sayısı, tüm katmanlar")
+                .register(registry);
+    }
+
+    /** Hot window etkin mi: yalnızca materialized-view kaynağında ve açıkken. */
+    public boolean isActive() {
+        AppProperties.MetricsProperties metrics = appProperties.getMetrics();
+        return metrics.getHotWindow().isEnabled()
+                && metrics.getSource() == AppProperties.MetricsSource.MATERIALIZED_VIEW;
+    }
+
+    /** [from, to) penceresi hot window'un takip ettiği dakikalarla kesişiyor mu. */
+    public boolean overlaps(long from, long to) {
+        return isActive() && from < to && to > oldestTrackedMinute(Instant.now().getEpochSecond());
+    }
+
+    /**
+     * Bu dakikadan itibaren bu instance'ın commit ettiği her event bellektedir (son başarılı refresh'in katmanı
+     * açıldıktan sonraki ilk tam dakika, window'un takip ettiği en eski dakikadan erken değil). Hot window kapalıysa
+     * veya henüz başarılı refresh olmadıysa Long.MAX_VALUE.
+     */
+    public long hotFrom() {
+        long from = refreshedFrom;
+        if (!isActive() || from == Long.MAX_VALUE) {
+            return Long.MAX_VALUE;
+        }
+        return Math.max(from, oldestTrackedMinute(Instant.now().getEpochSecond()));
+    }
+
+    /**
+     * Çağıranın transaction'ı commit olduktan sonra event'leri ekler; transaction yoksa hemen ekler. Rollback olan
+     * batch sayılmaz. Katman beforeCommit'te seçilir ve transaction bitene kadar refresh'in onu atmasını bekletir.
+     */
+    public void recordAfterCommit(List<Event> events) {
+        if (!isActive() || events.isEmpty()) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            record(current, events);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            private Layer layer;
+
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                layer = enter();
+            }
+
+            @Override
+            public void afterCommit() {
+                if (layer != null) {
+                    record(layer, events);
+                }
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (layer != null) {
+                    layer.inFlight().decrementAndGet();
+                }
+            }
+        });
+    }
+
+    /**
+     * MV refresh'inden hemen önce çağrılır: yeni katman açar ve eski katmanları seçmiş commit'lerin bitmesini bekler.
+     * Bekleme süre içinde bittiyse (drained) bundan sonra alınan refresh snapshot'ı eski katmanlardaki tüm event'leri
+     * içerir.
+     */
+    public Refresh beginRefresh() {
+        long now = Instant.now().getEpochSecond();
+        Layer next = new Layer(sequence.incrementAndGet(), now);
+        layers.add(next);
+        current = next;
+        boolean drained = awaitCommits(next);
+        prune(now);
+        return new Refresh(next.sequence(), drained);
+    }
+
+    /**
+     * MV refresh'i başarıyla bittiğinde: beginRefresh'ten önce açılan katmanlar artık MV'dedir ve atılır; refresh'in
+     * katmanı açıldıktan sonraki dakikalar yalnızca bellekten okunabilir. Refresh drained değilse eski katmanlara hâlâ
+     * yazan commit'ler olabilir; katmanlar ve hotFrom olduğu gibi kalır, bir sonraki drained refresh onları atar.
+     */
+    public void completeRefresh(Refresh refresh) {
+        if (!refresh.drained()) {
+            log.warn("Hot window keeps its layers after refresh {}: in-flight commits did not drain",
+                    refresh.sequence());
+            return;
+        }
+        layers.removeIf(layer -> layer.sequence() < refresh.sequence());
+        layers.stream().filter(layer -> layer.sequence() == refresh.sequence()).findFirst()
+                .ifPresent(layer -> refreshedFrom = Math.ceilDiv(layer.openedAt(), MINUTE) * MINUTE);
+    }
+
+    /**
+     * Seçimin [from, to) penceresindeki hot hücrelerini cellSeconds genişliğinde MetricsCell olarak akıtır (MV
+     * hücreleriyle aynı biçim: sketch'siz, benzersiz sayı hücre başına). Seri channel'a göre bölünmüyorsa channel
+     * id'si 0'dır.
+     */
+    public void scanCells(SeriesSelection selection, long from, long to, long cellSeconds,
+                          Consumer<MetricsCell> handler) {
+        if (!isActive()) {
+            return;
+        }
+        Map<String, Integer> eventNameIds = invert(selection.eventNames());
+        Map<String, Integer> channelIds = selection.byChannel() ? invert(selection.channels()) : null;
+
+        Map<CellStart, CellAggregate> cells = new HashMap<>();
+        for (Layer layer : layers) {
+            layer.cells().forEach((key, cell) -> {
+                Integer eventNameId = eventNameIds.get(key.eventName());
+                if (eventNameId == null || key.minute() < from || key.minute() >= to) {
+                    return;
+                }
+                int dimensionId = 0;
+                if (channelIds != null) {
+                    Integer channelId = key.channel() != null ? channelIds.get(key.channel()) : null;
+                    if (channelId == null) {
+                        return;
+                    }
+                    dimensionId = channelId;
+                }
+                cells.computeIfAbsent(new CellStart(eventNameId, dimensionId,
+                        Math.floorDiv(key.minute(), cellSeconds) * cellSeconds), k -> new CellAggregate()).add(cell);
+            });
+        }
+        cells.forEach((key, aggregate) -> handler.accept(new MetricsCell(key.eventNameId(), key.dimensionId(),
+                key.bucketStart(), aggregate.totalCount, aggregate.users.estimate(), null)));
+    }
+
+    /**
+     * Commit'i başlayan batch için aktif katmanı seçer ve açık commit sayısını artırır. Seçimle artırma arasında yeni
+     * katman açıldıysa geri alıp yeniden dener; böylece beginRefresh artırılmış her eski katman sayacını görür.
+     */
+    private Layer enter() {
+        while (true) {
+            Layer layer = current;
+            layer.inFlight().incrementAndGet();
+            if (layer == current) {
+                return layer;
+            }
+            layer.inFlight().decrementAndGet();
+        }
+    }
+
+    /**
+     * Yeni katmandan önceki katmanları seçmiş commit'lerin bitmesini bekler; hepsi bittiyse true, commit-drain-timeout
+     * aşıldıysa uyarıp false döner.
+     */
+    private boolean awaitCommits(Layer next) {
+        Duration timeout = appProperties.getMetrics().getHotWindow().getCommitDrainTimeout();
+        long deadline = System.nanoTime() + timeout.toNanos();
+        for (Layer layer : layers) {
+            while (layer != next && layer.inFlight().get() > 0) {
+                if (System.nanoTime() - deadline > 0) {
+                    log.warn("Hot window refresh did not wait for {} in-flight commits of layer {}",
+                            layer.inFlight().get(), layer.sequence());
+                    return false;
+                }
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+            }
+        }
+        return true;
+    }
+
+    /** Event'leri katmanın dakika hücrelerine ekler; window'dan eski event'ler atlanır. */
+    private void record(Layer layer, List<Event> events) {
+        long now = Instant.now().getEpochSecond();
+        long oldest = oldestTrackedMinute(now);
+        int precision = appProperties.getMetrics().getHotWindow().getHllPrecision();
+        int added = 0;
+        for (Event event : events) {
+            long minute = Math.floorDiv(event.getEventTimestamp(), MINUTE) * MINUTE;
+            if (minute < oldest) {
+                continue;
+            }
+            CellKey key = new CellKey(event.getEventName(), event.getChannel(), minute);
+            HotCell cell = layer.cells().get(key);
+            if (cell == null) {
+                cell = layer.cells().computeIfAbsent(key, k -> new HotCell(precision));
+            }
+            cell.count.increment();
+            cell.users.addHash(Murmur3.hash64(event.getUserId()));
+            added++;
+        }
+        recorded.increment(added);
+        tooOld.increment(events.size() - added);
+        prune(now);
+    }
+
+    /** Dakika değiştiğinde (tek thread) window'dan çıkan hücreleri tüm katmanlardan siler. */
+    private void prune(long now) {
+        long minute = Math.floorDiv(now, MINUTE);
+        long previous = prunedMinute.get();
+        if (minute <= previous || !prunedMinute.compareAndSet(previous, minute)) {
+            return;
+        }
+        long oldest = oldestTrackedMinute(now);
+        for (Layer layer : layers) {
+            layer.cells().keySet().removeIf(key -> key.minute() < oldest);
+        }
+    }
+
+    private long oldestTrackedMinute(long now) {
+        long window = appProperties.getMetrics().getHotWindow().getWindow().toSeconds();
+        return Math.floorDiv(now - window, MINUTE) * MINUTE;
+    }
+
+    private static Map<String, Integer> invert(Map<Integer, String> ids) {
+        Map<String, Integer> names = new HashMap<>();
+        ids.forEach((id, name) -> names.put(name, id));
+        return names;
+    }
+
+    /**
+     * beginRefresh'in açtığı katmanın sırası ve eski katmanları seçmiş commit'lerin süre içinde bitip bitmediği;
+     * completeRefresh'e olduğu gibi verilir.
+     */
+    public record Refresh(long sequence, boolean drained) {
+    }
+
+    /**
+     * Bir MV refresh aralığında commit olan event'lerin hücreleri; sequence açılış sırası, openedAt açılış anı (epoch
+     * sn), inFlight bu katmanı seçip henüz bitmemiş transaction sayısıdır.
+     */
+    private record Layer(long sequence, long openedAt, Map<CellKey, HotCell> cells, AtomicInteger inFlight) {
+
+        private Layer(long sequence, long openedAt) {
+            this(sequence, openedAt, new ConcurrentHashMap<>(), new AtomicInteger());
+        }
+    }
+
+    private record CellKey(String eventName, String channel, long minute) {
+    }
+
+    private record CellStart(int eventNameId, int dimensionId, long bucketStart) {
+    }
+
+    private static final class HotCell {
+        private final LongAdder count = new LongAdder();
+        private final ConcurrentHyperLogLog users;
+
+        private HotCell(int precision) {
+            this.users = new ConcurrentHyperLogLog(precision);
+        }
+    }
+
+    /** Hücrenin dakikaları: sayımlar toplanır, sketch'ler birleşir (dakikalar arası kullanıcı bir kez sayılır). */
+    private static final class CellAggregate {
+        private long totalCount;
+        private HyperLogLog users;
+
+        private void add(HotCell cell) {
+            totalCount += cell.count.sum();
+            HyperLogLog snapshot = cell.users.snapshot();
+            users = users == null ? snapshot : users.merge(snapshot);
+        }
+    }
+}
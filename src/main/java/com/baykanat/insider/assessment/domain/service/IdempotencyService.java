@@ -1,39 +1,191 @@
 package com.baykanat.insider.assessment.domain.service;
 
 import com.baykanat.insider.assessment.api.dto.EventRequest;
+import com.baykanat.insider.assessment.config.AppProperties;
+import com.baykanat.insider.assessment.domain.hash.Murmur3;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
-import java.nio.charset.StandardCharsets;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.security.DigestException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
-import java.util.HexFormat;
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 
-/** event_name + user_id + timestamp + campaign_id için SHA-256 idempotency key üretir. */
+/**
+ * event_name + user_id + timestamp + campaign_id için idempotency key üretir: SHA-256 özetinin ilk 128 biti, UUID olarak
+ * (PostgreSQL uuid, 16 bayt sabit genişlik). Eski 64 karakterlik hex key'lerin ilk 32 karakteriyle aynı değerdir.
+ *
+ * <p>Alanlar ara String oluşturmadan havuzdan alınan bir buffer'a UTF-8 olarak yazılır ve buffer'ın MessageDigest'ine
+ * verilir; key başına tek allocation dönen UUID'dir. Girdi baytları eski "name|user|ts|campaign" string'iyle birebir
+ * aynıdır. app.idempotency.key-algorithm=murmur3 ile SHA-256 yerine
+ * MurmurHash3 x64_128 kullanılır.
+ */
 @Slf4j
 @Service
 public class IdempotencyService {
 
-    private static final String SEPARATOR = "|";
+    private static final byte SEPARATOR = '|';
+    private static final byte[] NULL_TEXT = {'n', 'u', 'l', 'l'};
+    private static final VarHandle LONG_BE = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
 
-    /** Event için 64 karakterlik hex idempotency key döner. */
-    public String generateKey(EventRequest event) {
-        String raw = event.getEventName() + SEPARATOR
-                + event.getUserId() + SEPARATOR
-                + event.getTimestamp() + SEPARATOR
-                + (event.getCampaignId() != null ? event.getCampaignId() : "");
+    /**
+     * Buffer'lar thread'e değil havuza bağlıdır: HTTP istekleri ve consumer alt batch'leri her görevde yeni bir virtual
+     * thread'de çalışır, ThreadLocal her görevde buffer ve digest oluşturup atardı. Aynı anda hash'leyen thread sayısı
+     * çekirdek sayısıyla sınırlı olduğundan havuz küçük kalır; boşsa yeni buffer oluşur, doluysa iade edilen atılır.
+     */
+    private final BlockingQueue<KeyBuffer> buffers =
+            new ArrayBlockingQueue<>(2 * Runtime.getRuntime().availableProcessors());
 
-        return sha256(raw);
+    private final AppProperties.KeyAlgorithm algorithm;
+
+    public IdempotencyService(AppProperties appProperties) {
+        this.algorithm = appProperties.getIdempotency().getKeyAlgorithm();
     }
 
-    /** Girdi string'in SHA-256 hash'ini hesaplar. */
-    private String sha256(String input) {
+    /** Event için 128 bitlik idempotency key döner. */
+    public UUID generateKey(EventRequest event) {
+        KeyBuffer buffer = buffers.poll();
+        if (buffer == null) {
+            buffer = new KeyBuffer();
+        }
         try {
-            MessageDigest digest = MessageDigest.getInstance("SHA-256");
-            byte[] hash = digest.digest(input.getBytes(StandardCharsets.UTF_8));
-            return HexFormat.of().formatHex(hash);
-        } catch (NoSuchAlgorithmException e) {
-            throw new IllegalStateException("SHA-256 algorithm not available", e);
+            int length = buffer.encode(event);
+            return switch (algorithm) {
+                case SHA256 -> buffer.sha256(length);
+                case MURMUR3 -> buffer.murmur3(length);
+            };
+        } finally {
+            buffers.offer(buffer);
+        }
+    }
+
+    /** Havuzdan tek seferde tek çağıranın kullandığı girdi buffer'ı, digest ve çıktı dizileri. */
+    private static final class KeyBuffer {
+
+        private static final int INITIAL_CAPACITY = 512;
+
+        private final MessageDigest digest;
+        private final byte[] digestOut = new byte[32];
+        private final long[] murmurOut = new long[2];
+        private byte[] bytes = new byte[INITIAL_CAPACITY];
+
+        private KeyBuffer() {
+            try {
+                digest = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 algorithm not available", e);
+            }
+        }
+
+        /** "name|user|ts|campaign" UTF-8 baytlarını buffer'a yazar; uzunluğu döner. Null alanlar "null", campaign "". */
+        private int encode(EventRequest event) {
+            String eventName = event.getEventName();
+            String userId = event.getUserId();
+            String campaignId = event.getCampaignId();
+            // UTF-8'de char başına en fazla 3 bayt (surrogate çifti 4 bayt / 2 char)
+            ensureCapacity(3 * (length(eventName) + length(userId) + length(campaignId)) + 32);
+
+            int pos = writeText(eventName, 0);
+            bytes[pos++] = SEPARATOR;
+            pos = writeText(userId, pos);
+            bytes[pos++] = SEPARATOR;
+            Long timestamp = event.getTimestamp();
+            pos = timestamp != null ? writeDecimal(timestamp, pos) : writeNull(pos);
+            bytes[pos++] = SEPARATOR;
+            return campaignId != null ? writeText(campaignId, pos) : pos;
+        }
+
+        private UUID sha256(int length) {
+            digest.update(bytes, 0, length);
+            try {
+                digest.digest(digestOut, 0, digestOut.length);
+            } catch (DigestException e) {
+                throw new IllegalStateException("SHA-256 digest failed", e);
+            }
+            return new UUID((long) LONG_BE.get(digestOut, 0), (long) LONG_BE.get(digestOut, 8));
+        }
+
+        private UUID murmur3(int length) {
+            Murmur3.hash128(bytes, 0, length, 0, murmurOut);
+            return new UUID(murmurOut[0], murmurOut[1]);
+        }
+
+        private void ensureCapacity(int required) {
+            if (bytes.length < required) {
+                bytes = Arrays.copyOf(bytes, Math.max(required, bytes.length * 2));
+            }
+        }
+
+        private int writeNull(int pos) {
+            System.arraycopy(NULL_TEXT, 0, bytes, pos, NULL_TEXT.length);
+            return pos + NULL_TEXT.length;
+        }
+
+        /** String.getBytes(UTF_8) ile aynı çıktı; eşlenmemiş surrogate '?' olur. */
+        private int writeText(String value, int pos) {
+            if (value == null) {
+                return writeNull(pos);
+            }
+            byte[] out = bytes;
+            int length = value.length();
+            for (int i = 0; i < length; i++) {
+                char c = value.charAt(i);
+                if (c < 0x80) {
+                    out[pos++] = (byte) c;
+                } else if (c < 0x800) {
+                    out[pos++] = (byte) (0xC0 | (c >> 6));
+                    out[pos++] = (byte) (0x80 | (c & 0x3F));
+                } else if (Character.isSurrogate(c)) {
+                    if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                        int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                        out[pos++] = (byte) (0xF0 | (codePoint >> 18));
+                        out[pos++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                        out[pos++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                        out[pos++] = (byte) (0x80 | (codePoint & 0x3F));
+                    } else {
+                        out[pos++] = '?';
+                    }
+                } else {
+                    out[pos++] = (byte) (0xE0 | (c >> 12));
+                    out[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                    out[pos++] = (byte) (0x80 | (c & 0x3F));
+                }
+            }
+            return pos;
+        }
+
+        /** Long.toString ile aynı ondalık gösterim. */
+        private int writeDecimal(long value, int pos) {
+            if (value == Long.MIN_VALUE) {
+                for (char c : Long.toString(value).toCharArray()) {
+                    bytes[pos++] = (byte) c;
+                }
+                return pos;
+            }
+            if (value < 0) {
+                bytes[pos++] = '-';
+                value = -value;
+            }
+            int digits = 1;
+            for (long rest = value / 10; rest != 0; rest /= 10) {
+                digits++;
+            }
+            int end = pos + digits;
+            for (int i = end - 1; i >= pos; i--) {
+                bytes[i] = (byte) ('0' + value % 10);
+                value /= 10;
+            }
+            return end;
+        }
+
+        private static int length(String value) {
+            return value != null ? value.length() : NULL_TEXT.length;
         }
     }
 }
@@ -0,0 +1,312 @@
+package com.baykanat.insider.assessment.domain.service;
+
+import com.baykanat.insider.assessment.config.AppProperties;
+import com.baykanat.insider.assessment.domain.dedup.TimeWindowedBloomFilter;
+import com.baykanat.insider.assessment.infrastructure.persistence.InboxJdbcRepository;
+import com.baykanat.insider.assessment.infrastructure.persistence.InboxJdbcRepository.KeyHandler;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Stream;
+
+/**
+ * InboxJdbcRepository.findExistingKeys önünde Kafka partition başına dedup önbelleği.
+ *
+ * <p>Her partition için inbox retention'ı kadar günlük dilimli bir Bloom filter ve var olduğu bilinen son key'lerin
+ * LRU'su tutulur. LRU'da olan key tekrar, filtrenin "yok" dediği key kesin yenidir; yalnızca filtrenin "olabilir"
+ * dediği key'ler DB'ye sorulur. Filtre partition atandığında inbox'tan arka planda kurulur; hazır olana kadar
+ * tüm sorgular DB'ye gider. Key'ler filtreye transaction commit olduktan sonra eklenir.
+ *
+ * <p>Bir atama callback'inin yeni partition'ları inbox'ı tek sorguyla tarar, key'ler kafka_partition'a göre filtrelere
+ * dağıtılır; aynı anda çalışan tarama sayısı rebuild-parallelism ile sınırlıdır. Eager rebalance her seferinde tüm
+ * partition'ları revoke edip yeniden atadığı için hazır filtre revoke'ta hemen atılmaz: {@link #REVOKED_RETENTION}
+ * içinde geri gelirse yalnızca revoke'tan bu yana yazılan key'lerle tamamlanır (o arada başka instance yazmış
+ * olabilir).
+ */
+@Slf4j
+@Service
+public class InboxDedupCache {
+
+    /** inbox-retention-days'e eklenen dilim: bugün + partition'ın gün sonunda düşürülmesi. */
+    private static final int WINDOW_SLACK_DAYS = 2;
+
+    /** Revoke edilen filtrenin tekrar atanmayı beklediği süre; sonra bellekten atılır. */
+    static final Duration REVOKED_RETENTION = Duration.ofMinutes(5);
+
+    /** Geri gelen filtre revoke anından bu kadar öncesinden tamamlanır; received_at transaction başlangıcıdır. */
+    private static final Duration CATCH_UP_MARGIN = Duration.ofMinutes(1);
+
+    private final InboxJdbcRepository inboxRepository;
+    private final AppProperties appProperties;
+    private final Map<Integer, PartitionCache> partitions = new ConcurrentHashMap<>();
+    private final Map<Integer, PartitionCache> revoked = new ConcurrentHashMap<>();
+    private final Semaphore rebuildPermits;
+
+    private final Counter recentHits;
+    private final Counter filterNegatives;
+    private final Counter dbDuplicates;
+    private final Counter falsePositives;
+
+    public InboxDedupCache(InboxJdbcRepository inboxRepository, AppProperties appProperties, MeterRegistry registry) {
+        this.inboxRepository = inboxRepository;
+        this.appProperties = appProperties;
+        this.rebuildPermits = new Semaphore(Math.max(1, appProperties.getDedupCache().getRebuildParallelism()), true);
+        this.recentHits = lookupCounter(registry, "recent_hit");
+        this.filterNegatives = lookupCounter(registry, "filter_negative");
+        this.dbDuplicates = lookupCounter(registry, "db_duplicate");
+        this.falsePositives = lookupCounter(registry, "false_positive");
+        Gauge.builder("inbox.dedup.partitions.ready", partitions,
+                        map -> map.values().stream().filter(cache -> cache.ready).count())
+                .description("Dedup filtresi hazır olan partition sayısı")
+                .register(registry);
+        Gauge.builder("inbox.dedup.filter.bytes", this,
+                        self -> Stream.concat(self.partitions.values().stream(), self.revoked.values().stream())
+                                .mapToLong(cache -> cache.filter.sizeInBytes()).sum())
+                .description("Bloom filter dilimlerinin toplam boyutu (geri gelmesi beklenen revoke edilmişler dahil)")
+                .baseUnit("bytes")
+                .register(registry);
+    }
+
+    /** Verilen key'lerden inbox'ta olanları döner; filtre hazır değilse doğrudan DB. */
+    public Set<UUID> findExistingKeys(int partition, Collection<UUID> keys) {
+        PartitionCache cache = partitions.get(partition);
+        if (cache == null || !cache.ready) {
+            return inboxRepository.findExistingKeys(keys);
+        }
+
+        long today = today();
+        Set<UUID> existing = new HashSet<>();
+        List<UUID> candidates = new ArrayList<>();
+        for (UUID key : keys) {
+            if (cache.recentKeys.contains(key)) {
+                existing.add(key);
+                recentHits.increment();
+                continue;
+            }
+            if (cache.filter.mightContain(key.getMostSignificantBits(), key.getLeastSignificantBits(), today)) {
+                candidates.add(key);
+            } else {
+                filterNegatives.increment();
+            }
+        }
+
+        if (!candidates.isEmpty()) {
+            Set<UUID> found = inboxRepository.findExistingKeys(candidates);
+            found.forEach(cache.recentKeys::add);
+            existing.addAll(found);
+            dbDuplicates.increment(found.size());
+            falsePositives.increment(candidates.size() - found.size());
+        }
+        return existing;
+    }
+
+    /** Inbox'a yazılan key'leri, aktif transaction commit olunca partition önbelleğine ekler. */
+    public void recordInserted(int partition, Collection<UUID> keys) {
+        PartitionCache cache = partitions.get(partition);
+        if (cache == null || keys.isEmpty()) {
+            return;
+        }
+        List<UUID> inserted = List.copyOf(keys);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            cache.addAll(inserted, today());
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                cache.addAll(inserted, today());
+            }
+        });
+    }
+
+    /**
+     * Atanan partition'ların filtresini hazırlar. Zaten sahip olunanlara dokunmaz; yakın zamanda revoke edilip geri
+     * gelenleri revoke'tan bu yana yazılan key'lerle tamamlar, yenileri için boş filtre açıp inbox'tan tek taramayla
+     * doldurur.
+     */
+    public void onPartitionsAssigned(Collection<Integer> assigned) {
+        AppProperties.DedupCacheProperties properties = appProperties.getDedupCache();
+        if (!properties.isEnabled()) {
+            return;
+        }
+        Instant now = Instant.now();
+        revoked.values().removeIf(cache -> cache.revokedAt.plus(REVOKED_RETENTION).isBefore(now));
+
+        int windowDays = appProperties.getScheduler().getInboxRetentionDays() + WINDOW_SLACK_DAYS;
+        Map<Integer, PartitionCache> fresh = new HashMap<>();
+        Map<Integer, PartitionCache> returned = new HashMap<>();
+        Instant since = now;
+        for (Integer partition : assigned) {
+            if (partitions.containsKey(partition)) {
+                continue;
+            }
+            PartitionCache cache = revoked.remove(partition);
+            if (cache != null) {
+                cache.ready = false;
+                since = since.isBefore(cache.revokedAt) ? since : cache.revokedAt;
+                returned.put(partition, cache);
+            } else {
+                cache = new PartitionCache(
+                        new TimeWindowedBloomFilter(windowDays, properties.getExpectedKeysPerDay(),
+                                properties.getFalsePositiveProbability()),
+                        new RecentKeys(properties.getRecentKeysCapacity()));
+                fresh.put(partition, cache);
+            }
+            partitions.put(partition, cache);
+        }
+
+        if (!fresh.isEmpty()) {
+            Thread.ofVirtual().name("inbox-dedup-rebuild-" + fresh.keySet()).start(() -> rebuild(fresh, null));
+        }
+        if (!returned.isEmpty()) {
+            Instant catchUpFrom = since.minus(CATCH_UP_MARGIN);
+            Thread.ofVirtual().name("inbox-dedup-catch-up-" + returned.keySet())
+                    .start(() -> rebuild(returned, catchUpFrom));
+        }
+    }
+
+    /**
+     * Geri alınan partition'ların hazır filtresini {@link #REVOKED_RETENTION} boyunca tekrar atanmak üzere kenara
+     * koyar; kurulumu bitmemiş filtre atılır.
+     */
+    public void onPartitionsRevoked(Collection<Integer> revokedPartitions) {
+        Instant now = Instant.now();
+        for (Integer partition : revokedPartitions) {
+            PartitionCache cache = partitions.remove(partition);
+            if (cache != null && cache.ready) {
+                cache.revokedAt = now;
+                revoked.put(partition, cache);
+            }
+        }
+    }
+
+    /** Partition'ın filtresi hazır mı (test ve izleme için). */
+    public boolean isReady(int partition) {
+        PartitionCache cache = partitions.get(partition);
+        return cache != null && cache.ready;
+    }
+
+    /**
+     * Filtreleri inbox'tan tek sorguyla doldurur: since null ise tüm pencere, değilse yalnızca since sonrası yazılan
+     * key'ler. kafka_partition'ı olmayan (V8 öncesi) key'ler tüm filtrelere girer.
+     */
+    void rebuild(Map<Integer, PartitionCache> caches, Instant since) {
+        try {
+            rebuildPermits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        long start = System.currentTimeMillis();
+        try {
+            long today = today();
+            KeyHandler handler = (key, receivedAt, kafkaPartition) -> {
+                long day = epochDay(receivedAt);
+                if (kafkaPartition == null) {
+                    caches.values().forEach(target -> target.put(key, day, today));
+                    return;
+                }
+                PartitionCache cache = caches.get(kafkaPartition);
+                if (cache != null) {
+                    cache.put(key, day, today);
+                }
+            };
+            long rows = since == null
+                    ? inboxRepository.streamKeys(caches.keySet(), handler)
+                    : inboxRepository.streamKeysSince(caches.keySet(), since, handler);
+            caches.forEach((partition, cache) -> {
+                if (partitions.get(partition) == cache) {
+                    cache.ready = true;
+                }
+            });
+            log.info("Inbox dedup filters for partitions {} {} from {} keys in {}ms",
+                    caches.keySet(), since == null ? "rebuilt" : "caught up since " + since, rows,
+                    System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            log.error("Inbox dedup filter rebuild failed for partitions {}, falling back to DB lookups: {}",
+                    caches.keySet(), e.getMessage(), e);
+        } finally {
+            rebuildPermits.release();
+        }
+    }
+
+    private static Counter lookupCounter(MeterRegistry registry, String result) {
+        return Counter.builder("inbox.dedup.lookups")
+                .description("Dedup önbelleği key sorguları; false_positive = filtre 'olabilir' dedi, DB'de yok")
+                .tag("result", result)
+                .register(registry);
+    }
+
+    private static long today() {
+        return LocalDate.now(ZoneOffset.UTC).toEpochDay();
+    }
+
+    private static long epochDay(Instant instant) {
+        return Math.floorDiv(instant.getEpochSecond(), 86400);
+    }
+
+    static final class PartitionCache {
+        private final TimeWindowedBloomFilter filter;
+        private final RecentKeys recentKeys;
+        private volatile boolean ready;
+        private volatile Instant revokedAt;
+
+        PartitionCache(TimeWindowedBloomFilter filter, RecentKeys recentKeys) {
+            this.filter = filter;
+            this.recentKeys = recentKeys;
+        }
+
+        private void put(UUID key, long day, long today) {
+            filter.put(key.getMostSignificantBits(), key.getLeastSignificantBits(), day, today);
+        }
+
+        private void addAll(List<UUID> keys, long today) {
+            for (UUID key : keys) {
+                filter.put(key.getMostSignificantBits(), key.getLeastSignificantBits(), today, today);
+                recentKeys.add(key);
+            }
+        }
+    }
+
+    /** Erişim sıralı, sınırlı LRU; en uzun süre dokunulmayan key düşer. */
+    static final class RecentKeys {
+        private final LinkedHashMap<UUID, Boolean> keys;
+
+        RecentKeys(int capacity) {
+            this.keys = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<UUID, Boolean> eldest) {
+                    return size() > capacity;
+                }
+            };
+        }
+
+        synchronized boolean contains(UUID key) {
+            return keys.get(key) != null;
+        }
+
+        synchronized void add(UUID key) {
+            keys.put(key, Boolean.TRUE);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.baykanat.insider.assessment.domain.service;
+
+import com.baykanat.insider.assessment.infrastructure.persistence.RollupResolution;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Metrik sorgu penceresini okunacak katmanlara böler:
+ * <ul>
+ *   <li>PREAGGREGATED: bir ön-agregasyon çözünürlüğünün (rollup dakika/15 dk/saat/gün veya saatlik MV) kapsadığı tam
+ *   kovalar</li>
+ *   <li>RAW: hiçbir çözünürlüğün kapsamadığı kenarlar ve günler; gün başına bir segment (tek partition)</li>
+ *   <li>HOT: ham kısmın hot window'un eksiksiz tuttuğu (son MV refresh'inden sonraki) tam dakikaları</li>
+ *   <li>ARCHIVE: ham partition'ı arşivlenip silinmiş günlerin bu kısımları</li>
+ * </ul>
+ * Çözünürlükler kabadan inceye denenir: pencerenin en kaba çözünürlüğe hizalı çekirdeği oradan okunur, kalan iki kenar
+ * bir alttaki çözünürlükle aynı şekilde bölünür. Segmentler çakışmaz, [from, to) penceresini eksiksiz kaplar ve zamana
+ * göre sıralıdır.
+ */
+final class MetricsQueryPlanner {
+
+    static final long SECONDS_PER_DAY = 86400;
+
+    private MetricsQueryPlanner() {
+    }
+
+    enum Tier {
+        PREAGGREGATED,
+        RAW,
+        HOT,
+        ARCHIVE
+    }
+
+    /** Okunabilecek bir ön-agregasyon çözünürlüğü ve kapsadığı ilk an (retention başlangıcı; süresizse Long.MIN_VALUE). */
+    record Level(RollupResolution resolution, long coverageStart) {
+    }
+
+    /**
+     * [from, to) aralığı ve okunacağı katman; resolution yalnızca PREAGGREGATED için, RAW ve HOT segmentleri tek
+     * günün içinde.
+     */
+    record Segment(Tier tier, RollupResolution resolution, long from, long to) {
+
+        LocalDate day() {
+            return LocalDate.ofInstant(Instant.ofEpochSecond(from), ZoneOffset.UTC);
+        }
+    }
+
+    /**
+     * @param levels     kabadan inceye okunabilecek çözünürlükler; her biri group_by kovasını tam bölmelidir
+     * @param archiveEnd arşivin kapsadığı aralığın sonu; arşiv yoksa null
+     * @param rawTier    false ise yönlendirici kapalıdır: ham partition okunmaz, pencere kovalara yuvarlanarak en kaba
+     *                   çözünürlükten okunur; yalnızca onun kapsamı dışındaki arşiv günleri arşivden. Hiç çözünürlük
+     *                   yoksa pencere her durumda ham veriden okunur.
+     */
+    static List<Segment> plan(long from, long to, List<Level> levels, Long archiveEnd, boolean rawTier) {
+        return plan(from, to, levels, archiveEnd, rawTier, Long.MAX_VALUE);
+    }
+
+    /**
+     * @param hotFrom bu dakikadan sonraki ham aralığın tam dakikaları HOT segmentinden okunur; hot window yoksa
+     *                Long.MAX_VALUE
+     */
+    static List<Segment> plan(long from, long to, List<Level> levels, Long archiveEnd, boolean rawTier,
+                              long hotFrom) {
+        List<Segment> segments = new ArrayList<>();
+        if (from >= to) {
+            return segments;
+        }
+        if (!rawTier && !levels.isEmpty()) {
+            Level level = levels.get(0);
+            long boundary = from;
+            if (archiveEnd != null && from < archiveEnd && from < level.coverageStart()) {
+                boundary = Math.min(to, archiveEnd);
+                segments.add(new Segment(Tier.ARCHIVE, null, from, boundary));
+            }
+            if (boundary < to) {
+                segments.add(new Segment(Tier.PREAGGREGATED, level.resolution(), boundary, to));
+            }
+            return segments;
+        }
+        cover(segments, from, to, levels, 0, archiveEnd, hotFrom);
+        return segments;
+    }
+
+    private static void cover(List<Segment> segments, long from, long to, List<Level> levels, int index,
+                              Long archiveEnd, long hotFrom) {
+        if (from >= to) {
+            return;
+        }
+        if (index == levels.size()) {
+            addDetail(segments, from, to, archiveEnd, hotFrom);
+            return;
+        }
+        Level level = levels.get(index);
+        long width = level.resolution().seconds();
+        long coreFrom = ceil(Math.max(from, level.coverageStart()), width);
+        long coreTo = Math.floorDiv(to, width) * width;
+        if (coreFrom < coreTo) {
+            cover(segments, from, coreFrom, levels, index + 1, archiveEnd, hotFrom);
+            segments.add(new Segment(Tier.PREAGGREGATED, level.resolution(), coreFrom, coreTo));
+            cover(segments, coreTo, to, levels, index + 1, archiveEnd, hotFrom);
+        } else {
+            cover(segments, from, to, levels, index + 1, archiveEnd, hotFrom);
+        }
+    }
+
+    /** Ön-agregasyonun kapsamadığı aralığı gün sınırlarından böler; arşivlenmiş günler tek ARCHIVE segmentinde. */
+    private static void addDetail(List<Segment> segments, long from, long to, Long archiveEnd, long hotFrom) {
+        long start = from;
+        while (start < to) {
+            long end = Math.min(to, Math.floorDiv(start, SECONDS_PER_DAY) * SECONDS_PER_DAY + SECONDS_PER_DAY);
+            if (archiveEnd != null && start < archiveEnd) {
+                end = Math.min(to, archiveEnd);
+                segments.add(new Segment(Tier.ARCHIVE, null, start, end));
+            } else {
+                addRaw(segments, start, end, hotFrom);
+            }
+            start = end;
+        }
+    }
+
+    /** Tek günün ham aralığı; hotFrom'dan sonraki tam dakikalar HOT, dakika içi kenarlar ve öncesi RAW kalır. */
+    private static void addRaw(List<Segment> segments, long from, long to, long hotFrom) {
+        long minute = RollupResolution.MINUTE.seconds();
+        long hotStart = hotFrom < to ? ceil(Math.max(from, hotFrom), minute) : to;
+        long hotEnd = Math.floorDiv(to, minute) * minute;
+        if (hotStart >= hotEnd) {
+            segments.add(new Segment(Tier.RAW, null, from, to));
+            return;
+        }
+        if (from < hotStart) {
+            segments.add(new Segment(Tier.RAW, null, from, hotStart));
+        }
+        segments.add(new Segment(Tier.HOT, null, hotStart, hotEnd));
+        if (hotEnd < to) {
+            segments.add(new Segment(Tier.RAW, null, hotEnd, to));
+        }
+    }
+
+    private static long ceil(long epochSecond, long width) {
+        return Math.ceilDiv(epochSecond, width) * width;
+    }
+}
@@ -1,47 +1,712 @@
 package com.baykanat.insider.assessment.domain.service;
 
+import com.baykanat.insider.assessment.api.dto.MetricsBatchQueryRequest;
+import com.baykanat.insider.assessment.api.dto.MetricsBatchResponse;
 import com.baykanat.insider.assessment.api.dto.MetricsQueryParams;
 import com.baykanat.insider.assessment.api.dto.MetricsResponse;
+import com.baykanat.insider.assessment.config.AppProperties;
+import com.baykanat.insider.assessment.domain.model.GroupBy;
+import com.baykanat.insider.assessment.domain.model.SplitBy;
+import com.baykanat.insider.assessment.domain.model.TagMatch;
+import com.baykanat.insider.assessment.domain.service.MetricsQueryPlanner.Level;
+import com.baykanat.insider.assessment.domain.service.MetricsQueryPlanner.Segment;
+import com.baykanat.insider.assessment.domain.service.MetricsQueryPlanner.Tier;
+import com.baykanat.insider.assessment.domain.sketch.HyperLogLog;
+import com.baykanat.insider.assessment.infrastructure.archive.ArchiveMetricsScanner;
+import com.baykanat.insider.assessment.infrastructure.persistence.CampaignRollupJdbcRepository;
+import com.baykanat.insider.assessment.infrastructure.persistence.CampaignRollupJdbcRepository.BucketRange;
+import com.baykanat.insider.assessment.infrastructure.persistence.CampaignRollupJdbcRepository.RankedCampaign;
+import com.baykanat.insider.assessment.infrastructure.persistence.MetricsCell;
 import com.baykanat.insider.assessment.infrastructure.persistence.MetricsJdbcRepository;
-import lombok.RequiredArgsConstructor;
+import com.baykanat.insider.assessment.infrastructure.persistence.MetricsJdbcRepository.MetricsSeries;
+import com.baykanat.insider.assessment.infrastructure.persistence.MetricsJdbcRepository.SeriesSelection;
+import com.baykanat.insider.assessment.infrastructure.persistence.RawEventMetricsJdbcRepository;
+import com.baykanat.insider.assessment.infrastructure.persistence.RawEventMetricsJdbcRepository.TagFilter;
+import com.baykanat.insider.assessment.infrastructure.persistence.RollupResolution;
+import com.baykanat.insider.assessment.infrastructure.persistence.TagRollupJdbcRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntFunction;
 
-/** event_metrics materialized view'dan toplam ve zaman dilimi özetlerini sorgular, MetricsResponse oluşturur. */
+/**
+ * Metrik kaynağından (saatlik rollup veya event_metrics MV) toplam ve zaman dilimi özetlerini sorgular, MetricsResponse oluşturur.
+ *
+ * <p>Yanıtlar ağırlık sınırlı bir Caffeine önbelleğinde tutulur. MV modunda anahtar MV refresh generation'ını içerir:
+ * iki yenileme arasındaki aynı sorgu PostgreSQL'e gitmez, yenileme tamamlanınca eski girişlere bir daha erişilmez
+ * ve bir sonraki okumada atılır. Rollup her consumer batch'inde değiştiği için bu modda (ve MV modunda hot window
+ * açıkken) girişler rollup-max-staleness kadar yaşar. İsabet oranı ve yükleme süresi cache.* metrikleriyle
+ * (cache=metrics.query) yayınlanır.
+ *
+ * <p>Pencere MetricsQueryPlanner ile katmanlara bölünür: group_by kovasını tam bölen en kaba rollup çözünürlüğünün
+ * (gün, saat, 15 dk, dakika) tam kovaları oradan, kenarlar bir alttaki çözünürlükten; hiçbir çözünürlüğün
+ * kapsamadığı kısımlar ham events partition'larından, ham partition'ı arşivlenmiş günler arşivden okunur. Böylece
+ * okunan satır sayısı pencere uzunluğundan çok kova sayısıyla büyür. Pencere tek saatlik segmentse ve group_by
+ * hourly/daily ise eski iki sorguluk yol kullanılır. Aksi halde her katman hücreler döner ve hücreler seri/kova
+ * başına birleştirilir: rollup modunda kullanıcı sketch'leri birleşir, MV modunda saatlik benzersiz sayılar MV'deki
+ * gibi toplanır. Ham gün segmentleri ortak bir havuzda paralel okunur; tahmini satır sayıları raw-row-budget'ı
+ * aşarsa sorgu çalıştırılmadan reddedilir.
+ *
+ * <p>MV modunda hot window açıkken MV'den okunan tam saatlere, son MV refresh'inden sonra commit olmuş event'lerin
+ * bellek içi hücreleri (HotWindowMetrics) eklenir; MV'nin refresh gecikmesi DB'ye ek sorgu olmadan kapanır. Ham
+ * kenarların son refresh'ten sonraki tam dakikaları (pencerenin kuyruğu) partition yerine yalnızca bu hücrelerden
+ * okunur (HOT segmenti).
+ *
+ * <p>split_by=channel aynı planı sözlükteki tüm channel'lar için çalıştırır ve en büyük top seriyi döner (channel
+ * sayısı küçüktür). split_by=campaign_id yalnızca kampanya rollup'ından okunur: pencere saat sınırlarına yuvarlanır
+ * (kova başlangıcı [from, to) içinde olan kovalar), önce en çok event alan top kampanya index'ten sıralanır, sonra
+ * yalnızca onların kovaları okunur; events tablosuna inilmez.
+ *
+ * <p>Etiket filtresi (tag) yalnızca rollup kaynağında desteklenir. Tek etiket, event_name sorgusu gibi planlanır: tam
+ * saatler etiket rollup'ından, saat içi kenarlar ham partition'lardan GIN index'le okunur. Etiket başına sayılardan
+ * kesişim/birleşim çıkarılamadığı için çoklu etiket (tag_match=all/any) ham partition'lardan GIN index'le okunur;
+ * eşleşecek satır sayısı önce etiket rollup'ından tahmin edilir (all: en seyrek etiket, any: toplam) ve
+ * raw-row-budget'ı aşarsa sorgu reddedilir. Böylece seyrek etiket birleşimleri ucuz kalır.
+ */
 @Slf4j
 @Service
-@RequiredArgsConstructor
-public class MetricsService {
+public class MetricsService implements DisposableBean {
+
+    static final String CACHE_NAME = "metrics.query";
 
     private final MetricsJdbcRepository metricsRepository;
+    private final RawEventMetricsJdbcRepository rawRepository;
+    private final ArchiveMetricsScanner archiveScanner;
+    private final CampaignRollupJdbcRepository campaignRepository;
+    private final TagRollupJdbcRepository tagRepository;
+    private final HotWindowMetrics hotWindow;
+    private final AppProperties appProperties;
+    private final Cache<QueryKey, MetricsResponse> cache;
+    private final AtomicLong cachedGeneration = new AtomicLong();
+    private final ExecutorService rawExecutor;
+    private final Map<Tier, Counter> segmentCounters = new EnumMap<>(Tier.class);
+    private final Counter budgetRejected;
+
+    public MetricsService(MetricsJdbcRepository metricsRepository, RawEventMetricsJdbcRepository rawRepository,
+                          ArchiveMetricsScanner archiveScanner, CampaignRollupJdbcRepository campaignRepository,
+                          TagRollupJdbcRepository tagRepository, HotWindowMetrics hotWindow,
+                          AppProperties appProperties, MeterRegistry registry) {
+        this.metricsRepository = metricsRepository;
+        this.rawRepository = rawRepository;
+        this.archiveScanner = archiveScanner;
+        this.campaignRepository = campaignRepository;
+        this.tagRepository = tagRepository;
+        this.hotWindow = hotWindow;
+        this.appProperties = appProperties;
+        this.cache = buildCache(appProperties.getMetrics(), hotWindow.isActive());
+        if (cache != null) {
+            CaffeineCacheMetrics.monitor(registry, cache, CACHE_NAME);
+        }
+        this.rawExecutor = Executors.newFixedThreadPool(
+                Math.max(1, appProperties.getMetrics().getRouter().getRawParallelism()),
+                Thread.ofPlatform().name("metrics-raw-", 0).daemon().factory());
+        for (Tier tier : Tier.values()) {
+            segmentCounters.put(tier, Counter.builder("metrics.query.segments")
+                    .description("Metrik sorgusunda okunan segment sayısı, katmana göre")
+                    .tag("tier", tier.name().toLowerCase(Locale.ROOT))
+                    .register(registry));
+        }
+        this.budgetRejected = Counter.builder("metrics.query.budget.rejected")
+                .description("Ham segment satır bütçesini aştığı için reddedilen sorgular")
+                .register(registry);
+    }
 
-    /** Toplamlar + zaman dilimi breakdown'ları için MATERIALIZED VIEW'e iki sorgu atar, yanıtı birleştirir. */
+    /** Önbellekte varsa döner; yoksa pencerenin katmanlarını sorgular ve sonucu önbelleğe koyar. */
     public MetricsResponse getMetrics(MetricsQueryParams params) {
-        log.debug("Querying metrics for event_name={}, from={}, to={}, channel={}, groupBy={}",
-                params.getEventName(), params.getFrom(), params.getTo(),
-                params.getChannel(), params.getGroupBy());
+        validateSplit(params);
+        validateTags(params);
+        if (cache == null) {
+            return query(params);
+        }
+        long generation = metricsRepository.getRefreshGeneration();
+        evictOlderGenerations(generation);
+        return cache.get(QueryKey.of(generation, params), key -> query(params));
+    }
+
+    /**
+     * POST /metrics/query: tüm event_name (ve channel) serileri tek sorguda. Sonuçlar istek sırasıyla döner; verisi
+     * olmayan seri sıfır toplam ve boş breakdown ile yer alır. Toplu yanıtlar önbelleğe alınmaz.
+     */
+    public MetricsBatchResponse queryBatch(MetricsBatchQueryRequest request) {
+        List<String> eventNames = List.copyOf(new LinkedHashSet<>(request.getEventNames()));
+        List<String> channels = request.getChannels() == null || request.getChannels().isEmpty()
+                ? null
+                : List.copyOf(new LinkedHashSet<>(request.getChannels()));
+        log.debug("Batch metrics query for {} event names, {} channels, from={}, to={}, groupBy={}",
+                eventNames.size(), channels != null ? channels.size() : 0,
+                request.getFrom(), request.getTo(), request.getGroupBy());
+
+        GroupBy groupBy = GroupBy.of(request.getGroupBy());
+        List<Segment> plan = plan(request.getFrom(), request.getTo(), groupBy);
+        List<MetricsSeries> rows = isLegacyQuery(plan, groupBy)
+                ? metricsRepository.queryBatch(eventNames, request.getFrom(), request.getTo(), channels,
+                        groupBy.value())
+                : executePlan(plan, eventNames, channels, groupBy);
+        Map<List<String>, MetricsSeries> found = new HashMap<>();
+        for (MetricsSeries series : rows) {
+            found.put(Arrays.asList(series.eventName(), series.channel()), series);
+        }
+
+        List<MetricsResponse> results = new ArrayList<>();
+        for (String eventName : eventNames) {
+            for (String channel : channels != null ? channels : Arrays.asList((String) null)) {
+                MetricsSeries series = found.get(Arrays.asList(eventName, channel));
+                results.add(MetricsResponse.builder()
+                        .eventName(eventName)
+                        .totalCount(series != null ? series.totalCount() : 0)
+                        .uniqueUserCount(series != null ? series.uniqueUserCount() : 0)
+                        .timeRange(MetricsResponse.TimeRange.builder()
+                                .from(request.getFrom())
+                                .to(request.getTo())
+                                .build())
+                        .channel(channel)
+                        .breakdowns(series != null ? series.breakdowns() : List.of())
+                        .build());
+            }
+        }
+        return MetricsBatchResponse.builder().results(results).build();
+    }
 
-        // Toplamlar
-        long[] totals = metricsRepository.queryTotals(
-                params.getEventName(), params.getFrom(), params.getTo(), params.getChannel());
+    @Override
+    public void destroy() {
+        rawExecutor.shutdownNow();
+    }
 
-        // Zaman dilimi özetleri
-        List<MetricsResponse.TimeBucket> breakdowns = metricsRepository.queryBreakdowns(
+    /**
+     * Pencere tek saatlik ön-agregasyon segmentiyse ve group_by hourly/daily ise toplamlar + breakdown'lar için iki
+     * sorgu atar; aksi halde katmanları okuyup hücreleri birleştirir. Etiket filtreli sorgular her zaman katmanlıdır.
+     */
+    private MetricsResponse query(MetricsQueryParams params) {
+        log.debug("Querying metrics for event_name={}, from={}, to={}, channel={}, groupBy={}, tag={}",
                 params.getEventName(), params.getFrom(), params.getTo(),
-                params.getChannel(), params.getGroupBy());
+                params.getChannel(), params.getGroupBy(), params.getTag());
+
+        long totalCount;
+        long uniqueUserCount;
+        List<MetricsResponse.TimeBucket> breakdowns;
+        GroupBy groupBy = GroupBy.of(params.getGroupBy());
+        List<String> tags = params.tagList();
+        TagMatch tagMatch = TagMatch.of(params.getTagMatch());
+        List<Segment> plan = tags.isEmpty() ? plan(params.getFrom(), params.getTo(), groupBy) : null;
+        if (!tags.isEmpty()) {
+            MetricsSeries series = queryTagged(params, tags, tagMatch, groupBy);
+            totalCount = series != null ? series.totalCount() : 0;
+            uniqueUserCount = series != null ? series.uniqueUserCount() : 0;
+            breakdowns = series != null ? series.breakdowns() : List.of();
+        } else if (isLegacyQuery(plan, groupBy)) {
+            // Toplamlar
+            long[] totals = metricsRepository.queryTotals(
+                    params.getEventName(), params.getFrom(), params.getTo(), params.getChannel());
+            totalCount = totals[0];
+            uniqueUserCount = totals[1];
+
+            // Zaman dilimi özetleri
+            breakdowns = metricsRepository.queryBreakdowns(
+                    params.getEventName(), params.getFrom(), params.getTo(),
+                    params.getChannel(), groupBy.value());
+        } else {
+            boolean hasChannel = params.getChannel() != null && !params.getChannel().isBlank();
+            List<MetricsSeries> series = executePlan(plan, List.of(params.getEventName()),
+                    hasChannel ? List.of(params.getChannel()) : null, groupBy);
+            MetricsSeries only = series.isEmpty() ? null : series.get(0);
+            totalCount = only != null ? only.totalCount() : 0;
+            uniqueUserCount = only != null ? only.uniqueUserCount() : 0;
+            breakdowns = only != null ? only.breakdowns() : List.of();
+        }
+
+        SplitBy splitBy = SplitBy.of(params.getSplitBy());
+        int top = params.getTop() != null ? params.getTop() : SplitBy.DEFAULT_TOP;
+        List<MetricsResponse.Split> splits = null;
+        if (splitBy == SplitBy.CHANNEL) {
+            SeriesSelection selection = metricsRepository.resolveChannelSplit(List.of(params.getEventName()));
+            splits = selection != null ? topSplits(executePlan(plan, selection, groupBy), top) : List.of();
+        } else if (splitBy == SplitBy.CAMPAIGN_ID) {
+            splits = splitByCampaign(params, groupBy, top);
+        }
 
         return MetricsResponse.builder()
                 .eventName(params.getEventName())
-                .totalCount(totals[0])
-                .uniqueUserCount(totals[1])
+                .totalCount(totalCount)
+                .uniqueUserCount(uniqueUserCount)
                 .timeRange(MetricsResponse.TimeRange.builder()
                         .from(params.getFrom())
                         .to(params.getTo())
                         .build())
                 .channel(params.getChannel())
+                .tags(tags.isEmpty() ? null : tags)
+                .tagMatch(tags.size() > 1 ? tagMatch.value() : null)
                 .breakdowns(breakdowns)
+                .splitBy(splitBy != null ? splitBy.value() : null)
+                .splits(splits)
                 .build();
     }
+
+    /** split_by ve top'un sorguyla uyumu; uyumsuzsa UnsupportedQueryException (400). */
+    private void validateSplit(MetricsQueryParams params) {
+        SplitBy splitBy = SplitBy.of(params.getSplitBy());
+        if (splitBy == null) {
+            if (params.getTop() != null) {
+                throw new UnsupportedQueryException("top requires split_by");
+            }
+            return;
+        }
+        if (splitBy == SplitBy.CHANNEL && params.getChannel() != null && !params.getChannel().isBlank()) {
+            throw new UnsupportedQueryException("split_by=channel cannot be combined with a channel filter");
+        }
+        if (splitBy == SplitBy.CAMPAIGN_ID) {
+            AppProperties.MetricsProperties metrics = appProperties.getMetrics();
+            if (metrics.getSource() != AppProperties.MetricsSource.ROLLUP || !metrics.getRollup().isCampaignEnabled()) {
+                throw new UnsupportedQueryException("split_by=campaign_id requires the campaign rollup "
+                        + "(app.metrics.source=rollup, app.metrics.rollup.campaign-enabled=true)");
+            }
+            if (GroupBy.of(params.getGroupBy()).seconds() % RollupResolution.HOUR.seconds() != 0) {
+                throw new UnsupportedQueryException("split_by=campaign_id supports hourly, daily and weekly group_by");
+            }
+        }
+    }
+
+    /** Etiket filtresinin sorguyla ve metrik kaynağıyla uyumu; uyumsuzsa UnsupportedQueryException (400). */
+    private void validateTags(MetricsQueryParams params) {
+        List<String> tags = params.tagList();
+        if (tags.isEmpty()) {
+            if (params.getTagMatch() != null && !params.getTagMatch().isBlank()) {
+                throw new UnsupportedQueryException("tag_match requires tag");
+            }
+            return;
+        }
+        if (tags.size() > TagMatch.MAX_TAGS) {
+            throw new UnsupportedQueryException("at most " + TagMatch.MAX_TAGS + " tags per query");
+        }
+        AppProperties.MetricsProperties metrics = appProperties.getMetrics();
+        if (metrics.getSource() != AppProperties.MetricsSource.ROLLUP || !metrics.getRollup().isTagEnabled()) {
+            throw new UnsupportedQueryException("tag filter requires the tag rollup "
+                    + "(app.metrics.source=rollup, app.metrics.rollup.tag-enabled=true)");
+        }
+        if (SplitBy.of(params.getSplitBy()) != null) {
+            throw new UnsupportedQueryException("tag filter cannot be combined with split_by");
+        }
+        if (GroupBy.of(params.getGroupBy()).seconds() % RollupResolution.HOUR.seconds() != 0) {
+            throw new UnsupportedQueryException("tag filter supports hourly, daily and weekly group_by");
+        }
+    }
+
+    /**
+     * Etiket filtreli seri; hiç yazılmamış etiket (all modunda herhangi biri) veya eşleşmesi olmayan birleşim için
+     * null. Tek etiket saatlik etiket rollup'ı + ham kenarlarla, çoklu etiket ham GIN taramasıyla okunur.
+     */
+    private MetricsSeries queryTagged(MetricsQueryParams params, List<String> tags, TagMatch match, GroupBy groupBy) {
+        boolean hasChannel = params.getChannel() != null && !params.getChannel().isBlank();
+        SeriesSelection selection = metricsRepository.resolveSelection(List.of(params.getEventName()),
+                hasChannel ? List.of(params.getChannel()) : null);
+        Map<String, Integer> tagIds = tagRepository.findTagIds(tags);
+        if (selection == null || tagIds.isEmpty() || (match == TagMatch.ALL && tagIds.size() < tags.size())) {
+            return null;
+        }
+        int eventNameId = selection.eventNameIds()[0];
+        Integer channelId = selection.byChannel() ? selection.channelIds()[0] : null;
+        List<String> known = tags.stream().filter(tagIds::containsKey).toList();
+        List<Integer> ids = known.stream().map(tagIds::get).toList();
+        TagFilter filter = new TagFilter(known, match == TagMatch.ALL);
+
+        TagScan scan;
+        List<Segment> plan;
+        if (ids.size() == 1) {
+            scan = new TagScan(eventNameId, channelId, ids.get(0), filter, null);
+            plan = MetricsQueryPlanner.plan(params.getFrom(), params.getTo(),
+                    List.of(new Level(RollupResolution.HOUR, Long.MIN_VALUE)), archiveScanner.coverageEnd(),
+                    appProperties.getMetrics().getRouter().isEnabled());
+        } else {
+            // Eşleşecek satırların üst sınırı: pencereyi kapsayan saatlerin etiket toplamları (index-only)
+            long hour = RollupResolution.HOUR.seconds();
+            Map<Integer, Long> counts = tagRepository.tagCounts(eventNameId, channelId, ids,
+                    Math.floorDiv(params.getFrom(), hour) * hour, Math.ceilDiv(params.getTo(), hour) * hour);
+            long matching = match == TagMatch.ALL
+                    ? ids.stream().mapToLong(id -> counts.getOrDefault(id, 0L)).min().orElse(0)
+                    : counts.values().stream().mapToLong(Long::longValue).sum();
+            if (matching == 0) {
+                return null;
+            }
+            scan = new TagScan(eventNameId, channelId, null, filter, matching);
+            plan = MetricsQueryPlanner.plan(params.getFrom(), params.getTo(), List.of(),
+                    archiveScanner.coverageEnd(), true);
+        }
+        if (plan.stream().anyMatch(segment -> segment.tier() == Tier.ARCHIVE)) {
+            throw new UnsupportedQueryException("tag filter cannot read archived days; align from/to to whole hours "
+                    + "(single tag) or narrow the window to days still in the events table");
+        }
+        List<MetricsSeries> series = executePlan(plan, selection, scan, groupBy);
+        return series.isEmpty() ? null : series.get(0);
+    }
+
+    /**
+     * Kampanya kırılımı: saat sınırlarına yuvarlanmış pencere, group_by'ı tam bölen en kaba kampanya rollup'ından
+     * (gün, kenarlar saat) okunur. Önce top kampanya yalnızca index'ten sıralanır, sonra onların hücreleri okunur.
+     */
+    private List<MetricsResponse.Split> splitByCampaign(MetricsQueryParams params, GroupBy groupBy, int top) {
+        boolean hasChannel = params.getChannel() != null && !params.getChannel().isBlank();
+        SeriesSelection selection = metricsRepository.resolveSelection(List.of(params.getEventName()),
+                hasChannel ? List.of(params.getChannel()) : null);
+        if (selection == null) {
+            return List.of();
+        }
+        int eventNameId = selection.eventNameIds()[0];
+        Integer channelId = selection.byChannel() ? selection.channelIds()[0] : null;
+
+        long hour = RollupResolution.HOUR.seconds();
+        List<Level> levels = CampaignRollupJdbcRepository.RESOLUTIONS.reversed().stream()
+                .filter(resolution -> groupBy.seconds() % resolution.seconds() == 0)
+                .map(resolution -> new Level(resolution, Long.MIN_VALUE))
+                .toList();
+        List<BucketRange> ranges = MetricsQueryPlanner.plan(Math.ceilDiv(params.getFrom(), hour) * hour,
+                        Math.ceilDiv(params.getTo(), hour) * hour, levels, null, true).stream()
+                .map(segment -> new BucketRange(segment.resolution(), segment.from(), segment.to()))
+                .toList();
+        List<RankedCampaign> ranked = campaignRepository.topCampaigns(eventNameId, channelId, ranges, top);
+        if (ranked.isEmpty()) {
+            return List.of();
+        }
+
+        Map<Integer, String> names = new HashMap<>();
+        ranked.forEach(campaign -> names.put(campaign.id(), campaign.name()));
+        CellAccumulator accumulator = new CellAccumulator(groupBy, true);
+        for (BucketRange range : ranges) {
+            campaignRepository.scanCells(eventNameId, channelId, names.keySet(), range.resolution(), range.from(),
+                    range.to(), accumulator::add);
+            segmentCounters.get(Tier.PREAGGREGATED).increment();
+        }
+        return topSplits(accumulator.toSeries(selection::eventName, names::get), top);
+    }
+
+    /** En büyük top seriyi (total_count azalan, eşitlikte değer sırası) kırılım olarak döner. */
+    private static List<MetricsResponse.Split> topSplits(List<MetricsSeries> series, int top) {
+        return series.stream()
+                .sorted(Comparator.comparingLong(MetricsSeries::totalCount).reversed()
+                        .thenComparing(MetricsSeries::channel))
+                .limit(top)
+                .map(item -> MetricsResponse.Split.builder()
+                        .value(item.channel())
+                        .totalCount(item.totalCount())
+                        .uniqueUserCount(item.uniqueUserCount())
+                        .breakdowns(item.breakdowns())
+                        .build())
+                .toList();
+    }
+
+    private List<Segment> plan(long from, long to, GroupBy groupBy) {
+        return MetricsQueryPlanner.plan(from, to, levels(groupBy), archiveScanner.coverageEnd(),
+                appProperties.getMetrics().getRouter().isEnabled(), hotWindow.hotFrom());
+    }
+
+    /**
+     * group_by kovasını tam bölen ön-agregasyon çözünürlükleri, kabadan inceye. Rollup modunda etkin tüm tablolar
+     * (dakika ve 15 dk retention kadar geriye); MV modunda yalnızca saatlik MV (mv-retention-days kadar geriye).
+     */
+    private List<Level> levels(GroupBy groupBy) {
+        AppProperties.MetricsProperties metrics = appProperties.getMetrics();
+        List<Level> levels = new ArrayList<>();
+        if (metrics.getSource() != AppProperties.MetricsSource.ROLLUP) {
+            if (groupBy.seconds() % RollupResolution.HOUR.seconds() == 0) {
+                levels.add(new Level(RollupResolution.HOUR, LocalDate.now(ZoneOffset.UTC)
+                        .minusDays(appProperties.getScheduler().getMvRetentionDays())
+                        .atStartOfDay(ZoneOffset.UTC).toEpochSecond()));
+            }
+            return levels;
+        }
+        long now = Instant.now().getEpochSecond();
+        for (RollupResolution resolution : RollupResolution.active(metrics.getRollup()).reversed()) {
+            if (groupBy.seconds() % resolution.seconds() != 0) {
+                continue;
+            }
+            Duration retention = resolution.retention(metrics.getRollup());
+            levels.add(new Level(resolution, retention == null ? Long.MIN_VALUE : now - retention.toSeconds()));
+        }
+        return levels;
+    }
+
+    /**
+     * Eski iki sorguluk yol: repository yalnızca saatlik kaynağı hourly/daily kovalarla okur. Segment hot window'a
+     * uzanıyorsa kullanılmaz (bellek içi hücreler yalnızca katmanlı yolda birleşir).
+     */
+    private boolean isLegacyQuery(List<Segment> plan, GroupBy groupBy) {
+        return plan.size() == 1 && plan.get(0).tier() == Tier.PREAGGREGATED
+                && plan.get(0).resolution() == RollupResolution.HOUR
+                && (groupBy == GroupBy.HOURLY || groupBy == GroupBy.DAILY)
+                && !hotWindow.overlaps(plan.get(0).from(), plan.get(0).to());
+    }
+
+    /**
+     * Planın tüm segmentlerini okuyup seri başına birleştirir. Ham segmentler önce bütçe kontrolünden geçip havuza
+     * gönderilir; ön-agregasyon, hot ve arşiv segmentleri bu sırada çağıran thread'de okunur.
+     */
+    private List<MetricsSeries> executePlan(List<Segment> plan, List<String> eventNames, List<String> channels,
+                                            GroupBy groupBy) {
+        SeriesSelection selection = metricsRepository.resolveSelection(eventNames, channels);
+        return selection != null ? executePlan(plan, selection, groupBy) : List.of();
+    }
+
+    private List<MetricsSeries> executePlan(List<Segment> plan, SeriesSelection selection, GroupBy groupBy) {
+        return executePlan(plan, selection, null, groupBy);
+    }
+
+    /** tagScan null değilse ön-agregasyon segmentleri etiket rollup'ından, ham segmentler etiket filtresiyle okunur. */
+    private List<MetricsSeries> executePlan(List<Segment> plan, SeriesSelection selection, TagScan tagScan,
+                                            GroupBy groupBy) {
+        boolean sketches = appProperties.getMetrics().getSource() == AppProperties.MetricsSource.ROLLUP;
+        CellAccumulator accumulator = new CellAccumulator(groupBy, sketches);
+        // Ham ve arşiv hücreleri group_by kovasından (en fazla bir gün) geniş olamaz
+        long cellSeconds = Math.min(groupBy.seconds(), MetricsQueryPlanner.SECONDS_PER_DAY);
+
+        List<Future<List<MetricsCell>>> rawResults = submitRawSegments(plan, selection, tagScan, cellSeconds,
+                sketches);
+        try {
+            for (Segment segment : plan) {
+                switch (segment.tier()) {
+                    case PREAGGREGATED -> {
+                        if (tagScan != null) {
+                            tagRepository.scanCells(tagScan.eventNameId(), tagScan.channelId(), tagScan.tagId(),
+                                    segment.from(), segment.to(), accumulator::add);
+                        } else {
+                            metricsRepository.scanCells(selection, segment.resolution(), segment.from(),
+                                    segment.to(), accumulator::add);
+                            // MV'nin son refresh'inden sonra commit olan event'ler bellekten
+                            if (hotWindow.overlaps(segment.from(), segment.to())) {
+                                hotWindow.scanCells(selection, segment.from(), segment.to(),
+                                        RollupResolution.HOUR.seconds(), accumulator::add);
+                            }
+                        }
+                    }
+                    // Son refresh'ten sonraki dakikalar MV'de yok; her event'i bellekte
+                    case HOT -> hotWindow.scanCells(selection, segment.from(), segment.to(), cellSeconds,
+                            accumulator::add);
+                    case ARCHIVE -> archiveScanner.scanCells(selection, segment.from(), segment.to(), cellSeconds)
+                            .forEach(accumulator::add);
+                    case RAW -> {
+                    }
+                }
+                segmentCounters.get(segment.tier()).increment();
+            }
+            for (Future<List<MetricsCell>> result : rawResults) {
+                result.get().forEach(accumulator::add);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Raw metrics segment interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IllegalStateException("Raw metrics segment failed", e.getCause());
+        } finally {
+            rawResults.forEach(result -> result.cancel(true));
+        }
+        return accumulator.toSeries(selection::eventName, selection::channel);
+    }
+
+    /**
+     * Ham segmentlerin partition satır tahminini bütçeyle karşılaştırır ve segmentleri havuza gönderir. Çoklu etiket
+     * taramasında tahmin etiket rollup'ındaki eşleşme üst sınırıdır (GIN index yalnızca eşleşen satırlara iner).
+     * Partition'ı olmayan gün (oluşturulmamış veya silinmiş) veri yok demektir ve okunmaz.
+     */
+    private List<Future<List<MetricsCell>>> submitRawSegments(List<Segment> plan, SeriesSelection selection,
+                                                              TagScan tagScan, long cellSeconds, boolean sketches) {
+        List<Segment> raw = plan.stream().filter(segment -> segment.tier() == Tier.RAW).toList();
+        if (raw.isEmpty()) {
+            return List.of();
+        }
+        Map<LocalDate, Long> estimates = rawRepository.estimatePartitionRows(raw.stream().map(Segment::day).toList());
+        long budget = appProperties.getMetrics().getRouter().getRawRowBudget();
+        boolean tagEstimate = tagScan != null && tagScan.matchingRows() != null;
+        double cost = 0;
+        if (tagEstimate) {
+            cost = tagScan.matchingRows();
+        } else {
+            for (Segment segment : raw) {
+                Long rows = estimates.get(segment.day());
+                if (rows != null) {
+                    cost += rows * (double) (segment.to() - segment.from()) / MetricsQueryPlanner.SECONDS_PER_DAY;
+                }
+            }
+        }
+        if (cost > budget) {
+            budgetRejected.increment();
+            throw new QueryBudgetExceededException(String.format(Locale.ROOT,
+                    "Query needs to scan ~%d raw events (budget %d). %s", (long) cost, budget, tagEstimate
+                            ? "Use a single tag or narrow the from/to window."
+                            : "Narrow the from/to window or align it to whole hours within the pre-aggregated "
+                            + "retention."));
+        }
+
+        List<Future<List<MetricsCell>>> results = new ArrayList<>(raw.size());
+        for (Segment segment : raw) {
+            if (estimates.containsKey(segment.day())) {
+                TagFilter tags = tagScan != null ? tagScan.filter() : null;
+                results.add(rawExecutor.submit(() -> rawRepository.scanDay(selection, tags, segment.day(),
+                        segment.from(), segment.to(), cellSeconds, sketches)));
+            }
+        }
+        log.debug("Metrics plan: {} segments, {} raw partitions, ~{} raw rows", plan.size(), results.size(),
+                (long) cost);
+        return results;
+    }
+
+    /** Generation ilk kez ilerlediğinde önceki generation'ların girişlerini siler (yalnızca bir thread). */
+    private void evictOlderGenerations(long generation) {
+        long previous = cachedGeneration.get();
+        if (generation > previous && cachedGeneration.compareAndSet(previous, generation)) {
+            cache.asMap().keySet().removeIf(key -> key.generation() < generation);
+        }
+    }
+
+    /** Rollup modunda ve hot window açıkken kaynak her batch'te değişir; girişler rollup-max-staleness kadar yaşar. */
+    private static Cache<QueryKey, MetricsResponse> buildCache(AppProperties.MetricsProperties metrics,
+                                                               boolean hotWindow) {
+        AppProperties.QueryCacheProperties properties = metrics.getCache();
+        boolean expiring = metrics.getSource() == AppProperties.MetricsSource.ROLLUP || hotWindow;
+        Duration staleness = properties.getRollupMaxStaleness();
+        if (!properties.isEnabled() || (expiring && (staleness == null || staleness.isZero()))) {
+            return null;
+        }
+
+        // Ağırlık ≈ yanıttaki nesne sayısı: uzun hourly pencereler kısa sorgulardan fazla yer tutar
+        Caffeine<QueryKey, MetricsResponse> builder = Caffeine.newBuilder()
+                .maximumWeight(properties.getMaxWeight())
+                .weigher((QueryKey key, MetricsResponse response) -> 1 + size(response.getBreakdowns())
+                        + (response.getSplits() != null
+                        ? response.getSplits().stream().mapToInt(split -> 1 + size(split.getBreakdowns())).sum()
+                        : 0))
+                .recordStats();
+        if (expiring) {
+            builder.expireAfterWrite(staleness);
+        }
+        return builder.build();
+    }
+
+    private static int size(List<?> list) {
+        return list != null ? list.size() : 0;
+    }
+
+    /** Önbellek anahtarı; group_by, split_by ve tag_match büyük/küçük harf duyarsız. */
+    record QueryKey(long generation, String eventName, long from, long to, String channel, String groupBy,
+                    SplitBy splitBy, Integer top, List<String> tags, TagMatch tagMatch) {
+
+        static QueryKey of(long generation, MetricsQueryParams params) {
+            List<String> tags = params.tagList();
+            return new QueryKey(generation, params.getEventName(), params.getFrom(), params.getTo(),
+                    params.getChannel(), params.getGroupBy().toLowerCase(Locale.ROOT),
+                    SplitBy.of(params.getSplitBy()), params.getTop(), tags,
+                    tags.size() > 1 ? TagMatch.of(params.getTagMatch()) : null);
+        }
+    }
+
+    /**
+     * Etiket filtreli plan: tek etikette ön-agregasyon segmentleri tagId'nin rollup'ından okunur; çoklu etikette
+     * matchingRows, ham taramanın bütçe kontrolünde partition tahmini yerine kullanılır.
+     */
+    private record TagScan(int eventNameId, Integer channelId, Integer tagId, TagFilter filter, Long matchingRows) {
+    }
+
+    /** Hücreleri seri ve kova başına toplar; yalnızca çağıran thread'den beslenir. */
+    private static final class CellAccumulator {
+        private final GroupBy groupBy;
+        private final boolean sketches;
+        private final Map<List<Integer>, SeriesAggregate> series = new HashMap<>();
+
+        private CellAccumulator(GroupBy groupBy, boolean sketches) {
+            this.groupBy = groupBy;
+            this.sketches = sketches;
+        }
+
+        private void add(MetricsCell cell) {
+            SeriesAggregate aggregate = series.computeIfAbsent(List.of(cell.eventNameId(), cell.dimensionId()),
+                    k -> new SeriesAggregate());
+            aggregate.total.add(cell, sketches);
+            aggregate.buckets.computeIfAbsent(groupBy.floor(cell.bucketStart()), k -> new CellAggregate())
+                    .add(cell, sketches);
+        }
+
+        /** Seriler isimlendirilir; dimensionNames kırılım boyutunun id'lerini (channel veya campaign_id) çevirir. */
+        private List<MetricsSeries> toSeries(IntFunction<String> eventNames, IntFunction<String> dimensionNames) {
+            List<MetricsSeries> result = new ArrayList<>(series.size());
+            series.forEach((key, aggregate) -> {
+                List<MetricsResponse.TimeBucket> breakdowns = new ArrayList<>(aggregate.buckets.size());
+                aggregate.buckets.forEach((bucketStart, bucket) -> breakdowns.add(MetricsResponse.TimeBucket.builder()
+                        .bucket(Instant.ofEpochSecond(bucketStart).toString())
+                        .totalCount(bucket.totalCount)
+                        .uniqueUserCount(bucket.uniqueUsers())
+                        .build()));
+                result.add(new MetricsSeries(eventNames.apply(key.get(0)), dimensionNames.apply(key.get(1)),
+                        aggregate.total.totalCount, aggregate.total.uniqueUsers(), breakdowns));
+            });
+            return result;
+        }
+    }
+
+    private static final class SeriesAggregate {
+        private final CellAggregate total = new CellAggregate();
+        private final Map<Long, CellAggregate> buckets = new TreeMap<>();
+    }
+
+    /**
+     * Sketch modunda hücre sketch'leri birleştirilir (sketch'siz hücrelerin sayısı eklenir); toplama modunda saatlik
+     * benzersiz sayılar toplanır.
+     */
+    private static final class CellAggregate {
+        private long totalCount;
+        private long uniqueSum;
+        private HyperLogLog users;
+
+        private void add(MetricsCell cell, boolean sketches) {
+            totalCount += cell.totalCount();
+            if (sketches && cell.users() != null) {
+                users = users == null ? cell.users().copy() : users.merge(cell.users());
+            } else {
+                uniqueSum += cell.uniqueUserCount();
+            }
+        }
+
+        private long uniqueUsers() {
+            return (users != null ? users.estimate() : 0) + uniqueSum;
+        }
+    }
+
+    /** split_by/top sorgunun diğer parametreleriyle veya metrik kaynağıyla uyumsuz; GlobalExceptionHandler 400 döner. */
+    public static class UnsupportedQueryException extends RuntimeException {
+
+        public UnsupportedQueryException(String message) {
+            super(message);
+        }
+    }
+
+    /** Ham segmentlerin tahmini satır sayısı bütçeyi aşıyor; GlobalExceptionHandler 400 döner. */
+    public static class QueryBudgetExceededException extends RuntimeException {
+
+        public QueryBudgetExceededException(String message) {
+            super(message);
+        }
+    }
 }
@@ -0,0 +1,62 @@
+package com.baykanat.insider.assessment.domain.sketch;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Birden çok thread'in kilitsiz eklediği HyperLogLog. Register'lar 8'erli paketlenip AtomicLongArray'de tutulur;
+ * ekleme register'ı CAS ile yükseltir (register yalnızca büyüdüğü için yarışan eklemeler kaybolmaz).
+ *
+ * <p>Index/rank hesabı HyperLogLog.addHash ile aynıdır; snapshot() aynı hassasiyette birleştirilebilir bir
+ * HyperLogLog döner.
+ */
+public final class ConcurrentHyperLogLog {
+
+    private static final int REGISTERS_PER_WORD = 8;
+
+    private final int precision;
+    private final AtomicLongArray words;
+
+    public ConcurrentHyperLogLog(int precision) {
+        if (precision < HyperLogLog.MIN_PRECISION || precision > HyperLogLog.MAX_PRECISION) {
+            throw new IllegalArgumentException("HLL precision must be between " + HyperLogLog.MIN_PRECISION
+                    + " and " + HyperLogLog.MAX_PRECISION + ": " + precision);
+        }
+        this.precision = precision;
+        this.words = new AtomicLongArray((1 << precision) / REGISTERS_PER_WORD);
+    }
+
+    public int getPrecision() {
+        return precision;
+    }
+
+    /** 64 bit hash ekler; register'ın mevcut rank'i küçükse CAS ile yükseltir. */
+    public void addHash(long hash) {
+        int index = (int) (hash >>> (64 - precision));
+        long remainder = (hash << precision) | (1L << (precision - 1));
+        long rank = Long.numberOfLeadingZeros(remainder) + 1;
+        int word = index / REGISTERS_PER_WORD;
+        int shift = (index % REGISTERS_PER_WORD) * Byte.SIZE;
+
+        long current = words.get(word);
+        while (((current >>> shift) & 0xFF) < rank) {
+            long updated = (current & ~(0xFFL << shift)) | (rank << shift);
+            long witness = words.compareAndExchange(word, current, updated);
+            if (witness == current) {
+                return;
+            }
+            current = witness;
+        }
+    }
+
+    /** Register'ların anlık kopyası; eşzamanlı eklemeler kopyaya kısmen yansıyabilir. */
+    public HyperLogLog snapshot() {
+        byte[] registers = new byte[1 << precision];
+        for (int word = 0; word < words.length(); word++) {
+            long value = words.get(word);
+            for (int i = 0; i < REGISTERS_PER_WORD; i++) {
+                registers[word * REGISTERS_PER_WORD + i] = (byte) (value >>> (i * Byte.SIZE));
+            }
+        }
+        return HyperLogLog.ofRegisters(precision, registers);
+    }
+}
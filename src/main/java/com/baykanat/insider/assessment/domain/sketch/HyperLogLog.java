@@ -0,0 +1,235 @@
+package com.baykanat.insider.assessment.domain.sketch;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Birleştirilebilir HyperLogLog sketch'i (tekil kullanıcı tahmini). Register başına 1 bayt, 64 bit hash.
+ *
+ * <p>Tahmin Ertl'in iyileştirilmiş ham tahmincisi ile yapılır ("New cardinality estimation algorithms for
+ * HyperLogLog sketches", 2017): küçük ve büyük kardinalitede ayrı düzeltme/empirik tablo gerektirmez,
+ * standart hata ~1.04/sqrt(2^p).
+ *
+ * <p>Serileştirme: [format, precision, ...]. Az dolu sketch'ler sparse (register başına 3 bayt:
+ * index << 6 | rank), diğerleri dense (2^p bayt) yazılır; hangisi küçükse o seçilir.
+ */
+public final class HyperLogLog {
+
+    public static final int MIN_PRECISION = 4;
+    public static final int MAX_PRECISION = 18;
+
+    private static final byte FORMAT_DENSE = 1;
+    private static final byte FORMAT_SPARSE = 2;
+    private static final int HEADER_BYTES = 2;
+    private static final int SPARSE_ENTRY_BYTES = 3;
+
+    private static final double ALPHA_INF = 1.0 / (2.0 * Math.log(2.0));
+
+    private int precision;
+    private byte[] registers;
+
+    public HyperLogLog(int precision) {
+        if (precision < MIN_PRECISION || precision > MAX_PRECISION) {
+            throw new IllegalArgumentException("HLL precision must be between " + MIN_PRECISION
+                    + " and " + MAX_PRECISION + ": " + precision);
+        }
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+
+    private HyperLogLog(int precision, byte[] registers) {
+        this.precision = precision;
+        this.registers = registers;
+    }
+
+    /** Hazır register dizisinden sketch (ConcurrentHyperLogLog anlık görüntüsü); dizi kopyalanmaz. */
+    static HyperLogLog ofRegisters(int precision, byte[] registers) {
+        if (registers.length != 1 << precision) {
+            throw new IllegalArgumentException("Invalid HLL register count: " + registers.length);
+        }
+        return new HyperLogLog(precision, registers);
+    }
+
+    public int getPrecision() {
+        return precision;
+    }
+
+    /** 64 bit hash ekler; ilk p bit register index'i, kalan bitlerin öndeki sıfır sayısı + 1 rank'tir. */
+    public void addHash(long hash) {
+        int index = (int) (hash >>> (64 - precision));
+        long remainder = (hash << precision) | (1L << (precision - 1));
+        byte rank = (byte) (Long.numberOfLeadingZeros(remainder) + 1);
+        if (registers[index] < rank) {
+            registers[index] = rank;
+        }
+    }
+
+    /**
+     * Diğer sketch'i bu sketch'e birleştirir (register bazlı max). Hassasiyetler farklıysa ikisi de küçük olana
+     * indirgenir; böylece precision ayarı değişse bile eski ve yeni kovalar birleşebilir.
+     */
+    public HyperLogLog merge(HyperLogLog other) {
+        if (other.precision < precision) {
+            fold(other.precision);
+        }
+        byte[] source = other.precision == precision
+                ? other.registers
+                : foldRegisters(other.registers, other.precision, precision);
+        for (int i = 0; i < registers.length; i++) {
+            if (registers[i] < source[i]) {
+                registers[i] = source[i];
+            }
+        }
+        return this;
+    }
+
+    /** Tahmini tekil eleman sayısı. */
+    public long estimate() {
+        int q = 64 - precision;
+        int m = registers.length;
+        int[] histogram = new int[q + 2];
+        for (byte register : registers) {
+            histogram[register]++;
+        }
+        if (histogram[0] == m) {
+            return 0;
+        }
+
+        double z = m * tau(1.0 - (double) histogram[q + 1] / m);
+        for (int k = q; k >= 1; k--) {
+            z = 0.5 * (z + histogram[k]);
+        }
+        z += m * sigma((double) histogram[0] / m);
+        return Math.round(ALPHA_INF * m * ((double) m / z));
+    }
+
+    public boolean isEmpty() {
+        for (byte register : registers) {
+            if (register != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Sparse veya dense formatta (küçük olan) serileştirir. */
+    public byte[] toBytes() {
+        int nonZero = 0;
+        for (byte register : registers) {
+            if (register != 0) {
+                nonZero++;
+            }
+        }
+
+        if (nonZero * SPARSE_ENTRY_BYTES < registers.length) {
+            ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + nonZero * SPARSE_ENTRY_BYTES);
+            buffer.put(FORMAT_SPARSE).put((byte) precision);
+            for (int i = 0; i < registers.length; i++) {
+                if (registers[i] != 0) {
+                    int entry = (i << 6) | registers[i];
+                    buffer.put((byte) (entry >>> 16)).put((byte) (entry >>> 8)).put((byte) entry);
+                }
+            }
+            return buffer.array();
+        }
+
+        byte[] bytes = new byte[HEADER_BYTES + registers.length];
+        bytes[0] = FORMAT_DENSE;
+        bytes[1] = (byte) precision;
+        System.arraycopy(registers, 0, bytes, HEADER_BYTES, registers.length);
+        return bytes;
+    }
+
+    public static HyperLogLog fromBytes(byte[] bytes) {
+        if (bytes == null || bytes.length < HEADER_BYTES) {
+            throw new IllegalArgumentException("Invalid HLL sketch: too short");
+        }
+        int precision = bytes[1];
+        HyperLogLog sketch = new HyperLogLog(precision);
+        switch (bytes[0]) {
+            case FORMAT_DENSE -> {
+                if (bytes.length != HEADER_BYTES + sketch.registers.length) {
+                    throw new IllegalArgumentException("Invalid dense HLL sketch length: " + bytes.length);
+                }
+                System.arraycopy(bytes, HEADER_BYTES, sketch.registers, 0, sketch.registers.length);
+            }
+            case FORMAT_SPARSE -> {
+                if ((bytes.length - HEADER_BYTES) % SPARSE_ENTRY_BYTES != 0) {
+                    throw new IllegalArgumentException("Invalid sparse HLL sketch length: " + bytes.length);
+                }
+                for (int pos = HEADER_BYTES; pos < bytes.length; pos += SPARSE_ENTRY_BYTES) {
+                    int entry = (bytes[pos] & 0xff) << 16 | (bytes[pos + 1] & 0xff) << 8 | (bytes[pos + 2] & 0xff);
+                    sketch.registers[entry >>> 6] = (byte) (entry & 0x3f);
+                }
+            }
+            default -> throw new IllegalArgumentException("Unknown HLL sketch format: " + bytes[0]);
+        }
+        return sketch;
+    }
+
+    public HyperLogLog copy() {
+        return new HyperLogLog(precision, Arrays.copyOf(registers, registers.length));
+    }
+
+    /** Bu sketch'i daha düşük hassasiyete indirger. */
+    private void fold(int targetPrecision) {
+        registers = foldRegisters(registers, precision, targetPrecision);
+        precision = targetPrecision;
+    }
+
+    /**
+     * p' hassasiyetli register'ları p'ye indirger: index'in düşen (p'-p) biti yeni rank'ın önündeki bitler olur.
+     * Düşen bitlerde 1 varsa rank = o bitlerdeki öndeki sıfır + 1, yoksa rank = eski rank + (p'-p).
+     */
+    private static byte[] foldRegisters(byte[] source, int sourcePrecision, int targetPrecision) {
+        int shift = sourcePrecision - targetPrecision;
+        int lowMask = (1 << shift) - 1;
+        byte[] target = new byte[1 << targetPrecision];
+        for (int i = 0; i < source.length; i++) {
+            if (source[i] == 0) {
+                continue;
+            }
+            int dropped = i & lowMask;
+            int rank = dropped != 0
+                    ? Integer.numberOfLeadingZeros(dropped) - (32 - shift) + 1
+                    : source[i] + shift;
+            int index = i >>> shift;
+            if (target[index] < rank) {
+                target[index] = (byte) rank;
+            }
+        }
+        return target;
+    }
+
+    private static double sigma(double x) {
+        if (x == 1.0) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double y = 1.0;
+        double z = x;
+        double previous;
+        do {
+            x *= x;
+            previous = z;
+            z += x * y;
+            y += y;
+        } while (previous != z);
+        return z;
+    }
+
+    private static double tau(double x) {
+        if (x == 0.0 || x == 1.0) {
+            return 0.0;
+        }
+        double y = 1.0;
+        double z = 1.0 - x;
+        double previous;
+        do {
+            x = Math.sqrt(x);
+            previous = z;
+            y *= 0.5;
+            z -= Math.pow(1.0 - x, 2) * y;
+        } while (previous != z);
+        return z / 3.0;
+    }
+}
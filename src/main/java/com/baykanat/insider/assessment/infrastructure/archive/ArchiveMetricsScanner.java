@@ -0,0 +1,202 @@
+package com.baykanat.insider.assessment.infrastructure.archive;
+
+import com.baykanat.insider.assessment.config.AppProperties;
+import com.baykanat.insider.assessment.domain.hash.Murmur3;
+import com.baykanat.insider.assessment.domain.sketch.HyperLogLog;
+import com.baykanat.insider.assessment.infrastructure.archive.ColumnarEventReader.RowGroup;
+import com.baykanat.insider.assessment.infrastructure.archive.ColumnarEventWriter.RowGroupMeta;
+import com.baykanat.insider.assessment.infrastructure.archive.ColumnarFormat.Column;
+import com.baykanat.insider.assessment.infrastructure.persistence.MetricsCell;
+import com.baykanat.insider.assessment.infrastructure.persistence.MetricsJdbcRepository.SeriesSelection;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Arşivlenmiş günlerden saatlik metrik hücreleri hesaplar. Pencereyle kesişen gün dosyalarının row group'ları
+ * footer'daki event_timestamp, event_name_id ve channel_id min/max değerleriyle budanır; kalanlar scan-parallelism
+ * thread'de paralel çözülür. Yalnızca sorgunun ihtiyaç duyduğu dört sütun (event_name_id, channel_id, event_timestamp, user_id)
+ * açılır; tags, metadata ve idempotency_key okunmaz. Row group sonuçları tamamlandıkça birleştirilir; benzersiz
+ * kullanıcılar rollup'taki gibi hücre başına HyperLogLog ile sayılır, hücreler diğer katmanlarınkiyle birleşebilir.
+ */
+@Slf4j
+@Component
+public class ArchiveMetricsScanner implements DisposableBean {
+
+    private static final long SECONDS_PER_DAY = 86400;
+    private static final Set<Column> METRIC_COLUMNS =
+            Collections.unmodifiableSet(EnumSet.of(Column.EVENT_NAME_ID, Column.CHANNEL_ID, Column.EVENT_TIMESTAMP,
+                    Column.USER_ID));
+
+    private final EventArchiver archiver;
+    private final int hllPrecision;
+    private final ExecutorService executor;
+
+    public ArchiveMetricsScanner(EventArchiver archiver, AppProperties appProperties) {
+        this.archiver = archiver;
+        this.hllPrecision = appProperties.getMetrics().getHllPrecision();
+        this.executor = Executors.newFixedThreadPool(Math.max(1, appProperties.getArchive().getScanParallelism()),
+                Thread.ofPlatform().name("archive-scan-", 0).daemon().factory());
+    }
+
+    /** Arşivin kapsadığı aralığın sonu (epoch sn); arşiv kapalıysa veya boşsa null. */
+    public Long coverageEnd() {
+        return archiver.isEnabled() ? archiver.coverageEnd() : null;
+    }
+
+    /**
+     * [from, to) penceresinde arşivdeki hücreler (seri ve cellSeconds genişliğinde kova başına, kullanıcı sketch'iyle).
+     * Seçim channel'a göre bölünmüyorsa hücrelerin channel id'si 0'dır.
+     */
+    public List<MetricsCell> scanCells(SeriesSelection selection, long from, long to, long cellSeconds) {
+        if (from >= to) {
+            return List.of();
+        }
+        ScanFilter filter = new ScanFilter(Set.of(selection.eventNameIds()),
+                selection.byChannel() ? Set.of(selection.channelIds()) : null, from, to, cellSeconds);
+
+        long start = System.currentTimeMillis();
+        List<ColumnarEventReader> readers = new ArrayList<>();
+        try {
+            CompletionService<Map<CellKey, BucketAggregate>> completion = new ExecutorCompletionService<>(executor);
+            int tasks = 0;
+            int skipped = 0;
+            for (LocalDate day : archiver.archivedDays()) {
+                long dayStart = day.atStartOfDay(ZoneOffset.UTC).toEpochSecond();
+                if (dayStart >= to || dayStart + SECONDS_PER_DAY <= from) {
+                    continue;
+                }
+                ColumnarEventReader reader = open(archiver.fileFor(day));
+                readers.add(reader);
+                for (RowGroupMeta meta : reader.rowGroups()) {
+                    if (!filter.mayMatch(meta)) {
+                        skipped++;
+                        continue;
+                    }
+                    completion.submit(() -> scanRowGroup(reader, meta, filter));
+                    tasks++;
+                }
+            }
+
+            Map<CellKey, BucketAggregate> merged = new HashMap<>();
+            for (int i = 0; i < tasks; i++) {
+                completion.take().get().forEach((key, partial) -> merged.merge(key, partial, BucketAggregate::merge));
+            }
+            log.debug("Archive scan: {} files, {} row groups scanned, {} pruned, {} cells in {}ms",
+                    readers.size(), tasks, skipped, merged.size(), System.currentTimeMillis() - start);
+
+            List<MetricsCell> cells = new ArrayList<>(merged.size());
+            merged.forEach((key, bucket) -> cells.add(new MetricsCell(key.eventNameId(), key.channelId(),
+                    key.bucketStart(), bucket.totalCount, bucket.users.estimate(), bucket.users)));
+            return cells;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Archive scan interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Archive scan failed: " + e.getCause().getMessage(), e.getCause());
+        } finally {
+            readers.forEach(ArchiveMetricsScanner::closeQuietly);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    private Map<CellKey, BucketAggregate> scanRowGroup(ColumnarEventReader reader, RowGroupMeta meta,
+                                                       ScanFilter filter) throws IOException {
+        RowGroup group = reader.read(meta, METRIC_COLUMNS);
+        Map<CellKey, BucketAggregate> cells = new HashMap<>();
+        for (int i = 0; i < group.rows; i++) {
+            long timestamp = group.timestamps[i];
+            int eventNameId = group.eventNameIds[i];
+            int channelId = group.channelIds[i];
+            if (timestamp < filter.from() || timestamp >= filter.to()
+                    || !filter.eventNameIds().contains(eventNameId)
+                    || (filter.channelIds() != null && !filter.channelIds().contains(channelId))) {
+                continue;
+            }
+            CellKey key = new CellKey(eventNameId, filter.channelIds() != null ? channelId : 0,
+                    timestamp - Math.floorMod(timestamp, filter.cellSeconds()));
+            cells.computeIfAbsent(key, k -> new BucketAggregate(hllPrecision))
+                    .add(Murmur3.hash64(group.userIds[i]));
+        }
+        return cells;
+    }
+
+    private static ColumnarEventReader open(Path file) {
+        try {
+            return new ColumnarEventReader(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open archive file " + file, e);
+        }
+    }
+
+    private static void closeQuietly(ColumnarEventReader reader) {
+        try {
+            reader.close();
+        } catch (IOException e) {
+            log.debug("Closing archive file failed: {}", e.getMessage());
+        }
+    }
+
+    /** Sorgunun id kümeleri, penceresi ve hücre genişliği; channelIds null = channel'a göre bölünmez. */
+    private record ScanFilter(Set<Integer> eventNameIds, Set<Integer> channelIds, long from, long to,
+                              long cellSeconds) {
+
+        /** Footer istatistiklerine göre row group'ta eşleşen satır olabilir mi. */
+        private boolean mayMatch(RowGroupMeta meta) {
+            if (!meta.overlaps(Column.EVENT_TIMESTAMP, from, to - 1)) {
+                return false;
+            }
+            if (eventNameIds.stream().noneMatch(id -> meta.overlaps(Column.EVENT_NAME_ID, id, id))) {
+                return false;
+            }
+            return channelIds == null
+                    || channelIds.stream().anyMatch(id -> meta.overlaps(Column.CHANNEL_ID, id, id));
+        }
+    }
+
+    private record CellKey(int eventNameId, int channelId, long bucketStart) {
+    }
+
+    /** Bir hücrenin sayımı ve kullanıcı sketch'i; row group'lar arasında birleştirilir. */
+    private static final class BucketAggregate {
+        private final HyperLogLog users;
+        private long totalCount;
+
+        private BucketAggregate(int precision) {
+            this.users = new HyperLogLog(precision);
+        }
+
+        private void add(long userHash) {
+            totalCount++;
+            users.addHash(userHash);
+        }
+
+        private BucketAggregate merge(BucketAggregate other) {
+            totalCount += other.totalCount;
+            users.merge(other.users);
+            return this;
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package com.baykanat.insider.assessment.infrastructure.archive;
+
+import com.baykanat.insider.assessment.infrastructure.archive.ColumnarEventWriter.RowGroupMeta;
+import com.baykanat.insider.assessment.infrastructure.archive.ColumnarFormat.Column;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Arşiv dosyasını okur: footer açılışta okunur, row group'lar istenen sütunlarla (column pruning) ayrı ayrı çözülür.
+ * Okumalar konumsal (FileChannel.read(buffer, position)) olduğu için aynı dosyanın row group'ları farklı
+ * thread'lerde paralel çözülebilir.
+ */
+final class ColumnarEventReader implements AutoCloseable {
+
+    private final Path file;
+    private final FileChannel channel;
+    private final List<RowGroupMeta> rowGroups;
+
+    ColumnarEventReader(Path file) throws IOException {
+        this.file = file;
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            this.rowGroups = readFooter();
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    List<RowGroupMeta> rowGroups() {
+        return rowGroups;
+    }
+
+    /** Footer'a göre dosyadaki toplam satır sayısı. */
+    long rows() {
+        return rowGroups.stream().mapToLong(RowGroupMeta::rows).sum();
+    }
+
+    /** Row group'un yalnızca istenen sütunlarını çözer; diğer sütun dizileri null kalır. */
+    RowGroup read(RowGroupMeta meta, Set<Column> columns) throws IOException {
+        RowGroup group = new RowGroup(meta.rows());
+        for (Column column : columns) {
+            int c = column.ordinal();
+            ByteBuffer encoded = ByteBuffer.wrap(inflate(readFully(meta.offsets()[c], meta.lengths()[c])));
+            switch (column) {
+                case EVENT_NAME_ID -> group.eventNameIds = decodeRle(encoded, meta.rows());
+                case CHANNEL_ID -> group.channelIds = decodeRle(encoded, meta.rows());
+                case CAMPAIGN_ID -> group.campaignIds = decodeRle(encoded, meta.rows());
+                case EVENT_TIMESTAMP -> group.timestamps = decodeDelta(encoded, meta.rows());
+                case USER_ID -> group.userIds = decodeStrings(encoded, meta.rows());
+                case TAGS -> group.tags = decodeStrings(encoded, meta.rows());
+                case METADATA -> group.metadata = decodeStrings(encoded, meta.rows());
+                case IDEMPOTENCY_KEY -> group.keys = decodeUuids(encoded, meta.rows());
+            }
+        }
+        return group;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private List<RowGroupMeta> readFooter() throws IOException {
+        long size = channel.size();
+        if (size < ColumnarFormat.MAGIC.length + ColumnarFormat.TRAILER_BYTES) {
+            throw new IOException("Not an archive file (too short): " + file);
+        }
+        ByteBuffer trailer = ByteBuffer.wrap(readFully(size - ColumnarFormat.TRAILER_BYTES,
+                ColumnarFormat.TRAILER_BYTES));
+        long footerOffset = trailer.getLong();
+        byte[] magic = new byte[ColumnarFormat.MAGIC.length];
+        trailer.get(magic);
+        if (!Arrays.equals(magic, ColumnarFormat.MAGIC)) {
+            throw new IOException("Not an archive file (bad magic): " + file);
+        }
+
+        ByteBuffer footer = ByteBuffer.wrap(readFully(footerOffset,
+                (int) (size - ColumnarFormat.TRAILER_BYTES - footerOffset)));
+        int columnCount = footer.getInt();
+        if (columnCount != Column.values().length) {
+            throw new IOException("Unsupported archive column count " + columnCount + ": " + file);
+        }
+        int groupCount = footer.getInt();
+        List<RowGroupMeta> groups = new ArrayList<>(groupCount);
+        for (int g = 0; g < groupCount; g++) {
+            int rows = footer.getInt();
+            long[] offsets = new long[columnCount];
+            int[] lengths = new int[columnCount];
+            long[] mins = new long[columnCount];
+            long[] maxs = new long[columnCount];
+            for (int c = 0; c < columnCount; c++) {
+                offsets[c] = footer.getLong();
+                lengths[c] = footer.getInt();
+                mins[c] = footer.getLong();
+                maxs[c] = footer.getLong();
+            }
+            groups.add(new RowGroupMeta(rows, offsets, lengths, mins, maxs));
+        }
+        return List.copyOf(groups);
+    }
+
+    private byte[] readFully(long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, position + buffer.position());
+            if (n < 0) {
+                throw new IOException("Unexpected end of archive file: " + file);
+            }
+        }
+        return buffer.array();
+    }
+
+    private static byte[] inflate(byte[] compressed) throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            byte[] output = new byte[Math.max(64, compressed.length * 4)];
+            int length = 0;
+            while (!inflater.finished()) {
+                if (length == output.length) {
+                    output = Arrays.copyOf(output, output.length * 2);
+                }
+                int n = inflater.inflate(output, length, output.length - length);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IOException("Truncated archive column chunk");
+                }
+                length += n;
+            }
+            return Arrays.copyOf(output, length);
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt archive column chunk", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static int[] decodeRle(ByteBuffer in, int rows) {
+        int[] values = new int[rows];
+        int i = 0;
+        while (i < rows) {
+            int value = (int) ColumnarFormat.unzigzag(ColumnarFormat.readVarLong(in));
+            int run = (int) ColumnarFormat.readVarLong(in);
+            Arrays.fill(values, i, i + run, value);
+            i += run;
+        }
+        return values;
+    }
+
+    private static long[] decodeDelta(ByteBuffer in, int rows) {
+        long[] values = new long[rows];
+        long previous = 0;
+        for (int i = 0; i < rows; i++) {
+            previous += ColumnarFormat.unzigzag(ColumnarFormat.readVarLong(in));
+            values[i] = previous;
+        }
+        return values;
+    }
+
+    private static String[] decodeStrings(ByteBuffer in, int rows) {
+        String[] values = new String[rows];
+        for (int i = 0; i < rows; i++) {
+            values[i] = ColumnarFormat.readString(in);
+        }
+        return values;
+    }
+
+    private static UUID[] decodeUuids(ByteBuffer in, int rows) {
+        UUID[] values = new UUID[rows];
+        for (int i = 0; i < rows; i++) {
+            values[i] = new UUID(in.getLong(), in.getLong());
+        }
+        return values;
+    }
+
+    /** Çözülmüş row group; istenmeyen sütunlar null. Boş channel/campaign id'leri 0. */
+    static final class RowGroup {
+        final int rows;
+        int[] eventNameIds;
+        int[] channelIds;
+        int[] campaignIds;
+        long[] timestamps;
+        String[] userIds;
+        String[] tags;
+        String[] metadata;
+        UUID[] keys;
+
+        private RowGroup(int rows) {
+            this.rows = rows;
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package com.baykanat.insider.assessment.infrastructure.archive;
+
+import com.baykanat.insider.assessment.infrastructure.archive.ColumnarFormat.Column;
+import com.baykanat.insider.assessment.infrastructure.persistence.EventJdbcRepository.EventRow;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.Deflater;
+
+/**
+ * Satırları row group'lar halinde biriktirip sütun sütun kodlar, sıkıştırır ve dosyaya yazar; close() footer'ı
+ * ekler. Dosya CREATE_NEW ile açılır: var olan bir dosyanın (başka yazarın) üzerine asla yazılmaz. Bellekte yalnızca bir row group tutulur. Satırlar (event_name_id, channel_id, event_timestamp) sırasıyla
+ * verilmelidir; aksi halde dosya yine doğrudur ama RLE ve min/max budaması etkisiz kalır.
+ */
+final class ColumnarEventWriter implements AutoCloseable {
+
+    private static final int COLUMN_COUNT = Column.values().length;
+
+    private final DataOutputStream out;
+    private final int rowGroupSize;
+    private final List<RowGroupMeta> rowGroups = new ArrayList<>();
+    private final Deflater deflater = new Deflater();
+
+    private final int[] eventNameIds;
+    private final int[] channelIds;
+    private final int[] campaignIds;
+    private final long[] timestamps;
+    private final String[] userIds;
+    private final String[] tags;
+    private final String[] metadata;
+    private final UUID[] keys;
+    private int buffered;
+    private long position;
+    private long rows;
+
+    ColumnarEventWriter(Path file, int rowGroupSize) throws IOException {
+        this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE), 1 << 16));
+        this.rowGroupSize = rowGroupSize;
+        this.eventNameIds = new int[rowGroupSize];
+        this.channelIds = new int[rowGroupSize];
+        this.campaignIds = new int[rowGroupSize];
+        this.timestamps = new long[rowGroupSize];
+        this.userIds = new String[rowGroupSize];
+        this.tags = new String[rowGroupSize];
+        this.metadata = new String[rowGroupSize];
+        this.keys = new UUID[rowGroupSize];
+        write(ColumnarFormat.MAGIC);
+    }
+
+    void append(EventRow row) throws IOException {
+        eventNameIds[buffered] = row.eventNameId();
+        channelIds[buffered] = row.channelId();
+        campaignIds[buffered] = row.campaignId();
+        timestamps[buffered] = row.eventTimestamp();
+        userIds[buffered] = row.userId();
+        tags[buffered] = row.tags();
+        metadata[buffered] = row.metadata();
+        keys[buffered] = row.idempotencyKey();
+        buffered++;
+        rows++;
+        if (buffered == rowGroupSize) {
+            flushRowGroup();
+        }
+    }
+
+    long rows() {
+        return rows;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (buffered > 0) {
+                flushRowGroup();
+            }
+            long footerOffset = position;
+            out.writeInt(COLUMN_COUNT);
+            out.writeInt(rowGroups.size());
+            for (RowGroupMeta group : rowGroups) {
+                out.writeInt(group.rows());
+                for (int c = 0; c < COLUMN_COUNT; c++) {
+                    out.writeLong(group.offsets()[c]);
+                    out.writeInt(group.lengths()[c]);
+                    out.writeLong(group.mins()[c]);
+                    out.writeLong(group.maxs()[c]);
+                }
+            }
+            out.writeLong(footerOffset);
+            out.write(ColumnarFormat.MAGIC);
+        } finally {
+            deflater.end();
+            out.close();
+        }
+    }
+
+    private void flushRowGroup() throws IOException {
+        long[] offsets = new long[COLUMN_COUNT];
+        int[] lengths = new int[COLUMN_COUNT];
+        long[] mins = new long[COLUMN_COUNT];
+        long[] maxs = new long[COLUMN_COUNT];
+        for (Column column : Column.values()) {
+            ByteArrayOutputStream encoded = new ByteArrayOutputStream(buffered * 4);
+            long[] stats = encode(column, encoded);
+            byte[] compressed = compress(encoded.toByteArray());
+            int c = column.ordinal();
+            offsets[c] = position;
+            lengths[c] = compressed.length;
+            mins[c] = stats[0];
+            maxs[c] = stats[1];
+            write(compressed);
+        }
+        rowGroups.add(new RowGroupMeta(buffered, offsets, lengths, mins, maxs));
+        buffered = 0;
+    }
+
+    /** Sütunu kodlar; sayısal sütunlar için [min, max], diğerleri için [0, 0] döner. */
+    private long[] encode(Column column, ByteArrayOutputStream encoded) {
+        return switch (column) {
+            case EVENT_NAME_ID -> encodeRle(eventNameIds, encoded);
+            case CHANNEL_ID -> encodeRle(channelIds, encoded);
+            case CAMPAIGN_ID -> encodeRle(campaignIds, encoded);
+            case EVENT_TIMESTAMP -> encodeDelta(timestamps, encoded);
+            case USER_ID -> encodeStrings(userIds, encoded);
+            case TAGS -> encodeStrings(tags, encoded);
+            case METADATA -> encodeStrings(metadata, encoded);
+            case IDEMPOTENCY_KEY -> encodeUuids(encoded);
+        };
+    }
+
+    private long[] encodeRle(int[] values, ByteArrayOutputStream encoded) {
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        int i = 0;
+        while (i < buffered) {
+            int value = values[i];
+            int run = 1;
+            while (i + run < buffered && values[i + run] == value) {
+                run++;
+            }
+            ColumnarFormat.writeVarLong(encoded, ColumnarFormat.zigzag(value));
+            ColumnarFormat.writeVarLong(encoded, run);
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+            i += run;
+        }
+        return new long[]{min, max};
+    }
+
+    private long[] encodeDelta(long[] values, ByteArrayOutputStream encoded) {
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        long previous = 0;
+        for (int i = 0; i < buffered; i++) {
+            ColumnarFormat.writeVarLong(encoded, ColumnarFormat.zigzag(values[i] - previous));
+            previous = values[i];
+            min = Math.min(min, values[i]);
+            max = Math.max(max, values[i]);
+        }
+        return new long[]{min, max};
+    }
+
+    private long[] encodeStrings(String[] values, ByteArrayOutputStream encoded) {
+        for (int i = 0; i < buffered; i++) {
+            ColumnarFormat.writeString(encoded, values[i]);
+            values[i] = null;
+        }
+        return new long[]{0, 0};
+    }
+
+    private long[] encodeUuids(ByteArrayOutputStream encoded) {
+        byte[] bytes = new byte[16];
+        for (int i = 0; i < buffered; i++) {
+            long msb = keys[i].getMostSignificantBits();
+            long lsb = keys[i].getLeastSignificantBits();
+            for (int b = 0; b < 8; b++) {
+                bytes[b] = (byte) (msb >>> (56 - 8 * b));
+                bytes[8 + b] = (byte) (lsb >>> (56 - 8 * b));
+            }
+            encoded.write(bytes, 0, bytes.length);
+            keys[i] = null;
+        }
+        return new long[]{0, 0};
+    }
+
+    private byte[] compress(byte[] input) {
+        deflater.reset();
+        deflater.setInput(input);
+        deflater.finish();
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(Math.max(64, input.length / 4));
+        byte[] chunk = new byte[1 << 16];
+        while (!deflater.finished()) {
+            int n = deflater.deflate(chunk);
+            compressed.write(chunk, 0, n);
+        }
+        return compressed.toByteArray();
+    }
+
+    private void write(byte[] bytes) throws IOException {
+        out.write(bytes);
+        position += bytes.length;
+    }
+
+    /** Row group'un footer kaydı: satır sayısı ve sütun başına chunk konumu ve min/max. */
+    record RowGroupMeta(int rows, long[] offsets, int[] lengths, long[] mins, long[] maxs) {
+
+        /** Sütunun [min, max] aralığı verilen aralıkla kesişiyor mu (kesişmiyorsa row group atlanabilir). */
+        boolean overlaps(Column column, long from, long to) {
+            int c = column.ordinal();
+            return mins[c] <= to && maxs[c] >= from;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.baykanat.insider.assessment.infrastructure.archive;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Arşiv dosyası (.evcol) formatı: events partition'ının sütun bazlı, sıkıştırılmış kopyası.
+ *
+ * <pre>
+ * "EVCOL1\n\0"
+ * row group 1: sütun 1 chunk'ı, sütun 2 chunk'ı, ...
+ * row group 2: ...
+ * footer: sütun sayısı, row group sayısı; row group başına satır sayısı ve sütun başına (offset, uzunluk, min, max)
+ * footer offset (8 bayt) + "EVCOL1\n\0"
+ * </pre>
+ *
+ * Her chunk sütunun kodlamasıyla yazılıp Deflate ile sıkıştırılır. Satırlar (event_name_id, channel_id,
+ * event_timestamp) sırasıyla yazıldığı için id sütunları uzun tekrarlar (RLE), zaman damgaları küçük farklar (delta +
+ * zigzag varint) olur. Sayısal sütunların min/max istatistikleri okuyucunun row group atlamasını sağlar.
+ */
+final class ColumnarFormat {
+
+    static final byte[] MAGIC = {'E', 'V', 'C', 'O', 'L', '1', '\n', 0};
+
+    /** Footer'ı dosya sonundan bulmak için: footer offset + magic. */
+    static final int TRAILER_BYTES = Long.BYTES + MAGIC.length;
+
+    private ColumnarFormat() {
+    }
+
+    enum Encoding {
+        /** (değer, tekrar sayısı) çiftleri, ikisi de varint. */
+        INT_RLE,
+        /** İlk değer ve ardışık farklar, zigzag varint. */
+        LONG_DELTA,
+        /** Değer başına varint (bayt uzunluğu + 1; 0 = null) ve UTF-8 baytlar. */
+        STRING,
+        /** Değer başına 16 bayt (msb, lsb). */
+        UUID
+    }
+
+    /** Arşivlenen sütunlar; sıra dosyadaki sıradır. Boş id'ler 0 yazılır (sözlük id'leri 1'den başlar). */
+    enum Column {
+        EVENT_NAME_ID(Encoding.INT_RLE),
+        CHANNEL_ID(Encoding.INT_RLE),
+        CAMPAIGN_ID(Encoding.INT_RLE),
+        EVENT_TIMESTAMP(Encoding.LONG_DELTA),
+        USER_ID(Encoding.STRING),
+        TAGS(Encoding.STRING),
+        METADATA(Encoding.STRING),
+        IDEMPOTENCY_KEY(Encoding.UUID);
+
+        final Encoding encoding;
+
+        Column(Encoding encoding) {
+            this.encoding = encoding;
+        }
+    }
+
+    static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    static long readVarLong(ByteBuffer in) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    static void writeString(ByteArrayOutputStream out, String value) {
+        if (value == null) {
+            writeVarLong(out, 0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(out, bytes.length + 1L);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    static String readString(ByteBuffer in) {
+        int length = (int) readVarLong(in) - 1;
+        if (length < 0) {
+            return null;
+        }
+        String value = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return value;
+    }
+}
@@ -0,0 +1,207 @@
+package com.baykanat.insider.assessment.infrastructure.archive;
+
+import com.baykanat.insider.assessment.config.AppProperties;
+import com.baykanat.insider.assessment.infrastructure.persistence.EventJdbcRepository;
+import com.baykanat.insider.assessment.infrastructure.persistence.PartitionJdbcRepository;
+import com.baykanat.insider.assessment.infrastructure.persistence.PartitionJdbcRepository.PartitionInfo;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.Collections;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Soğuk katman: events partition'larının günlerini app.archive.directory altında events_YYYY_MM_DD.evcol dosyalarına
+ * yazar ve arşivlenmiş günlerin kataloğunu dizinden okur.
+ *
+ * <p>Dosya önce bu yazıma özel (UUID'li, CREATE_NEW ile açılan) bir .tmp dosyasına yazılır, satır sayısı okumanın
+ * snapshot'ındaki sayıyla karşılaştırılır ve ATOMIC_MOVE ile yerine taşınır; yarım dosya asla katalogda görünmez.
+ * Taşımadan önce ve sonra dosya yeniden açılır; footer'daki satır sayısı snapshot'la eşleşmezse dosya silinir, gün
+ * arşivlenmemiş sayılır (partition silinmez). Aynı günün dosyası zaten varsa yeniden yazılmaz (bakım tekrar
+ * çalıştığında). archive yalnızca PartitionMaintenanceScheduler'dan, bakımın cluster çapındaki advisory lock'u
+ * altında çağrılır: paylaşımlı dizine aynı anda tek instance yazar, bu yüzden günün önceki çalışmalardan kalan .tmp
+ * dosyaları yarıda kalmış yazımlardır ve silinir.
+ *
+ * <p>Katalog her sorguda dizini listelemek yerine süreç içinde tutulur: bu instance bir gün arşivlediğinde hemen,
+ * paylaşımlı dizinde başka instance'ın arşivlediği günler en geç app.archive.catalog-refresh sonra yeniden okunur. Arşivlenen gün, partition'ı tüm instance'lar katalogu yenileyene
+ * kadar silinmediği sürece (hot-retention-days bunu günlerle aşar) hiçbir sorguda kaybolmaz.
+ */
+@Slf4j
+@Component
+public class EventArchiver {
+
+    static final String FILE_SUFFIX = ".evcol";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final Pattern FILE_NAME = Pattern.compile("events_(\\d{4})_(\\d{2})_(\\d{2})\\.evcol");
+
+    private final EventJdbcRepository eventRepository;
+    private final AppProperties.ArchiveProperties properties;
+
+    /** Dizinden son okunan katalog; null = bir sonraki çağrıda yeniden oku. */
+    private volatile Catalog catalog;
+
+    public EventArchiver(EventJdbcRepository eventRepository, AppProperties appProperties) {
+        this.eventRepository = eventRepository;
+        this.properties = appProperties.getArchive();
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    /**
+     * Partition'ın kapsadığı her günü arşivler; tümü başarıyla arşivlendiyse (veya zaten arşivdeyse) true.
+     * Sınırsız (DEFAULT) partition arşivlenmez. Hata loglanır ve false döner; partition silinmemelidir.
+     */
+    public boolean archive(PartitionInfo partition) {
+        if (partition.from() == null || partition.to() == null) {
+            return false;
+        }
+        try {
+            Files.createDirectories(directory());
+            for (LocalDate day = partition.from(); day.isBefore(partition.to()); day = day.plusDays(1)) {
+                if (!archiveDay(day)) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (IOException | UncheckedIOException e) {
+            log.error("Archiving partition {} failed: {}", partition.name(), e.getMessage(), e);
+            return false;
+        }
+    }
+
+    /** Arşivlenmiş günler, eskiden yeniye (değiştirilemez); katalog catalog-refresh süresince önbellekten döner. */
+    public NavigableSet<LocalDate> archivedDays() {
+        Catalog current = catalog;
+        long now = System.nanoTime();
+        if (current == null || now - current.loadedAt() >= properties.getCatalogRefresh().toNanos()) {
+            current = new Catalog(Collections.unmodifiableNavigableSet(listArchivedDays()), now);
+            catalog = current;
+        }
+        return current.days();
+    }
+
+    /** Arşivin kapsadığı aralığın sonu (en yeni arşiv gününden sonraki gece yarısı, epoch sn); arşiv boşsa null. */
+    public Long coverageEnd() {
+        NavigableSet<LocalDate> days = archivedDays();
+        return days.isEmpty() ? null : days.last().plusDays(1).atStartOfDay(ZoneOffset.UTC).toEpochSecond();
+    }
+
+    Path fileFor(LocalDate day) {
+        return directory().resolve(PartitionJdbcRepository.dailyPartitionName("events", day) + FILE_SUFFIX);
+    }
+
+    private boolean archiveDay(LocalDate day) throws IOException {
+        Path target = fileFor(day);
+        if (Files.exists(target)) {
+            catalog = null;
+            return true;
+        }
+        deleteStaleTempFiles(target);
+        Path temp = target.resolveSibling(target.getFileName() + "." + UUID.randomUUID() + TEMP_SUFFIX);
+        long start = System.currentTimeMillis();
+        long written;
+        long expected;
+        try (ColumnarEventWriter writer = new ColumnarEventWriter(temp, properties.getRowGroupSize())) {
+            expected = eventRepository.streamDay(day, row -> {
+                try {
+                    writer.append(row);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            written = writer.rows();
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+
+        if (written != expected) {
+            Files.deleteIfExists(temp);
+            log.warn("Archive of {} skipped: wrote {} rows but the partition snapshot has {}; retrying next run",
+                    day, written, expected);
+            return false;
+        }
+        long stored = storedRows(temp);
+        if (stored == expected) {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+            stored = storedRows(target);
+        }
+        catalog = null;
+        if (stored != expected) {
+            Files.deleteIfExists(temp);
+            Files.deleteIfExists(target);
+            log.warn("Archive of {} discarded: the file footer has {} rows but the partition snapshot has {}; "
+                    + "retrying next run", day, stored, expected);
+            return false;
+        }
+        log.info("Archived events of {} to {} ({} rows, {} bytes) in {}ms",
+                day, target, written, Files.size(target), System.currentTimeMillis() - start);
+        return true;
+    }
+
+    /** Yerine taşınmış dosyanın footer'ındaki satır sayısı; okunamıyorsa -1 (dosya bozuk). */
+    private static long storedRows(Path file) {
+        try (ColumnarEventReader reader = new ColumnarEventReader(file)) {
+            return reader.rows();
+        } catch (IOException | RuntimeException e) {
+            log.warn("Reading back archive file {} failed: {}", file, e.getMessage());
+            return -1;
+        }
+    }
+
+    /** Günün önceki (yarıda kalmış) yazımlarından kalan .tmp dosyalarını siler; bakım kilidi altında güvenlidir. */
+    private static void deleteStaleTempFiles(Path target) throws IOException {
+        String prefix = target.getFileName() + ".";
+        try (Stream<Path> files = Files.list(target.getParent())) {
+            for (Path file : files.toList()) {
+                String name = file.getFileName().toString();
+                if (name.startsWith(prefix) && name.endsWith(TEMP_SUFFIX)) {
+                    Files.deleteIfExists(file);
+                    log.info("Deleted stale archive temp file {}", file);
+                }
+            }
+        }
+    }
+
+    private NavigableSet<LocalDate> listArchivedDays() {
+        NavigableSet<LocalDate> days = new TreeSet<>();
+        Path directory = directory();
+        if (!Files.isDirectory(directory)) {
+            return days;
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            files.forEach(file -> {
+                Matcher matcher = FILE_NAME.matcher(file.getFileName().toString());
+                if (matcher.matches()) {
+                    days.add(LocalDate.of(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2)),
+                            Integer.parseInt(matcher.group(3))));
+                }
+            });
+        } catch (IOException e) {
+            log.warn("Listing archive directory {} failed: {}", directory, e.getMessage());
+        }
+        return days;
+    }
+
+    private Path directory() {
+        return Paths.get(properties.getDirectory());
+    }
+
+    private record Catalog(NavigableSet<LocalDate> days, long loadedAt) {
+    }
+}
@@ -0,0 +1,281 @@
+package com.baykanat.insider.assessment.infrastructure.kafka;
+
+import com.baykanat.insider.assessment.api.dto.EventRequest;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.kafka.common.errors.SerializationException;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * EventRequest için kompakt binary Kafka formatı.
+ *
+ * <p>Düzen: {@code 0x00} magic, şema versiyonu, ardından yalnızca dolu alanlar için
+ * {@code varint alan-no | varint uzunluk | değer}. String'ler UTF-8, timestamp zigzag varlong, tags
+ * {@code varint adet + (varint uzunluk + UTF-8)*}, metadata serbest yapılı olduğu için JSON bayt. JSON metin hiçbir
+ * zaman 0x00 ile başlamadığından okuyucu iki formatı ilk bayttan ayırt eder.
+ *
+ * <p>Şema evrimi: yeni alan yeni alan numarasıyla eklenir; eski okuyucu bilinmeyen alanı uzunluğu kadar atlar, yeni
+ * okuyucu eksik alanı null bırakır. Alan numarası yeniden kullanılmaz. Versiyon yalnızca geriye uyumsuz değişiklikte
+ * artar; okuyucu tanımadığı versiyonu reddeder.
+ */
+public final class EventBinaryCodec {
+
+    static final byte MAGIC = 0x00;
+    static final byte VERSION = 1;
+
+    static final int FIELD_EVENT_NAME = 1;
+    static final int FIELD_USER_ID = 2;
+    static final int FIELD_TIMESTAMP = 3;
+    static final int FIELD_CHANNEL = 4;
+    static final int FIELD_CAMPAIGN_ID = 5;
+    static final int FIELD_TAGS = 6;
+    static final int FIELD_METADATA = 7;
+
+    private static final ObjectMapper METADATA_MAPPER = new ObjectMapper();
+    private static final TypeReference<Map<String, Object>> METADATA_TYPE = new TypeReference<>() {
+    };
+    private static final ThreadLocal<Writer> WRITERS = ThreadLocal.withInitial(Writer::new);
+
+    private EventBinaryCodec() {
+    }
+
+    /** İlk bayt magic ise binary formattır (JSON metin 0x00 ile başlamaz). */
+    public static boolean isBinary(byte[] data) {
+        return data != null && data.length > 1 && data[0] == MAGIC;
+    }
+
+    public static byte[] encode(EventRequest event) {
+        Writer out = WRITERS.get();
+        out.reset();
+        out.writeByte(MAGIC);
+        out.writeByte(VERSION);
+        out.writeString(FIELD_EVENT_NAME, event.getEventName());
+        out.writeString(FIELD_USER_ID, event.getUserId());
+        if (event.getTimestamp() != null) {
+            out.writeVarLongField(FIELD_TIMESTAMP, event.getTimestamp());
+        }
+        out.writeString(FIELD_CHANNEL, event.getChannel());
+        out.writeString(FIELD_CAMPAIGN_ID, event.getCampaignId());
+        if (event.getTags() != null) {
+            out.writeTags(event.getTags());
+        }
+        if (event.getMetadata() != null) {
+            try {
+                out.writeBytes(FIELD_METADATA, METADATA_MAPPER.writeValueAsBytes(event.getMetadata()));
+            } catch (IOException e) {
+                throw new SerializationException("Cannot encode event metadata", e);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    public static EventRequest decode(byte[] data) {
+        if (!isBinary(data)) {
+            throw new SerializationException("Not a binary event record");
+        }
+        if (data[1] != VERSION) {
+            throw new SerializationException("Unsupported binary event version " + data[1]);
+        }
+        Reader in = new Reader(data, 2);
+        EventRequest event = new EventRequest();
+        while (in.hasRemaining()) {
+            int field = in.readVarInt();
+            int length = in.readVarInt();
+            int end = in.limit(length);
+            switch (field) {
+                case FIELD_EVENT_NAME -> event.setEventName(in.readString(length));
+                case FIELD_USER_ID -> event.setUserId(in.readString(length));
+                case FIELD_TIMESTAMP -> event.setTimestamp(in.readZigZagLong());
+                case FIELD_CHANNEL -> event.setChannel(in.readString(length));
+                case FIELD_CAMPAIGN_ID -> event.setCampaignId(in.readString(length));
+                case FIELD_TAGS -> event.setTags(in.readTags(end));
+                case FIELD_METADATA -> event.setMetadata(in.readMetadata(length));
+                default -> {
+                    // Daha yeni şemanın alanı: atla
+                }
+            }
+            in.position(end);
+        }
+        return event;
+    }
+
+    /** Thread başına yeniden kullanılan büyüyen buffer. */
+    private static final class Writer {
+        private byte[] buffer = new byte[256];
+        private int size;
+
+        void reset() {
+            size = 0;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, size);
+        }
+
+        void writeByte(int b) {
+            ensure(1);
+            buffer[size++] = (byte) b;
+        }
+
+        void writeVarInt(int value) {
+            ensure(5);
+            while ((value & ~0x7F) != 0) {
+                buffer[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[size++] = (byte) value;
+        }
+
+        void writeVarLong(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                buffer[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[size++] = (byte) value;
+        }
+
+        void writeString(int field, String value) {
+            if (value != null) {
+                writeBytes(field, value.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+
+        void writeBytes(int field, byte[] value) {
+            writeVarInt(field);
+            writeVarInt(value.length);
+            writeRaw(value);
+        }
+
+        void writeVarLongField(int field, long value) {
+            writeVarInt(field);
+            int lengthAt = size;
+            writeByte(0);
+            writeVarLong((value << 1) ^ (value >> 63));
+            buffer[lengthAt] = (byte) (size - lengthAt - 1);
+        }
+
+        void writeTags(List<String> tags) {
+            byte[][] encoded = new byte[tags.size()][];
+            int length = varIntSize(tags.size());
+            for (int i = 0; i < encoded.length; i++) {
+                encoded[i] = tags.get(i) != null ? tags.get(i).getBytes(StandardCharsets.UTF_8) : new byte[0];
+                length += varIntSize(encoded[i].length) + encoded[i].length;
+            }
+            writeVarInt(FIELD_TAGS);
+            writeVarInt(length);
+            writeVarInt(encoded.length);
+            for (byte[] tag : encoded) {
+                writeVarInt(tag.length);
+                writeRaw(tag);
+            }
+        }
+
+        private void writeRaw(byte[] value) {
+            ensure(value.length);
+            System.arraycopy(value, 0, buffer, size, value.length);
+            size += value.length;
+        }
+
+        private void ensure(int extra) {
+            if (size + extra > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + extra));
+            }
+        }
+
+        private static int varIntSize(int value) {
+            int bytes = 1;
+            while ((value & ~0x7F) != 0) {
+                bytes++;
+                value >>>= 7;
+            }
+            return bytes;
+        }
+    }
+
+    private static final class Reader {
+        private final byte[] data;
+        private int position;
+
+        Reader(byte[] data, int position) {
+            this.data = data;
+            this.position = position;
+        }
+
+        boolean hasRemaining() {
+            return position < data.length;
+        }
+
+        /** Alanın bitiş konumu; uzunluk kaydı aşıyorsa hata. */
+        int limit(int length) {
+            if (length < 0 || length > data.length - position) {
+                throw new SerializationException("Truncated binary event record");
+            }
+            return position + length;
+        }
+
+        void position(int position) {
+            this.position = position;
+        }
+
+        int readVarInt() {
+            return (int) readVarLong(5);
+        }
+
+        long readZigZagLong() {
+            long raw = readVarLong(10);
+            return (raw >>> 1) ^ -(raw & 1);
+        }
+
+        String readString(int length) {
+            String value = new String(data, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+
+        List<String> readTags(int end) {
+            int count = readVarInt();
+            if (count > end - position) {
+                throw new SerializationException("Invalid tag count " + count);
+            }
+            List<String> tags = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                int length = readVarInt();
+                if (length < 0 || length > end - position) {
+                    throw new SerializationException("Truncated binary event record");
+                }
+                tags.add(readString(length));
+            }
+            return tags;
+        }
+
+        Map<String, Object> readMetadata(int length) {
+            try {
+                return METADATA_MAPPER.readValue(data, position, length, METADATA_TYPE);
+            } catch (IOException e) {
+                throw new SerializationException("Cannot decode event metadata", e);
+            }
+        }
+
+        private long readVarLong(int maxBytes) {
+            long value = 0;
+            for (int i = 0; i < maxBytes; i++) {
+                if (position >= data.length) {
+                    throw new SerializationException("Truncated binary event record");
+                }
+                byte b = data[position++];
+                value |= (long) (b & 0x7F) << (7 * i);
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new SerializationException("Malformed varint in binary event record");
+        }
+    }
+}
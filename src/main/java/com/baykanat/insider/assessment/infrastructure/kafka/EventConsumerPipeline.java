@@ -0,0 +1,284 @@
+package com.baykanat.insider.assessment.infrastructure.kafka;
+
+import com.baykanat.insider.assessment.api.dto.EventRequest;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.kafka.support.Acknowledgment;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Tek listener thread'inin poll'larını üç aşamada işler: decode (deserialize + idempotency key), dedup (inbox
+ * önbelleği/sorgusu) ve persist (inbox + events + rollup transaction'ları). Her aşama kendi thread'inde çalışır,
+ * aşamalar sınırlı kuyruklarla bağlıdır; poll N yazılırken poll N+1 çözülür ve dedup edilir. Kuyruk dolunca listener
+ * bekler.
+ *
+ * <p>Aşamalar FIFO olduğundan persist poll'ları geliş sırasıyla biter ve ack o sırayla yapılır; commit edilen
+ * offset'ler hep kesintisiz bir aralıktır. Dedup'tan geçip henüz yazılmamış key'ler in-flight tutulur; sonraki poll'da
+ * tekrar eden key yeni sayılmaz. Bir aşama hata verirse ack'lenmemiş tüm poll'lar atılır ve partition başına en eski
+ * offset'leri geri sarım için saklanır; listener bir sonraki çağrıda bunlara seek eder ve hatayı container'ın hata
+ * işleyicisine iletir.
+ */
+@Slf4j
+final class EventConsumerPipeline implements AutoCloseable {
+
+    /** Aşama işleri; EventKafkaConsumer sağlar. */
+    interface Stages {
+        /** Kayıtları çözer, partition başına key → event döner; çözülemeyenler DLT'ye gider. */
+        Map<Integer, Map<UUID, EventRequest>> decode(List<ConsumerRecord<String, Object>> records);
+
+        /** Partition'ın inbox'ında olan key'ler. */
+        Set<UUID> findExistingKeys(int partition, Collection<UUID> keys);
+
+        /** Dedup'ta elenen event sayısı (inbox'ta olan veya in-flight key). */
+        void countDuplicates(int partition, int count);
+
+        /** Yeni event'leri yazar (partition başına transaction); eklenen sayıyı döner. receivedNanos: submit anı. */
+        int persist(Map<Integer, Map<UUID, EventRequest>> newEvents, long receivedNanos);
+    }
+
+    private final Stages stages;
+    private final BlockingQueue<Batch> decodeQueue;
+    private final BlockingQueue<Batch> dedupQueue;
+    private final BlockingQueue<Batch> persistQueue;
+    private final Map<Integer, Set<UUID>> inFlightKeys = new ConcurrentHashMap<>();
+    private final Map<TopicPartition, Long> rewind = new HashMap<>();
+    private final List<Thread> threads;
+
+    private volatile boolean running = true;
+    private volatile Throwable failure;
+    private int pending;
+
+    /** registry null ise (app.observability.enabled=false) aşama meter'ları kaydedilmez. */
+    EventConsumerPipeline(String name, Stages stages, int queueCapacity, MeterRegistry registry) {
+        this.stages = stages;
+        this.decodeQueue = new ArrayBlockingQueue<>(queueCapacity);
+        this.dedupQueue = new ArrayBlockingQueue<>(queueCapacity);
+        this.persistQueue = new ArrayBlockingQueue<>(queueCapacity);
+        this.threads = List.of(
+                startStage(name, "decode", decodeQueue, dedupQueue, this::decode, registry),
+                startStage(name, "dedup", dedupQueue, persistQueue, this::dedup, registry),
+                startStage(name, "persist", persistQueue, null, this::persist, registry));
+    }
+
+    /** Poll'u pipeline'a verir; decode kuyruğu doluysa bekler. */
+    void submit(List<ConsumerRecord<String, Object>> records, Acknowledgment acknowledgment)
+            throws InterruptedException {
+        Map<TopicPartition, Long> firstOffsets = new HashMap<>();
+        for (ConsumerRecord<String, Object> record : records) {
+            firstOffsets.merge(new TopicPartition(record.topic(), record.partition()), record.offset(), Math::min);
+        }
+        synchronized (this) {
+            pending++;
+        }
+        decodeQueue.put(new Batch(records, acknowledgment, firstOffsets, System.nanoTime()));
+    }
+
+    boolean hasFailed() {
+        return failure != null;
+    }
+
+    /** Hata sonrası geri sarım: partition başına seek edilecek offset'ler ve pipeline'ı durduran hata. */
+    record Recovery(Map<TopicPartition, Long> offsets, Throwable failure) {
+    }
+
+    /**
+     * Hata sonrası: atılan poll'lar bitene kadar bekler, geri sarımı döner ve pipeline'ı yeniden kullanıma açar.
+     * Süre içinde boşalmazsa hiçbir şey temizlenmez ve IllegalStateException atılır: takılı persist hâlâ in-flight
+     * key'leri yazıyor olabilir; bırakılırlarsa aynı key'ler yeniden teslimde ikinci kez yeni sayılırdı.
+     */
+    Recovery recover(Duration timeout) throws InterruptedException {
+        if (!awaitIdle(timeout)) {
+            throw new IllegalStateException(
+                    "Consumer pipeline did not drain within " + timeout + " after a stage failure");
+        }
+        synchronized (this) {
+            Recovery recovery = new Recovery(new HashMap<>(rewind), failure);
+            log.error("Consumer pipeline failed, rewinding {} partitions: {}", recovery.offsets().size(),
+                    failure != null ? failure.getMessage() : "");
+            rewind.clear();
+            inFlightKeys.clear();
+            failure = null;
+            return recovery;
+        }
+    }
+
+    /** Kuyruktaki tüm poll'lar ack'lenene veya atılana kadar bekler (partition revoke öncesi). */
+    synchronized boolean awaitIdle(Duration timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (pending > 0) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return false;
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+        return true;
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        threads.forEach(Thread::interrupt);
+    }
+
+    private void decode(Batch batch) {
+        batch.decoded = stages.decode(batch.records);
+    }
+
+    /** inbox'ta veya in-flight olan key'leri eler; kalanları in-flight'a ekler. */
+    private void dedup(Batch batch) {
+        Map<Integer, Map<UUID, EventRequest>> newEvents = new LinkedHashMap<>();
+        batch.decoded.forEach((partition, events) -> {
+            Set<UUID> existing = new HashSet<>(stages.findExistingKeys(partition, events.keySet()));
+            Set<UUID> inFlight = inFlightKeys.computeIfAbsent(partition, p -> ConcurrentHashMap.newKeySet());
+            Map<UUID, EventRequest> fresh = new LinkedHashMap<>();
+            events.forEach((key, event) -> {
+                if (!existing.contains(key) && !inFlight.contains(key)) {
+                    fresh.put(key, event);
+                }
+            });
+            if (fresh.size() < events.size()) {
+                stages.countDuplicates(partition, events.size() - fresh.size());
+            }
+            if (!fresh.isEmpty()) {
+                inFlight.addAll(fresh.keySet());
+                newEvents.put(partition, fresh);
+            }
+        });
+        batch.newEvents = newEvents;
+    }
+
+    private void persist(Batch batch) {
+        if (!batch.newEvents.isEmpty()) {
+            int inserted = stages.persist(batch.newEvents, batch.receivedNanos);
+            log.debug("Pipeline batch persisted: {} records, {} new events inserted", batch.records.size(), inserted);
+        }
+    }
+
+    /** Son aşamadan çıkan poll: in-flight key'ler bırakılır, offset'ler ack'lenir. */
+    private void complete(Batch batch) {
+        releaseInFlight(batch);
+        batch.acknowledgment.acknowledge();
+        finished();
+    }
+
+    private Thread startStage(String name, String stage, BlockingQueue<Batch> in, BlockingQueue<Batch> out,
+                              Consumer<Batch> work, MeterRegistry registry) {
+        Timer timer = null;
+        if (registry != null) {
+            timer = Timer.builder("kafka.consumer.pipeline.stage")
+                    .description("Busy time per batch of a consumer pipeline stage; rate of the sum is the utilization")
+                    .tag("pipeline", name)
+                    .tag("stage", stage)
+                    .register(registry);
+            Gauge.builder("kafka.consumer.pipeline.queue.depth", in, BlockingQueue::size)
+                    .description("Batches waiting for a consumer pipeline stage")
+                    .tag("pipeline", name)
+                    .tag("stage", stage)
+                    .register(registry);
+        }
+        Timer stageTimer = timer;
+        return Thread.ofPlatform().daemon().name(name + "-" + stage).start(() -> {
+            while (running) {
+                Batch batch;
+                try {
+                    batch = in.take();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (failure != null) {
+                    discard(batch);
+                    continue;
+                }
+                long start = System.nanoTime();
+                try {
+                    work.accept(batch);
+                } catch (Throwable e) {
+                    fail(batch, e);
+                    continue;
+                } finally {
+                    if (stageTimer != null) {
+                        stageTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                    }
+                }
+                if (out == null) {
+                    complete(batch);
+                    continue;
+                }
+                try {
+                    out.put(batch);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        });
+    }
+
+    private synchronized void fail(Batch batch, Throwable error) {
+        if (failure == null) {
+            failure = error;
+            log.error("Consumer pipeline stage failed; unacknowledged batches will be redelivered", error);
+        }
+        discard(batch);
+    }
+
+    /** Ack'lenmeyecek poll: offset'leri geri sarıma eklenir, in-flight key'leri bırakılır. */
+    private synchronized void discard(Batch batch) {
+        batch.firstOffsets.forEach((partition, offset) -> rewind.merge(partition, offset, Math::min));
+        releaseInFlight(batch);
+        finished();
+    }
+
+    private void releaseInFlight(Batch batch) {
+        if (batch.newEvents == null) {
+            return;
+        }
+        batch.newEvents.forEach((partition, events) -> {
+            Set<UUID> inFlight = inFlightKeys.get(partition);
+            if (inFlight != null) {
+                inFlight.removeAll(events.keySet());
+            }
+        });
+    }
+
+    private synchronized void finished() {
+        pending--;
+        notifyAll();
+    }
+
+    /** Pipeline'daki tek poll ve aşama çıktıları. */
+    private static final class Batch {
+        private final List<ConsumerRecord<String, Object>> records;
+        private final Acknowledgment acknowledgment;
+        private final Map<TopicPartition, Long> firstOffsets;
+        private final long receivedNanos;
+        private Map<Integer, Map<UUID, EventRequest>> decoded;
+        private Map<Integer, Map<UUID, EventRequest>> newEvents;
+
+        private Batch(List<ConsumerRecord<String, Object>> records, Acknowledgment acknowledgment,
+                      Map<TopicPartition, Long> firstOffsets, long receivedNanos) {
+            this.records = records;
+            this.acknowledgment = acknowledgment;
+            this.firstOffsets = firstOffsets;
+            this.receivedNanos = receivedNanos;
+        }
+    }
+}
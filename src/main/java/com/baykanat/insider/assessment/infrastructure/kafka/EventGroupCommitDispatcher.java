@@ -0,0 +1,210 @@
+package com.baykanat.insider.assessment.infrastructure.kafka;
+
+import com.baykanat.insider.assessment.api.dto.EventRequest;
+import com.baykanat.insider.assessment.config.AppProperties;
+import com.baykanat.insider.assessment.infrastructure.kafka.EventKafkaProducer.ServiceUnavailableException;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * POST /events için group commit: istek thread'leri event'i sınırlı kuyruğa bırakıp ack'i bekler; tek dispatcher
+ * thread'i kuyruğu max-batch-size dolana veya ilk event'ten max-wait geçene kadar toplar, batch'i Kafka'ya gönderip
+ * flush eder (linger.ms beklenmez). Her istek kendi kaydının ack'iyle (acks=all) tamamlanır; 202 yine kalıcılıktan
+ * sonra döner. Circuit breaker batch başına bir çağrı olarak işlenir; kuyruk doluysa istek hemen 503 alır.
+ */
+@Slf4j
+@Component
+public class EventGroupCommitDispatcher implements SmartLifecycle {
+
+    private static final String CIRCUIT_BREAKER = "kafkaProducer";
+
+    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final AppProperties.GroupCommitProperties properties;
+    private final String topic;
+    private final CircuitBreaker circuitBreaker;
+    private final BlockingQueue<PendingEvent> queue;
+    private final DistributionSummary batchSize;
+    private final Timer flushTimer;
+    private final Counter rejected;
+
+    private volatile boolean running;
+    private Thread dispatcher;
+
+    public EventGroupCommitDispatcher(KafkaTemplate<String, Object> kafkaTemplate, AppProperties appProperties,
+                                      CircuitBreakerRegistry circuitBreakerRegistry, MeterRegistry registry) {
+        this.kafkaTemplate = kafkaTemplate;
+        this.properties = appProperties.getIngestion().getGroupCommit();
+        this.topic = Objects.requireNonNull(appProperties.getKafka().getTopic().getEventsIngestion());
+        this.circuitBreaker = circuitBreakerRegistry.circuitBreaker(CIRCUIT_BREAKER);
+        this.queue = new ArrayBlockingQueue<>(properties.getQueueCapacity());
+        this.batchSize = DistributionSummary.builder("ingestion.group_commit.batch.size")
+                .description("Events per group-commit flush")
+                .register(registry);
+        this.flushTimer = Timer.builder("ingestion.group_commit.flush")
+                .description("Send + flush time of one group-commit batch")
+                .register(registry);
+        this.rejected = Counter.builder("ingestion.group_commit.rejected")
+                .description("Events rejected because the group-commit queue was full")
+                .register(registry);
+        Gauge.builder("ingestion.group_commit.queue.depth", queue, BlockingQueue::size)
+                .description("Events waiting for the next group-commit flush")
+                .register(registry);
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    /** Event'i kuyruğa bırakır ve batch'i ack alana kadar bekler; hata veya zaman aşımında 503. */
+    public void send(EventRequest event) throws InterruptedException {
+        PendingEvent pending = new PendingEvent(event, new CompletableFuture<>());
+        if (!running || !queue.offer(pending)) {
+            rejected.increment();
+            throw new ServiceUnavailableException("Event ingestion is temporarily overloaded. Please retry.", 1);
+        }
+        try {
+            pending.result().get(properties.getAckTimeout().toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            throw new ServiceUnavailableException(
+                    "Event ingestion is temporarily unavailable. " + e.getCause().getMessage(), 30);
+        } catch (TimeoutException e) {
+            throw new ServiceUnavailableException(
+                    "Event ingestion is temporarily unavailable. Kafka acknowledgement timed out.", 30);
+        }
+    }
+
+    @Override
+    public void start() {
+        if (!properties.isEnabled() || running) {
+            return;
+        }
+        running = true;
+        dispatcher = Thread.ofPlatform().daemon().name("event-group-commit").start(this::dispatchLoop);
+        log.info("Group commit enabled: maxBatchSize={}, maxWait={}", properties.getMaxBatchSize(),
+                properties.getMaxWait());
+    }
+
+    /** Yeni event kabulünü durdurur; kuyrukta kalanlar son bir kez gönderilir. */
+    @Override
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        dispatcher.interrupt();
+        try {
+            dispatcher.join(properties.getAckTimeout().toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        List<PendingEvent> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        if (!remaining.isEmpty()) {
+            flush(remaining);
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void dispatchLoop() {
+        int maxBatchSize = properties.getMaxBatchSize();
+        long maxWaitNanos = properties.getMaxWait().toNanos();
+        List<PendingEvent> batch = new ArrayList<>(maxBatchSize);
+        while (running) {
+            try {
+                batch.add(queue.take());
+                long deadline = System.nanoTime() + maxWaitNanos;
+                while (batch.size() < maxBatchSize) {
+                    queue.drainTo(batch, maxBatchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= maxBatchSize || remaining <= 0) {
+                        break;
+                    }
+                    PendingEvent next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                // stop(): toplanan batch gönderilir, kalanlar stop() içinde
+            }
+            if (!batch.isEmpty()) {
+                flush(batch);
+                batch = new ArrayList<>(maxBatchSize);
+            }
+        }
+    }
+
+    /** Batch'i tek circuit breaker çağrısı olarak gönderir; her bekleyen kendi kaydının sonucuyla tamamlanır. */
+    private void flush(List<PendingEvent> batch) {
+        batchSize.record(batch.size());
+        if (!circuitBreaker.tryAcquirePermission()) {
+            CallNotPermittedException open = CallNotPermittedException.createCallNotPermittedException(circuitBreaker);
+            batch.forEach(pending -> pending.result().completeExceptionally(open));
+            return;
+        }
+        long start = System.nanoTime();
+        List<CompletableFuture<SendResult<String, Object>>> sends = new ArrayList<>(batch.size());
+        try {
+            for (PendingEvent pending : batch) {
+                String key = Objects.requireNonNull(pending.event().getUserId(), "userId");
+                CompletableFuture<SendResult<String, Object>> send = kafkaTemplate.send(topic, key, pending.event());
+                send.whenComplete((result, error) -> {
+                    if (error == null) {
+                        pending.result().complete(null);
+                    } else {
+                        pending.result().completeExceptionally(error);
+                    }
+                });
+                sends.add(send);
+            }
+            // linger.ms beklemeden gönder; batch'in tüm ack'leri gelene kadar bloklar
+            kafkaTemplate.flush();
+        } catch (RuntimeException e) {
+            log.error("Group commit send failed for {} events: {}", batch.size(), e.getMessage());
+            circuitBreaker.onError(System.nanoTime() - start, TimeUnit.NANOSECONDS, e);
+            batch.forEach(pending -> pending.result().completeExceptionally(e));
+            return;
+        }
+        long elapsed = System.nanoTime() - start;
+        flushTimer.record(elapsed, TimeUnit.NANOSECONDS);
+        Throwable failure = sends.stream()
+                .filter(CompletableFuture::isCompletedExceptionally)
+                .findFirst()
+                .map(send -> send.handle((result, error) -> error).join())
+                .orElse(null);
+        if (failure == null) {
+            circuitBreaker.onSuccess(elapsed, TimeUnit.NANOSECONDS);
+        } else {
+            circuitBreaker.onError(elapsed, TimeUnit.NANOSECONDS, failure);
+        }
+    }
+
+    private record PendingEvent(EventRequest event, CompletableFuture<Void> result) {
+    }
+}
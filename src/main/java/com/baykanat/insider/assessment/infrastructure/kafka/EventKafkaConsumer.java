@@ -1,35 +1,84 @@
 package com.baykanat.insider.assessment.infrastructure.kafka;
 
 import com.baykanat.insider.assessment.api.dto.EventRequest;
+import com.baykanat.insider.assessment.config.AppProperties;
 import com.baykanat.insider.assessment.domain.mapper.EventMapper;
 import com.baykanat.insider.assessment.domain.service.EventIngestionService;
+import com.baykanat.insider.assessment.domain.service.IdempotencyService;
+import com.baykanat.insider.assessment.domain.service.InboxDedupCache;
+import com.baykanat.insider.assessment.infrastructure.metrics.IngestionMetrics;
+import com.baykanat.insider.assessment.infrastructure.metrics.IngestionMetrics.Stage;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.KafkaException;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.ConsumerSeekAware;
 import org.springframework.kafka.support.Acknowledgment;
 import org.apache.kafka.common.header.Headers;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
-/** events-ingestion topic'ten batch tüketir; EventIngestionService ile işler. Deserialize hataları DLT'ye. */
+/**
+ * events-ingestion topic'ten batch tüketir; partition bazında EventIngestionService ile işler. Deserialize hataları
+ * DLT'ye. Partition atama/geri alma olayları inbox dedup önbelleğine iletilir.
+ *
+ * <p>app.kafka.consumer.parallelism ile poll'daki alt batch'ler (partition veya partition × user_id hash) ayrı virtual
+ * thread'lerde, her biri kendi transaction'ında işlenir; ack yalnızca hepsi başarılı olursa yapılır. Hata durumunda
+ * batch yeniden teslim edilir, commit olmuş alt batch'ler inbox ile elenir. Rollup modunda aynı saate yazan alt batch'ler
+ * kova satırı kilitlerinde sıraya girer (ingestion.rollup); varsayılan bu yüzden none.
+ *
+ * <p>app.kafka.consumer.pipeline.enabled ile listener thread'i poll'u EventConsumerPipeline'a verip hemen döner;
+ * decode, dedup ve persist ayrı thread'lerde çakışarak çalışır, ack poll sırasıyla persist aşamasından yapılır.
+ */
 @Slf4j
 @Component
 @RequiredArgsConstructor
-public class EventKafkaConsumer {
+public class EventKafkaConsumer implements ConsumerSeekAware, DisposableBean {
 
     /** ErrorHandlingDeserializer hata durumunda bu header'ı set eder; value null olur. */
     private static final String VALUE_DESERIALIZATION_EXCEPTION_HEADER =
             "springDeserializationValueException";
 
+    /** Partition revoke / hata kurtarmada pipeline'ın boşalmasını bekleme sınırı. */
+    private static final Duration PIPELINE_DRAIN_TIMEOUT = Duration.ofSeconds(30);
+
     private final EventIngestionService eventIngestionService;
     private final EventMapper eventMapper;
     private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final InboxDedupCache inboxDedupCache;
+    private final AppProperties appProperties;
+    private final IdempotencyService idempotencyService;
+    private final MeterRegistry meterRegistry;
+    private final IngestionMetrics metrics;
+    /** Listener thread'i başına pipeline (her thread kendi consumer'ının offset'lerini ack'ler). */
+    private final Map<Thread, EventConsumerPipeline> pipelines = new ConcurrentHashMap<>();
+    private final AtomicInteger pipelineCount = new AtomicInteger();
+    /** Pipeline hatasından sonra geri sarılan poll'ları senkron işleyen listener thread'leri. */
+    private final Set<Thread> replaying = ConcurrentHashMap.newKeySet();
 
     @Value("${app.kafka.topic.events-ingestion}")
     private String eventsIngestionTopic;
@@ -40,10 +89,22 @@ public class EventKafkaConsumer {
             groupId = "${spring.kafka.consumer.group-id}",
             containerFactory = "kafkaListenerContainerFactory"
     )
-    public void consume(List<ConsumerRecord<String, Object>> records, Acknowledgment acknowledgment) {
+    public void consume(List<ConsumerRecord<String, Object>> records, Acknowledgment acknowledgment,
+                        Consumer<?, ?> consumer) {
         log.debug("Received batch of {} records from events-ingestion topic", records.size());
+        metrics.batchSize(records.size());
+        if (appProperties.getKafka().getConsumer().getPipeline().isEnabled()) {
+            consumePipelined(records, acknowledgment, consumer);
+            return;
+        }
+        consumeSynchronously(records, acknowledgment);
+    }
 
-        List<EventRequest> events = new ArrayList<>(records.size());
+    /** Poll'u listener thread'inde işler; işleme hatası container'ın hata işleyicisine (yeniden deneme, DLT) çıkar. */
+    private void consumeSynchronously(List<ConsumerRecord<String, Object>> records, Acknowledgment acknowledgment) {
+        long received = metrics.start();
+        Map<Integer, List<EventRequest>> eventsByPartition = new LinkedHashMap<>();
+        int eventCount = 0;
         int dltCount = 0;
 
         for (ConsumerRecord<String, Object> record : records) {
@@ -59,7 +120,8 @@ public class EventKafkaConsumer {
             try {
                 EventRequest event = deserialize(record);
                 if (event != null) {
-                    events.add(event);
+                    eventsByPartition.computeIfAbsent(record.partition(), p -> new ArrayList<>()).add(event);
+                    eventCount++;
                 }
             } catch (Exception e) {
                 // Uygulama deserialize hatası → DLT
@@ -70,10 +132,12 @@ public class EventKafkaConsumer {
             }
         }
 
-        if (!events.isEmpty()) {
-            int inserted = eventIngestionService.processBatch(events);
+        metrics.record(Stage.DESERIALIZE, received);
+
+        if (eventCount > 0) {
+            int inserted = processSubBatches(split(eventsByPartition), received);
             log.info("Batch processed: {} records received, {} events deserialized, {} new events inserted, {} sent to DLT",
-                    records.size(), events.size(), inserted, dltCount);
+                    records.size(), eventCount, inserted, dltCount);
         } else if (dltCount > 0) {
             log.warn("All {} records in batch failed deserialization, {} sent to DLT", records.size(), dltCount);
         }
@@ -82,6 +146,283 @@ public class EventKafkaConsumer {
         acknowledgment.acknowledge();
     }
 
+    /**
+     * Partition gruplarını alt batch'lere böler. key-hash modunda aynı user_id (dolayısıyla aynı idempotency key)
+     * hep aynı parçaya düşer; eşzamanlı transaction'lar aynı inbox satırı için yarışmaz.
+     */
+    private List<SubBatch> split(Map<Integer, List<EventRequest>> eventsByPartition) {
+        AppProperties.KafkaTopicProperties.ConsumerProcessing processing = appProperties.getKafka().getConsumer();
+        int shards = processing.getParallelism() == AppProperties.ConsumerParallelism.KEY_HASH
+                ? Math.max(1, processing.getSubBatches())
+                : 1;
+        List<SubBatch> subBatches = new ArrayList<>();
+        eventsByPartition.forEach((partition, events) -> {
+            if (shards == 1) {
+                subBatches.add(new SubBatch(partition, events));
+                return;
+            }
+            List<List<EventRequest>> parts = new ArrayList<>(shards);
+            for (int i = 0; i < shards; i++) {
+                parts.add(new ArrayList<>());
+            }
+            for (EventRequest event : events) {
+                parts.get(Math.floorMod(Objects.hashCode(event.getUserId()), shards)).add(event);
+            }
+            parts.stream().filter(part -> !part.isEmpty()).forEach(part -> subBatches.add(new SubBatch(partition, part)));
+        });
+        return subBatches;
+    }
+
+    /** Alt batch'leri sırayla veya eşzamanlı işler; eklenen toplamı döner. received: poll'un listener'a geliş anı. */
+    private int processSubBatches(List<SubBatch> subBatches, long received) {
+        return runSubBatches(subBatches.stream()
+                .<Supplier<Integer>>map(subBatch -> () -> {
+                    metrics.record(Stage.POLL_TO_PROCESS, subBatch.partition(), received);
+                    return eventIngestionService.processBatch(subBatch.partition(), subBatch.events());
+                })
+                .toList());
+    }
+
+    /** Parçaları sırayla veya eşzamanlı çalıştırır; eklenen toplamı döner. Herhangi biri hata verirse hepsi beklenir, hata fırlatılır. */
+    private int runSubBatches(List<Supplier<Integer>> tasks) {
+        if (tasks.size() == 1
+                || appProperties.getKafka().getConsumer().getParallelism() == AppProperties.ConsumerParallelism.NONE) {
+            int inserted = 0;
+            for (Supplier<Integer> task : tasks) {
+                inserted += task.get();
+            }
+            return inserted;
+        }
+
+        List<Future<Integer>> futures = new ArrayList<>(tasks.size());
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (Supplier<Integer> task : tasks) {
+                futures.add(executor.submit(task::get));
+            }
+        } // close() tüm görevlerin bitmesini bekler
+
+        int inserted = 0;
+        RuntimeException failure = null;
+        for (Future<Integer> future : futures) {
+            try {
+                inserted += future.get();
+            } catch (ExecutionException e) {
+                RuntimeException cause = e.getCause() instanceof RuntimeException runtime
+                        ? runtime
+                        : new IllegalStateException("Sub-batch processing failed", e.getCause());
+                if (failure == null) {
+                    failure = cause;
+                } else {
+                    failure.addSuppressed(cause);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for sub-batches", e);
+            }
+        }
+        if (failure != null) {
+            log.error("{} sub-batches processed in parallel, at least one failed; batch will not be acknowledged",
+                    tasks.size());
+            throw failure;
+        }
+        return inserted;
+    }
+
+    /**
+     * Pipeline modu: poll pipeline'a verilir, ack persist aşamasında yapılır. Önceki bir poll'da aşama hatası olduysa
+     * ack'lenmemiş poll'lar ve bu poll atılır, partition'lar en eski ack'lenmemiş offset'e geri sarılır ve hata
+     * fırlatılır; DefaultErrorHandler back-off'u uygular. Geri sarılan ilk teslim listener thread'inde senkron işlenir:
+     * kalıcı hatalı kayıt varsa hata doğru kayıtlarla hata işleyicisine ulaşır ve deneme bitince DLT'ye gider.
+     */
+    private void consumePipelined(List<ConsumerRecord<String, Object>> records, Acknowledgment acknowledgment,
+                                  Consumer<?, ?> consumer) {
+        Thread thread = Thread.currentThread();
+        EventConsumerPipeline pipeline = pipelines.computeIfAbsent(thread, t -> newPipeline());
+        try {
+            if (replaying.contains(thread) && fetchedBeforeRewind(records, consumer)) {
+                // Hata işleyicisinin bellekten yeniden verdiği, geri sarımdan önce çekilmiş poll: ack'lenmez,
+                // kayıtlar geri sarılan offset'lerden yeniden gelir
+                return;
+            }
+            if (pipeline.hasFailed()) {
+                Map<TopicPartition, Long> offsets = new HashMap<>();
+                for (ConsumerRecord<String, Object> record : records) {
+                    offsets.merge(new TopicPartition(record.topic(), record.partition()), record.offset(), Math::min);
+                }
+                EventConsumerPipeline.Recovery recovery;
+                try {
+                    recovery = pipeline.recover(PIPELINE_DRAIN_TIMEOUT);
+                } catch (IllegalStateException e) {
+                    // Takılı aşama: in-flight key'ler korunur, bu poll da geri sarılır; sonraki teslimde yeniden denenir
+                    seek(consumer, offsets);
+                    replaying.add(thread);
+                    throw e;
+                }
+                recovery.offsets().forEach((partition, offset) -> offsets.merge(partition, offset, Math::min));
+                seek(consumer, offsets);
+                replaying.add(thread);
+                throw new KafkaException("Consumer pipeline stage failed; unacknowledged batches rewound to " + offsets,
+                        recovery.failure());
+            }
+            if (replaying.contains(thread)) {
+                consumeSynchronously(records, acknowledgment);
+                replaying.remove(thread);
+                return;
+            }
+            pipeline.submit(records, acknowledgment);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while handing batch to the consumer pipeline", e);
+        }
+    }
+
+    private static void seek(Consumer<?, ?> consumer, Map<TopicPartition, Long> offsets) {
+        Set<TopicPartition> assigned = consumer.assignment();
+        offsets.forEach((partition, offset) -> {
+            if (assigned.contains(partition)) {
+                consumer.seek(partition, offset);
+            }
+        });
+    }
+
+    /**
+     * Kayıtlardan biri consumer'ın konumunda veya ilerisindeyse poll seek'ten önce çekilmiştir (seek sonrası çekilen
+     * poll'un kayıtları hep konumun gerisinde kalır).
+     */
+    private static boolean fetchedBeforeRewind(List<ConsumerRecord<String, Object>> records, Consumer<?, ?> consumer) {
+        Set<TopicPartition> assigned = consumer.assignment();
+        Map<TopicPartition, Long> positions = new HashMap<>();
+        for (ConsumerRecord<String, Object> record : records) {
+            TopicPartition partition = new TopicPartition(record.topic(), record.partition());
+            if (!assigned.contains(partition)) {
+                return true;
+            }
+            if (record.offset() >= positions.computeIfAbsent(partition, consumer::position)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private EventConsumerPipeline newPipeline() {
+        String name = "consumer-pipeline-" + pipelineCount.getAndIncrement();
+        return new EventConsumerPipeline(name, new EventConsumerPipeline.Stages() {
+            @Override
+            public Map<Integer, Map<UUID, EventRequest>> decode(List<ConsumerRecord<String, Object>> records) {
+                return decodeAndKey(records);
+            }
+
+            @Override
+            public Set<UUID> findExistingKeys(int partition, Collection<UUID> keys) {
+                long start = metrics.start();
+                Set<UUID> existing = inboxDedupCache.findExistingKeys(partition, keys);
+                metrics.record(Stage.INBOX_LOOKUP, partition, start);
+                return existing;
+            }
+
+            @Override
+            public void countDuplicates(int partition, int count) {
+                metrics.countDuplicates(partition, count);
+            }
+
+            @Override
+            public int persist(Map<Integer, Map<UUID, EventRequest>> newEvents, long receivedNanos) {
+                return persistNewEvents(newEvents, receivedNanos);
+            }
+        }, appProperties.getKafka().getConsumer().getPipeline().getQueueCapacity(),
+                metrics.isEnabled() ? meterRegistry : null);
+    }
+
+    /** Pipeline decode aşaması: deserialize (hatalılar DLT'ye) + idempotency key; partition başına key → event. */
+    private Map<Integer, Map<UUID, EventRequest>> decodeAndKey(List<ConsumerRecord<String, Object>> records) {
+        long start = metrics.start();
+        Map<Integer, List<EventRequest>> decoded = new LinkedHashMap<>();
+        for (ConsumerRecord<String, Object> record : records) {
+            if (hasDeserializationError(record)) {
+                log.error("Kafka deserialization failed for record at offset={}, partition={}",
+                        record.offset(), record.partition());
+                publishToDlt(record, "Kafka-level deserialization failure");
+                continue;
+            }
+            try {
+                EventRequest event = deserialize(record);
+                if (event != null) {
+                    decoded.computeIfAbsent(record.partition(), p -> new ArrayList<>()).add(event);
+                }
+            } catch (Exception e) {
+                log.error("Failed to deserialize record at offset={}, partition={}: {}",
+                        record.offset(), record.partition(), e.getMessage());
+                publishToDlt(record, e.getMessage());
+            }
+        }
+        metrics.record(Stage.DESERIALIZE, start);
+
+        Map<Integer, Map<UUID, EventRequest>> eventsByPartition = new LinkedHashMap<>();
+        decoded.forEach((partition, events) -> {
+            long keyStart = metrics.start();
+            Map<UUID, EventRequest> keyed = new LinkedHashMap<>();
+            for (EventRequest event : events) {
+                keyed.put(idempotencyService.generateKey(event), event);
+            }
+            metrics.record(Stage.KEY_HASH, partition, keyStart);
+            // Poll içinde aynı key'le tekrar edenler; senkron yoldaki processBatch ile aynı sayım
+            metrics.countDuplicates(partition, events.size() - keyed.size());
+            eventsByPartition.put(partition, keyed);
+        });
+        return eventsByPartition;
+    }
+
+    /** Pipeline persist aşaması: partition (key-hash modunda ayrıca user_id hash'i) başına ayrı transaction. */
+    private int persistNewEvents(Map<Integer, Map<UUID, EventRequest>> newEvents, long receivedNanos) {
+        AppProperties.KafkaTopicProperties.ConsumerProcessing processing = appProperties.getKafka().getConsumer();
+        int shards = processing.getParallelism() == AppProperties.ConsumerParallelism.KEY_HASH
+                ? Math.max(1, processing.getSubBatches())
+                : 1;
+        List<Supplier<Integer>> tasks = new ArrayList<>();
+        newEvents.forEach((partition, events) -> {
+            List<Map<UUID, EventRequest>> parts = new ArrayList<>(shards);
+            for (int i = 0; i < shards; i++) {
+                parts.add(new LinkedHashMap<>());
+            }
+            events.forEach((key, event) ->
+                    parts.get(Math.floorMod(Objects.hashCode(event.getUserId()), shards)).put(key, event));
+            parts.stream()
+                    .filter(part -> !part.isEmpty())
+                    .forEach(part -> tasks.add(() -> {
+                        metrics.record(Stage.POLL_TO_PROCESS, partition, receivedNanos);
+                        return eventIngestionService.persistNewEvents(partition, part);
+                    }));
+        });
+        return runSubBatches(tasks);
+    }
+
+    /** Atanan partition'ların dedup filtresi hazırlanır; elde tutulan ve kısa sürede geri gelenler korunur. */
+    @Override
+    public void onPartitionsAssigned(Map<TopicPartition, Long> assignments, ConsumerSeekCallback callback) {
+        inboxDedupCache.onPartitionsAssigned(assignments.keySet().stream().map(TopicPartition::partition).toList());
+    }
+
+    /** Pipeline'daki poll'lar revoke'tan önce ack'lenir (veya atılır). */
+    @Override
+    public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+        EventConsumerPipeline pipeline = pipelines.get(Thread.currentThread());
+        if (pipeline != null) {
+            try {
+                if (!pipeline.awaitIdle(PIPELINE_DRAIN_TIMEOUT)) {
+                    log.warn("Consumer pipeline did not drain before revocation; unacknowledged records will be redelivered");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        inboxDedupCache.onPartitionsRevoked(partitions.stream().map(TopicPartition::partition).toList());
+    }
+
+    @Override
+    public void destroy() {
+        pipelines.values().forEach(EventConsumerPipeline::close);
+    }
+
     /** ErrorHandlingDeserializer hata header'ı var mı kontrol eder. */
     private boolean hasDeserializationError(ConsumerRecord<String, Object> record) {
         Headers headers = record.headers();
@@ -100,10 +441,15 @@ public class EventKafkaConsumer {
         try {
             String key = Objects.requireNonNullElse(record.key(), "");
             kafkaTemplate.send(Objects.requireNonNull(topic), Objects.requireNonNull(key, "key"), record.value());
+            metrics.countDltSend();
             log.warn("Sent failed record to DLT: topic={}, offset={}, partition={}, reason={}",
                     topic, record.offset(), record.partition(), Objects.requireNonNullElse(reason, ""));
         } catch (Exception dltEx) {
             log.error("Failed to publish record to DLT {}: {}", topic, dltEx.getMessage());
         }
     }
+
+    /** Tek transaction'da işlenen parça: partition ve event'leri. */
+    private record SubBatch(int partition, List<EventRequest> events) {
+    }
 }
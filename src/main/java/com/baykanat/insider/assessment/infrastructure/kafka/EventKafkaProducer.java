@@ -2,7 +2,10 @@ package com.baykanat.insider.assessment.infrastructure.kafka;
 
 import com.baykanat.insider.assessment.api.dto.EventRequest;
 import com.baykanat.insider.assessment.config.AppProperties;
+import com.baykanat.insider.assessment.infrastructure.metrics.IngestionMetrics;
+import com.baykanat.insider.assessment.infrastructure.metrics.IngestionMetrics.Stage;
 import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
 import io.github.resilience4j.circuitbreaker.annotation.CircuitBreaker;
 import io.github.resilience4j.retry.annotation.Retry;
 import lombok.RequiredArgsConstructor;
@@ -14,16 +17,24 @@ import org.springframework.stereotype.Component;
 import java.util.List;
 import java.util.Objects;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.TimeUnit;
 
-/** Event'leri Kafka'ya gönderir; Retry + Circuit Breaker. Tek event senkron, toplu gönderim paralel. */
+/**
+ * Event'leri Kafka'ya gönderir; Retry + Circuit Breaker. Tek event senkron, toplu gönderim paralel, akış gönderimi
+ * (sendAsync) ack'i beklemeden döner.
+ */
 @Slf4j
 @Component
 @RequiredArgsConstructor
 public class EventKafkaProducer {
 
+    private static final String CIRCUIT_BREAKER = "kafkaProducer";
+
     private final KafkaTemplate<String, Object> kafkaTemplate;
     private final AppProperties appProperties;
+    private final CircuitBreakerRegistry circuitBreakerRegistry;
+    private final IngestionMetrics metrics;
 
     /** Tek event gönderir; partition key user_id. Ack beklenir (acks=all). */
     @Retry(name = "kafkaProducer")
@@ -31,13 +42,16 @@ public class EventKafkaProducer {
     public void send(EventRequest event) throws Exception {
         String topic = Objects.requireNonNull(appProperties.getKafka().getTopic().getEventsIngestion());
         String key = Objects.requireNonNull(event.getUserId(), "userId");
+        long start = metrics.start();
         kafkaTemplate.send(topic, key, event).get(1, TimeUnit.SECONDS);
+        metrics.record(Stage.PRODUCE_ACK, start);
     }
 
     /** Toplu event'leri paralel gönderir; tüm ack'ler paralel beklenir. */
     @CircuitBreaker(name = "kafkaProducer", fallbackMethod = "handleBatchCircuitBreakerOpen")
     public void sendBatch(List<EventRequest> events) throws Exception {
         String topic = Objects.requireNonNull(appProperties.getKafka().getTopic().getEventsIngestion());
+        long start = metrics.start();
 
         List<CompletableFuture<SendResult<String, Object>>> futures = events.stream()
                 .map(event -> kafkaTemplate.send(topic, Objects.requireNonNull(event.getUserId(), "userId"), event))
@@ -46,6 +60,18 @@ public class EventKafkaProducer {
         // Tüm ack'leri paralel bekle
         CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
                 .get(10, TimeUnit.SECONDS);
+        metrics.record(Stage.PRODUCE_ACK, start);
+    }
+
+    /**
+     * Tek event'i ack beklemeden gönderir; sonuç ack ile tamamlanır. Aynı kafkaProducer circuit breaker'ından geçer:
+     * açıkken CallNotPermittedException ile hemen hatalı tamamlanır, ack hataları breaker'a işlenir.
+     */
+    public CompletionStage<SendResult<String, Object>> sendAsync(EventRequest event) {
+        String topic = Objects.requireNonNull(appProperties.getKafka().getTopic().getEventsIngestion());
+        String key = Objects.requireNonNull(event.getUserId(), "userId");
+        return circuitBreakerRegistry.circuitBreaker(CIRCUIT_BREAKER)
+                .executeCompletionStage(() -> kafkaTemplate.send(topic, key, event));
     }
 
     /** Circuit breaker açıkken tek event için 503 + Retry-After. */
@@ -0,0 +1,43 @@
+package com.baykanat.insider.assessment.infrastructure.kafka;
+
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.springframework.kafka.support.serializer.JsonDeserializer;
+
+import java.util.Map;
+
+/**
+ * Consumer value deserializer'ı (ErrorHandlingDeserializer delegate'i). Her zaman iki formatı da okur: ilk bayt
+ * magic ise EventBinaryCodec, değilse Spring JsonDeserializer. Producer'lar JSON'dan binary'ye geçerken topic'te
+ * iki format bir arada bulunabilir.
+ */
+public class EventWireDeserializer implements Deserializer<Object> {
+
+    private final JsonDeserializer<Object> jsonDeserializer = new JsonDeserializer<>();
+
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey) {
+        jsonDeserializer.configure(configs, isKey);
+    }
+
+    @Override
+    public Object deserialize(String topic, byte[] data) {
+        if (EventBinaryCodec.isBinary(data)) {
+            return EventBinaryCodec.decode(data);
+        }
+        return jsonDeserializer.deserialize(topic, data);
+    }
+
+    @Override
+    public Object deserialize(String topic, Headers headers, byte[] data) {
+        if (EventBinaryCodec.isBinary(data)) {
+            return EventBinaryCodec.decode(data);
+        }
+        return jsonDeserializer.deserialize(topic, headers, data);
+    }
+
+    @Override
+    public void close() {
+        jsonDeserializer.close();
+    }
+}
@@ -0,0 +1,50 @@
+package com.baykanat.insider.assessment.infrastructure.kafka;
+
+import com.baykanat.insider.assessment.api.dto.EventRequest;
+import com.baykanat.insider.assessment.config.AppProperties;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Serializer;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+
+import java.util.Map;
+
+/**
+ * Producer value serializer'ı. BINARY formatında EventRequest EventBinaryCodec ile yazılır (tip header'ı eklenmez);
+ * diğer değerler ve JSON formatı Spring JsonSerializer'a gider.
+ */
+public class EventWireSerializer implements Serializer<Object> {
+
+    private final AppProperties.WireFormat format;
+    private final JsonSerializer<Object> jsonSerializer = new JsonSerializer<>();
+
+    public EventWireSerializer() {
+        this(AppProperties.WireFormat.JSON);
+    }
+
+    public EventWireSerializer(AppProperties.WireFormat format) {
+        this.format = format;
+    }
+
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey) {
+        jsonSerializer.configure(configs, isKey);
+    }
+
+    @Override
+    public byte[] serialize(String topic, Object data) {
+        return serialize(topic, null, data);
+    }
+
+    @Override
+    public byte[] serialize(String topic, Headers headers, Object data) {
+        if (format == AppProperties.WireFormat.BINARY && data instanceof EventRequest event) {
+            return EventBinaryCodec.encode(event);
+        }
+        return headers != null ? jsonSerializer.serialize(topic, headers, data) : jsonSerializer.serialize(topic, data);
+    }
+
+    @Override
+    public void close() {
+        jsonSerializer.close();
+    }
+}
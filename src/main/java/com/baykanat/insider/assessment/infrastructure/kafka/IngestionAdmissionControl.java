@@ -0,0 +1,252 @@
+package com.baykanat.insider.assessment.infrastructure.kafka;
+
+import com.baykanat.insider.assessment.config.AppProperties;
+import io.github.resilience4j.ratelimiter.RateLimiter;
+import io.github.resilience4j.ratelimiter.RateLimiterConfig;
+import io.github.resilience4j.ratelimiter.RateLimiterRegistry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.admin.AdminClient;
+import org.apache.kafka.clients.admin.ListOffsetsResult;
+import org.apache.kafka.clients.admin.OffsetSpec;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaAdmin;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Yazma API'si için lag'e duyarlı kabul kontrolü. events-ingestion consumer group lag'i ve producer buffer doluluğu
+ * periyodik örneklenir; saniyelik event limiti AIMD ile ayarlanır (aşırı yükte çarpımsal azalış, lag düşükken toplamsal
+ * artış) ve Resilience4j RateLimiter'a uygulanır. Limit aşılırsa istek 429 alır; Retry-After, lag'in mevcut tüketim
+ * hızıyla lag-low seviyesine inme süresinden hesaplanır.
+ */
+@Slf4j
+@Component
+public class IngestionAdmissionControl implements DisposableBean {
+
+    private static final String RATE_LIMITER = "ingestionAdmission";
+    private static final Duration ADMIN_TIMEOUT = Duration.ofSeconds(3);
+
+    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final KafkaAdmin kafkaAdmin;
+    private final AppProperties.AdmissionProperties properties;
+    private final String topic;
+    private final String groupId;
+    private final RateLimiter rateLimiter;
+    private final Counter rejected;
+
+    private AdminClient adminClient;
+    private volatile double limit;
+    private volatile long consumerLag;
+    private volatile double bufferUsage;
+    private volatile int retryAfterSeconds = 1;
+    private long previousCommitted = -1;
+
+    public IngestionAdmissionControl(KafkaTemplate<String, Object> kafkaTemplate, KafkaAdmin kafkaAdmin,
+                                     AppProperties appProperties, RateLimiterRegistry rateLimiterRegistry,
+                                     MeterRegistry registry,
+                                     @Value("${spring.kafka.consumer.group-id}") String groupId) {
+        this.kafkaTemplate = kafkaTemplate;
+        this.kafkaAdmin = kafkaAdmin;
+        this.properties = appProperties.getIngestion().getAdmission();
+        this.topic = Objects.requireNonNull(appProperties.getKafka().getTopic().getEventsIngestion());
+        this.groupId = groupId;
+        this.limit = properties.getMaxLimit();
+        this.rateLimiter = rateLimiterRegistry.rateLimiter(RATE_LIMITER, RateLimiterConfig.custom()
+                .limitForPeriod(properties.getMaxLimit())
+                .limitRefreshPeriod(Duration.ofSeconds(1))
+                .timeoutDuration(Duration.ZERO)
+                .build());
+        this.rejected = Counter.builder("ingestion.admission.rejected")
+                .description("Requests rejected with 429 by lag-aware admission control")
+                .register(registry);
+        Gauge.builder("ingestion.admission.limit", this, control -> control.limit)
+                .description("Current admitted events per second")
+                .register(registry);
+        Gauge.builder("ingestion.admission.consumer.lag", this, control -> control.consumerLag)
+                .description("Last sampled consumer group lag on the ingestion topic")
+                .register(registry);
+        Gauge.builder("ingestion.admission.producer.buffer.usage", this, control -> control.bufferUsage)
+                .description("Last sampled producer buffer.memory usage ratio")
+                .register(registry);
+    }
+
+    /**
+     * İstek başına event sayısı kadar izin alır; yoksa 429 (AdmissionRejectedException). Toplu istek saniyelik limitten
+     * büyükse limit kadar izin yeterli sayılır; aksi halde düşük limitte bulk hiç geçemezdi.
+     */
+    public void acquire(int events) {
+        if (!tryAcquire(events)) {
+            throw new AdmissionRejectedException(
+                    "Event ingestion is throttled while consumers catch up. Please retry later.", retryAfterSeconds);
+        }
+    }
+
+    /** acquire ile aynı izin hesabı; izin yoksa istisna yerine false döner (akış ortasında durmak için). */
+    public boolean tryAcquire(int events) {
+        if (!properties.isEnabled()) {
+            return true;
+        }
+        int permits = Math.max(1, Math.min(events, rateLimiter.getRateLimiterConfig().getLimitForPeriod()));
+        if (!rateLimiter.acquirePermission(permits)) {
+            rejected.increment();
+            return false;
+        }
+        return true;
+    }
+
+    /** Lag ve buffer doluluğunu örnekler, limiti günceller. Örnekleme hatasında limit değişmez. */
+    @Scheduled(
+            fixedDelayString = "${app.ingestion.admission.sample-rate:5000}",
+            initialDelayString = "${app.ingestion.admission.sample-rate:5000}"
+    )
+    public void sample() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        try {
+            long[] lagAndCommitted = sampleLag();
+            update(lagAndCommitted[0], lagAndCommitted[1], sampleBufferUsage());
+        } catch (Exception e) {
+            log.warn("Admission control sample failed, keeping limit at {}/s: {}", (long) limit, e.getMessage());
+        }
+    }
+
+    /**
+     * AIMD adımı: lag lag-high'ı veya buffer doluluğu buffer-high'ı aşarsa limit decrease-factor ile çarpılır, lag
+     * lag-low altındaysa additive-increase kadar artar, arada sabit kalır. Drenaj hızı commit edilen offset'lerin
+     * örnekler arası artışıdır.
+     */
+    void update(long lag, long committedOffsets, double usage) {
+        consumerLag = lag;
+        bufferUsage = usage;
+
+        double next = limit;
+        if (lag > properties.getLagHigh() || usage > properties.getBufferHigh()) {
+            next = limit * properties.getDecreaseFactor();
+        } else if (lag < properties.getLagLow()) {
+            next = limit + properties.getAdditiveIncrease();
+        }
+        next = Math.clamp(next, properties.getMinLimit(), properties.getMaxLimit());
+        if ((int) next != (int) limit) {
+            log.info("Admission limit {} -> {} events/s (lag={}, bufferUsage={})",
+                    (int) limit, (int) next, lag, String.format("%.2f", usage));
+            rateLimiter.changeLimitForPeriod((int) next);
+        }
+        limit = next;
+
+        double drainPerSecond = previousCommitted >= 0
+                ? Math.max(0, committedOffsets - previousCommitted) * 1000.0 / properties.getSampleRate()
+                : 0;
+        previousCommitted = committedOffsets;
+        retryAfterSeconds = retryAfter(lag, drainPerSecond);
+    }
+
+    /** Lag'in lag-low'a inme tahmini (saniye); tüketim görülmüyorsa üst sınır, lag düşükse bir sonraki limit periyodu. */
+    private int retryAfter(long lag, double drainPerSecond) {
+        long excess = lag - properties.getLagLow();
+        if (excess <= 0) {
+            return 1;
+        }
+        int max = (int) properties.getMaxRetryAfter().toSeconds();
+        if (drainPerSecond <= 0) {
+            return max;
+        }
+        return (int) Math.clamp((long) Math.ceil(excess / drainPerSecond), 1, max);
+    }
+
+    int getLimit() {
+        return (int) limit;
+    }
+
+    public int getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
+    /** Topic partition'ları için {toplam lag, toplam commit edilmiş offset}. Commit'i olmayan partition sayılmaz. */
+    private long[] sampleLag() throws Exception {
+        Map<TopicPartition, OffsetAndMetadata> committed = admin().listConsumerGroupOffsets(groupId)
+                .partitionsToOffsetAndMetadata()
+                .get(ADMIN_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+        Map<TopicPartition, OffsetSpec> latest = new HashMap<>();
+        committed.forEach((partition, offset) -> {
+            if (topic.equals(partition.topic()) && offset != null) {
+                latest.put(partition, OffsetSpec.latest());
+            }
+        });
+        if (latest.isEmpty()) {
+            return new long[]{0, 0};
+        }
+        Map<TopicPartition, ListOffsetsResult.ListOffsetsResultInfo> ends = admin().listOffsets(latest)
+                .all()
+                .get(ADMIN_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+        long lag = 0;
+        long committedSum = 0;
+        for (TopicPartition partition : latest.keySet()) {
+            long position = committed.get(partition).offset();
+            committedSum += position;
+            lag += Math.max(0, ends.get(partition).offset() - position);
+        }
+        return new long[]{lag, committedSum};
+    }
+
+    /** Producer buffer.memory doluluğu (0..1); metrik yoksa 0. */
+    private double sampleBufferUsage() {
+        double available = -1;
+        double total = -1;
+        for (Map.Entry<MetricName, ? extends Metric> entry : kafkaTemplate.metrics().entrySet()) {
+            if (!"producer-metrics".equals(entry.getKey().group())) {
+                continue;
+            }
+            switch (entry.getKey().name()) {
+                case "buffer-available-bytes" -> available = ((Number) entry.getValue().metricValue()).doubleValue();
+                case "buffer-total-bytes" -> total = ((Number) entry.getValue().metricValue()).doubleValue();
+                default -> {
+                }
+            }
+        }
+        return available >= 0 && total > 0 ? 1 - available / total : 0;
+    }
+
+    private synchronized AdminClient admin() {
+        if (adminClient == null) {
+            adminClient = AdminClient.create(kafkaAdmin.getConfigurationProperties());
+        }
+        return adminClient;
+    }
+
+    @Override
+    public synchronized void destroy() {
+        if (adminClient != null) {
+            adminClient.close(ADMIN_TIMEOUT);
+        }
+    }
+
+    /** Kabul limiti aşıldı; GlobalExceptionHandler 429 + Retry-After döner. */
+    public static class AdmissionRejectedException extends RuntimeException {
+        private final int retryAfterSeconds;
+
+        public AdmissionRejectedException(String message, int retryAfterSeconds) {
+            super(message);
+            this.retryAfterSeconds = retryAfterSeconds;
+        }
+
+        public int getRetryAfterSeconds() {
+            return retryAfterSeconds;
+        }
+    }
+}
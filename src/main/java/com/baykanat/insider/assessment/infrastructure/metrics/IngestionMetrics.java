@@ -0,0 +1,174 @@
+package com.baykanat.insider.assessment.infrastructure.metrics;
+
+import com.baykanat.insider.assessment.config.AppProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ingestion hattının aşama süreleri ve sayaçları (validate → produce ack → poll → deserialize → key hash → inbox →
+ * events → commit). Timer'lar percentile histogram yayınlar; partition'a bağlı aşamalar Kafka partition'ı ile
+ * etiketlenir. Meter'lar ilk kullanımda oluşturulup önbelleğe alınır; sıcak yolda maliyet bir System.nanoTime ve bir
+ * map okumasıdır. app.observability.enabled=false iken start() 0 döner, kayıtlar atlanır ve hiçbir meter (gauge'lar
+ * dahil) registry'ye eklenmez.
+ */
+@Component
+public class IngestionMetrics {
+
+    /** Partition'ı olmayan çağrılar (tek event, partition'sız processBatch) için etiket. */
+    private static final String NO_PARTITION = "none";
+    /** Partition etiketi kapalıyken tüm partition'lar için etiket. */
+    private static final String ALL_PARTITIONS = "all";
+
+    /** Ölçülen aşamalar; partitioned olanlar partition etiketi taşır. */
+    public enum Stage {
+        VALIDATE("ingestion.validate", "Bean Validation of a request body", false),
+        PRODUCE_ACK("ingestion.produce.ack", "Kafka send until acks=all acknowledgement", false),
+        POLL_TO_PROCESS("ingestion.poll_to_process", "Listener receipt of a poll until its persist starts", true),
+        DESERIALIZE("ingestion.deserialize", "Deserializing and routing one poll", false),
+        KEY_HASH("ingestion.key_hash", "Idempotency key generation for one sub-batch", true),
+        INBOX_LOOKUP("ingestion.inbox.lookup", "Inbox dedup lookup for one sub-batch", true),
+        INBOX_INSERT("ingestion.inbox.insert", "Inbox insert for one sub-batch", true),
+        EVENTS_INSERT("ingestion.events.insert", "Events insert for one sub-batch", true),
+        ROLLUP("ingestion.rollup", "Rollup upserts for one sub-batch, including row lock waits", true),
+        COMMIT("ingestion.commit", "Transaction commit of one sub-batch", true);
+
+        private final String meterName;
+        private final String description;
+        private final boolean partitioned;
+
+        Stage(String meterName, String description, boolean partitioned) {
+            this.meterName = meterName;
+            this.description = description;
+            this.partitioned = partitioned;
+        }
+    }
+
+    private final MeterRegistry registry;
+    private final AppProperties.ObservabilityProperties properties;
+    private final Map<Stage, Map<String, Timer>> timers = new EnumMap<>(Stage.class);
+    private final Map<String, Counter> duplicates = new ConcurrentHashMap<>();
+    private final Map<String, Counter> inserted = new ConcurrentHashMap<>();
+    private final Counter dltSends;
+    private final AtomicInteger lastBatchSize = new AtomicInteger();
+    private final AtomicLong lastMvRefreshNanos = new AtomicLong();
+
+    public IngestionMetrics(MeterRegistry registry, AppProperties appProperties) {
+        this.registry = registry;
+        this.properties = appProperties.getObservability();
+        for (Stage stage : Stage.values()) {
+            timers.put(stage, new ConcurrentHashMap<>());
+        }
+        if (!properties.isEnabled()) {
+            this.dltSends = null;
+            return;
+        }
+        this.dltSends = Counter.builder("ingestion.dlt.sends")
+                .description("Records sent to the dead letter topic")
+                .register(registry);
+        Gauge.builder("ingestion.consumer.batch.size", lastBatchSize, AtomicInteger::get)
+                .description("Records in the last consumed poll")
+                .register(registry);
+        Gauge.builder("metrics.mv.refresh.duration", lastMvRefreshNanos, nanos -> nanos.get() / 1e9)
+                .description("Duration of the last event_metrics materialized view refresh")
+                .baseUnit("seconds")
+                .register(registry);
+    }
+
+    /** Ölçüm başlangıcı; kapalıyken 0. */
+    public long start() {
+        return properties.isEnabled() ? System.nanoTime() : 0L;
+    }
+
+    /** Partition'sız aşama süresi. */
+    public void record(Stage stage, long startNanos) {
+        record(stage, null, startNanos);
+    }
+
+    /** start()'tan bu yana geçen süreyi aşamanın (partition) timer'ına yazar. */
+    public void record(Stage stage, Integer partition, long startNanos) {
+        if (startNanos == 0L) {
+            return;
+        }
+        recordNanos(stage, partition, System.nanoTime() - startNanos);
+    }
+
+    /** Önceden ölçülmüş süre (ör. commit senkronizasyonu). */
+    public void recordNanos(Stage stage, Integer partition, long nanos) {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        timers.get(stage)
+                .computeIfAbsent(partitionTag(partition), tag -> timer(stage, tag))
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void countDuplicates(Integer partition, int count) {
+        if (properties.isEnabled() && count > 0) {
+            duplicates.computeIfAbsent(partitionTag(partition), tag -> Counter.builder("ingestion.duplicates")
+                    .description("Events skipped because their idempotency key was already in the inbox or in events")
+                    .tag("partition", tag)
+                    .register(registry)).increment(count);
+        }
+    }
+
+    public void countInserted(Integer partition, int count) {
+        if (properties.isEnabled() && count > 0) {
+            inserted.computeIfAbsent(partitionTag(partition), tag -> Counter.builder("ingestion.rows.inserted")
+                    .description("Events inserted into the events table")
+                    .tag("partition", tag)
+                    .register(registry)).increment(count);
+        }
+    }
+
+    public void countDltSend() {
+        if (properties.isEnabled()) {
+            dltSends.increment();
+        }
+    }
+
+    public void batchSize(int records) {
+        if (properties.isEnabled()) {
+            lastBatchSize.set(records);
+        }
+    }
+
+    public void mvRefreshDuration(long nanos) {
+        if (properties.isEnabled()) {
+            lastMvRefreshNanos.set(nanos);
+        }
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    private String partitionTag(Integer partition) {
+        if (partition == null) {
+            return NO_PARTITION;
+        }
+        return properties.isPartitionTag() ? partition.toString() : ALL_PARTITIONS;
+    }
+
+    private Timer timer(Stage stage, String partitionTag) {
+        Timer.Builder builder = Timer.builder(stage.meterName)
+                .description(stage.description)
+                .publishPercentileHistogram(properties.isPercentileHistogram())
+                .minimumExpectedValue(Duration.ofNanos(10_000))
+                .maximumExpectedValue(Duration.ofSeconds(30));
+        if (stage.partitioned) {
+            builder.tag("partition", partitionTag);
+        }
+        return builder.register(registry);
+    }
+}
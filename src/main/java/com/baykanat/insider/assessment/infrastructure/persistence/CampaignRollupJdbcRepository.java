@@ -0,0 +1,220 @@
+package com.baykanat.insider.assessment.infrastructure.persistence;
+
+import com.baykanat.insider.assessment.config.AppProperties;
+import com.baykanat.insider.assessment.domain.hash.Murmur3;
+import com.baykanat.insider.assessment.domain.model.Event;
+import com.baykanat.insider.assessment.infrastructure.persistence.DimensionDictionary.EventDimensions;
+import com.baykanat.insider.assessment.infrastructure.persistence.DimensionRollupWriter.BucketDelta;
+import com.baykanat.insider.assessment.infrastructure.persistence.DimensionRollupWriter.BucketKey;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static com.baykanat.insider.assessment.infrastructure.persistence.DimensionRollupWriter.mergeSketches;
+import static com.baykanat.insider.assessment.infrastructure.persistence.DimensionRollupWriter.toTimestamp;
+
+/**
+ * campaign_id kırılımlı rollup (V13): event_metrics_campaign_hourly ve event_metrics_campaign_daily. Yazma, sketch
+ * backfill'i ve yeniden kurulum DimensionRollupWriter'dadır (etiket rollup'ıyla ortak); saatlik delta'lar
+ * event'lerden, günlükler saatliklerden kademeli üretilir. campaign_id'si olmayan event'ler yazılmaz; channel yoksa
+ * channel_id 0.
+ *
+ * <p>Okuma yolu iki adımlıdır: topCampaigns pencerede en çok event alan kampanyaları (event_name_id, bucket_start)
+ * PK önekiyle sıralar; scanCells yalnızca seçilen kampanyaların kovalarını sketch'leriyle okur. Hiçbir okuma events
+ * tablosuna inmez. PK total_count'u INCLUDE etmez: her delta total_count'u günceller ve index'teki bir sütunun
+ * değişmesi HOT güncellemeyi engeller; dolu sketch'ler TOAST'a taşındığından sıralamanın heap okuması çoğunlukla dar
+ * satırlardır.
+ */
+@Slf4j
+@Repository
+public class CampaignRollupJdbcRepository {
+
+    /** Kampanya rollup'ının çözünürlükleri, inceden kabaya. */
+    public static final List<RollupResolution> RESOLUTIONS = List.of(RollupResolution.HOUR, RollupResolution.DAY);
+
+    private static final String RANGE_SQL = """
+            SELECT campaign_id, total_count
+            FROM %s
+            WHERE event_name_id = ?
+              AND bucket_start >= ?
+              AND bucket_start < ?%s""";
+
+    private static final String TOP_SQL = """
+            SELECT r.campaign_id, d.name, r.total_count
+            FROM (
+                SELECT campaign_id, SUM(total_count) AS total_count
+                FROM (%s) ranged
+                GROUP BY campaign_id
+                ORDER BY total_count DESC, campaign_id
+                LIMIT ?
+            ) r
+            JOIN campaign_dim d ON d.id = r.campaign_id
+            ORDER BY r.total_count DESC, r.campaign_id
+            """;
+
+    private static final String CELLS_SQL = """
+            SELECT campaign_id, bucket_start, SUM(total_count) AS total_count,
+                   SUM(unique_user_count) AS unique_user_count, ARRAY_AGG(user_sketch) AS sketches
+            FROM %s
+            WHERE event_name_id = ?
+              AND campaign_id = ANY(?)
+              AND bucket_start >= ?
+              AND bucket_start < ?%s
+            GROUP BY campaign_id, bucket_start""";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final DimensionDictionary dictionary;
+    private final DimensionRollupWriter writer;
+
+    public CampaignRollupJdbcRepository(JdbcTemplate jdbcTemplate, AppProperties appProperties,
+                                        DimensionDictionary dictionary) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.dictionary = dictionary;
+        this.writer = new DimensionRollupWriter(jdbcTemplate, appProperties,
+                Map.of(RollupResolution.HOUR, "event_metrics_campaign_hourly",
+                        RollupResolution.DAY, "event_metrics_campaign_daily"),
+                "campaign_id", false, "campaign_id", "campaign_id = ?");
+    }
+
+    /**
+     * Batch'teki kampanyalı event'lerin delta'larını saatlik ve günlük tablolara yazar; güncellenen kova sayısını
+     * döner. Aynı transaction'da MetricsRollupJdbcRepository.applyBatch'ten sonra çağrılır (saat lock'ları onda
+     * alınır); tablolar her zaman aynı sırayla kilitlenir.
+     */
+    public int applyBatch(List<Event> events) {
+        if (events.isEmpty()) {
+            return 0;
+        }
+        EventDimensions dimensions = dictionary.resolve(events);
+        Map<BucketKey, BucketDelta> deltas = writer.newDeltas();
+        for (Event event : events) {
+            Integer campaignId = dimensions.campaignId(event);
+            if (campaignId == null) {
+                continue;
+            }
+            Integer channelId = dimensions.channelId(event);
+            BucketKey key = new BucketKey(dimensions.eventNameId(event), campaignId,
+                    channelId != null ? channelId : MetricsRollupJdbcRepository.NO_CHANNEL,
+                    RollupResolution.HOUR.floor(event.getEventTimestamp()));
+            deltas.computeIfAbsent(key, k -> new BucketDelta(event.getEventDate()))
+                    .add(Murmur3.hash64(event.getUserId()));
+        }
+        if (deltas.isEmpty()) {
+            return 0;
+        }
+
+        int updated = writer.apply(deltas);
+        log.debug("Campaign rollup updated: {} events into {} buckets", events.size(), updated);
+        return updated;
+    }
+
+    /**
+     * Pencerelerde en çok event alan en fazla limit kampanya, çoktan aza (eşitlikte id sırası). Her aralık kendi
+     * çözünürlüğünün tablosundan kova başlangıcı [from, to) olan satırlarla okunur; aralıklar çakışmamalıdır.
+     * channelId null ise tüm channel'lar.
+     */
+    public List<RankedCampaign> topCampaigns(int eventNameId, Integer channelId, List<BucketRange> ranges,
+                                             int limit) {
+        if (ranges.isEmpty()) {
+            return List.of();
+        }
+        String channelFilter = channelId != null ? "\n  AND channel_id = ?" : "";
+        List<String> selects = new ArrayList<>(ranges.size());
+        List<Object> params = new ArrayList<>();
+        for (BucketRange range : ranges) {
+            selects.add(String.format(RANGE_SQL, writer.table(range.resolution()), channelFilter));
+            params.add(eventNameId);
+            params.add(toTimestamp(range.from()));
+            params.add(toTimestamp(range.to()));
+            if (channelId != null) {
+                params.add(channelId);
+            }
+        }
+        params.add(limit);
+        String sql = String.format(TOP_SQL, String.join("\nUNION ALL\n", selects));
+        return jdbcTemplate.query(sql, (rs, rowNum) -> new RankedCampaign(rs.getInt("campaign_id"),
+                rs.getString("name"), rs.getLong("total_count")), params.toArray());
+    }
+
+    /**
+     * Seçilen kampanyaların [from, to) penceresindeki kovalarını hücre olarak akıtır; hücrenin boyut id'si kampanya
+     * id'sidir. channelId null ise kovanın channel satırları birleştirilir (sketch'ler birleşir; sketch'i backfill
+     * bekleyen satır varsa kova sketch'siz, tekil sayılar toplanmış döner).
+     */
+    public void scanCells(int eventNameId, Integer channelId, Collection<Integer> campaignIds,
+                          RollupResolution resolution, long from, long to, Consumer<MetricsCell> handler) {
+        if (campaignIds.isEmpty()) {
+            return;
+        }
+        List<Object> params = new ArrayList<>();
+        params.add(eventNameId);
+        params.add(campaignIds.toArray(Integer[]::new));
+        params.add(toTimestamp(from));
+        params.add(toTimestamp(to));
+        if (channelId != null) {
+            params.add(channelId);
+        }
+        String sql = String.format(CELLS_SQL, writer.table(resolution),
+                channelId != null ? "\n  AND channel_id = ?" : "");
+        jdbcTemplate.query(sql, rs -> {
+            handler.accept(new MetricsCell(eventNameId, rs.getInt("campaign_id"),
+                    rs.getTimestamp("bucket_start").toInstant().getEpochSecond(), rs.getLong("total_count"),
+                    rs.getLong("unique_user_count"), mergeSketches((Object[]) rs.getArray("sketches").getArray())));
+        }, params.toArray());
+    }
+
+    /** Sketch'i NULL olan en fazla limit kovayı, en yeniden başlayarak döner. */
+    public List<DimensionBucket> findBucketsPendingBackfill(RollupResolution resolution, int limit) {
+        return writer.findBucketsPendingBackfill(resolution, limit);
+    }
+
+    /**
+     * Kovanın sketch'ini kurar; satır kilidi altında, tek transaction. Günlük kovalar saatlik kampanya sketch'lerinden
+     * (biri henüz backfill bekliyorsa false), saatlikler events tablosundaki kullanıcılardan kurulur.
+     */
+    @Transactional
+    public boolean backfillSketch(DimensionBucket bucket) {
+        return writer.backfillSketch(bucket);
+    }
+
+    /**
+     * Saatin saatlik kampanya kovalarını events'ten yeniden kurar (saat lock'u exclusive); yazılan kova sayısını döner.
+     * Partition'ı olmayan saat için çağrılmamalıdır.
+     */
+    @Transactional
+    public int rebuildHour(long hourStart) {
+        return writer.rebuildHour(hourStart, rs -> List.of(rs.getInt("dimension")));
+    }
+
+    /** Günün günlük kampanya kovalarını saatliklerden yeniden kurar; yazılan kova sayısını döner. */
+    @Transactional
+    public int rebuildDay(LocalDate day) {
+        return writer.rebuildDay(day);
+    }
+
+    /** Saatlik kampanya kovası olan günler, en yeniden eskiye. */
+    public List<LocalDate> findRollupDays() {
+        return writer.findRollupDays();
+    }
+
+    /** Kampanya rollup tabloları (yeniden kurulumun senkron listesi için). */
+    public List<String> tables() {
+        return writer.tables();
+    }
+
+    /** Kampanya rollup sorgusunun bir aralığı: resolution tablosunda kova başlangıcı [from, to) olan satırlar. */
+    public record BucketRange(RollupResolution resolution, long from, long to) {
+    }
+
+    /** Sıralamadaki bir kampanya: sözlük id'si, campaign_id ve penceredeki event sayısı. */
+    public record RankedCampaign(int id, String name, long totalCount) {
+    }
+}
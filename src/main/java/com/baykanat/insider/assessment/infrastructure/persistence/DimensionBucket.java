@@ -0,0 +1,14 @@
+package com.baykanat.insider.assessment.infrastructure.persistence;
+
+/**
+ * Boyut kırılımlı rollup kovasının kimliği (kampanya ve etiket rollup'ları; DimensionRollupWriter).
+ *
+ * @param resolution  kovanın çözünürlüğü
+ * @param eventNameId sözlük id'si
+ * @param dimensionId kırılım boyutunun sözlük id'si (campaign_id veya tag_id)
+ * @param channelId   channel'ın sözlük id'si; channel yoksa 0
+ * @param bucketStart kovanın başlangıcı (epoch sn, UTC)
+ */
+public record DimensionBucket(RollupResolution resolution, int eventNameId, int dimensionId, int channelId,
+                              long bucketStart) {
+}
@@ -0,0 +1,204 @@
+package com.baykanat.insider.assessment.infrastructure.persistence;
+
+import com.baykanat.insider.assessment.domain.model.Event;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * event_name, channel, campaign_id (V11) ve tag (V14) sözlük tabloları için süreç içi önbellek: metin → INTEGER id.
+ *
+ * <p>Okumalar kilitsizdir; id'ler değişmediği için önbellek hiç geçersiz kılınmaz. event_name ve channel sözlükleri
+ * küçük ve sınırlıdır, tamamı ConcurrentHashMap'te tutulur. campaign ve tag değerleri istemciden gelir ve zamanla
+ * sınırsız büyür; onların önbelleği boyut sınırlı bir Caffeine önbelleğidir (sık kullanılanlar kalır, çıkarılan değer
+ * bir sonraki kullanımda DB'den tekrar okunur).
+ * Yazma yolunda bilinmeyen değerler çağıranın transaction'ında oluşturulur (INSERT ... ON CONFLICT DO NOTHING, ardından
+ * SELECT); eşzamanlı iki transaction aynı değeri oluşturursa biri diğerinin commit'ini bekleyip aynı id'yi okur.
+ * Değerler sıralı eklenir (satır kilitleri her thread'de aynı sırada, deadlock önlemi). Yeni id'ler önbelleğe commit
+ * sonrası girer; rollback olan transaction'ın id'si önbellekte kalıp başka bir satıra yazılamaz.
+ * Sorgu yolu değer oluşturmaz: bilinmeyen isim = veri yok.
+ */
+@Slf4j
+@Repository
+@RequiredArgsConstructor
+public class DimensionDictionary {
+
+    /** Sözlük tabloları; hepsi (id INTEGER, name UNIQUE) yapısında. */
+    public enum Dimension {
+        EVENT_NAME("event_name_dim", 0),
+        CHANNEL("channel_dim", 0),
+        CAMPAIGN("campaign_dim", 50_000),
+        TAG("tag_dim", 50_000);
+
+        private final String table;
+        /** Önbellekte tutulan en fazla değer; 0 = sınırsız. */
+        private final int maxCached;
+
+        Dimension(String table, int maxCached) {
+            this.table = table;
+            this.maxCached = maxCached;
+        }
+    }
+
+    private static final String CREATE_SQL = """
+            INSERT INTO %s (name)
+            SELECT v.name FROM UNNEST(?::text[]) AS v(name)
+            WHERE NOT EXISTS (SELECT 1 FROM %1$s d WHERE d.name = v.name)
+            ON CONFLICT (name) DO NOTHING
+            """;
+
+    private static final String FIND_BY_NAMES_SQL = "SELECT id, name FROM %s WHERE name = ANY(?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Map<Dimension, Map<String, Integer>> caches = newCaches();
+
+    /** Batch'teki tüm boyut değerlerinin id'leri; eksikler oluşturulur. */
+    public EventDimensions resolve(List<Event> events) {
+        List<String> eventNames = new ArrayList<>(events.size());
+        List<String> channels = new ArrayList<>(events.size());
+        List<String> campaigns = new ArrayList<>(events.size());
+        for (Event event : events) {
+            eventNames.add(event.getEventName());
+            channels.add(event.getChannel());
+            campaigns.add(event.getCampaignId());
+        }
+        return new EventDimensions(
+                resolve(Dimension.EVENT_NAME, eventNames),
+                resolve(Dimension.CHANNEL, channels),
+                resolve(Dimension.CAMPAIGN, campaigns));
+    }
+
+    /** Değerlerin id'leri (null'lar atlanır); önbellekte olmayanlar DB'de aranır, yoksa oluşturulur. */
+    public Map<String, Integer> resolve(Dimension dimension, Collection<String> values) {
+        Map<String, Integer> cache = caches.get(dimension);
+        Map<String, Integer> ids = new HashMap<>();
+        SortedSet<String> missing = new TreeSet<>();
+        for (String value : values) {
+            if (value == null) {
+                continue;
+            }
+            Integer id = cache.get(value);
+            if (id != null) {
+                ids.put(value, id);
+            } else {
+                missing.add(value);
+            }
+        }
+        if (missing.isEmpty()) {
+            return ids;
+        }
+
+        String[] names = missing.toArray(String[]::new);
+        jdbcTemplate.update(String.format(CREATE_SQL, dimension.table), (Object) names);
+        Map<String, Integer> created = findByNames(dimension, names);
+        ids.putAll(created);
+        cacheAfterCommit(cache, created);
+        log.debug("Dictionary {}: resolved {} new values", dimension, created.size());
+        return ids;
+    }
+
+    /** Değerin id'si; sözlükte yoksa null (oluşturmaz). */
+    public Integer findId(Dimension dimension, String value) {
+        if (value == null) {
+            return null;
+        }
+        return findIds(dimension, List.of(value)).get(value);
+    }
+
+    /** Sözlükte olan değerlerin id'leri; olmayanlar sonuçta yer almaz (oluşturmaz). */
+    public Map<String, Integer> findIds(Dimension dimension, Collection<String> values) {
+        Map<String, Integer> cache = caches.get(dimension);
+        Map<String, Integer> ids = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+        for (String value : values) {
+            if (value == null) {
+                continue;
+            }
+            Integer id = cache.get(value);
+            if (id != null) {
+                ids.put(value, id);
+            } else {
+                missing.add(value);
+            }
+        }
+        if (!missing.isEmpty()) {
+            Map<String, Integer> found = findByNames(dimension, missing.toArray(String[]::new));
+            cache.putAll(found);
+            ids.putAll(found);
+        }
+        return ids;
+    }
+
+    /** Boyutun tüm değerleri ve id'leri (kırılım sorguları için; yalnızca küçük sözlüklerde kullanılmalı). */
+    public Map<String, Integer> findAll(Dimension dimension) {
+        Map<String, Integer> found = new HashMap<>();
+        jdbcTemplate.query(String.format("SELECT id, name FROM %s", dimension.table), rs -> {
+            found.put(rs.getString("name"), rs.getInt("id"));
+        });
+        caches.get(dimension).putAll(found);
+        return found;
+    }
+
+    private Map<String, Integer> findByNames(Dimension dimension, String[] names) {
+        Map<String, Integer> found = new HashMap<>();
+        jdbcTemplate.query(String.format(FIND_BY_NAMES_SQL, dimension.table),
+                rs -> {
+                    found.put(rs.getString("name"), rs.getInt("id"));
+                }, (Object) names);
+        return found;
+    }
+
+    private static void cacheAfterCommit(Map<String, Integer> cache, Map<String, Integer> created) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            cache.putAll(created);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                cache.putAll(created);
+            }
+        });
+    }
+
+    private static Map<Dimension, Map<String, Integer>> newCaches() {
+        Map<Dimension, Map<String, Integer>> caches = new EnumMap<>(Dimension.class);
+        for (Dimension dimension : Dimension.values()) {
+            caches.put(dimension, dimension.maxCached > 0
+                    ? Caffeine.newBuilder().maximumSize(dimension.maxCached).<String, Integer>build().asMap()
+                    : new ConcurrentHashMap<>());
+        }
+        return caches;
+    }
+
+    /** Bir batch'in boyut id'leri; channel ve campaign_id boşsa null. */
+    public record EventDimensions(Map<String, Integer> eventNames, Map<String, Integer> channels,
+                                  Map<String, Integer> campaigns) {
+
+        public int eventNameId(Event event) {
+            return eventNames.get(event.getEventName());
+        }
+
+        public Integer channelId(Event event) {
+            return event.getChannel() != null ? channels.get(event.getChannel()) : null;
+        }
+
+        public Integer campaignId(Event event) {
+            return event.getCampaignId() != null ? campaigns.get(event.getCampaignId()) : null;
+        }
+    }
+}
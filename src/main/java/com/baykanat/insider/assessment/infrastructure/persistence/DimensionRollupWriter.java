@@ -0,0 +1,462 @@
+package com.baykanat.insider.assessment.infrastructure.persistence;
+
+import com.baykanat.insider.assessment.config.AppProperties;
+import com.baykanat.insider.assessment.domain.hash.Murmur3;
+import com.baykanat.insider.assessment.domain.sketch.HyperLogLog;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.SqlParameterValue;
+
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Boyut kırılımlı rollup tablolarının (kampanya V13, etiket V14) ortak yazma, sketch backfill ve yeniden kurulum
+ * yolu. Tablolar (event_name_id, boyut id'si, channel_id, kova başlangıcı) anahtarlıdır; boyut sütununun PK'deki yeri
+ * tabloya göre değişir ve satır kilitleri PK sırasıyla alınır. Yazma yolu MetricsRollupJdbcRepository ile aynıdır:
+ * delta'lar çağıranın transaction'ında yazılır, satırlar sıralı kilitlenir, sketch'ler Java'da birleştirilir; ilk
+ * çözünürlüğün delta'ları event'lerden, kabalarınki bir alttakinden kademeli üretilir.
+ *
+ * <p>Yeniden kurulum MetricsRollupJdbcRepository'nin saat advisory lock'larıyla consumer'dan ayrışır: consumer
+ * transaction'ında saatler MetricsRollupJdbcRepository.applyBatch tarafından paylaşımlı kilitlenmiştir, rebuildHour
+ * ve rebuildDay aynı saatleri exclusive kilitler.
+ */
+final class DimensionRollupWriter {
+
+    private static final String ENSURE_ROW_SQL = """
+            INSERT INTO %1$s (event_name_id, %2$s, channel_id, bucket_start, event_date, total_count, unique_user_count)
+            VALUES (?, ?, ?, ?, ?, 0, 0)
+            ON CONFLICT (%3$s) DO NOTHING
+            """;
+
+    private static final String LOCK_ROWS_SQL = """
+            SELECT event_name_id, %2$s AS dimension_id, channel_id, bucket_start, total_count, user_sketch
+            FROM %1$s
+            WHERE (%3$s) IN (%4$s)
+            ORDER BY %3$s
+            FOR UPDATE
+            """;
+
+    private static final String UPDATE_SQL = """
+            UPDATE %1$s
+            SET total_count = total_count + ?,
+                unique_user_count = COALESCE(?, unique_user_count),
+                user_sketch = COALESCE(?, user_sketch)
+            WHERE event_name_id = ? AND %2$s = ? AND channel_id = ? AND bucket_start = ?
+            """;
+
+    private static final String PENDING_BACKFILL_SQL = """
+            SELECT event_name_id, %2$s AS dimension_id, channel_id, bucket_start
+            FROM %1$s
+            WHERE user_sketch IS NULL
+            ORDER BY bucket_start DESC
+            LIMIT ?
+            """;
+
+    private static final String LOCK_ROW_SQL = """
+            SELECT user_sketch FROM %1$s
+            WHERE event_name_id = ? AND %2$s = ? AND channel_id = ? AND bucket_start = ?
+            FOR UPDATE
+            """;
+
+    private static final String FILL_SKETCH_SQL = """
+            UPDATE %1$s SET user_sketch = ?, unique_user_count = COALESCE(?, unique_user_count)
+            WHERE event_name_id = ? AND %2$s = ? AND channel_id = ? AND bucket_start = ?
+            """;
+
+    private static final String BUCKET_USERS_SQL = """
+            SELECT user_id FROM events
+            WHERE event_name_id = ?
+              AND event_date = ?
+              AND %s
+              AND COALESCE(channel_id, 0) = ?
+              AND event_timestamp >= ?
+              AND event_timestamp < ?
+            """;
+
+    private static final String HOURLY_SKETCHES_SQL = """
+            SELECT total_count, user_sketch FROM %1$s
+            WHERE event_name_id = ?
+              AND %2$s = ?
+              AND channel_id = ?
+              AND bucket_start >= ?
+              AND bucket_start < ?
+            """;
+
+    private static final String HOUR_EVENTS_SQL = """
+            SELECT event_name_id, COALESCE(channel_id, 0) AS channel_id, user_id, %1$s AS dimension
+            FROM events
+            WHERE event_date = ?
+              AND event_timestamp >= ?
+              AND event_timestamp < ?
+              AND %1$s IS NOT NULL
+            """;
+
+    private static final String INSERT_ROW_SQL = """
+            INSERT INTO %1$s (event_name_id, %2$s, channel_id, bucket_start, event_date,
+                              total_count, unique_user_count, user_sketch)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?)
+            """;
+
+    private static final String HOURLY_ROWS_SQL = """
+            SELECT event_name_id, %2$s AS dimension_id, channel_id, total_count, user_sketch
+            FROM %1$s
+            WHERE bucket_start >= ?
+              AND bucket_start < ?
+            """;
+
+    private static final String ROLLUP_DAYS_SQL = "SELECT DISTINCT event_date FROM %s ORDER BY event_date DESC";
+
+    /** Yeniden kurulumda events bu boyutta parçalar halinde okunur (cursor). */
+    private static final int REBUILD_FETCH_SIZE = 10_000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final AppProperties appProperties;
+    private final Map<RollupResolution, String> tables;
+    private final String dimensionColumn;
+    private final String keyColumns;
+    private final boolean dimensionBeforeBucket;
+    private final Comparator<BucketKey> bucketOrder;
+    private final String eventsColumn;
+    private final String eventsFilter;
+
+    /**
+     * @param tables                çözünürlük başına tablo; saatlik tablo zorunludur, kabalar ondan kademeli yazılır
+     * @param dimensionColumn       tablolardaki boyut sütunu (campaign_id, tag_id)
+     * @param dimensionBeforeBucket PK'de boyut sütunu bucket_start'tan önce mi
+     * @param eventsColumn          yeniden kurulumda events'ten okunan boyut sütunu; NULL satırlar atlanır
+     * @param eventsFilter          backfill'de kovanın kullanıcılarını seçen events koşulu; tek parametresi boyut id'si
+     */
+    DimensionRollupWriter(JdbcTemplate jdbcTemplate, AppProperties appProperties,
+                          Map<RollupResolution, String> tables, String dimensionColumn,
+                          boolean dimensionBeforeBucket, String eventsColumn, String eventsFilter) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.appProperties = appProperties;
+        this.tables = new EnumMap<>(tables);
+        this.dimensionColumn = dimensionColumn;
+        this.dimensionBeforeBucket = dimensionBeforeBucket;
+        this.keyColumns = dimensionBeforeBucket
+                ? "event_name_id, " + dimensionColumn + ", bucket_start, channel_id"
+                : "event_name_id, bucket_start, " + dimensionColumn + ", channel_id";
+        // Satır kilitleri her consumer thread'inde aynı sırada alınsın diye kovalar PK sırasıyla tutulur
+        Comparator<BucketKey> byName = Comparator.comparingInt(BucketKey::eventNameId);
+        this.bucketOrder = (dimensionBeforeBucket
+                ? byName.thenComparingInt(BucketKey::dimensionId).thenComparingLong(BucketKey::bucketStart)
+                : byName.thenComparingLong(BucketKey::bucketStart).thenComparingInt(BucketKey::dimensionId))
+                .thenComparingInt(BucketKey::channelId);
+        this.eventsColumn = eventsColumn;
+        this.eventsFilter = eventsFilter;
+    }
+
+    List<String> tables() {
+        return List.copyOf(tables.values());
+    }
+
+    String table(RollupResolution resolution) {
+        String table = tables.get(resolution);
+        if (table == null) {
+            throw new IllegalArgumentException("No " + dimensionColumn + " rollup for " + resolution);
+        }
+        return table;
+    }
+
+    /** Kovaları PK kilit sırasıyla tutan boş delta haritası. */
+    Map<BucketKey, BucketDelta> newDeltas() {
+        return new TreeMap<>(bucketOrder);
+    }
+
+    /** Saatlik delta'ları tüm çözünürlüklere yazar; güncellenen kova sayısını (çözünürlükler toplamı) döner. */
+    int apply(Map<BucketKey, BucketDelta> hourly) {
+        int updated = 0;
+        Map<BucketKey, BucketDelta> deltas = hourly;
+        for (RollupResolution resolution : tables.keySet()) {
+            if (resolution != RollupResolution.HOUR) {
+                deltas = cascade(deltas, resolution);
+            }
+            applyDeltas(resolution, deltas);
+            updated += deltas.size();
+        }
+        return updated;
+    }
+
+    /** Sketch'i NULL olan en fazla limit kovayı, en yeniden başlayarak döner. */
+    List<DimensionBucket> findBucketsPendingBackfill(RollupResolution resolution, int limit) {
+        return jdbcTemplate.query(format(PENDING_BACKFILL_SQL, resolution), (rs, rowNum) -> new DimensionBucket(
+                resolution,
+                rs.getInt("event_name_id"),
+                rs.getInt("dimension_id"),
+                rs.getInt("channel_id"),
+                rs.getTimestamp("bucket_start").toInstant().getEpochSecond()), limit);
+    }
+
+    /**
+     * Kovanın sketch'ini satır kilidi altında kurar; çağıranın transaction'ında. Kaba kovalar saatlik sketch'lerden
+     * (biri henüz backfill bekliyorsa false), saatlikler events tablosundaki kullanıcılardan kurulur.
+     */
+    boolean backfillSketch(DimensionBucket bucket) {
+        RollupResolution resolution = bucket.resolution();
+        Timestamp bucketStart = toTimestamp(bucket.bucketStart());
+        List<byte[]> current = jdbcTemplate.query(format(LOCK_ROW_SQL, resolution),
+                (rs, rowNum) -> rs.getBytes("user_sketch"),
+                bucket.eventNameId(), bucket.dimensionId(), bucket.channelId(), bucketStart);
+        if (current.isEmpty() || current.get(0) != null) {
+            return false;
+        }
+
+        HyperLogLog sketch = new HyperLogLog(appProperties.getMetrics().getHllPrecision());
+        long bucketEnd = bucket.bucketStart() + resolution.seconds();
+        if (resolution != RollupResolution.HOUR) {
+            boolean[] pending = new boolean[1];
+            jdbcTemplate.query(format(HOURLY_SKETCHES_SQL, RollupResolution.HOUR), rs -> {
+                byte[] hourly = rs.getBytes("user_sketch");
+                if (hourly != null) {
+                    sketch.merge(HyperLogLog.fromBytes(hourly));
+                } else if (rs.getLong("total_count") > 0) {
+                    pending[0] = true;
+                }
+            }, bucket.eventNameId(), bucket.dimensionId(), bucket.channelId(), bucketStart, toTimestamp(bucketEnd));
+            if (pending[0]) {
+                return false;
+            }
+        } else {
+            LocalDate eventDate = Instant.ofEpochSecond(bucket.bucketStart()).atOffset(ZoneOffset.UTC).toLocalDate();
+            jdbcTemplate.query(String.format(BUCKET_USERS_SQL, eventsFilter), rs -> {
+                sketch.addHash(Murmur3.hash64(rs.getString("user_id")));
+            }, bucket.eventNameId(), Date.valueOf(eventDate), bucket.dimensionId(), bucket.channelId(),
+                    bucket.bucketStart(), bucketEnd);
+        }
+
+        // Ham partition'ı retention ile silinmiş kova: mevcut unique_user_count korunur, boş sketch yazılır
+        jdbcTemplate.update(format(FILL_SKETCH_SQL, resolution),
+                sketch.toBytes(), new SqlParameterValue(Types.BIGINT, sketch.isEmpty() ? null : sketch.estimate()),
+                bucket.eventNameId(), bucket.dimensionId(), bucket.channelId(), bucketStart);
+        return true;
+    }
+
+    /**
+     * Saatin saatlik kovalarını events'ten yeniden kurar; çağıranın transaction'ında saatin advisory lock'u exclusive
+     * alınır, satırlar silinip sayılar ve sketch'ler baştan yazılır. Kaba çözünürlükler rebuildDay ile kurulur.
+     * Yazılan kova sayısını döner.
+     */
+    int rebuildHour(long hourStart, EventDimensionIds dimensionIds) {
+        MetricsRollupJdbcRepository.lockHours(jdbcTemplate, List.of(hourStart), true);
+        long hourEnd = hourStart + RollupResolution.HOUR.seconds();
+        String hourly = table(RollupResolution.HOUR);
+        jdbcTemplate.update("DELETE FROM " + hourly + " WHERE bucket_start >= ? AND bucket_start < ?",
+                toTimestamp(hourStart), toTimestamp(hourEnd));
+
+        LocalDate eventDate = Instant.ofEpochSecond(hourStart).atOffset(ZoneOffset.UTC).toLocalDate();
+        int precision = appProperties.getMetrics().getHllPrecision();
+        Map<BucketKey, BucketRecount> recounts = new TreeMap<>(bucketOrder);
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(String.format(HOUR_EVENTS_SQL, eventsColumn));
+            ps.setFetchSize(REBUILD_FETCH_SIZE);
+            ps.setDate(1, Date.valueOf(eventDate));
+            ps.setLong(2, hourStart);
+            ps.setLong(3, hourEnd);
+            return ps;
+        }, rs -> {
+            int eventNameId = rs.getInt("event_name_id");
+            int channelId = rs.getInt("channel_id");
+            long hash = Murmur3.hash64(rs.getString("user_id"));
+            for (int dimensionId : dimensionIds.of(rs)) {
+                recounts.computeIfAbsent(new BucketKey(eventNameId, dimensionId, channelId, hourStart),
+                        k -> new BucketRecount(precision)).add(hash);
+            }
+        });
+        return insertRecounts(RollupResolution.HOUR, eventDate, recounts);
+    }
+
+    /**
+     * Günün saatlikten kaba kovalarını saatlik kovalardan yeniden kurar (sayılar toplanır, sketch'ler birleşir);
+     * günün 24 saat lock'u exclusive alınır. Yalnızca saatlik tablo varsa hiçbir şey yapmaz. Yazılan kova sayısını
+     * döner.
+     */
+    int rebuildDay(LocalDate day) {
+        if (!tables.containsKey(RollupResolution.DAY)) {
+            return 0;
+        }
+        long dayStart = day.atStartOfDay(ZoneOffset.UTC).toEpochSecond();
+        long dayEnd = dayStart + RollupResolution.DAY.seconds();
+        List<Long> hours = new ArrayList<>(24);
+        for (long hour = dayStart; hour < dayEnd; hour += RollupResolution.HOUR.seconds()) {
+            hours.add(hour);
+        }
+        MetricsRollupJdbcRepository.lockHours(jdbcTemplate, hours, true);
+        jdbcTemplate.update("DELETE FROM " + table(RollupResolution.DAY) + " WHERE bucket_start = ?",
+                toTimestamp(dayStart));
+
+        int precision = appProperties.getMetrics().getHllPrecision();
+        Map<BucketKey, BucketRecount> days = new TreeMap<>(bucketOrder);
+        jdbcTemplate.query(format(HOURLY_ROWS_SQL, RollupResolution.HOUR), rs -> {
+            BucketRecount recount = days.computeIfAbsent(new BucketKey(rs.getInt("event_name_id"),
+                    rs.getInt("dimension_id"), rs.getInt("channel_id"), dayStart), k -> new BucketRecount(precision));
+            byte[] sketch = rs.getBytes("user_sketch");
+            recount.add(rs.getLong("total_count"), sketch != null ? HyperLogLog.fromBytes(sketch) : null);
+        }, toTimestamp(dayStart), toTimestamp(dayEnd));
+        return insertRecounts(RollupResolution.DAY, day, days);
+    }
+
+    /** Saatlik kovası olan günler, en yeniden eskiye (kaba kovaların yeniden kurulumu için). */
+    List<LocalDate> findRollupDays() {
+        return jdbcTemplate.query(String.format(ROLLUP_DAYS_SQL, table(RollupResolution.HOUR)),
+                (rs, rowNum) -> rs.getDate("event_date").toLocalDate());
+    }
+
+    /** Kovanın channel satırlarının sketch'leri; biri NULL ise (backfill bekliyor) null. */
+    static HyperLogLog mergeSketches(Object[] sketches) {
+        HyperLogLog merged = null;
+        for (Object bytes : sketches) {
+            if (bytes == null) {
+                return null;
+            }
+            HyperLogLog sketch = HyperLogLog.fromBytes((byte[]) bytes);
+            merged = merged == null ? sketch : merged.merge(sketch);
+        }
+        return merged;
+    }
+
+    static Timestamp toTimestamp(long epochSecond) {
+        return Timestamp.from(Instant.ofEpochSecond(epochSecond));
+    }
+
+    /** Bir alttaki çözünürlüğün delta'larını kaba kovalara birleştirir. */
+    private Map<BucketKey, BucketDelta> cascade(Map<BucketKey, BucketDelta> finer, RollupResolution resolution) {
+        Map<BucketKey, BucketDelta> deltas = newDeltas();
+        finer.forEach((key, delta) -> {
+            BucketDelta coarse = deltas.computeIfAbsent(new BucketKey(key.eventNameId(), key.dimensionId(),
+                    key.channelId(), resolution.floor(key.bucketStart())), k -> new BucketDelta(delta.eventDate));
+            coarse.totalCount += delta.totalCount;
+            coarse.userHashes.addAll(delta.userHashes);
+        });
+        return deltas;
+    }
+
+    private void applyDeltas(RollupResolution resolution, Map<BucketKey, BucketDelta> deltas) {
+        List<Object[]> ensureArgs = new ArrayList<>(deltas.size());
+        deltas.forEach((key, delta) -> ensureArgs.add(new Object[]{key.eventNameId(), key.dimensionId(),
+                key.channelId(), toTimestamp(key.bucketStart()), Date.valueOf(delta.eventDate)}));
+        jdbcTemplate.batchUpdate(String.format(ENSURE_ROW_SQL, table(resolution), dimensionColumn, keyColumns),
+                ensureArgs);
+
+        Map<BucketKey, byte[]> sketches = new HashMap<>();
+        Map<BucketKey, Boolean> legacy = new HashMap<>();
+        List<Object> params = new ArrayList<>();
+        List<String> tuples = new ArrayList<>();
+        for (BucketKey key : deltas.keySet()) {
+            tuples.add("(?, ?, ?, ?)");
+            params.add(key.eventNameId());
+            if (dimensionBeforeBucket) {
+                params.add(key.dimensionId());
+                params.add(toTimestamp(key.bucketStart()));
+            } else {
+                params.add(toTimestamp(key.bucketStart()));
+                params.add(key.dimensionId());
+            }
+            params.add(key.channelId());
+        }
+        String sql = String.format(LOCK_ROWS_SQL, table(resolution), dimensionColumn, keyColumns,
+                String.join(", ", tuples));
+        jdbcTemplate.query(sql, rs -> {
+            BucketKey key = new BucketKey(rs.getInt("event_name_id"), rs.getInt("dimension_id"),
+                    rs.getInt("channel_id"), rs.getTimestamp("bucket_start").toInstant().getEpochSecond());
+            byte[] sketch = rs.getBytes("user_sketch");
+            sketches.put(key, sketch);
+            legacy.put(key, sketch == null && rs.getLong("total_count") > 0);
+        }, params.toArray());
+
+        // Sketch'i backfill bekleyen dolu satırda yalnızca total_count artar
+        int precision = appProperties.getMetrics().getHllPrecision();
+        List<Object[]> updateArgs = new ArrayList<>(deltas.size());
+        deltas.forEach((key, delta) -> {
+            SqlParameterValue unique = new SqlParameterValue(Types.BIGINT, null);
+            SqlParameterValue sketchBytes = new SqlParameterValue(Types.BINARY, null);
+            if (!legacy.getOrDefault(key, false)) {
+                byte[] current = sketches.get(key);
+                HyperLogLog sketch = current != null ? HyperLogLog.fromBytes(current) : new HyperLogLog(precision);
+                delta.userHashes.forEach(sketch::addHash);
+                unique = new SqlParameterValue(Types.BIGINT, sketch.estimate());
+                sketchBytes = new SqlParameterValue(Types.BINARY, sketch.toBytes());
+            }
+            updateArgs.add(new Object[]{delta.totalCount, unique, sketchBytes,
+                    key.eventNameId(), key.dimensionId(), key.channelId(), toTimestamp(key.bucketStart())});
+        });
+        jdbcTemplate.batchUpdate(format(UPDATE_SQL, resolution), updateArgs);
+    }
+
+    /** Yeniden sayılan kovaları yazar; yazılan kova sayısını döner. */
+    private int insertRecounts(RollupResolution resolution, LocalDate eventDate, Map<BucketKey, BucketRecount> recounts) {
+        List<Object[]> args = new ArrayList<>(recounts.size());
+        recounts.forEach((key, recount) -> args.add(new Object[]{
+                key.eventNameId(), key.dimensionId(), key.channelId(), toTimestamp(key.bucketStart()),
+                Date.valueOf(eventDate), recount.totalCount, recount.users.estimate(), recount.users.toBytes()}));
+        jdbcTemplate.batchUpdate(format(INSERT_ROW_SQL, resolution), args);
+        return args.size();
+    }
+
+    private String format(String template, RollupResolution resolution) {
+        return String.format(template, table(resolution), dimensionColumn);
+    }
+
+    /** Yeniden kurulumda bir events satırının boyut id'leri (HOUR_EVENTS_SQL'in dimension sütunundan). */
+    @FunctionalInterface
+    interface EventDimensionIds {
+        Collection<Integer> of(ResultSet rs) throws SQLException;
+    }
+
+    /** Boyut rollup kovasının anahtarı (channel yoksa channel_id 0). */
+    record BucketKey(int eventNameId, int dimensionId, int channelId, long bucketStart) {
+    }
+
+    /** Bir kovaya batch'ten eklenecek event sayısı ve kullanıcı hash'leri. */
+    static final class BucketDelta {
+        private final LocalDate eventDate;
+        private final List<Long> userHashes = new ArrayList<>();
+        private long totalCount;
+
+        BucketDelta(LocalDate eventDate) {
+            this.eventDate = eventDate;
+        }
+
+        void add(long userHash) {
+            totalCount++;
+            userHashes.add(userHash);
+        }
+    }
+
+    /** Yeniden kurulan kova: event sayısı ve kullanıcı sketch'i. */
+    private static final class BucketRecount {
+        private final HyperLogLog users;
+        private long totalCount;
+
+        private BucketRecount(int precision) {
+            this.users = new HyperLogLog(precision);
+        }
+
+        private void add(long userHash) {
+            totalCount++;
+            users.addHash(userHash);
+        }
+
+        private void add(long count, HyperLogLog sketch) {
+            totalCount += count;
+            if (sketch != null) {
+                users.merge(sketch);
+            }
+        }
+    }
+}
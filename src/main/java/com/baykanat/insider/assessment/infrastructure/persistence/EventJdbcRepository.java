@@ -1,36 +1,158 @@
 package com.baykanat.insider.assessment.infrastructure.persistence;
 
+import com.baykanat.insider.assessment.config.AppProperties;
 import com.baykanat.insider.assessment.domain.model.Event;
+import com.baykanat.insider.assessment.infrastructure.persistence.DimensionDictionary.EventDimensions;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.PGCopyOutputStream;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.io.IOException;
 import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
 import java.sql.Types;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Consumer;
 
-/** events tablosuna JDBC batch insert. ON CONFLICT DO NOTHING ile idempotency. */
+/**
+ * events tablosuna toplu insert. ON CONFLICT DO NOTHING ile idempotency; (idempotency_key, event_date) unique index'i
+ * tekrarların son güvencesidir ve insert gerçekten eklenen event'leri döner (rollup delta'ları yalnızca onlar için).
+ * Mod app.persistence.events-insert-mode ile seçilir: batch (JDBC batchUpdate) veya copy (binary COPY + staging).
+ * event_name, channel ve campaign_id sözlük id'leri olarak yazılır (V11); id'ler DimensionDictionary'den çözülür.
+ */
 @Slf4j
 @Repository
 @RequiredArgsConstructor
 public class EventJdbcRepository {
 
     private final JdbcTemplate jdbcTemplate;
+    private final AppProperties appProperties;
+    private final DimensionDictionary dictionary;
 
     private static final String INSERT_SQL = """
-            INSERT INTO events (event_name, channel, campaign_id, user_id, event_timestamp, event_date, tags, metadata, idempotency_key)
+            INSERT INTO events (event_name_id, channel_id, campaign_id, user_id, event_timestamp, event_date, tags, metadata, idempotency_key)
             VALUES (?, ?, ?, ?, ?, ?, ?::jsonb, ?::jsonb, ?)
             ON CONFLICT (idempotency_key, event_date) DO NOTHING
             """;
 
-    /** Event listesini batch insert eder; çakışmada satır atlanır. */
-    public int[][] batchInsert(List<Event> events) {
-        return jdbcTemplate.batchUpdate(INSERT_SQL, events, events.size(),
+    /** Oturum başına bir kez oluşur; ON COMMIT DELETE ROWS ile her transaction sonunda boşalır, WAL yazmaz. */
+    private static final String CREATE_STAGING_SQL = """
+            CREATE TEMP TABLE IF NOT EXISTS events_copy_staging (
+                event_name_id   INTEGER,
+                channel_id      INTEGER,
+                campaign_id     INTEGER,
+                user_id         TEXT,
+                event_timestamp BIGINT,
+                event_date      DATE,
+                tags            JSONB,
+                metadata        JSONB,
+                idempotency_key UUID
+            ) ON COMMIT DELETE ROWS
+            """;
+
+    private static final String COPY_SQL = """
+            COPY events_copy_staging (event_name_id, channel_id, campaign_id, user_id, event_timestamp, event_date, tags, metadata, idempotency_key)
+            FROM STDIN (FORMAT binary)
+            """;
+
+    private static final String MERGE_FROM_STAGING_SQL = """
+            INSERT INTO events (event_name_id, channel_id, campaign_id, user_id, event_timestamp, event_date, tags, metadata, idempotency_key)
+            SELECT event_name_id, channel_id, campaign_id, user_id, event_timestamp, event_date, tags, metadata, idempotency_key
+            FROM events_copy_staging
+            ON CONFLICT (idempotency_key, event_date) DO NOTHING
+            RETURNING idempotency_key
+            """;
+
+    /** Arşivleme okuması: tek günün satırları, sütunlu dosyada uzun tekrarlar oluşacak sırada. */
+    private static final String STREAM_DAY_SQL = """
+            SELECT event_name_id, channel_id, campaign_id, user_id, event_timestamp,
+                   tags::text AS tags, metadata::text AS metadata, idempotency_key
+            FROM events
+            WHERE event_date = ?
+            ORDER BY event_name_id, channel_id NULLS FIRST, event_timestamp
+            """;
+
+    private static final int COPY_FIELD_COUNT = 9;
+    private static final int COPY_BUFFER_SIZE = 65536;
+
+    /** Arşivleme sırasında satırlar bu boyutta parçalar halinde okunur (cursor). */
+    private static final int STREAM_FETCH_SIZE = 10_000;
+
+    /**
+     * Event listesini toplu insert eder; çakışmada satır atlanır. Gerçekten eklenen event'leri (girdi sırasıyla) döner;
+     * önbellek veya inbox sorgusunun kaçırdığı bir tekrar burada elenir.
+     */
+    @Transactional
+    public List<Event> batchInsert(List<Event> events) {
+        if (events.isEmpty()) {
+            return List.of();
+        }
+        EventDimensions dimensions = dictionary.resolve(events);
+        return switch (appProperties.getPersistence().getEventsInsertMode()) {
+            case COPY -> copyInsert(events, dimensions);
+            case BATCH -> jdbcBatchInsert(events, dimensions);
+        };
+    }
+
+    /** Tek event insert; batchInsert'e yönlendirir. */
+    public void insert(Event event) {
+        batchInsert(List.of(event));
+    }
+
+    /**
+     * Bir günün tüm satırlarını (event_name_id, channel_id, event_timestamp) sırasıyla handler'a akıtır; günün aynı
+     * snapshot'taki satır sayısını döner (arşiv dosyasının eksiksiz yazıldığını doğrulamak için). Sayım ve akış tek
+     * REPEATABLE READ transaction'ında okunur; ayrı snapshot'larda araya giren bir insert sayıları farklılaştırırdı.
+     * event_date eşitliği partition pruning ile yalnızca o günün partition'ını tarar; cursor (fetch size) için
+     * transaction gerekir.
+     */
+    @Transactional(readOnly = true, isolation = Isolation.REPEATABLE_READ)
+    public long streamDay(LocalDate day, Consumer<EventRow> handler) {
+        Long count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM events WHERE event_date = ?", Long.class,
+                Date.valueOf(day));
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(STREAM_DAY_SQL);
+            ps.setFetchSize(STREAM_FETCH_SIZE);
+            ps.setDate(1, Date.valueOf(day));
+            return ps;
+        }, rs -> {
+            handler.accept(new EventRow(
+                    rs.getInt("event_name_id"),
+                    rs.getInt("channel_id"),
+                    rs.getInt("campaign_id"),
+                    rs.getString("user_id"),
+                    rs.getLong("event_timestamp"),
+                    rs.getString("tags"),
+                    rs.getString("metadata"),
+                    rs.getObject("idempotency_key", UUID.class)));
+        });
+        return count != null ? count : 0;
+    }
+
+    /**
+     * Event başına parametreli INSERT; JDBC batch ile gönderilir. Satır başına güncelleme sayısı (0 = çakışma) eklenen
+     * event'leri verir; reWriteBatchedInserts açık olsaydı sayılar SUCCESS_NO_INFO döner ve tekrarlar ayırt edilemezdi.
+     */
+    private List<Event> jdbcBatchInsert(List<Event> events, EventDimensions dimensions) {
+        int[][] counts = jdbcTemplate.batchUpdate(INSERT_SQL, events, events.size(),
                 (ps, event) -> {
-                    ps.setString(1, event.getEventName());
-                    ps.setString(2, event.getChannel());
-                    ps.setString(3, event.getCampaignId());
+                    ps.setInt(1, dimensions.eventNameId(event));
+                    setNullableInt(ps, 2, dimensions.channelId(event));
+                    setNullableInt(ps, 3, dimensions.campaignId(event));
                     ps.setString(4, event.getUserId());
                     ps.setLong(5, event.getEventTimestamp());
                     ps.setDate(6, Date.valueOf(event.getEventDate()));
@@ -44,12 +166,80 @@ public class EventJdbcRepository {
                     } else {
                         ps.setNull(8, Types.OTHER);
                     }
-                    ps.setString(9, event.getIdempotencyKey());
+                    ps.setObject(9, event.getIdempotencyKey());
                 });
+
+        List<Event> inserted = new ArrayList<>(events.size());
+        int index = 0;
+        for (int[] batch : counts) {
+            for (int count : batch) {
+                if (count > 0 || count == Statement.SUCCESS_NO_INFO) {
+                    inserted.add(events.get(index));
+                }
+                index++;
+            }
+        }
+        return inserted;
     }
 
-    /** Tek event insert; batchInsert'e yönlendirir. */
-    public void insert(Event event) {
-        batchInsert(List.of(event));
+    /**
+     * Batch'i binary COPY ile geçici staging tablosuna akıtır, ardından tek INSERT ... SELECT ile events'e taşır.
+     * Dedup semantiği batch moduyla aynı (ON CONFLICT); staging satırları commit'te silindiği için aktif transaction gerekir.
+     */
+    private List<Event> copyInsert(List<Event> events, EventDimensions dimensions) {
+        Set<UUID> insertedKeys = jdbcTemplate.execute((ConnectionCallback<Set<UUID>>) con -> {
+            if (con.getAutoCommit()) {
+                throw new IllegalStateException("COPY insert mode requires an active transaction");
+            }
+            try (Statement statement = con.createStatement()) {
+                statement.execute(CREATE_STAGING_SQL);
+            }
+
+            PGConnection pgConnection = con.unwrap(PGConnection.class);
+            try (PgBinaryCopyWriter writer = new PgBinaryCopyWriter(
+                    new PGCopyOutputStream(pgConnection, COPY_SQL, COPY_BUFFER_SIZE))) {
+                for (Event event : events) {
+                    writer.startRow(COPY_FIELD_COUNT);
+                    writer.writeInt(dimensions.eventNameId(event));
+                    writer.writeInt(dimensions.channelId(event));
+                    writer.writeInt(dimensions.campaignId(event));
+                    writer.writeText(event.getUserId());
+                    writer.writeLong(event.getEventTimestamp());
+                    writer.writeDate(event.getEventDate());
+                    writer.writeJsonb(event.getTags());
+                    writer.writeJsonb(event.getMetadata());
+                    writer.writeUuid(event.getIdempotencyKey());
+                }
+            } catch (IOException e) {
+                throw new SQLException("COPY into events_copy_staging failed", e);
+            }
+
+            Set<UUID> keys = new HashSet<>();
+            try (Statement statement = con.createStatement();
+                 ResultSet rs = statement.executeQuery(MERGE_FROM_STAGING_SQL)) {
+                while (rs.next()) {
+                    keys.add(rs.getObject(1, UUID.class));
+                }
+            }
+            return keys;
+        });
+        List<Event> inserted = insertedKeys == null ? List.of() : events.stream()
+                .filter(event -> insertedKeys.contains(event.getIdempotencyKey()))
+                .toList();
+        log.debug("COPY insert: {} rows streamed, {} inserted", events.size(), inserted.size());
+        return inserted;
+    }
+
+    private static void setNullableInt(PreparedStatement ps, int index, Integer value) throws SQLException {
+        if (value != null) {
+            ps.setInt(index, value);
+        } else {
+            ps.setNull(index, Types.INTEGER);
+        }
+    }
+
+    /** events satırının sözlük id'leriyle ham hali; channel ve campaign_id boşsa 0 (sözlük id'leri 1'den başlar). */
+    public record EventRow(int eventNameId, int channelId, int campaignId, String userId, long eventTimestamp,
+                           String tags, String metadata, UUID idempotencyKey) {
     }
 }
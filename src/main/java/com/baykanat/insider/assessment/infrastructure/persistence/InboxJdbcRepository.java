@@ -4,35 +4,57 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.Instant;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Objects;
 import java.util.Set;
+import java.util.UUID;
 
-/** Inbox (idempotency) tablosu: toplu key kontrolü ve toplu insert. */
+/**
+ * Inbox (idempotency) tablosu: toplu key kontrolü ve toplu insert. Yazmalar received_at'e göre günlük partition'lı
+ * inbox'a gider; okumalar V10 öncesi satırları da kapsayan inbox_lookup view'ından yapılır. Retention satır silmez,
+ * partition'lar PartitionMaintenanceScheduler ile düşürülür.
+ */
 @Slf4j
 @Repository
 @RequiredArgsConstructor
 public class InboxJdbcRepository {
 
+    /** Dedup filtresi yeniden kurulurken satırlar bu boyutta parçalar halinde okunur (cursor). */
+    private static final int REBUILD_FETCH_SIZE = 10_000;
+
+    /** inbox_legacy silinirken view'ı okuyan sorgular beklenir; uzarsa bir sonraki bakımda tekrar denenir. */
+    private static final String LEGACY_DROP_LOCK_TIMEOUT = "5s";
+
+    /** Partition bakımının advisory lock'u (PartitionJdbcRepository.runExclusively) bir oturumda tutuluyor mu. */
+    private static final String MAINTENANCE_LOCK_HELD_SQL = """
+            SELECT EXISTS (SELECT 1 FROM pg_locks
+                           WHERE locktype = 'advisory' AND classid = ?::int::oid AND objid = ?::int::oid
+                             AND objsubid = 2 AND granted)
+            """;
+
     private final JdbcTemplate jdbcTemplate;
 
     /** Verilen key'lerden inbox'ta olanları döner. */
-    public Set<String> findExistingKeys(Collection<String> keys) {
+    public Set<UUID> findExistingKeys(Collection<UUID> keys) {
         if (keys.isEmpty()) {
             return Set.of();
         }
 
         String placeholders = String.join(",", keys.stream().map(k -> "?").toList());
-        String sql = "SELECT idempotency_key FROM inbox WHERE idempotency_key IN (" + placeholders + ")";
+        String sql = "SELECT idempotency_key FROM inbox_lookup WHERE idempotency_key IN (" + placeholders + ")";
 
-        return new HashSet<>(jdbcTemplate.queryForList(sql, String.class, keys.toArray()));
+        return new HashSet<>(jdbcTemplate.queryForList(sql, UUID.class, keys.toArray()));
     }
 
     /** Idempotency key'leri toplu insert; ON CONFLICT DO NOTHING. */
-    public void batchInsert(Collection<String> keys) {
+    public void batchInsert(Collection<UUID> keys) {
         if (keys.isEmpty()) {
             return;
         }
@@ -44,16 +66,104 @@ public class InboxJdbcRepository {
         jdbcTemplate.batchUpdate(sql, Objects.requireNonNull(batchArgs));
     }
 
+    /** Idempotency key'leri geldikleri Kafka partition'ı ile toplu insert; ON CONFLICT DO NOTHING. */
+    public void batchInsert(Collection<UUID> keys, int kafkaPartition) {
+        if (keys.isEmpty()) {
+            return;
+        }
+
+        String sql = "INSERT INTO inbox (idempotency_key, kafka_partition) VALUES (?, ?) ON CONFLICT DO NOTHING";
+        List<Object[]> batchArgs = keys.stream()
+                .map(key -> new Object[]{Objects.requireNonNull(key, "key"), kafkaPartition})
+                .toList();
+        jdbcTemplate.batchUpdate(sql, Objects.requireNonNull(batchArgs));
+    }
+
+    /**
+     * Verilen partition'lara ait (ve partition bilgisi olmayan, V8 öncesi) tüm key'leri tek sorguda akıtır; okunan
+     * satır sayısını döner. PostgreSQL cursor ile parça parça okuması için autocommit kapalı (read-only transaction)
+     * olmalı. inbox_lookup'ı baştan sona taradığı için çağıran taraf eşzamanlı taramaları sınırlar.
+     */
+    @Transactional(readOnly = true)
+    public long streamKeys(Collection<Integer> kafkaPartitions, KeyHandler handler) {
+        String sql = """
+                SELECT idempotency_key, received_at, kafka_partition FROM inbox_lookup
+                WHERE kafka_partition = ANY(?) OR kafka_partition IS NULL""";
+        return stream(sql, handler, kafkaPartitions.toArray(Integer[]::new));
+    }
+
+    /**
+     * Verilen partition'lara received_at &gt;= since ile yazılmış key'leri akıtır. Yeni key'ler yalnızca inbox'a
+     * yazıldığı için inbox_legacy okunmaz; received_at filtresiyle tarama son günlük partition'larla sınırlı kalır.
+     */
+    @Transactional(readOnly = true)
+    public long streamKeysSince(Collection<Integer> kafkaPartitions, Instant since, KeyHandler handler) {
+        String sql = """
+                SELECT idempotency_key, received_at, kafka_partition FROM inbox
+                WHERE received_at >= ? AND (kafka_partition = ANY(?) OR kafka_partition IS NULL)""";
+        return stream(sql, handler, Timestamp.from(since), kafkaPartitions.toArray(Integer[]::new));
+    }
+
+    private long stream(String sql, KeyHandler handler, Object... params) {
+        long[] rows = {0};
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(sql);
+            ps.setFetchSize(REBUILD_FETCH_SIZE);
+            for (int i = 0; i < params.length; i++) {
+                ps.setObject(i + 1, params[i]);
+            }
+            return ps;
+        }, rs -> {
+            handler.accept(rs.getObject("idempotency_key", UUID.class), rs.getTimestamp("received_at").toInstant(),
+                    rs.getObject("kafka_partition", Integer.class));
+            rows[0]++;
+        });
+        return rows[0];
+    }
+
     /** Tek key inbox'ta var mı. */
-    public boolean exists(String key) {
-        String sql = "SELECT COUNT(*) FROM inbox WHERE idempotency_key = ?";
+    public boolean exists(UUID key) {
+        String sql = "SELECT COUNT(*) FROM inbox_lookup WHERE idempotency_key = ?";
         Integer count = jdbcTemplate.queryForObject(sql, Integer.class, key);
         return count != null && count > 0;
     }
 
-    /** Belirtilen günden eski inbox kayıtlarını siler; silinen sayıyı döner. */
-    public int deleteOlderThan(int retentionDays) {
-        String sql = "DELETE FROM inbox WHERE received_at < NOW() - INTERVAL '1 day' * ?";
-        return jdbcTemplate.update(sql, retentionDays);
+    /**
+     * V10 öncesi inbox_legacy tablosunun son satırı retention'ı aştıysa view'ı yalnızca inbox'a çevirip tabloyu
+     * tek DROP ile siler; silindiyse true. Tablo yoksa veya içinde pencere içi key varsa dokunmaz.
+     *
+     * <p>Yalnızca partition bakımının advisory lock'u altında çalışır (PartitionJdbcRepository.runExclusively): iki
+     * instance'ın view değişimi ve DROP'u iç içe geçmesin diye kilit tutulmuyorsa hiçbir şey yapmadan false döner.
+     */
+    @Transactional
+    public boolean dropExpiredLegacyTable(int retentionDays) {
+        Boolean locked = jdbcTemplate.queryForObject(MAINTENANCE_LOCK_HELD_SQL, Boolean.class,
+                PartitionJdbcRepository.MAINTENANCE_LOCK_CLASS, PartitionJdbcRepository.MAINTENANCE_LOCK_ID);
+        if (!Boolean.TRUE.equals(locked)) {
+            log.warn("Skipping inbox_legacy cleanup: the partition maintenance lock is not held");
+            return false;
+        }
+        Boolean present = jdbcTemplate.queryForObject("SELECT to_regclass('inbox_legacy') IS NOT NULL", Boolean.class);
+        if (!Boolean.TRUE.equals(present)) {
+            return false;
+        }
+        Boolean expired = jdbcTemplate.queryForObject(
+                "SELECT NOT EXISTS (SELECT 1 FROM inbox_legacy WHERE received_at >= NOW() - INTERVAL '1 day' * ?)",
+                Boolean.class, retentionDays);
+        if (!Boolean.TRUE.equals(expired)) {
+            return false;
+        }
+
+        jdbcTemplate.execute("SET LOCAL lock_timeout = '" + LEGACY_DROP_LOCK_TIMEOUT + "'");
+        jdbcTemplate.execute("CREATE OR REPLACE VIEW inbox_lookup AS "
+                + "SELECT idempotency_key, received_at, kafka_partition FROM inbox");
+        jdbcTemplate.execute("DROP TABLE inbox_legacy");
+        return true;
+    }
+
+    @FunctionalInterface
+    public interface KeyHandler {
+        /** kafkaPartition V8 öncesi satırlarda null'dır. */
+        void accept(UUID idempotencyKey, Instant receivedAt, Integer kafkaPartition);
     }
 }
@@ -0,0 +1,20 @@
+package com.baykanat.insider.assessment.infrastructure.persistence;
+
+import com.baykanat.insider.assessment.domain.sketch.HyperLogLog;
+
+/**
+ * Katmanlı metrik sorgusunun ortak birimi: bir serinin bir kovasındaki (rollup çözünürlüğü veya ham okumada
+ * istenen genişlik) sayımlar. Rollup, MV, ham partition ve arşiv okumaları bu hücreleri üretir; MetricsService
+ * hücreleri seri ve group_by kovalarına toplar.
+ *
+ * @param eventNameId     sözlük id'si
+ * @param dimensionId     serinin kırılım boyutunun sözlük id'si: channel (kampanya kırılımında campaign_id); seri
+ *                        bölünmüyorsa 0
+ * @param bucketStart     kovanın başlangıcı (epoch sn, UTC)
+ * @param totalCount      event sayısı
+ * @param uniqueUserCount hücredeki benzersiz kullanıcı (sketch yoksa toplanır)
+ * @param users           kullanıcı sketch'i; MV ve toplama modundaki ham okumalarda null
+ */
+public record MetricsCell(int eventNameId, int dimensionId, long bucketStart, long totalCount, long uniqueUserCount,
+                          HyperLogLog users) {
+}
@@ -1,6 +1,9 @@
 package com.baykanat.insider.assessment.infrastructure.persistence;
 
 import com.baykanat.insider.assessment.api.dto.MetricsResponse;
+import com.baykanat.insider.assessment.config.AppProperties;
+import com.baykanat.insider.assessment.domain.sketch.HyperLogLog;
+import com.baykanat.insider.assessment.infrastructure.persistence.DimensionDictionary.Dimension;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.jdbc.core.JdbcTemplate;
@@ -9,36 +12,65 @@ import org.springframework.stereotype.Repository;
 import java.sql.Timestamp;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
-/** event_metrics materialized view üzerinden toplam ve zaman dilimi sorguları; REFRESH CONCURRENTLY. */
+/**
+ * Toplam ve zaman dilimi sorguları; kaynak app.metrics.source ile seçilir:
+ * event_metrics_hourly rollup'ı (HLL sketch birleştirme) veya event_metrics materialized view'ı (REFRESH CONCURRENTLY).
+ * Her başarılı MV yenilemesi refresh generation sayacını artırır; sorgu önbelleği girişlerini bununla etiketler.
+ * Her iki kaynak da sözlük id'leriyle tutulur (V11): isimler sorgudan önce id'ye çevrilir, seriler isimle döner;
+ * sözlükte olmayan event_name veya channel verisi olmayan seri demektir.
+ */
 @Slf4j
 @Repository
 @RequiredArgsConstructor
 public class MetricsJdbcRepository {
 
+    private static final long SECONDS_PER_HOUR = 3600;
+    private static final long SECONDS_PER_DAY = 86400;
+
     private final JdbcTemplate jdbcTemplate;
+    private final AppProperties appProperties;
+    private final DimensionDictionary dictionary;
+    private final AtomicLong refreshGeneration = new AtomicLong();
 
-    /** MV'den toplam sayı ve benzersiz kullanıcı sayısı; [totalCount, uniqueUserCount]. */
+    /** Toplam sayı ve benzersiz kullanıcı sayısı; [totalCount, uniqueUserCount]. */
     public long[] queryTotals(String eventName, long from, long to, String channel) {
+        SeriesFilter filter = resolveFilter(eventName, channel);
+        if (filter == null) {
+            return new long[]{0, 0};
+        }
+        if (isRollup()) {
+            BucketAggregate total = new BucketAggregate();
+            scanRollup(filter, from, to, (dateHour, count, sketch) -> total.add(count, sketch));
+            return new long[]{total.totalCount, total.uniqueUsers()};
+        }
+
         StringBuilder sql = new StringBuilder("""
                 SELECT COALESCE(SUM(total_count), 0) AS total_count,
                        COALESCE(SUM(unique_user_count), 0) AS unique_user_count
                 FROM event_metrics
-                WHERE event_name = ?
+                WHERE event_name_id = ?
                   AND date_hour >= ?
                   AND date_hour < ?
                 """);
 
         List<Object> params = new ArrayList<>();
-        params.add(eventName);
+        params.add(filter.eventNameId());
         params.add(Timestamp.from(Instant.ofEpochSecond(from)));
         params.add(Timestamp.from(Instant.ofEpochSecond(to)));
 
-        if (channel != null && !channel.isBlank()) {
-            sql.append(" AND channel = ?");
-            params.add(channel);
+        if (filter.channelId() != null) {
+            sql.append(" AND channel_id = ?");
+            params.add(filter.channelId());
         }
 
         String sqlStr = Objects.requireNonNull(sql.toString());
@@ -51,6 +83,14 @@ public class MetricsJdbcRepository {
     /** Zaman dilimi özetleri; groupBy hourly veya daily. */
     public List<MetricsResponse.TimeBucket> queryBreakdowns(String eventName, long from, long to,
                                                              String channel, String groupBy) {
+        SeriesFilter filter = resolveFilter(eventName, channel);
+        if (filter == null) {
+            return List.of();
+        }
+        if (isRollup()) {
+            return rollupBreakdowns(filter, from, to, groupBy);
+        }
+
         String truncExpr = "daily".equalsIgnoreCase(groupBy)
                 ? "DATE_TRUNC('day', date_hour)"
                 : "date_hour";
@@ -60,19 +100,19 @@ public class MetricsJdbcRepository {
                        SUM(total_count) AS total_count,
                        SUM(unique_user_count) AS unique_user_count
                 FROM event_metrics
-                WHERE event_name = ?
+                WHERE event_name_id = ?
                   AND date_hour >= ?
                   AND date_hour < ?
                 """, truncExpr));
 
         List<Object> params = new ArrayList<>();
-        params.add(eventName);
+        params.add(filter.eventNameId());
         params.add(Timestamp.from(Instant.ofEpochSecond(from)));
         params.add(Timestamp.from(Instant.ofEpochSecond(to)));
 
-        if (channel != null && !channel.isBlank()) {
-            sql.append(" AND channel = ?");
-            params.add(channel);
+        if (filter.channelId() != null) {
+            sql.append(" AND channel_id = ?");
+            params.add(filter.channelId());
         }
 
         sql.append(String.format(" GROUP BY %s ORDER BY %s", truncExpr, truncExpr));
@@ -89,11 +129,348 @@ public class MetricsJdbcRepository {
         }, params.toArray());
     }
 
-    /** event_metrics MV'yi CONCURRENTLY yeniler. */
+    /**
+     * Birden çok event_name (ve isteğe bağlı channel listesi) için toplamları ve zaman dilimi özetlerini tek sorguda
+     * döner. MV modunda GROUPING SETS ile toplam ve kova satırları birlikte gelir; rollup modunda satırlar tek taramada
+     * okunup seri başına sketch'ler Java'da birleştirilir. Yalnızca verisi olan seriler döner.
+     */
+    public List<MetricsSeries> queryBatch(List<String> eventNames, long from, long to, List<String> channels,
+                                          String groupBy) {
+        SeriesSelection selection = resolveSelection(eventNames, channels);
+        if (selection == null) {
+            return List.of();
+        }
+        List<Object> params = new ArrayList<>();
+        params.add(selection.eventNameIds());
+        params.add(Timestamp.from(Instant.ofEpochSecond(from)));
+        params.add(Timestamp.from(Instant.ofEpochSecond(to)));
+        String channelFilter = "";
+        if (selection.byChannel()) {
+            channelFilter = " AND channel_id = ANY(?)";
+            params.add(selection.channelIds());
+        }
+        return isRollup()
+                ? rollupBatch(channelFilter, params, selection, groupBy)
+                : materializedViewBatch(channelFilter, params, selection, groupBy);
+    }
+
+    /**
+     * İstekteki isimlerin sözlük id'leri; hiçbir event_name (veya channel listesi verilmişse hiçbir channel) sözlükte
+     * yoksa null (veri yok). channels null veya boşsa seriler channel'a göre bölünmez.
+     */
+    public SeriesSelection resolveSelection(List<String> eventNames, List<String> channels) {
+        boolean byChannel = channels != null && !channels.isEmpty();
+        Map<String, Integer> eventNameIds = dictionary.findIds(Dimension.EVENT_NAME, eventNames);
+        Map<String, Integer> channelIds = byChannel ? dictionary.findIds(Dimension.CHANNEL, channels) : Map.of();
+        if (eventNameIds.isEmpty() || (byChannel && channelIds.isEmpty())) {
+            return null;
+        }
+        return new SeriesSelection(invert(eventNameIds), byChannel ? invert(channelIds) : null);
+    }
+
+    /** split_by=channel için: event_name'ler ve sözlükteki tüm channel'lar; event_name veya channel yoksa null. */
+    public SeriesSelection resolveChannelSplit(List<String> eventNames) {
+        Map<String, Integer> eventNameIds = dictionary.findIds(Dimension.EVENT_NAME, eventNames);
+        Map<String, Integer> channelIds = dictionary.findAll(Dimension.CHANNEL);
+        if (eventNameIds.isEmpty() || channelIds.isEmpty()) {
+            return null;
+        }
+        return new SeriesSelection(invert(eventNameIds), invert(channelIds));
+    }
+
+    /**
+     * Ön-agregasyon kaynağının [from, to) penceresindeki satırlarını hücre olarak akıtır (sorgu yönlendiricisi için).
+     * Rollup modunda verilen çözünürlüğün tablosu okunur ve satırlar sketch taşır; MV yalnızca saatliktir ve benzersiz
+     * sayı saatliktir. Seri channel'a göre bölünmüyorsa hücrelerin channel id'si 0'dır.
+     */
+    public void scanCells(SeriesSelection selection, RollupResolution resolution, long from, long to,
+                          Consumer<MetricsCell> handler) {
+        boolean rollup = isRollup();
+        if (!rollup && resolution != RollupResolution.HOUR) {
+            throw new IllegalArgumentException("event_metrics only has hourly buckets, not " + resolution);
+        }
+        String sql = String.format("""
+                SELECT event_name_id, channel_id, %2$s AS bucket_start, %3$s
+                FROM %1$s
+                WHERE event_name_id = ANY(?)
+                  AND %2$s >= ?
+                  AND %2$s < ?%4$s""",
+                rollup ? resolution.table() : "event_metrics",
+                rollup ? resolution.bucketColumn() : "date_hour",
+                rollup ? "total_count, unique_user_count, user_sketch" : "total_count, unique_user_count",
+                selection.byChannel() ? " AND channel_id = ANY(?)" : "");
+        List<Object> params = new ArrayList<>();
+        params.add(selection.eventNameIds());
+        params.add(Timestamp.from(Instant.ofEpochSecond(from)));
+        params.add(Timestamp.from(Instant.ofEpochSecond(to)));
+        if (selection.byChannel()) {
+            params.add(selection.channelIds());
+        }
+
+        jdbcTemplate.query(sql, rs -> {
+            long bucketStart = Objects.requireNonNull(rs.getTimestamp("bucket_start"), "bucket_start")
+                    .toInstant().getEpochSecond();
+            int channelId = selection.byChannel() ? rs.getInt("channel_id") : 0;
+            // Sketch'i backfill bekleyen rollup satırında kovanın kendi tekil sayısı kullanılır
+            byte[] sketchBytes = rollup ? rs.getBytes("user_sketch") : null;
+            handler.accept(new MetricsCell(rs.getInt("event_name_id"), channelId, bucketStart,
+                    rs.getLong("total_count"), rs.getLong("unique_user_count"),
+                    sketchBytes != null ? HyperLogLog.fromBytes(sketchBytes) : null));
+        }, params.toArray());
+    }
+
+    private List<MetricsSeries> materializedViewBatch(String channelFilter, List<Object> params, SeriesSelection names,
+                                                      String groupBy) {
+        boolean byChannel = names.byChannel();
+        String truncExpr = "daily".equalsIgnoreCase(groupBy)
+                ? "DATE_TRUNC('day', date_hour)"
+                : "date_hour";
+        String seriesColumns = byChannel ? "event_name_id, channel_id" : "event_name_id";
+        String sql = String.format("""
+                SELECT event_name_id, %2$s AS channel_id, %3$s AS bucket,
+                       SUM(total_count) AS total_count,
+                       SUM(unique_user_count) AS unique_user_count,
+                       GROUPING(%3$s) AS is_total
+                FROM event_metrics
+                WHERE event_name_id = ANY(?)
+                  AND date_hour >= ?
+                  AND date_hour < ?%4$s
+                GROUP BY GROUPING SETS ((%1$s, %3$s), (%1$s))
+                ORDER BY %1$s, bucket
+                """, seriesColumns, byChannel ? "channel_id" : "NULL::integer", truncExpr, channelFilter);
+
+        Map<List<String>, SeriesBuilder> series = new LinkedHashMap<>();
+        jdbcTemplate.query(sql, rs -> {
+            String eventName = names.eventName(rs.getInt("event_name_id"));
+            String channel = names.channel(rs.getInt("channel_id"));
+            SeriesBuilder builder = series.computeIfAbsent(seriesKey(eventName, channel),
+                    k -> new SeriesBuilder(eventName, channel));
+            if (rs.getInt("is_total") == 1) {
+                builder.totalCount = rs.getLong("total_count");
+                builder.uniqueUserCount = rs.getLong("unique_user_count");
+            } else {
+                Timestamp bucket = Objects.requireNonNull(rs.getTimestamp("bucket"), "bucket");
+                builder.breakdowns.add(MetricsResponse.TimeBucket.builder()
+                        .bucket(bucket.toInstant().toString())
+                        .totalCount(rs.getLong("total_count"))
+                        .uniqueUserCount(rs.getLong("unique_user_count"))
+                        .build());
+            }
+        }, params.toArray());
+        return series.values().stream().map(SeriesBuilder::build).toList();
+    }
+
+    private List<MetricsSeries> rollupBatch(String channelFilter, List<Object> params, SeriesSelection names,
+                                            String groupBy) {
+        long bucketSeconds = "daily".equalsIgnoreCase(groupBy) ? SECONDS_PER_DAY : SECONDS_PER_HOUR;
+        String sql = """
+                SELECT event_name_id, channel_id, date_hour, total_count, user_sketch
+                FROM event_metrics_hourly
+                WHERE event_name_id = ANY(?)
+                  AND date_hour >= ?
+                  AND date_hour < ?""" + channelFilter;
+
+        Map<List<String>, RollupSeries> series = new LinkedHashMap<>();
+        jdbcTemplate.query(sql, rs -> {
+            String eventName = names.eventName(rs.getInt("event_name_id"));
+            String channel = names.channel(rs.getInt("channel_id"));
+            long dateHour = Objects.requireNonNull(rs.getTimestamp("date_hour"), "date_hour")
+                    .toInstant().getEpochSecond();
+            long count = rs.getLong("total_count");
+            byte[] sketch = rs.getBytes("user_sketch");
+            RollupSeries rollup = series.computeIfAbsent(seriesKey(eventName, channel),
+                    k -> new RollupSeries(eventName, channel));
+            rollup.total.add(count, sketch);
+            rollup.buckets.computeIfAbsent(dateHour - Math.floorMod(dateHour, bucketSeconds),
+                    k -> new BucketAggregate()).add(count, sketch);
+        }, params.toArray());
+
+        List<MetricsSeries> result = new ArrayList<>(series.size());
+        for (RollupSeries rollup : series.values()) {
+            List<MetricsResponse.TimeBucket> breakdowns = new ArrayList<>(rollup.buckets.size());
+            rollup.buckets.forEach((bucketStart, aggregate) -> breakdowns.add(MetricsResponse.TimeBucket.builder()
+                    .bucket(Instant.ofEpochSecond(bucketStart).toString())
+                    .totalCount(aggregate.totalCount)
+                    .uniqueUserCount(aggregate.uniqueUsers())
+                    .build()));
+            result.add(new MetricsSeries(rollup.eventName, rollup.channel, rollup.total.totalCount,
+                    rollup.total.uniqueUsers(), breakdowns));
+        }
+        return result;
+    }
+
+    private static Map<Integer, String> invert(Map<String, Integer> ids) {
+        Map<Integer, String> names = new HashMap<>(ids.size());
+        ids.forEach((name, id) -> names.put(id, name));
+        return names;
+    }
+
+    private static List<String> seriesKey(String eventName, String channel) {
+        return Arrays.asList(eventName, channel);
+    }
+
+    /** Rollup satırlarını saat veya güne (UTC) göre gruplar; her kovada sketch'ler birleştirilir. */
+    private List<MetricsResponse.TimeBucket> rollupBreakdowns(SeriesFilter filter, long from, long to,
+                                                               String groupBy) {
+        long bucketSeconds = "daily".equalsIgnoreCase(groupBy) ? SECONDS_PER_DAY : SECONDS_PER_HOUR;
+        Map<Long, BucketAggregate> buckets = new TreeMap<>();
+        scanRollup(filter, from, to, (dateHour, count, sketch) ->
+                buckets.computeIfAbsent(dateHour - Math.floorMod(dateHour, bucketSeconds), k -> new BucketAggregate())
+                        .add(count, sketch));
+
+        List<MetricsResponse.TimeBucket> result = new ArrayList<>(buckets.size());
+        buckets.forEach((bucketStart, aggregate) -> result.add(MetricsResponse.TimeBucket.builder()
+                .bucket(Instant.ofEpochSecond(bucketStart).toString())
+                .totalCount(aggregate.totalCount)
+                .uniqueUserCount(aggregate.uniqueUsers())
+                .build()));
+        return result;
+    }
+
+    /** Penceredeki rollup satırlarını (date_hour, total_count, user_sketch) tek sorguda akıtır. */
+    private void scanRollup(SeriesFilter filter, long from, long to, RollupRowHandler handler) {
+        StringBuilder sql = new StringBuilder("""
+                SELECT date_hour, total_count, user_sketch
+                FROM event_metrics_hourly
+                WHERE event_name_id = ?
+                  AND date_hour >= ?
+                  AND date_hour < ?
+                """);
+
+        List<Object> params = new ArrayList<>();
+        params.add(filter.eventNameId());
+        params.add(Timestamp.from(Instant.ofEpochSecond(from)));
+        params.add(Timestamp.from(Instant.ofEpochSecond(to)));
+
+        if (filter.channelId() != null) {
+            sql.append(" AND channel_id = ?");
+            params.add(filter.channelId());
+        }
+
+        jdbcTemplate.query(Objects.requireNonNull(sql.toString()), rs -> {
+            Timestamp dateHour = Objects.requireNonNull(rs.getTimestamp("date_hour"), "date_hour");
+            handler.accept(dateHour.toInstant().getEpochSecond(), rs.getLong("total_count"), rs.getBytes("user_sketch"));
+        }, params.toArray());
+    }
+
+    /** event_name ve (varsa) channel id'leri; sözlükte olmayan isim için null (veri yok). */
+    private SeriesFilter resolveFilter(String eventName, String channel) {
+        Integer eventNameId = dictionary.findId(Dimension.EVENT_NAME, eventName);
+        if (eventNameId == null) {
+            return null;
+        }
+        if (channel == null || channel.isBlank()) {
+            return new SeriesFilter(eventNameId, null);
+        }
+        Integer channelId = dictionary.findId(Dimension.CHANNEL, channel);
+        return channelId != null ? new SeriesFilter(eventNameId, channelId) : null;
+    }
+
+    private boolean isRollup() {
+        return appProperties.getMetrics().getSource() == AppProperties.MetricsSource.ROLLUP;
+    }
+
+    /** event_metrics MV'yi CONCURRENTLY yeniler; başarılıysa refresh generation'ı artırır. */
     public void refreshMaterializedView() {
         log.info("Refreshing event_metrics materialized view...");
         long start = System.currentTimeMillis();
         jdbcTemplate.execute("REFRESH MATERIALIZED VIEW CONCURRENTLY event_metrics");
-        log.info("Materialized view refresh completed in {}ms", System.currentTimeMillis() - start);
+        long generation = refreshGeneration.incrementAndGet();
+        log.info("Materialized view refresh completed in {}ms (generation {})",
+                System.currentTimeMillis() - start, generation);
+    }
+
+    /** Bu instance'ta tamamlanan MV yenilemesi sayısı; yeni veri geldiğinde değişir. */
+    public long getRefreshGeneration() {
+        return refreshGeneration.get();
+    }
+
+    @FunctionalInterface
+    private interface RollupRowHandler {
+        void accept(long dateHour, long totalCount, byte[] sketch);
+    }
+
+    /** Sözlük id'leriyle tek seri filtresi; channelId null = tüm channel'lar. */
+    private record SeriesFilter(int eventNameId, Integer channelId) {
+    }
+
+    /**
+     * Sorgulanan serilerin sözlük id'leri → istekteki isimler; channels null = channel'a göre bölünmez. Toplu sorgu
+     * ve katmanlı sorgu yönlendiricisi sonuç satırlarını bununla isimlendirir.
+     */
+    public record SeriesSelection(Map<Integer, String> eventNames, Map<Integer, String> channels) {
+
+        public boolean byChannel() {
+            return channels != null;
+        }
+
+        public Integer[] eventNameIds() {
+            return eventNames.keySet().toArray(Integer[]::new);
+        }
+
+        public Integer[] channelIds() {
+            return channels != null ? channels.keySet().toArray(Integer[]::new) : new Integer[0];
+        }
+
+        public String eventName(int id) {
+            return eventNames.get(id);
+        }
+
+        public String channel(int id) {
+            return channels != null ? channels.get(id) : null;
+        }
+    }
+
+    /** Toplu sorguda bir (event_name, channel) serisi; channel null = tüm channel'lar. */
+    public record MetricsSeries(String eventName, String channel, long totalCount, long uniqueUserCount,
+                                List<MetricsResponse.TimeBucket> breakdowns) {
+    }
+
+    private static final class SeriesBuilder {
+        private final String eventName;
+        private final String channel;
+        private final List<MetricsResponse.TimeBucket> breakdowns = new ArrayList<>();
+        private long totalCount;
+        private long uniqueUserCount;
+
+        private SeriesBuilder(String eventName, String channel) {
+            this.eventName = eventName;
+            this.channel = channel;
+        }
+
+        private MetricsSeries build() {
+            return new MetricsSeries(eventName, channel, totalCount, uniqueUserCount, breakdowns);
+        }
+    }
+
+    private static final class RollupSeries {
+        private final String eventName;
+        private final String channel;
+        private final BucketAggregate total = new BucketAggregate();
+        private final Map<Long, BucketAggregate> buckets = new TreeMap<>();
+
+        private RollupSeries(String eventName, String channel) {
+            this.eventName = eventName;
+            this.channel = channel;
+        }
+    }
+
+    /** Bir kovanın toplam sayısı ve birleştirilmiş kullanıcı sketch'i. */
+    private static final class BucketAggregate {
+        private long totalCount;
+        private HyperLogLog users;
+
+        private void add(long count, byte[] sketchBytes) {
+            totalCount += count;
+            if (sketchBytes == null) {
+                return;
+            }
+            HyperLogLog sketch = HyperLogLog.fromBytes(sketchBytes);
+            users = users == null ? sketch : users.merge(sketch);
+        }
+
+        private long uniqueUsers() {
+            return users == null ? 0 : users.estimate();
+        }
     }
 }
@@ -0,0 +1,492 @@
+package com.baykanat.insider.assessment.infrastructure.persistence;
+
+import com.baykanat.insider.assessment.config.AppProperties;
+import com.baykanat.insider.assessment.domain.hash.Murmur3;
+import com.baykanat.insider.assessment.domain.model.Event;
+import com.baykanat.insider.assessment.domain.sketch.HyperLogLog;
+import com.baykanat.insider.assessment.infrastructure.persistence.DimensionDictionary.EventDimensions;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.SqlParameterValue;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Rollup tablolarını artımlı günceller: batch'teki yeni event'lerden (event_name, channel, kova) delta'ları hesaplanır
+ * ve çağıranın transaction'ında yazılır. Etkin her çözünürlük (RollupResolution.active: dakika, 15 dk, saat, gün)
+ * inceden kabaya işlenir; en ince çözünürlüğün delta'ları event'lerden, daha kabaların delta'ları bir alttakinden
+ * birleştirilerek (kademeli) üretilir. Kovalar sözlük id'leriyle tutulur (V11); channel yoksa channel_id 0. Tekil
+ * kullanıcılar kova başına HLL sketch'inde (user_sketch BYTEA) tutulur; mevcut sketch satır kilidi altında okunur,
+ * Java'da birleştirilip geri yazılır.
+ *
+ * <p>Sketch'i NULL olan satırlar (önceki sürümlerde V12'nin ilk doldurması) backfillSketch ile doldurulana kadar
+ * consumer yalnızca total_count'u artırır (backfill kilit altında okuduğu için yeni event'ler de dahil olur).
+ *
+ * <p>Yeniden kurulum (rebuildHour/rebuildDay) kovaları events'ten baştan hesaplar; consumer delta'larıyla saat başına
+ * bir advisory lock üzerinden ayrışır: applyBatch batch'in saatlerini paylaşımlı, yeniden kurulum saati exclusive
+ * kilitler. Saate yazan consumer transaction'ı ya kurulumdan önce commit olur (event'leri kurulumun okumasında
+ * görünür) ya da kurulum commit olana kadar bekler ve delta'sını kurulmuş satırın üstüne yazar.
+ */
+@Slf4j
+@Repository
+@RequiredArgsConstructor
+public class MetricsRollupJdbcRepository {
+
+    /** Channel'sız event'lerin kovası; sözlük id'leri 1'den başlar. */
+    static final int NO_CHANNEL = 0;
+
+    /** Saat advisory lock'larının sınıf anahtarı ('ROLL'); nesne anahtarı epoch saat numarasıdır. */
+    public static final int HOUR_LOCK_CLASS = 0x524F4C4C;
+
+    private static final String LOCK_HOURS_SHARED_SQL =
+            "SELECT pg_advisory_xact_lock_shared(?, hour) FROM UNNEST(?::int[]) AS hour";
+
+    private static final String LOCK_HOURS_SQL =
+            "SELECT pg_advisory_xact_lock(?, hour) FROM UNNEST(?::int[]) AS hour";
+
+    private static final String ENSURE_ROW_SQL = """
+            INSERT INTO %1$s (event_name_id, channel_id, %2$s, event_date, total_count, unique_user_count)
+            VALUES (?, ?, ?, ?, 0, 0)
+            ON CONFLICT (event_name_id, %2$s, channel_id) DO NOTHING
+            """;
+
+    private static final String LOCK_ROWS_SQL = """
+            SELECT event_name_id, channel_id, %2$s AS bucket_start, total_count, user_sketch
+            FROM %1$s
+            WHERE (event_name_id, %2$s, channel_id) IN (%3$s)
+            ORDER BY event_name_id, %2$s, channel_id
+            FOR UPDATE
+            """;
+
+    private static final String UPDATE_SQL = """
+            UPDATE %1$s
+            SET total_count = total_count + ?,
+                unique_user_count = COALESCE(?, unique_user_count),
+                user_sketch = COALESCE(?, user_sketch)
+            WHERE event_name_id = ? AND %2$s = ? AND channel_id = ?
+            """;
+
+    private static final String PENDING_BACKFILL_SQL = """
+            SELECT event_name_id, channel_id, %2$s AS bucket_start
+            FROM %1$s
+            WHERE user_sketch IS NULL
+            ORDER BY %2$s DESC
+            LIMIT ?
+            """;
+
+    private static final String LOCK_ROW_SQL = """
+            SELECT user_sketch FROM %1$s
+            WHERE event_name_id = ? AND %2$s = ? AND channel_id = ?
+            FOR UPDATE
+            """;
+
+    private static final String BUCKET_USERS_SQL = """
+            SELECT user_id FROM events
+            WHERE event_name_id = ?
+              AND event_date = ?
+              AND COALESCE(channel_id, 0) = ?
+              AND event_timestamp >= ?
+              AND event_timestamp < ?
+            """;
+
+    private static final String DAY_HOURLY_SKETCHES_SQL = """
+            SELECT total_count, user_sketch FROM event_metrics_hourly
+            WHERE event_name_id = ?
+              AND channel_id = ?
+              AND date_hour >= ?
+              AND date_hour < ?
+            """;
+
+    // Saatin event'leri zaman sırasıyla okunur; dakika ve 15 dk kovaları biter bitmez yazılır (bellekte tek kova dilimi)
+    private static final String HOUR_EVENTS_SQL = """
+            SELECT event_name_id, COALESCE(channel_id, 0) AS channel_id, event_timestamp, user_id
+            FROM events
+            WHERE event_date = ?
+              AND event_timestamp >= ?
+              AND event_timestamp < ?
+            ORDER BY event_timestamp
+            """;
+
+    private static final String INSERT_ROW_SQL = """
+            INSERT INTO %1$s (event_name_id, channel_id, %2$s, event_date, total_count, unique_user_count, user_sketch)
+            VALUES (?, ?, ?, ?, ?, ?, ?)
+            """;
+
+    private static final String DAY_HOURLY_ROWS_SQL = """
+            SELECT event_name_id, channel_id, total_count, user_sketch
+            FROM event_metrics_hourly
+            WHERE date_hour >= ?
+              AND date_hour < ?
+            """;
+
+    private static final String ROLLUP_DAYS_SQL = """
+            SELECT DISTINCT event_date FROM event_metrics_hourly ORDER BY event_date DESC
+            """;
+
+    /** Yeniden kurulumda events bu boyutta parçalar halinde okunur (cursor). */
+    private static final int REBUILD_FETCH_SIZE = 10_000;
+
+    /** Satır kilitleri her consumer thread'inde aynı sırada alınsın diye kovalar sıralı tutulur (deadlock önlemi). */
+    private static final Comparator<BucketKey> BUCKET_ORDER = Comparator
+            .comparingInt(BucketKey::eventNameId)
+            .thenComparingLong(BucketKey::bucketStart)
+            .thenComparingInt(BucketKey::channelId);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final AppProperties appProperties;
+    private final DimensionDictionary dictionary;
+
+    /**
+     * Yeni eklenen event'lerin delta'larını etkin tüm çözünürlüklere yazar; güncellenen kova sayısını (çözünürlükler
+     * toplamı) döner. Tablolar her zaman inceden kabaya sırayla kilitlenir.
+     */
+    public int applyBatch(List<Event> events) {
+        if (events.isEmpty()) {
+            return 0;
+        }
+
+        lockHours(jdbcTemplate, events.stream().map(Event::getEventTimestamp).toList(), false);
+        EventDimensions dimensions = dictionary.resolve(events);
+        Map<BucketKey, BucketDelta> deltas = null;
+        int updated = 0;
+        for (RollupResolution resolution : RollupResolution.active(appProperties.getMetrics().getRollup())) {
+            deltas = deltas == null ? eventDeltas(events, dimensions, resolution) : cascade(deltas, resolution);
+            applyDeltas(resolution, deltas);
+            updated += deltas.size();
+        }
+
+        log.debug("Rollup updated: {} events into {} buckets", events.size(), updated);
+        return updated;
+    }
+
+    /** Sketch'i NULL olan en fazla limit kovayı, en yeniden başlayarak döner. */
+    public List<RollupBucket> findBucketsPendingBackfill(RollupResolution resolution, int limit) {
+        return jdbcTemplate.query(format(PENDING_BACKFILL_SQL, resolution), (rs, rowNum) -> new RollupBucket(
+                resolution,
+                rs.getInt("event_name_id"),
+                rs.getInt("channel_id"),
+                rs.getTimestamp("bucket_start").toInstant().getEpochSecond()), limit);
+    }
+
+    /**
+     * Kovanın sketch'ini kurar; satır kilidi altında, tek transaction. Günlük kovalar günün saatlik sketch'leri
+     * birleştirilerek (saatlik kovalardan biri henüz backfill bekliyorsa false), diğerleri events tablosundaki
+     * kullanıcılardan kurulur.
+     */
+    @Transactional
+    public boolean backfillSketch(RollupBucket bucket) {
+        RollupResolution resolution = bucket.resolution();
+        Timestamp bucketStart = toTimestamp(bucket.bucketStart());
+        List<byte[]> current = jdbcTemplate.query(format(LOCK_ROW_SQL, resolution),
+                (rs, rowNum) -> rs.getBytes("user_sketch"), bucket.eventNameId(), bucketStart, bucket.channelId());
+        if (current.isEmpty() || current.get(0) != null) {
+            return false;
+        }
+
+        HyperLogLog sketch = new HyperLogLog(appProperties.getMetrics().getHllPrecision());
+        long bucketEnd = bucket.bucketStart() + resolution.seconds();
+        if (resolution == RollupResolution.DAY) {
+            boolean[] pending = new boolean[1];
+            jdbcTemplate.query(DAY_HOURLY_SKETCHES_SQL, rs -> {
+                byte[] hourly = rs.getBytes("user_sketch");
+                if (hourly != null) {
+                    sketch.merge(HyperLogLog.fromBytes(hourly));
+                } else if (rs.getLong("total_count") > 0) {
+                    pending[0] = true;
+                }
+            }, bucket.eventNameId(), bucket.channelId(), bucketStart, toTimestamp(bucketEnd));
+            if (pending[0]) {
+                return false;
+            }
+        } else {
+            LocalDate eventDate = Instant.ofEpochSecond(bucket.bucketStart()).atOffset(ZoneOffset.UTC).toLocalDate();
+            jdbcTemplate.query(BUCKET_USERS_SQL, rs -> {
+                sketch.addHash(Murmur3.hash64(rs.getString("user_id")));
+            }, bucket.eventNameId(), Date.valueOf(eventDate), bucket.channelId(), bucket.bucketStart(), bucketEnd);
+        }
+
+        // Ham partition'ı retention ile silinmiş kova: mevcut unique_user_count korunur, boş sketch yazılır
+        jdbcTemplate.update(String.format(
+                "UPDATE %1$s SET user_sketch = ?, unique_user_count = COALESCE(?, unique_user_count) "
+                        + "WHERE event_name_id = ? AND %2$s = ? AND channel_id = ?",
+                        resolution.table(), resolution.bucketColumn()),
+                sketch.toBytes(), new SqlParameterValue(Types.BIGINT, sketch.isEmpty() ? null : sketch.estimate()),
+                bucket.eventNameId(), bucketStart, bucket.channelId());
+        return true;
+    }
+
+    /**
+     * Saatin kovalarını (saatlik ve retention'ı saati kapsayan dakika/15 dk) events'ten yeniden kurar; saatin advisory
+     * lock'u exclusive alınır, mevcut satırlar silinip sayılar ve sketch'ler baştan yazılır. Partition'ı olmayan saat
+     * için çağrılmamalıdır (satırlar silinir, yerine bir şey yazılmaz). Yazılan kova sayısını döner.
+     */
+    @Transactional
+    public int rebuildHour(long hourStart) {
+        lockHours(jdbcTemplate, List.of(hourStart), true);
+        long hourEnd = hourStart + RollupResolution.HOUR.seconds();
+        long now = Instant.now().getEpochSecond();
+        List<RollupResolution> resolutions = RollupResolution.active(appProperties.getMetrics().getRollup()).stream()
+                .filter(resolution -> resolution.seconds() <= RollupResolution.HOUR.seconds())
+                .filter(resolution -> {
+                    Duration retention = resolution.retention(appProperties.getMetrics().getRollup());
+                    return retention == null || hourEnd > now - retention.toSeconds();
+                })
+                .toList();
+        for (RollupResolution resolution : resolutions) {
+            jdbcTemplate.update(String.format("DELETE FROM %1$s WHERE %2$s >= ? AND %2$s < ?",
+                    resolution.table(), resolution.bucketColumn()), toTimestamp(hourStart), toTimestamp(hourEnd));
+        }
+
+        LocalDate eventDate = Instant.ofEpochSecond(hourStart).atOffset(ZoneOffset.UTC).toLocalDate();
+        int precision = appProperties.getMetrics().getHllPrecision();
+        List<Map<BucketKey, BucketRecount>> open = new ArrayList<>(resolutions.size());
+        long[] openBucket = new long[resolutions.size()];
+        resolutions.forEach(resolution -> open.add(new TreeMap<>(BUCKET_ORDER)));
+        int[] written = {0};
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(HOUR_EVENTS_SQL);
+            ps.setFetchSize(REBUILD_FETCH_SIZE);
+            ps.setDate(1, Date.valueOf(eventDate));
+            ps.setLong(2, hourStart);
+            ps.setLong(3, hourEnd);
+            return ps;
+        }, rs -> {
+            long timestamp = rs.getLong("event_timestamp");
+            int eventNameId = rs.getInt("event_name_id");
+            int channelId = rs.getInt("channel_id");
+            long hash = Murmur3.hash64(rs.getString("user_id"));
+            for (int i = 0; i < resolutions.size(); i++) {
+                RollupResolution resolution = resolutions.get(i);
+                long bucketStart = resolution.floor(timestamp);
+                if (bucketStart != openBucket[i] && !open.get(i).isEmpty()) {
+                    written[0] += insertRecounts(resolution, eventDate, open.get(i));
+                }
+                openBucket[i] = bucketStart;
+                open.get(i).computeIfAbsent(new BucketKey(eventNameId, channelId, bucketStart),
+                        k -> new BucketRecount(precision)).add(hash);
+            }
+        });
+        for (int i = 0; i < resolutions.size(); i++) {
+            written[0] += insertRecounts(resolutions.get(i), eventDate, open.get(i));
+        }
+        return written[0];
+    }
+
+    /**
+     * Günün günlük kovalarını saatlik kovalardan yeniden kurar (sayılar toplanır, sketch'ler birleşir); günün 24 saat
+     * lock'u exclusive alınır. Günlük çözünürlük kapalıysa hiçbir şey yapmaz. Yazılan kova sayısını döner.
+     */
+    @Transactional
+    public int rebuildDay(LocalDate day) {
+        if (!RollupResolution.active(appProperties.getMetrics().getRollup()).contains(RollupResolution.DAY)) {
+            return 0;
+        }
+        long dayStart = day.atStartOfDay(ZoneOffset.UTC).toEpochSecond();
+        long dayEnd = dayStart + RollupResolution.DAY.seconds();
+        List<Long> hours = new ArrayList<>(24);
+        for (long hour = dayStart; hour < dayEnd; hour += RollupResolution.HOUR.seconds()) {
+            hours.add(hour);
+        }
+        lockHours(jdbcTemplate, hours, true);
+        jdbcTemplate.update("DELETE FROM event_metrics_daily WHERE bucket_start = ?", toTimestamp(dayStart));
+
+        int precision = appProperties.getMetrics().getHllPrecision();
+        Map<BucketKey, BucketRecount> days = new TreeMap<>(BUCKET_ORDER);
+        jdbcTemplate.query(DAY_HOURLY_ROWS_SQL, rs -> {
+            BucketRecount recount = days.computeIfAbsent(
+                    new BucketKey(rs.getInt("event_name_id"), rs.getInt("channel_id"), dayStart),
+                    k -> new BucketRecount(precision));
+            byte[] sketch = rs.getBytes("user_sketch");
+            recount.add(rs.getLong("total_count"), sketch != null ? HyperLogLog.fromBytes(sketch) : null);
+        }, toTimestamp(dayStart), toTimestamp(dayEnd));
+        return insertRecounts(RollupResolution.DAY, day, days);
+    }
+
+    /** Saatlik kovası olan günler, en yeniden eskiye (günlük kovaların yeniden kurulumu için). */
+    public List<LocalDate> findRollupDays() {
+        return jdbcTemplate.query(ROLLUP_DAYS_SQL, (rs, rowNum) -> rs.getDate("event_date").toLocalDate());
+    }
+
+    /** Kova başlangıcı before'dan eski satırları siler (dakika ve 15 dk retention'ı); silinen satır sayısını döner. */
+    public int deleteBucketsBefore(RollupResolution resolution, long before) {
+        return jdbcTemplate.update(String.format("DELETE FROM %s WHERE %s < ?",
+                resolution.table(), resolution.bucketColumn()), toTimestamp(before));
+    }
+
+    /**
+     * Zaman damgalarının saatlerinin advisory lock'larını artan sırada alır (transaction sonuna kadar); consumer'lar
+     * paylaşımlı, yeniden kurulum (DimensionRollupWriter dahil) exclusive alır. Sıra sabit olduğundan çoklu saat
+     * kilitleri kilitlenmez.
+     */
+    static void lockHours(JdbcTemplate jdbcTemplate, List<Long> timestamps, boolean exclusive) {
+        Integer[] hours = timestamps.stream()
+                .map(timestamp -> (int) Math.floorDiv(timestamp, RollupResolution.HOUR.seconds()))
+                .distinct()
+                .sorted()
+                .toArray(Integer[]::new);
+        jdbcTemplate.query(exclusive ? LOCK_HOURS_SQL : LOCK_HOURS_SHARED_SQL, rs -> {
+        }, HOUR_LOCK_CLASS, hours);
+    }
+
+    /** Yeniden sayılan kovaları yazar ve haritayı boşaltır; yazılan kova sayısını döner. */
+    private int insertRecounts(RollupResolution resolution, LocalDate eventDate, Map<BucketKey, BucketRecount> recounts) {
+        List<Object[]> args = new ArrayList<>(recounts.size());
+        recounts.forEach((key, recount) -> args.add(new Object[]{
+                key.eventNameId(), key.channelId(), toTimestamp(key.bucketStart()), Date.valueOf(eventDate),
+                recount.totalCount, recount.users.estimate(), recount.users.toBytes()}));
+        jdbcTemplate.batchUpdate(format(INSERT_ROW_SQL, resolution), args);
+        recounts.clear();
+        return args.size();
+    }
+
+    private static Map<BucketKey, BucketDelta> eventDeltas(List<Event> events, EventDimensions dimensions,
+                                                          RollupResolution resolution) {
+        Map<BucketKey, BucketDelta> deltas = new TreeMap<>(BUCKET_ORDER);
+        for (Event event : events) {
+            Integer channelId = dimensions.channelId(event);
+            BucketKey key = new BucketKey(
+                    dimensions.eventNameId(event),
+                    channelId != null ? channelId : NO_CHANNEL,
+                    resolution.floor(event.getEventTimestamp()));
+            BucketDelta delta = deltas.computeIfAbsent(key, k -> new BucketDelta(event.getEventDate()));
+            delta.totalCount++;
+            delta.userHashes.add(Murmur3.hash64(event.getUserId()));
+        }
+        return deltas;
+    }
+
+    /** Bir alt çözünürlüğün delta'larını kaba kovalara birleştirir (kaba kova sınırları ince kovalarınkiyle çakışır). */
+    private static Map<BucketKey, BucketDelta> cascade(Map<BucketKey, BucketDelta> finer, RollupResolution resolution) {
+        Map<BucketKey, BucketDelta> deltas = new TreeMap<>(BUCKET_ORDER);
+        finer.forEach((key, delta) -> {
+            BucketDelta coarse = deltas.computeIfAbsent(
+                    new BucketKey(key.eventNameId(), key.channelId(), resolution.floor(key.bucketStart())),
+                    k -> new BucketDelta(delta.eventDate));
+            coarse.totalCount += delta.totalCount;
+            coarse.userHashes.addAll(delta.userHashes);
+        });
+        return deltas;
+    }
+
+    private void applyDeltas(RollupResolution resolution, Map<BucketKey, BucketDelta> deltas) {
+        // 1) Eksik kova satırlarını oluştur (sıralı), 2) hepsini sıralı kilitle ve mevcut sketch'leri oku
+        List<Object[]> ensureArgs = new ArrayList<>(deltas.size());
+        deltas.forEach((key, delta) -> ensureArgs.add(new Object[]{
+                key.eventNameId(), key.channelId(), toTimestamp(key.bucketStart()), Date.valueOf(delta.eventDate)}));
+        jdbcTemplate.batchUpdate(format(ENSURE_ROW_SQL, resolution), ensureArgs);
+
+        Map<BucketKey, LockedRow> lockedRows = lockAndReadRows(resolution, deltas.keySet());
+
+        // 3) Sketch'leri Java'da birleştir, delta'ları yaz
+        int precision = appProperties.getMetrics().getHllPrecision();
+        List<Object[]> updateArgs = new ArrayList<>(deltas.size());
+        deltas.forEach((key, delta) -> {
+            LockedRow row = lockedRows.get(key);
+            SqlParameterValue unique = new SqlParameterValue(Types.BIGINT, null);
+            SqlParameterValue sketchBytes = new SqlParameterValue(Types.BINARY, null);
+            if (row == null || !row.legacy()) {
+                HyperLogLog sketch = row != null && row.sketch() != null
+                        ? HyperLogLog.fromBytes(row.sketch())
+                        : new HyperLogLog(precision);
+                delta.userHashes.forEach(sketch::addHash);
+                unique = new SqlParameterValue(Types.BIGINT, sketch.estimate());
+                sketchBytes = new SqlParameterValue(Types.BINARY, sketch.toBytes());
+            }
+            updateArgs.add(new Object[]{
+                    delta.totalCount, unique, sketchBytes,
+                    key.eventNameId(), toTimestamp(key.bucketStart()), key.channelId()});
+        });
+        jdbcTemplate.batchUpdate(format(UPDATE_SQL, resolution), updateArgs);
+    }
+
+    private Map<BucketKey, LockedRow> lockAndReadRows(RollupResolution resolution, Iterable<BucketKey> keys) {
+        List<Object> params = new ArrayList<>();
+        List<String> tuples = new ArrayList<>();
+        for (BucketKey key : keys) {
+            tuples.add("(?, ?, ?)");
+            params.add(key.eventNameId());
+            params.add(toTimestamp(key.bucketStart()));
+            params.add(key.channelId());
+        }
+
+        Map<BucketKey, LockedRow> rows = new HashMap<>();
+        String sql = String.format(LOCK_ROWS_SQL, resolution.table(), resolution.bucketColumn(),
+                String.join(", ", tuples));
+        jdbcTemplate.query(sql, rs -> {
+            BucketKey key = new BucketKey(
+                    rs.getInt("event_name_id"),
+                    rs.getInt("channel_id"),
+                    rs.getTimestamp("bucket_start").toInstant().getEpochSecond());
+            byte[] sketch = rs.getBytes("user_sketch");
+            rows.put(key, new LockedRow(sketch, sketch == null && rs.getLong("total_count") > 0));
+        }, params.toArray());
+        return rows;
+    }
+
+    private static String format(String template, RollupResolution resolution) {
+        return String.format(template, resolution.table(), resolution.bucketColumn());
+    }
+
+    private static Timestamp toTimestamp(long epochSecond) {
+        return Timestamp.from(Instant.ofEpochSecond(epochSecond));
+    }
+
+    private record BucketKey(int eventNameId, int channelId, long bucketStart) {
+    }
+
+    /** Kilitli rollup satırı; legacy = sketch'i backfill bekleyen dolu satır. */
+    private record LockedRow(byte[] sketch, boolean legacy) {
+    }
+
+    /** Rollup kovası kimliği (channel yoksa channel_id 0). */
+    public record RollupBucket(RollupResolution resolution, int eventNameId, int channelId, long bucketStart) {
+    }
+
+    /** Yeniden kurulan kova: event sayısı ve kullanıcı sketch'i. */
+    private static final class BucketRecount {
+        private final HyperLogLog users;
+        private long totalCount;
+
+        private BucketRecount(int precision) {
+            this.users = new HyperLogLog(precision);
+        }
+
+        private void add(long userHash) {
+            totalCount++;
+            users.addHash(userHash);
+        }
+
+        private void add(long count, HyperLogLog sketch) {
+            totalCount += count;
+            if (sketch != null) {
+                users.merge(sketch);
+            }
+        }
+    }
+
+    private static final class BucketDelta {
+        private final LocalDate eventDate;
+        private final List<Long> userHashes = new ArrayList<>();
+        private long totalCount;
+
+        private BucketDelta(LocalDate eventDate) {
+            this.eventDate = eventDate;
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.baykanat.insider.assessment.infrastructure.persistence;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Günlük range partition'lı tablolar için partition DDL'i: listeleme (sınır + boyut), oluşturma ve
+ * DETACH CONCURRENTLY + DROP ile silme. Hepsi katalog işlemi; satır sayısından bağımsız O(1).
+ *
+ * <p>Bakım tüm instance'larda zamanlanır ama runExclusively ile tek instance'ta çalışır: aynı partition'ı iki
+ * instance'ın aynı anda ayırması (DETACH CONCURRENTLY) hata verir ve çalışmanın kalanını keser.
+ */
+@Slf4j
+@Repository
+@RequiredArgsConstructor
+public class PartitionJdbcRepository {
+
+    private static final String LIST_SQL = """
+            SELECT c.relname AS name,
+                   pg_get_expr(c.relpartbound, c.oid) AS bound,
+                   pg_total_relation_size(c.oid) AS bytes,
+                   i.inhdetachpending AS detach_pending
+            FROM pg_inherits i
+            JOIN pg_class c ON c.oid = i.inhrelid
+            JOIN pg_class p ON p.oid = i.inhparent
+            WHERE p.relname = ?
+              AND p.relnamespace = current_schema()::regnamespace
+            ORDER BY c.relname
+            """;
+
+    /** "FOR VALUES FROM ('2026-01-01') TO ('2026-01-02')"; DEFAULT ve MINVALUE sınırları eşleşmez. */
+    private static final Pattern RANGE_BOUND = Pattern.compile("FROM \\('([^']+)'\\) TO \\('([^']+)'\\)");
+
+    /** timestamptz sınırı oturum saat diliminde yazılır: "2026-01-01 03:00:00+03", "2025-12-31 19:00:00-05". */
+    private static final Pattern TIMESTAMPTZ_BOUND = Pattern.compile(
+            "(\\d{4}-\\d{2}-\\d{2}) (\\d{2}:\\d{2}:\\d{2})(?:\\.\\d+)?([+-]\\d{2}(?::\\d{2}){0,2})");
+
+    /** Bakımı tek instance'a bırakan session advisory lock'unun sınıf anahtarı ('PART'). */
+    static final int MAINTENANCE_LOCK_CLASS = 0x50415254;
+    static final int MAINTENANCE_LOCK_ID = 0;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * task'ı bakım advisory lock'u altında çalıştırır; kilit başka instance'taysa çalıştırmadan false döner. Kilit
+     * kendi bağlantısında tutulur, task'ın sorguları havuzdaki diğer bağlantılardan gider.
+     */
+    public boolean runExclusively(Runnable task) {
+        Boolean ran = jdbcTemplate.execute((ConnectionCallback<Boolean>) con -> {
+            if (!advisoryLock(con, "pg_try_advisory_lock")) {
+                return false;
+            }
+            try {
+                task.run();
+            } finally {
+                advisoryLock(con, "pg_advisory_unlock");
+            }
+            return true;
+        });
+        return Boolean.TRUE.equals(ran);
+    }
+
+    /** Tablonun partition'larını sınırları ve toplam boyutlarıyla (index dahil) döner. */
+    public List<PartitionInfo> listPartitions(String parentTable) {
+        return jdbcTemplate.query(LIST_SQL, (rs, rowNum) -> {
+            Matcher matcher = RANGE_BOUND.matcher(rs.getString("bound"));
+            boolean range = matcher.find();
+            return new PartitionInfo(
+                    rs.getString("name"),
+                    range ? parseDay(matcher.group(1)) : null,
+                    range ? parseDay(matcher.group(2)) : null,
+                    rs.getLong("bytes"),
+                    rs.getBoolean("detach_pending"));
+        }, parentTable);
+    }
+
+    /** [day, day+1) aralığı için {parent}_YYYY_MM_DD partition'ını oluşturur (V1 ile aynı adlandırma). */
+    public String createDailyPartition(String parentTable, PartitionKeyType keyType, LocalDate day) {
+        String name = dailyPartitionName(parentTable, day);
+        jdbcTemplate.execute(String.format(
+                "CREATE TABLE IF NOT EXISTS %s PARTITION OF %s FOR VALUES FROM ('%s') TO ('%s')",
+                name, parentTable, keyType.bound(day), keyType.bound(day.plusDays(1))));
+        return name;
+    }
+
+    /**
+     * Partition'ı ayırıp siler. CONCURRENTLY parent'ı kilitlemez (insert'ler devam eder) ve transaction dışında
+     * çalışmalıdır; yarıda kalmış bir ayırma (detachPending) FINALIZE ile tamamlanır.
+     */
+    public void dropPartition(String parentTable, PartitionInfo partition) {
+        if (partition.detachPending()) {
+            jdbcTemplate.execute(String.format("ALTER TABLE %s DETACH PARTITION %s FINALIZE",
+                    parentTable, partition.name()));
+        } else {
+            jdbcTemplate.execute(String.format("ALTER TABLE %s DETACH PARTITION %s CONCURRENTLY",
+                    parentTable, partition.name()));
+        }
+        jdbcTemplate.execute(String.format("DROP TABLE IF EXISTS %s", partition.name()));
+    }
+
+    private static boolean advisoryLock(Connection con, String function) throws SQLException {
+        try (PreparedStatement ps = con.prepareStatement("SELECT " + function + "(?, ?)")) {
+            ps.setInt(1, MAINTENANCE_LOCK_CLASS);
+            ps.setInt(2, MAINTENANCE_LOCK_ID);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() && rs.getBoolean(1);
+            }
+        }
+    }
+
+    public static String dailyPartitionName(String parentTable, LocalDate day) {
+        return String.format("%s_%04d_%02d_%02d", parentTable, day.getYear(), day.getMonthValue(), day.getDayOfMonth());
+    }
+
+    /** Sınır literal'inin UTC günü: date ise olduğu gibi, timestamptz ise ofset uygulanarak. */
+    static LocalDate parseDay(String literal) {
+        Matcher matcher = TIMESTAMPTZ_BOUND.matcher(literal);
+        if (!matcher.matches()) {
+            return LocalDate.parse(literal.substring(0, 10));
+        }
+        return LocalDateTime.parse(matcher.group(1) + "T" + matcher.group(2))
+                .atOffset(ZoneOffset.of(matcher.group(3)))
+                .withOffsetSameInstant(ZoneOffset.UTC)
+                .toLocalDate();
+    }
+
+    /** Partition kolonunun tipi; timestamptz sınırları oturum saat diliminden bağımsız UTC gece yarısıdır. */
+    public enum PartitionKeyType {
+        DATE,
+        TIMESTAMPTZ;
+
+        String bound(LocalDate day) {
+            return this == DATE ? day.toString() : day + " 00:00:00+00";
+        }
+    }
+
+    /** Partition özeti; DEFAULT partition'da from/to null. Aralık [from, to). */
+    public record PartitionInfo(String name, LocalDate from, LocalDate to, long bytes, boolean detachPending) {
+    }
+}
@@ -0,0 +1,106 @@
+package com.baykanat.insider.assessment.infrastructure.persistence;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.UUID;
+
+/**
+ * PostgreSQL COPY ... FROM STDIN (FORMAT binary) akışı yazar.
+ * Header/trailer ve alan uzunluk önekleri burada; sütun sırası çağıranın COPY sütun listesiyle aynı olmalı.
+ */
+class PgBinaryCopyWriter implements AutoCloseable {
+
+    /** "PGCOPY\n\377\r\n\0" imzası. */
+    private static final byte[] SIGNATURE = {'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xFF, '\r', '\n', 0};
+
+    /** PostgreSQL date epoch'u (2000-01-01) ile Unix epoch arasındaki gün farkı. */
+    private static final long PG_EPOCH_DAY = LocalDate.of(2000, 1, 1).toEpochDay();
+
+    /** JSONB binary formatının sürüm baytı. */
+    private static final int JSONB_VERSION = 1;
+
+    private final DataOutputStream out;
+
+    PgBinaryCopyWriter(OutputStream target) throws IOException {
+        this.out = new DataOutputStream(new BufferedOutputStream(target, 65536));
+        out.write(SIGNATURE);
+        out.writeInt(0); // flags
+        out.writeInt(0); // header extension length
+    }
+
+    /** Yeni satır başlatır; fieldCount COPY sütun sayısıyla aynı olmalı. */
+    void startRow(int fieldCount) throws IOException {
+        out.writeShort(fieldCount);
+    }
+
+    void writeText(String value) throws IOException {
+        if (value == null) {
+            writeNull();
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    void writeInt(Integer value) throws IOException {
+        if (value == null) {
+            writeNull();
+            return;
+        }
+        out.writeInt(Integer.BYTES);
+        out.writeInt(value);
+    }
+
+    void writeLong(long value) throws IOException {
+        out.writeInt(Long.BYTES);
+        out.writeLong(value);
+    }
+
+    void writeDate(LocalDate value) throws IOException {
+        if (value == null) {
+            writeNull();
+            return;
+        }
+        out.writeInt(Integer.BYTES);
+        out.writeInt((int) (value.toEpochDay() - PG_EPOCH_DAY));
+    }
+
+    /** JSONB binary: 1 bayt sürüm + JSON metni. */
+    void writeJsonb(String json) throws IOException {
+        if (json == null) {
+            writeNull();
+            return;
+        }
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length + 1);
+        out.writeByte(JSONB_VERSION);
+        out.write(bytes);
+    }
+
+    /** uuid binary: 16 bayt, big-endian (msb, lsb). */
+    void writeUuid(UUID value) throws IOException {
+        if (value == null) {
+            writeNull();
+            return;
+        }
+        out.writeInt(16);
+        out.writeLong(value.getMostSignificantBits());
+        out.writeLong(value.getLeastSignificantBits());
+    }
+
+    void writeNull() throws IOException {
+        out.writeInt(-1);
+    }
+
+    /** Trailer yazar ve alttaki COPY akışını kapatır (endCopy). */
+    @Override
+    public void close() throws IOException {
+        out.writeShort(-1);
+        out.close();
+    }
+}
@@ -0,0 +1,157 @@
+package com.baykanat.insider.assessment.infrastructure.persistence;
+
+import com.baykanat.insider.assessment.config.AppProperties;
+import com.baykanat.insider.assessment.domain.hash.Murmur3;
+import com.baykanat.insider.assessment.domain.sketch.HyperLogLog;
+import com.baykanat.insider.assessment.infrastructure.persistence.MetricsJdbcRepository.SeriesSelection;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Ham events partition'larından metrik hücreleri: ön-agregasyonun kapsamadığı kova içi kenarlar, MV retention'ı
+ * dışındaki günler ve rollup'ı olmayan ince group_by'lar için. Her sorgu tek günlük partition'ı adıyla okur (açık partition budaması) ve
+ * idx_events_name_date (event_name_id, event_date) üzerinden yalnızca istenen event_name'lere iner.
+ *
+ * <p>Etiket filtresi verilirse satırlar tags ?& / ?| ile süzülür; idx_events_tags (GIN, V14) bu operatörleri indeksler.
+ *
+ * <p>Sketch modunda (rollup kaynağı) kullanıcılar (kova, user_id) başına gruplanıp HyperLogLog'a eklenir; hücreler
+ * rollup sketch'leriyle birleşebilir. Toplama modunda (MV kaynağı) kova başına COUNT(DISTINCT user_id) döner.
+ */
+@Repository
+@RequiredArgsConstructor
+public class RawEventMetricsJdbcRepository {
+
+    private static final String EVENTS_TABLE = "events";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final AppProperties appProperties;
+
+    /**
+     * Günlük partition'ların planner satır tahmini (pg_class.reltuples; hiç ANALYZE edilmemişse 0). Partition'ı
+     * olmayan gün sonuçta yer almaz.
+     */
+    public Map<LocalDate, Long> estimatePartitionRows(Collection<LocalDate> days) {
+        Map<String, LocalDate> byName = new LinkedHashMap<>();
+        for (LocalDate day : days) {
+            byName.put(PartitionJdbcRepository.dailyPartitionName(EVENTS_TABLE, day), day);
+        }
+        Map<LocalDate, Long> estimates = new HashMap<>();
+        if (byName.isEmpty()) {
+            return estimates;
+        }
+        jdbcTemplate.query("""
+                SELECT c.relname, GREATEST(c.reltuples, 0)::bigint AS estimate
+                FROM pg_inherits i
+                JOIN pg_class c ON c.oid = i.inhrelid
+                WHERE i.inhparent = 'events'::regclass
+                  AND c.relname = ANY(?)
+                """, rs -> {
+            estimates.put(byName.get(rs.getString("relname")), rs.getLong("estimate"));
+        }, (Object) byName.keySet().toArray(String[]::new));
+        return estimates;
+    }
+
+    /**
+     * Günün partition'ından [from, to) penceresindeki hücreler (cellSeconds genişliğinde kova başına, seri başına).
+     * Pencere günün içinde olmalıdır; partition yoksa çağrılmamalıdır (estimatePartitionRows ile bilinir). cellSeconds
+     * günü tam bölmelidir.
+     */
+    public List<MetricsCell> scanDay(SeriesSelection selection, LocalDate day, long from, long to, long cellSeconds,
+                                     boolean sketches) {
+        return scanDay(selection, null, day, from, to, cellSeconds, sketches);
+    }
+
+    /** scanDay; tags null değilse yalnızca etiket filtresine uyan event'ler. */
+    public List<MetricsCell> scanDay(SeriesSelection selection, TagFilter tags, LocalDate day, long from, long to,
+                                     long cellSeconds, boolean sketches) {
+        String partition = PartitionJdbcRepository.dailyPartitionName(EVENTS_TABLE, day);
+        String channelColumn = selection.byChannel() ? "channel_id" : "0";
+        String channelFilter = (selection.byChannel() ? " AND channel_id = ANY(?)" : "")
+                + (tags != null ? tags.sql() : "");
+        List<Object> params = new ArrayList<>();
+        params.add(cellSeconds);
+        params.add(cellSeconds);
+        params.add(selection.eventNameIds());
+        params.add(Date.valueOf(day));
+        params.add(from);
+        params.add(to);
+        if (selection.byChannel()) {
+            params.add(selection.channelIds());
+        }
+        if (tags != null) {
+            params.add(tags.tags().toArray(String[]::new));
+        }
+        return sketches
+                ? scanWithSketches(partition, channelColumn, channelFilter, params)
+                : scanWithCounts(partition, channelColumn, channelFilter, params);
+    }
+
+    private List<MetricsCell> scanWithCounts(String partition, String channelColumn, String channelFilter,
+                                             List<Object> params) {
+        String sql = String.format("""
+                SELECT event_name_id, %2$s AS channel_id, event_timestamp - event_timestamp %% ? AS bucket_start,
+                       COUNT(*) AS total_count, COUNT(DISTINCT user_id) AS unique_user_count
+                FROM %1$s
+                WHERE event_name_id = ANY(?)
+                  AND event_date = ?
+                  AND event_timestamp >= ?
+                  AND event_timestamp < ?%3$s
+                GROUP BY 1, 2, 3
+                """, partition, channelColumn, channelFilter);
+        return jdbcTemplate.query(sql, (rs, rowNum) -> new MetricsCell(rs.getInt("event_name_id"),
+                rs.getInt("channel_id"), rs.getLong("bucket_start"), rs.getLong("total_count"),
+                rs.getLong("unique_user_count"), null), params.toArray());
+    }
+
+    private List<MetricsCell> scanWithSketches(String partition, String channelColumn, String channelFilter,
+                                               List<Object> params) {
+        String sql = String.format("""
+                SELECT event_name_id, %2$s AS channel_id, event_timestamp - event_timestamp %% ? AS bucket_start,
+                       user_id, COUNT(*) AS total_count
+                FROM %1$s
+                WHERE event_name_id = ANY(?)
+                  AND event_date = ?
+                  AND event_timestamp >= ?
+                  AND event_timestamp < ?%3$s
+                GROUP BY 1, 2, 3, 4
+                """, partition, channelColumn, channelFilter);
+
+        int precision = appProperties.getMetrics().getHllPrecision();
+        Map<List<Long>, long[]> counts = new HashMap<>();
+        Map<List<Long>, HyperLogLog> sketches = new HashMap<>();
+        jdbcTemplate.query(sql, rs -> {
+            List<Long> key = List.of((long) rs.getInt("event_name_id"), (long) rs.getInt("channel_id"),
+                    rs.getLong("bucket_start"));
+            counts.computeIfAbsent(key, k -> new long[1])[0] += rs.getLong("total_count");
+            sketches.computeIfAbsent(key, k -> new HyperLogLog(precision))
+                    .addHash(Murmur3.hash64(rs.getString("user_id")));
+        }, params.toArray());
+
+        List<MetricsCell> cells = new ArrayList<>(counts.size());
+        counts.forEach((key, count) -> {
+            HyperLogLog sketch = sketches.get(key);
+            cells.add(new MetricsCell(key.get(0).intValue(), key.get(1).intValue(), key.get(2), count[0],
+                    sketch.estimate(), sketch));
+        });
+        return cells;
+    }
+
+    /** Ham taramanın etiket filtresi: matchAll ise tüm etiketler (AND), değilse en az biri (OR). */
+    public record TagFilter(List<String> tags, boolean matchAll) {
+
+        // PgJDBC'de ?? tek ? olarak gönderilir (parametre yer tutucusu değil)
+        private String sql() {
+            return matchAll ? " AND tags ??& ?" : " AND tags ??| ?";
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.baykanat.insider.assessment.infrastructure.persistence;
+
+import com.baykanat.insider.assessment.config.AppProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Rollup tablolarının çözünürlükleri (V12). Hepsi aynı şekildedir: (event_name_id, kova başlangıcı, channel_id)
+ * anahtarı, total_count, unique_user_count ve user_sketch; saatlik tablo geriye uyum için date_hour kolonunu korur.
+ */
+public enum RollupResolution {
+
+    MINUTE(60, "event_metrics_minute", "bucket_start"),
+    QUARTER_HOUR(900, "event_metrics_15m", "bucket_start"),
+    HOUR(3600, "event_metrics_hourly", "date_hour"),
+    DAY(86400, "event_metrics_daily", "bucket_start");
+
+    private final long seconds;
+    private final String table;
+    private final String bucketColumn;
+
+    RollupResolution(long seconds, String table, String bucketColumn) {
+        this.seconds = seconds;
+        this.table = table;
+        this.bucketColumn = bucketColumn;
+    }
+
+    public long seconds() {
+        return seconds;
+    }
+
+    public String table() {
+        return table;
+    }
+
+    public String bucketColumn() {
+        return bucketColumn;
+    }
+
+    public long floor(long epochSecond) {
+        return epochSecond - Math.floorMod(epochSecond, seconds);
+    }
+
+    /** Kovaların tutulma süresi; null = süresiz. */
+    public Duration retention(AppProperties.RollupProperties rollup) {
+        return switch (this) {
+            case MINUTE -> rollup.getMinuteRetention();
+            case QUARTER_HOUR -> rollup.getQuarterHourRetention();
+            case HOUR, DAY -> null;
+        };
+    }
+
+    /** Yazılan ve okunabilen çözünürlükler, inceden kabaya. Saatlik rollup her zaman açıktır. */
+    public static List<RollupResolution> active(AppProperties.RollupProperties rollup) {
+        List<RollupResolution> active = new ArrayList<>(values().length);
+        for (RollupResolution resolution : values()) {
+            Duration retention = resolution.retention(rollup);
+            boolean enabled = switch (resolution) {
+                case MINUTE, QUARTER_HOUR -> retention != null && !retention.isZero() && !retention.isNegative();
+                case HOUR -> true;
+                case DAY -> rollup.isDailyEnabled();
+            };
+            if (enabled) {
+                active.add(resolution);
+            }
+        }
+        return active;
+    }
+}
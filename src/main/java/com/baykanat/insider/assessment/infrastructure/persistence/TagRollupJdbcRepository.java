@@ -0,0 +1,223 @@
+package com.baykanat.insider.assessment.infrastructure.persistence;
+
+import com.baykanat.insider.assessment.config.AppProperties;
+import com.baykanat.insider.assessment.domain.hash.Murmur3;
+import com.baykanat.insider.assessment.domain.mapper.EventMapper;
+import com.baykanat.insider.assessment.domain.model.Event;
+import com.baykanat.insider.assessment.infrastructure.persistence.DimensionDictionary.Dimension;
+import com.baykanat.insider.assessment.infrastructure.persistence.DimensionDictionary.EventDimensions;
+import com.baykanat.insider.assessment.infrastructure.persistence.DimensionRollupWriter.BucketDelta;
+import com.baykanat.insider.assessment.infrastructure.persistence.DimensionRollupWriter.BucketKey;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import static com.baykanat.insider.assessment.infrastructure.persistence.DimensionRollupWriter.mergeSketches;
+import static com.baykanat.insider.assessment.infrastructure.persistence.DimensionRollupWriter.toTimestamp;
+
+/**
+ * Etiket rollup'ı (V14): event_metrics_tag_hourly. Yazma, sketch backfill'i ve yeniden kurulum
+ * DimensionRollupWriter'dadır (kampanya rollup'ıyla ortak); event'in her farklı etiketi için bir delta yazılır.
+ * Etiketsiz event'ler yazılmaz; channel yoksa channel_id 0. V14 tabloyu boş oluşturur; RollupRebuildRunner onu
+ * events'ten kurar.
+ *
+ * <p>Okuma yolu: tek etiketli sorgular scanCells ile saatlik kovaları okur; çoklu etiket sorgularında tagCounts
+ * etiket başına toplamı (event_name_id, tag_id, bucket_start) PK önekiyle verir ve ham GIN taramasının maliyet
+ * tahmininde kullanılır. PK total_count'u INCLUDE etmez (her delta'da güncellenen sütun index'te olursa HOT güncelleme
+ * yapılamaz).
+ */
+@Slf4j
+@Repository
+public class TagRollupJdbcRepository {
+
+    private static final String TABLE = "event_metrics_tag_hourly";
+
+    private static final String COUNTS_SQL = """
+            SELECT tag_id, SUM(total_count) AS total_count
+            FROM event_metrics_tag_hourly
+            WHERE event_name_id = ?
+              AND tag_id = ANY(?)
+              AND bucket_start >= ?
+              AND bucket_start < ?%s
+            GROUP BY tag_id""";
+
+    private static final String CELLS_SQL = """
+            SELECT bucket_start, SUM(total_count) AS total_count,
+                   SUM(unique_user_count) AS unique_user_count, ARRAY_AGG(user_sketch) AS sketches
+            FROM event_metrics_tag_hourly
+            WHERE event_name_id = ?
+              AND tag_id = ?
+              AND bucket_start >= ?
+              AND bucket_start < ?%s
+            GROUP BY bucket_start""";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final DimensionDictionary dictionary;
+    private final DimensionRollupWriter writer;
+
+    public TagRollupJdbcRepository(JdbcTemplate jdbcTemplate, AppProperties appProperties,
+                                   DimensionDictionary dictionary) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.dictionary = dictionary;
+        // PgJDBC'de ?? tek ? operatörüne çevrilir (parametre yer tutucusu değil)
+        this.writer = new DimensionRollupWriter(jdbcTemplate, appProperties,
+                Map.of(RollupResolution.HOUR, TABLE), "tag_id", true,
+                "tags", "tags ?? (SELECT name FROM tag_dim WHERE id = ?)");
+    }
+
+    /**
+     * Batch'teki etiketli event'lerin delta'larını saatlik etiket tablosuna yazar; güncellenen kova sayısını döner.
+     * Diğer rollup tablolarından sonra çağrılır; yeni etiketler sözlükte aynı transaction'da oluşturulur.
+     */
+    public int applyBatch(List<Event> events) {
+        if (events.isEmpty()) {
+            return 0;
+        }
+        List<Event> tagged = new ArrayList<>();
+        List<Set<String>> taggedTags = new ArrayList<>();
+        List<String> allTags = new ArrayList<>();
+        for (Event event : events) {
+            Set<String> tags = parseTags(event.getTags());
+            if (!tags.isEmpty()) {
+                tagged.add(event);
+                taggedTags.add(tags);
+                allTags.addAll(tags);
+            }
+        }
+        if (tagged.isEmpty()) {
+            return 0;
+        }
+
+        EventDimensions dimensions = dictionary.resolve(tagged);
+        Map<String, Integer> tagIds = dictionary.resolve(Dimension.TAG, allTags);
+        Map<BucketKey, BucketDelta> deltas = writer.newDeltas();
+        for (int i = 0; i < tagged.size(); i++) {
+            Event event = tagged.get(i);
+            Integer channelId = dimensions.channelId(event);
+            long hash = Murmur3.hash64(event.getUserId());
+            for (String tag : taggedTags.get(i)) {
+                BucketKey key = new BucketKey(dimensions.eventNameId(event), tagIds.get(tag),
+                        channelId != null ? channelId : MetricsRollupJdbcRepository.NO_CHANNEL,
+                        RollupResolution.HOUR.floor(event.getEventTimestamp()));
+                deltas.computeIfAbsent(key, k -> new BucketDelta(event.getEventDate())).add(hash);
+            }
+        }
+        int updated = writer.apply(deltas);
+        log.debug("Tag rollup updated: {} tagged events into {} buckets", tagged.size(), updated);
+        return updated;
+    }
+
+    /** Sözlükte olan etiketlerin id'leri; hiç yazılmamış etiket sonuçta yer almaz (veri yok). */
+    public Map<String, Integer> findTagIds(Collection<String> tags) {
+        return dictionary.findIds(Dimension.TAG, tags);
+    }
+
+    /**
+     * Etiketlerin kova başlangıcı [from, to) olan saatlerdeki toplam event sayıları; pencerede satırı olmayan etiket
+     * sonuçta yer almaz. channelId null ise tüm channel'lar.
+     */
+    public Map<Integer, Long> tagCounts(int eventNameId, Integer channelId, Collection<Integer> tagIds, long from,
+                                        long to) {
+        Map<Integer, Long> counts = new HashMap<>();
+        if (tagIds.isEmpty()) {
+            return counts;
+        }
+        List<Object> params = new ArrayList<>(List.of(eventNameId, tagIds.toArray(Integer[]::new),
+                toTimestamp(from), toTimestamp(to)));
+        if (channelId != null) {
+            params.add(channelId);
+        }
+        jdbcTemplate.query(String.format(COUNTS_SQL, channelId != null ? "\n  AND channel_id = ?" : ""), rs -> {
+            counts.put(rs.getInt("tag_id"), rs.getLong("total_count"));
+        }, params.toArray());
+        return counts;
+    }
+
+    /**
+     * Etiketin [from, to) penceresindeki saatlik kovalarını hücre olarak akıtır. channelId null ise kovanın channel
+     * satırları birleştirilir ve hücrenin channel id'si 0'dır (sketch'i backfill bekleyen satır varsa kova sketch'siz,
+     * tekil sayılar toplanmış döner).
+     */
+    public void scanCells(int eventNameId, Integer channelId, int tagId, long from, long to,
+                          Consumer<MetricsCell> handler) {
+        List<Object> params = new ArrayList<>(List.of(eventNameId, tagId, toTimestamp(from), toTimestamp(to)));
+        if (channelId != null) {
+            params.add(channelId);
+        }
+        int dimensionId = channelId != null ? channelId : MetricsRollupJdbcRepository.NO_CHANNEL;
+        jdbcTemplate.query(String.format(CELLS_SQL, channelId != null ? "\n  AND channel_id = ?" : ""), rs -> {
+            handler.accept(new MetricsCell(eventNameId, dimensionId,
+                    rs.getTimestamp("bucket_start").toInstant().getEpochSecond(), rs.getLong("total_count"),
+                    rs.getLong("unique_user_count"), mergeSketches((Object[]) rs.getArray("sketches").getArray())));
+        }, params.toArray());
+    }
+
+    /** Sketch'i NULL olan en fazla limit kovayı, en yeniden başlayarak döner. */
+    public List<DimensionBucket> findBucketsPendingBackfill(int limit) {
+        return writer.findBucketsPendingBackfill(RollupResolution.HOUR, limit);
+    }
+
+    /** Kovanın sketch'ini events tablosundaki kullanıcılardan (GIN index) kurar; satır kilidi altında, tek transaction. */
+    @Transactional
+    public boolean backfillSketch(DimensionBucket bucket) {
+        return writer.backfillSketch(bucket);
+    }
+
+    /**
+     * Saatin etiket kovalarını events'ten yeniden kurar (saat lock'u exclusive); etiketler consumer'daki gibi
+     * parseTags ile ayrıştırılır, sözlükte olmayanlar oluşturulur. Partition'ı olmayan saat için çağrılmamalıdır.
+     * Yazılan kova sayısını döner.
+     */
+    @Transactional
+    public int rebuildHour(long hourStart) {
+        // Yeni etiketler sözlük önbelleğine ancak commit'te girer; saat içinde tekrar aranmasın
+        Map<String, Integer> known = new HashMap<>();
+        return writer.rebuildHour(hourStart, rs -> {
+            Set<String> tags = parseTags(rs.getString("dimension"));
+            List<String> missing = tags.stream().filter(tag -> !known.containsKey(tag)).toList();
+            if (!missing.isEmpty()) {
+                known.putAll(dictionary.resolve(Dimension.TAG, missing));
+            }
+            return tags.stream().map(known::get).toList();
+        });
+    }
+
+    /** Etiket rollup tabloları (yeniden kurulumun senkron listesi için). */
+    public List<String> tables() {
+        return writer.tables();
+    }
+
+    /** events.tags JSON dizisinin farklı, boş olmayan değerleri; dizi değilse veya bozuksa boş. */
+    static Set<String> parseTags(String json) {
+        if (json == null || json.isBlank()) {
+            return Set.of();
+        }
+        try {
+            String[] tags = EventMapper.JSON_MAPPER.readValue(json, String[].class);
+            if (tags == null) {
+                return Set.of();
+            }
+            Set<String> distinct = new LinkedHashSet<>();
+            for (String tag : tags) {
+                if (tag != null && !tag.isBlank()) {
+                    distinct.add(tag);
+                }
+            }
+            return distinct;
+        } catch (JsonProcessingException e) {
+            log.debug("Ignoring unparseable tags {}: {}", json, e.getMessage());
+            return Set.of();
+        }
+    }
+}
@@ -1,18 +1,24 @@
 package com.baykanat.insider.assessment.scheduler;
 
+import com.baykanat.insider.assessment.config.AppProperties;
+import com.baykanat.insider.assessment.domain.service.HotWindowMetrics;
+import com.baykanat.insider.assessment.infrastructure.metrics.IngestionMetrics;
 import com.baykanat.insider.assessment.infrastructure.persistence.MetricsJdbcRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
-/** event_metrics materialized view'ı periyodik CONCURRENTLY yeniler (varsayılan 1 dk). */
+/** event_metrics materialized view'ı periyodik CONCURRENTLY yeniler (varsayılan 1 dk); rollup modunda çalışmaz. */
 @Slf4j
 @Component
 @RequiredArgsConstructor
 public class MaterializedViewRefreshScheduler {
 
     private final MetricsJdbcRepository metricsRepository;
+    private final AppProperties appProperties;
+    private final IngestionMetrics metrics;
+    private final HotWindowMetrics hotWindow;
 
     /** MATERIALIZED VIEW'i yapılandırılmış aralıkta yeniler (parametrik: application.yaml); hata olursa sadece log. */
     @Scheduled(
@@ -20,8 +26,17 @@ public class MaterializedViewRefreshScheduler {
             initialDelayString = "${app.scheduler.materialized-view-refresh-initial-delay:30000}"
     )
     public void refreshMaterializedView() {
+        // Rollup consumer'da artımlı güncellenir; MV'yi yenilemek gereksiz tam tarama olur
+        if (appProperties.getMetrics().getSource() != AppProperties.MetricsSource.MATERIALIZED_VIEW) {
+            return;
+        }
         try {
+            long start = System.nanoTime();
+            // Snapshot eski katmanı seçmiş commit'lerden sonra alınır; refresh bitince önceki katmanlar MV'dedir
+            HotWindowMetrics.Refresh hotRefresh = hotWindow.beginRefresh();
             metricsRepository.refreshMaterializedView();
+            hotWindow.completeRefresh(hotRefresh);
+            metrics.mvRefreshDuration(System.nanoTime() - start);
         } catch (Exception e) {
             log.error("Failed to refresh materialized view: {}", e.getMessage(), e);
         }
@@ -0,0 +1,181 @@
+package com.baykanat.insider.assessment.scheduler;
+
+import com.baykanat.insider.assessment.config.AppProperties;
+import com.baykanat.insider.assessment.infrastructure.archive.EventArchiver;
+import com.baykanat.insider.assessment.infrastructure.persistence.InboxJdbcRepository;
+import com.baykanat.insider.assessment.infrastructure.persistence.PartitionJdbcRepository;
+import com.baykanat.insider.assessment.infrastructure.persistence.PartitionJdbcRepository.PartitionInfo;
+import com.baykanat.insider.assessment.infrastructure.persistence.PartitionJdbcRepository.PartitionKeyType;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * events (event_date) ve inbox (received_at) tablolarının günlük partition'larını yönetir: bugünden itibaren N gün
+ * ilerisini önceden oluşturur, retention'ı aşan partition'ları DETACH CONCURRENTLY + DROP ile siler (satır DELETE
+ * yok). V10 öncesinden kalan inbox_legacy tablosu da süresi dolunca tek seferde silinir. Açılışta hemen çalışır.
+ * Tablo başına partition sayısı ve toplam boyut gauge olarak yayınlanır.
+ *
+ * <p>Zamanlama her instance'ta çalışır; bakım ise PartitionJdbcRepository.runExclusively ile advisory lock'u alan tek
+ * instance'ta yürür, diğerleri o çalışmayı atlar (rollout'ta hep birlikte açılan instance'lar aynı partition'ı ayırmaya
+ * çalışmaz). Gauge'lar yalnızca bakımı yapan instance'ta güncellenir.
+ *
+ * <p>app.archive açıkken events retention'ı hot-retention-days olur ve her partition silinmeden önce EventArchiver ile
+ * sütunlu dosyaya yazılır. Arşivleme başarısız olursa o partition ve daha yenileri silinmez (sonraki çalışmada yeniden
+ * denenir); arşivlenmiş günler böylece kesintisiz bir aralık oluşturur.
+ */
+@Slf4j
+@Component
+public class PartitionMaintenanceScheduler {
+
+    static final String EVENTS_TABLE = "events";
+    static final String INBOX_TABLE = "inbox";
+
+    private final PartitionJdbcRepository partitionRepository;
+    private final InboxJdbcRepository inboxRepository;
+    private final EventArchiver archiver;
+    private final AppProperties appProperties;
+    private final TableGauges eventsGauges;
+    private final TableGauges inboxGauges;
+
+    public PartitionMaintenanceScheduler(PartitionJdbcRepository partitionRepository,
+                                         InboxJdbcRepository inboxRepository, EventArchiver archiver,
+                                         AppProperties appProperties, MeterRegistry registry) {
+        this.partitionRepository = partitionRepository;
+        this.inboxRepository = inboxRepository;
+        this.archiver = archiver;
+        this.appProperties = appProperties;
+        this.eventsGauges = new TableGauges(registry, EVENTS_TABLE);
+        this.inboxGauges = new TableGauges(registry, INBOX_TABLE);
+    }
+
+    /**
+     * Partition bakımını yapılandırılmış aralıkta çalıştırır (varsayılan saatte bir); kilit başka instance'taysa bu
+     * çalışma atlanır. Hata olursa sadece log.
+     */
+    @Scheduled(
+            fixedRateString = "${app.scheduler.partition-maintenance-rate:3600000}",
+            initialDelayString = "0"
+    )
+    public void maintainPartitions() {
+        LocalDate today = LocalDate.now(ZoneOffset.UTC);
+        try {
+            if (!partitionRepository.runExclusively(() -> maintainIsolated(today))) {
+                log.info("Partition maintenance is running on another instance; skipping this run");
+            }
+        } catch (Exception e) {
+            log.error("Partition maintenance lock failed: {}", e.getMessage(), e);
+        }
+    }
+
+    private void maintainIsolated(LocalDate today) {
+        try {
+            maintainEvents(today);
+        } catch (Exception e) {
+            log.error("Events partition maintenance failed: {}", e.getMessage(), e);
+        }
+        try {
+            maintainInbox(today);
+        } catch (Exception e) {
+            log.error("Inbox partition maintenance failed: {}", e.getMessage(), e);
+        }
+    }
+
+    void maintain(LocalDate today) {
+        maintainEvents(today);
+        maintainInbox(today);
+    }
+
+    void maintainEvents(LocalDate today) {
+        AppProperties.SchedulerProperties scheduler = appProperties.getScheduler();
+        AppProperties.ArchiveProperties archive = appProperties.getArchive();
+        // Retention: MV penceresinden kısa tutulamaz; 0 = silme kapalı. Arşiv açıkken sıcak katmanın süresi geçerli.
+        int configured = archive.isEnabled() ? archive.getHotRetentionDays() : scheduler.getEventsRetentionDays();
+        int retentionDays = configured > 0 ? Math.max(configured, scheduler.getMvRetentionDays()) : 0;
+        maintainTable(EVENTS_TABLE, PartitionKeyType.DATE, scheduler.getEventsPartitionPrecreateDays(),
+                retentionDays, today, eventsGauges, archive.isEnabled() ? archiver::archive : partition -> true);
+    }
+
+    void maintainInbox(LocalDate today) {
+        AppProperties.SchedulerProperties scheduler = appProperties.getScheduler();
+        // Dedup penceresi: received_at'i bugün - retention'dan yeni her key kalır
+        maintainTable(INBOX_TABLE, PartitionKeyType.TIMESTAMPTZ, scheduler.getInboxPartitionPrecreateDays(),
+                scheduler.getInboxRetentionDays(), today, inboxGauges, partition -> true);
+        if (inboxRepository.dropExpiredLegacyTable(scheduler.getInboxRetentionDays())) {
+            log.info("Dropped inbox_legacy: all pre-partitioning keys are older than {} days",
+                    scheduler.getInboxRetentionDays());
+        }
+    }
+
+    /** beforeDrop false dönerse o partition ve sonrakiler (isim sırası = gün sırası) bu çalışmada silinmez. */
+    private void maintainTable(String table, PartitionKeyType keyType, int precreateDays, int retentionDays,
+                               LocalDate today, TableGauges gauges, Predicate<PartitionInfo> beforeDrop) {
+        List<PartitionInfo> partitions = partitionRepository.listPartitions(table);
+
+        // Önceden oluşturma: [bugün, bugün + N] aralığında partition'ı olmayan günler
+        int created = 0;
+        for (int offset = 0; offset <= precreateDays; offset++) {
+            LocalDate day = today.plusDays(offset);
+            if (!isCovered(partitions, day)) {
+                partitionRepository.createDailyPartition(table, keyType, day);
+                created++;
+            }
+        }
+
+        int dropped = 0;
+        if (retentionDays > 0) {
+            LocalDate oldestKept = today.minusDays(retentionDays);
+            for (PartitionInfo partition : partitions) {
+                if (partition.to() != null && !partition.to().isAfter(oldestKept)) {
+                    if (!beforeDrop.test(partition)) {
+                        log.warn("Keeping {} partition {} and newer ones: archiving failed", table, partition.name());
+                        break;
+                    }
+                    partitionRepository.dropPartition(table, partition);
+                    dropped++;
+                    log.info("Dropped {} partition {} ({} bytes, [{} - {}))",
+                            table, partition.name(), partition.bytes(), partition.from(), partition.to());
+                }
+            }
+        }
+
+        if (created > 0 || dropped > 0) {
+            partitions = partitionRepository.listPartitions(table);
+            log.info("{} partition maintenance: {} created, {} dropped, {} partitions", table, created, dropped,
+                    partitions.size());
+        }
+        gauges.count.set(partitions.size());
+        gauges.bytes.set(partitions.stream().mapToLong(PartitionInfo::bytes).sum());
+    }
+
+    private static boolean isCovered(List<PartitionInfo> partitions, LocalDate day) {
+        return partitions.stream().anyMatch(partition -> partition.from() != null
+                && !day.isBefore(partition.from()) && day.isBefore(partition.to()));
+    }
+
+    /** Tablo başına db.partitions.count ve db.partitions.size gauge'ları. */
+    private static final class TableGauges {
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong bytes = new AtomicLong();
+
+        private TableGauges(MeterRegistry registry, String table) {
+            Gauge.builder("db.partitions.count", count, AtomicLong::get)
+                    .description("Tablonun partition sayısı")
+                    .tag("table", table)
+                    .register(registry);
+            Gauge.builder("db.partitions.size", bytes, AtomicLong::get)
+                    .description("Partition'ların toplam boyutu (index dahil)")
+                    .tag("table", table)
+                    .baseUnit("bytes")
+                    .register(registry);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.baykanat.insider.assessment.scheduler;
+
+import com.baykanat.insider.assessment.config.AppProperties;
+import com.baykanat.insider.assessment.infrastructure.persistence.MetricsRollupJdbcRepository;
+import com.baykanat.insider.assessment.infrastructure.persistence.RollupResolution;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Dakika ve 15 dakikalık rollup kovalarını retention'ları sonunda siler (partition bakımıyla aynı aralıkta); saatlik
+ * ve günlük kovalar süresizdir. Yalnızca rollup modunda çalışır.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class RollupRetentionScheduler {
+
+    private final MetricsRollupJdbcRepository metricsRollupRepository;
+    private final AppProperties appProperties;
+
+    @Scheduled(
+            fixedRateString = "${app.scheduler.partition-maintenance-rate:3600000}",
+            initialDelayString = "0"
+    )
+    public void deleteExpiredBuckets() {
+        if (appProperties.getMetrics().getSource() != AppProperties.MetricsSource.ROLLUP) {
+            return;
+        }
+        AppProperties.RollupProperties rollup = appProperties.getMetrics().getRollup();
+        for (RollupResolution resolution : RollupResolution.active(rollup)) {
+            Duration retention = resolution.retention(rollup);
+            if (retention == null) {
+                continue;
+            }
+            try {
+                long before = resolution.floor(Instant.now().minus(retention).getEpochSecond());
+                int deleted = metricsRollupRepository.deleteBucketsBefore(resolution, before);
+                if (deleted > 0) {
+                    log.info("Deleted {} expired {} rollup buckets older than {}", deleted, resolution,
+                            Instant.ofEpochSecond(before));
+                }
+            } catch (Exception e) {
+                log.error("Rollup retention for {} failed: {}", resolution, e.getMessage(), e);
+            }
+        }
+    }
+}
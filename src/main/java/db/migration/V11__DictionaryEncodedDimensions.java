@@ -0,0 +1,338 @@
+package db.migration;
+
+import lombok.extern.slf4j.Slf4j;
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * V11: event_name, channel ve campaign_id sözlük (dimension) tablolarına taşınır.
+ *
+ * <p>Neden: Günde ~172M satırın her biri event_name/channel/campaign_id metinlerini tekrar taşıyor;
+ * idx_events_name_date, idx_events_channel ve event_metrics MV'si de aynı metinleri (collation'lı karşılaştırmayla)
+ * indeksliyor. Farklı değer sayısı küçük (onlarca event_name, birkaç channel, yüzlerce kampanya); her biri bir kez
+ * sözlük tablosunda saklanır, events ve agregasyonlar 4 baytlık INTEGER id taşır. Satırlar ve index tuple'ları küçülür,
+ * karşılaştırmalar memcmp olur, daha çok index shared_buffers'a sığar. Uygulama id'leri DimensionDictionary'den çözer;
+ * id'ler asla değişmez ve silinmez, API metin kullanmaya devam eder. Rollup'ta (event_metrics_hourly) channel yokken
+ * '' yerine 0 saklanır (PK kolonu NULL olamaz, sözlük id'leri 1'den başlar).
+ *
+ * <p>UPDATE + SET NOT NULL tüm partition'ları ACCESS EXCLUSIVE altında yeniden yazardı; geçiş V9 ile aynı yolu izler:
+ * <ol>
+ *   <li>Sözlük tablolarını ve events / event_metrics_hourly'ye nullable id kolonlarını ekler (katalog işlemi;
+ *   campaign id'si metin campaign_id'nin yerini alacağı için önce campaign_id_new adıyla). Trigger, hâlâ metin yazan
+ *   eski sürüm instance'larının insert'lerinde sözlük değerini oluşturup id'leri doldurur (dual-write).</li>
+ *   <li>Mevcut satırları tablo / partition başına blok aralıklarıyla (TID range scan) doldurur; her parça ayrı
+ *   transaction'da önce kendi sözlük değerlerini ekler, sonra id'leri yazar. Tam geçmiş taraması yoktur.</li>
+ *   <li>id index'lerini CONCURRENTLY kurar (events'te partition başına, sonra ATTACH); event_metrics MV'sini id'lerle
+ *   yeni adla kurar. NOT NULL için doğrulanmış CHECK'ler ekler (VALIDATE yazmaları bloklamaz).</li>
+ *   <li>Tek kısa transaction'da takas eder: trigger'lar, eski MV ve metin kolonları (ve onlara bağlı index'ler) düşer,
+ *   yeni kolon / index / MV eski adları alır. SET NOT NULL CHECK sayesinde tablo taramaz; DROP COLUMN yeniden yazmaz,
+ *   alan satırlar yeniden yazıldıkça geri kazanılır, yeni günlük partition'lar metin kolonlarını hiç taşımaz.</li>
+ * </ol>
+ *
+ * <p>Migration transaction dışında yürür (CONCURRENTLY); adımlar yeniden çalıştırılabilir, yarıda kalırsa flyway repair
+ * sonrası kaldığı yerden devam eder. Takastan sonra eski sürümün metinli insert'leri hata verir; batch'ler Kafka'dan
+ * yeni sürümde yeniden işlenir.
+ */
+@Slf4j
+public class V11__DictionaryEncodedDimensions extends BaseJavaMigration {
+
+    /** Doldurma parçası: 1000 blok (~8 MB) tek transaction'da. */
+    private static final int BACKFILL_BLOCKS = 1_000;
+
+    private static final String NOT_NULL_CHECK = "event_name_id_not_null";
+    private static final String NAME_INDEX = "events_event_name_id_idx";
+    private static final String CHANNEL_INDEX = "events_channel_id_idx";
+    private static final String HOURLY_KEY_INDEX = "event_metrics_hourly_id_key";
+
+    /** Metin kolonu → sözlük tablosu. */
+    private static final Map<String, String> DIMENSION_TABLES =
+            Map.of("event_name", "event_name_dim", "channel", "channel_dim", "campaign_id", "campaign_dim");
+
+    /** Takas kilidi uzun bir transaction'ın arkasında beklerken tüm yazmaları kuyruğa sokmasın; zaman aşımında tekrar. */
+    private static final int SWAP_ATTEMPTS = 5;
+
+    private static final String EXPAND_SQL = """
+            CREATE TABLE IF NOT EXISTS event_name_dim (
+                id   INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+                name VARCHAR(255) NOT NULL UNIQUE
+            );
+            CREATE TABLE IF NOT EXISTS channel_dim (
+                id   INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+                name VARCHAR(100) NOT NULL UNIQUE
+            );
+            CREATE TABLE IF NOT EXISTS campaign_dim (
+                id   INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+                name VARCHAR(100) NOT NULL UNIQUE
+            );
+            ALTER TABLE events
+                ADD COLUMN IF NOT EXISTS event_name_id   INTEGER,
+                ADD COLUMN IF NOT EXISTS channel_id      INTEGER,
+                ADD COLUMN IF NOT EXISTS campaign_id_new INTEGER;
+            ALTER TABLE event_metrics_hourly
+                ADD COLUMN IF NOT EXISTS event_name_id INTEGER,
+                ADD COLUMN IF NOT EXISTS channel_id    INTEGER NOT NULL DEFAULT 0;
+
+            -- Sözlük değeri yoksa ekler (NOT EXISTS: ON CONFLICT'te de identity ilerlerdi), id'sini döner
+            CREATE OR REPLACE FUNCTION v11_dimension_id(dimension regclass, value text) RETURNS integer
+            LANGUAGE plpgsql AS $$
+            DECLARE
+                result integer;
+            BEGIN
+                IF value IS NULL OR value = '' THEN
+                    RETURN NULL;
+                END IF;
+                EXECUTE format('SELECT id FROM %s WHERE name = $1', dimension) INTO result USING value;
+                IF result IS NULL THEN
+                    EXECUTE format('INSERT INTO %s (name) VALUES ($1) ON CONFLICT (name) DO NOTHING', dimension)
+                        USING value;
+                    EXECUTE format('SELECT id FROM %s WHERE name = $1', dimension) INTO result USING value;
+                END IF;
+                RETURN result;
+            END $$;
+
+            CREATE OR REPLACE FUNCTION v11_events_ids_fill() RETURNS trigger LANGUAGE plpgsql AS $$
+            BEGIN
+                NEW.event_name_id := v11_dimension_id('event_name_dim', NEW.event_name);
+                NEW.channel_id := v11_dimension_id('channel_dim', NEW.channel);
+                NEW.campaign_id_new := v11_dimension_id('campaign_dim', NEW.campaign_id);
+                RETURN NEW;
+            END $$;
+            CREATE OR REPLACE FUNCTION v11_hourly_ids_fill() RETURNS trigger LANGUAGE plpgsql AS $$
+            BEGIN
+                NEW.event_name_id := v11_dimension_id('event_name_dim', NEW.event_name);
+                NEW.channel_id := COALESCE(v11_dimension_id('channel_dim', NEW.channel), 0);
+                RETURN NEW;
+            END $$;
+            CREATE OR REPLACE TRIGGER events_v11_ids
+                BEFORE INSERT OR UPDATE OF event_name, channel, campaign_id ON events
+                FOR EACH ROW EXECUTE FUNCTION v11_events_ids_fill();
+            CREATE OR REPLACE TRIGGER event_metrics_hourly_v11_ids
+                BEFORE INSERT OR UPDATE OF event_name, channel ON event_metrics_hourly
+                FOR EACH ROW EXECUTE FUNCTION v11_hourly_ids_fill();
+            """;
+
+    /** Parçanın sözlük değerleri; sıralı eklenir (eşzamanlı trigger'larla satır kilitleri aynı sırada). */
+    private static final String DIMENSIONS_SQL = """
+            INSERT INTO %2$s (name)
+            SELECT DISTINCT v.%3$s FROM %1$s v
+            WHERE v.ctid >= ?::tid AND v.ctid < ?::tid AND v.event_name_id IS NULL AND v.%3$s <> ''
+              AND NOT EXISTS (SELECT 1 FROM %2$s d WHERE d.name = v.%3$s)
+            ORDER BY 1
+            ON CONFLICT (name) DO NOTHING
+            """;
+
+    private static final String EVENTS_BACKFILL_SQL = """
+            UPDATE %s e
+            SET event_name_id   = (SELECT d.id FROM event_name_dim d WHERE d.name = e.event_name),
+                channel_id      = (SELECT d.id FROM channel_dim d WHERE d.name = e.channel),
+                campaign_id_new = (SELECT d.id FROM campaign_dim d WHERE d.name = e.campaign_id)
+            WHERE e.ctid >= ?::tid AND e.ctid < ?::tid AND e.event_name_id IS NULL
+            """;
+
+    private static final String HOURLY_BACKFILL_SQL = """
+            UPDATE %s h
+            SET event_name_id = (SELECT d.id FROM event_name_dim d WHERE d.name = h.event_name),
+                channel_id    = COALESCE((SELECT d.id FROM channel_dim d WHERE d.name = h.channel), 0)
+            WHERE h.ctid >= ?::tid AND h.ctid < ?::tid AND h.event_name_id IS NULL
+            """;
+
+    private static final String INDEX_ATTACHED_SQL = """
+            SELECT COUNT(*) FROM pg_inherits i JOIN pg_index x ON x.indexrelid = i.inhrelid
+            WHERE i.inhparent = ?::regclass AND x.indrelid = ?::regclass
+            """;
+
+    /** V5 ile aynı pencere, metinler yerine id'ler; takasta event_metrics adını alır. */
+    private static final String NEXT_VIEW_SQL = """
+            CREATE MATERIALIZED VIEW IF NOT EXISTS event_metrics_next AS
+            SELECT
+                event_name_id,
+                channel_id,
+                DATE_TRUNC('hour', TO_TIMESTAMP(event_timestamp)) AS date_hour,
+                event_date,
+                COUNT(*)                    AS total_count,
+                COUNT(DISTINCT user_id)     AS unique_user_count
+            FROM events
+            WHERE event_date >= CURRENT_DATE - COALESCE(
+                (SELECT NULLIF(TRIM(value), '')::int FROM app_config WHERE key = 'mv_retention_days'),
+                7
+            ) * INTERVAL '1 day'
+            GROUP BY event_name_id, channel_id, DATE_TRUNC('hour', TO_TIMESTAMP(event_timestamp)), event_date;
+            -- REFRESH MATERIALIZED VIEW CONCURRENTLY için zorunlu
+            CREATE UNIQUE INDEX IF NOT EXISTS event_metrics_next_unique
+                ON event_metrics_next (event_name_id, channel_id, date_hour, event_date);
+            CREATE INDEX IF NOT EXISTS event_metrics_next_date_range
+                ON event_metrics_next (event_name_id, date_hour);
+            """;
+
+    private static final String SWAP_SQL = """
+            SET LOCAL lock_timeout = '5s';
+            DROP TRIGGER events_v11_ids ON events;
+            DROP TRIGGER event_metrics_hourly_v11_ids ON event_metrics_hourly;
+            DROP FUNCTION v11_events_ids_fill();
+            DROP FUNCTION v11_hourly_ids_fill();
+            DROP FUNCTION v11_dimension_id(regclass, text);
+            DROP MATERIALIZED VIEW event_metrics;
+            ALTER MATERIALIZED VIEW event_metrics_next RENAME TO event_metrics;
+            ALTER INDEX event_metrics_next_unique RENAME TO idx_event_metrics_unique;
+            ALTER INDEX event_metrics_next_date_range RENAME TO idx_event_metrics_date_range;
+            ALTER TABLE events DROP COLUMN event_name, DROP COLUMN channel, DROP COLUMN campaign_id;
+            ALTER TABLE events RENAME COLUMN campaign_id_new TO campaign_id;
+            ALTER TABLE events ALTER COLUMN event_name_id SET NOT NULL;
+            ALTER INDEX events_event_name_id_idx RENAME TO idx_events_name_date;
+            ALTER INDEX events_channel_id_idx RENAME TO idx_events_channel;
+            ALTER TABLE event_metrics_hourly DROP CONSTRAINT event_metrics_hourly_pkey;
+            ALTER TABLE event_metrics_hourly DROP COLUMN event_name, DROP COLUMN channel;
+            ALTER TABLE event_metrics_hourly ALTER COLUMN event_name_id SET NOT NULL;
+            ALTER TABLE event_metrics_hourly
+                ADD CONSTRAINT event_metrics_hourly_pkey PRIMARY KEY USING INDEX event_metrics_hourly_id_key;
+            """;
+
+    @Override
+    public boolean canExecuteInTransaction() {
+        return false;
+    }
+
+    @Override
+    public void migrate(Context context) throws Exception {
+        Connection connection = context.getConnection();
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(true);
+        try {
+            SingleConnectionDataSource dataSource = new SingleConnectionDataSource(connection, true);
+            JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+            TransactionTemplate transactionTemplate =
+                    new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+
+            jdbcTemplate.execute(EXPAND_SQL);
+            for (String partition : eventPartitions(jdbcTemplate)) {
+                backfill(jdbcTemplate, partition, EVENTS_BACKFILL_SQL, "event_name", "channel", "campaign_id");
+            }
+            backfill(jdbcTemplate, "event_metrics_hourly", HOURLY_BACKFILL_SQL, "event_name", "channel");
+            createIndexes(jdbcTemplate);
+            jdbcTemplate.execute(NEXT_VIEW_SQL);
+            for (String table : leafTables(jdbcTemplate)) {
+                addNotNullCheck(jdbcTemplate, table);
+            }
+            swap(jdbcTemplate, transactionTemplate);
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    private static List<String> eventPartitions(JdbcTemplate jdbcTemplate) {
+        return jdbcTemplate.queryForList(
+                "SELECT relid::text FROM pg_partition_tree('events') WHERE isleaf ORDER BY 1", String.class);
+    }
+
+    /** events partition'ları ve event_metrics_hourly (NOT NULL CHECK'i taşıyan tablolar). */
+    private static List<String> leafTables(JdbcTemplate jdbcTemplate) {
+        List<String> tables = new ArrayList<>(eventPartitions(jdbcTemplate));
+        tables.add("event_metrics_hourly");
+        return tables;
+    }
+
+    /**
+     * Tablonun bloklarını BACKFILL_BLOCKS'luk aralıklarla doldurur: önce parçanın sözlükte olmayan değerleri (ayrı
+     * autocommit ifadeleri; id'ler commit olmuş sözlükten okunur), sonra id'ler. Güncellenen satırın yeni sürümü
+     * başka bir bloğa düşse de id'si dolu olduğu için tekrar güncellenmez; doldurma sırasında eklenen satırları
+     * trigger doldurur.
+     */
+    private static void backfill(JdbcTemplate jdbcTemplate, String table, String updateSql, String... dimensions) {
+        Long blocks = jdbcTemplate.queryForObject(
+                "SELECT pg_relation_size(?::regclass) / current_setting('block_size')::int", Long.class, table);
+        String update = String.format(updateSql, table);
+        long rows = 0;
+        for (long from = 0; blocks != null && from < blocks; from += BACKFILL_BLOCKS) {
+            String fromTid = "(" + from + ",0)";
+            String toTid = "(" + (from + BACKFILL_BLOCKS) + ",0)";
+            for (String column : dimensions) {
+                String dimension = DIMENSION_TABLES.get(column);
+                jdbcTemplate.update(String.format(DIMENSIONS_SQL, table, dimension, column), fromTid, toTid);
+            }
+            rows += jdbcTemplate.update(update, fromTid, toTid);
+        }
+        if (rows > 0) {
+            log.info("V11: {} rows backfilled in {}", rows, table);
+        }
+    }
+
+    private static void createIndexes(JdbcTemplate jdbcTemplate) {
+        createIndexConcurrently(jdbcTemplate, HOURLY_KEY_INDEX,
+                "UNIQUE", "event_metrics_hourly (event_name_id, date_hour, channel_id)");
+
+        // Partition'lı index önce yalnızca parent'ta (geçersiz) oluşur; tüm partition index'leri bağlanınca geçerli olur
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS " + NAME_INDEX
+                + " ON ONLY events (event_name_id, event_date)");
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS " + CHANNEL_INDEX
+                + " ON ONLY events (channel_id, event_date)");
+        for (String partition : eventPartitions(jdbcTemplate)) {
+            attachPartitionIndex(jdbcTemplate, NAME_INDEX, partition,
+                    "event_name_id_idx", "(event_name_id, event_date)");
+            attachPartitionIndex(jdbcTemplate, CHANNEL_INDEX, partition,
+                    "channel_id_idx", "(channel_id, event_date)");
+        }
+    }
+
+    private static void attachPartitionIndex(JdbcTemplate jdbcTemplate, String parentIndex, String partition,
+                                             String suffix, String columns) {
+        Integer attached = jdbcTemplate.queryForObject(INDEX_ATTACHED_SQL, Integer.class, parentIndex, partition);
+        if (attached != null && attached > 0) {
+            return;
+        }
+        String index = partition + "_" + suffix;
+        createIndexConcurrently(jdbcTemplate, index, "", partition + " " + columns);
+        jdbcTemplate.execute("ALTER INDEX " + parentIndex + " ATTACH PARTITION " + index);
+    }
+
+    /** Yarıda kalmış bir CONCURRENTLY kurulumu geçersiz index bırakır; IF NOT EXISTS onu atlamasın diye önce silinir. */
+    private static void createIndexConcurrently(JdbcTemplate jdbcTemplate, String index, String kind, String target) {
+        Integer invalid = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM pg_index WHERE indexrelid = to_regclass(?) AND NOT indisvalid",
+                Integer.class, index);
+        if (invalid != null && invalid > 0) {
+            jdbcTemplate.execute("DROP INDEX CONCURRENTLY " + index);
+        }
+        jdbcTemplate.execute("CREATE " + kind + " INDEX CONCURRENTLY IF NOT EXISTS " + index + " ON " + target);
+    }
+
+    /** NOT VALID ekleme katalog işlemidir; VALIDATE tabloyu SHARE UPDATE EXCLUSIVE altında tarar, yazmalar sürer. */
+    private static void addNotNullCheck(JdbcTemplate jdbcTemplate, String table) {
+        Integer exists = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM pg_constraint WHERE conrelid = ?::regclass AND conname = ?",
+                Integer.class, table, NOT_NULL_CHECK);
+        if (exists == null || exists == 0) {
+            jdbcTemplate.execute("ALTER TABLE " + table + " ADD CONSTRAINT " + NOT_NULL_CHECK
+                    + " CHECK (event_name_id IS NOT NULL) NOT VALID");
+        }
+        jdbcTemplate.execute("ALTER TABLE " + table + " VALIDATE CONSTRAINT " + NOT_NULL_CHECK);
+    }
+
+    private static void swap(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    jdbcTemplate.execute(SWAP_SQL);
+                    for (String table : leafTables(jdbcTemplate)) {
+                        jdbcTemplate.execute("ALTER TABLE " + table + " DROP CONSTRAINT IF EXISTS " + NOT_NULL_CHECK);
+                    }
+                });
+                return;
+            } catch (CannotAcquireLockException e) {
+                if (attempt == SWAP_ATTEMPTS) {
+                    throw e;
+                }
+                log.warn("V11: swap lock not acquired (attempt {}/{}), retrying", attempt, SWAP_ATTEMPTS);
+            }
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package db.migration;
+
+import lombok.extern.slf4j.Slf4j;
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import java.sql.Connection;
+import java.util.List;
+
+/**
+ * V14: tag sözlüğü, (event_name, tag, saat) rollup'ı ve events.tags GIN index'i.
+ *
+ * <p>Neden: events.tags JSONB olarak yazılıyor ama metrik yolu onu hiç okumuyordu; "flash_sale etiketli purchase
+ * sayısı" her seferinde partition'ları tam tarıyordu. Tek etiketli sorgular event_name sorguları gibi
+ * ön-agregasyondan okunsun diye consumer her etiket için (event_name, tag, channel, saat) delta'sı yazar. Bir event'te
+ * aynı etiket birden çok kez geçse de bir kez sayılır.
+ *
+ * <p>Çoklu etiket (AND/OR): etiket başına sayılardan kesişim/birleşim sayısı çıkarılamaz (aynı event iki etiketi
+ * birden taşıyabilir). Bu sorgular ham partition'lardan GIN index ile okunur (tags ?& / ?| dizi). Okumadan önce
+ * eşleşecek satır sayısı bu rollup'tan tahmin edilir (AND: en seyrek etiket, OR: toplam) ve raw-row-budget ile
+ * karşılaştırılır; seyrek etiket birleşimleri ucuzdur, yaygın olanlar reddedilir.
+ *
+ * <p>PK (event_name_id, tag_id, bucket_start, channel_id) total_count'u INCLUDE etmez: her delta total_count'u
+ * günceller ve index'teki bir sütun değişirse güncelleme HOT olamaz.
+ *
+ * <p>Canlı veride kilitlememek için:
+ * <ol>
+ *   <li>Tablolar boş oluşturulur; events'i tarayan ilk doldurma yoktur. Etiket rollup'ı açık instance'ta
+ *   RollupRebuildRunner kovaları saat saat (saat kilidi altında) events'ten kurar, yeni etiketler sözlüğe o sırada
+ *   girer.</li>
+ *   <li>GIN index'i önce yalnızca parent'ta (ON ONLY, geçersiz) oluşur, sonra her partition'da CONCURRENTLY kurulup
+ *   ATTACH edilir; tüm partition'lar bağlanınca geçerli olur. Sonradan açılan partition'lar index'i kendiliğinden
+ *   alır.</li>
+ * </ol>
+ *
+ * <p>Migration transaction dışında yürür (CONCURRENTLY); adımlar yeniden çalıştırılabilir, yarıda kalırsa flyway repair
+ * sonrası kaldığı yerden devam eder.
+ */
+@Slf4j
+public class V14__TagRollup extends BaseJavaMigration {
+
+    private static final String TAGS_INDEX = "idx_events_tags";
+
+    private static final String TABLES_SQL = """
+            -- Etiketin uzunluğu API'de sınırlı değil; sözlük TEXT tutar (uzun etiket batch'i düşürmesin)
+            CREATE TABLE IF NOT EXISTS tag_dim (
+                id   INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+                name TEXT NOT NULL UNIQUE
+            );
+
+            CREATE TABLE IF NOT EXISTS event_metrics_tag_hourly (
+                event_name_id     INTEGER         NOT NULL,
+                tag_id            INTEGER         NOT NULL,
+                channel_id        INTEGER         NOT NULL DEFAULT 0,
+                bucket_start      TIMESTAMPTZ     NOT NULL,
+                event_date        DATE            NOT NULL,
+                total_count       BIGINT          NOT NULL DEFAULT 0,
+                unique_user_count BIGINT          NOT NULL DEFAULT 0,
+                user_sketch       BYTEA,
+                PRIMARY KEY (event_name_id, tag_id, bucket_start, channel_id)
+            );
+            """;
+
+    private static final String INDEX_ATTACHED_SQL = """
+            SELECT COUNT(*) FROM pg_inherits i JOIN pg_index x ON x.indexrelid = i.inhrelid
+            WHERE i.inhparent = ?::regclass AND x.indrelid = ?::regclass
+            """;
+
+    @Override
+    public boolean canExecuteInTransaction() {
+        return false;
+    }
+
+    @Override
+    public void migrate(Context context) throws Exception {
+        Connection connection = context.getConnection();
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(true);
+        try {
+            JdbcTemplate jdbcTemplate = new JdbcTemplate(new SingleConnectionDataSource(connection, true));
+            jdbcTemplate.execute(TABLES_SQL);
+
+            // Çoklu etiket ve kenar segmentleri için (tags ? / ?& / ?| operatörleri jsonb_ops ile indekslenir)
+            jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS " + TAGS_INDEX + " ON ONLY events USING GIN (tags)");
+            List<String> partitions = jdbcTemplate.queryForList(
+                    "SELECT relid::text FROM pg_partition_tree('events') WHERE isleaf ORDER BY 1", String.class);
+            for (String partition : partitions) {
+                attachPartitionIndex(jdbcTemplate, partition);
+            }
+            log.info("V14: {} built on {} partitions", TAGS_INDEX, partitions.size());
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    private static void attachPartitionIndex(JdbcTemplate jdbcTemplate, String partition) {
+        Integer attached = jdbcTemplate.queryForObject(INDEX_ATTACHED_SQL, Integer.class, TAGS_INDEX, partition);
+        if (attached != null && attached > 0) {
+            return;
+        }
+        String index = partition + "_tags_idx";
+        // Yarıda kalmış bir CONCURRENTLY kurulumu geçersiz index bırakır; IF NOT EXISTS onu atlamasın diye önce silinir
+        Integer invalid = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM pg_index WHERE indexrelid = to_regclass(?) AND NOT indisvalid",
+                Integer.class, index);
+        if (invalid != null && invalid > 0) {
+            jdbcTemplate.execute("DROP INDEX CONCURRENTLY " + index);
+        }
+        jdbcTemplate.execute("CREATE INDEX CONCURRENTLY IF NOT EXISTS " + index + " ON " + partition
+                + " USING GIN (tags)");
+        jdbcTemplate.execute("ALTER INDEX " + TAGS_INDEX + " ATTACH PARTITION " + index);
+    }
+}
@@ -0,0 +1,214 @@
+package db.migration;
+
+import lombok.extern.slf4j.Slf4j;
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * V9: Idempotency key VARCHAR(64) hex → UUID (SHA-256'nın ilk 128 biti).
+ *
+ * <p>Neden: Key iki kez saklanıp iki kez indeksleniyor (inbox PK ve idx_events_idempotency). 64 karakterlik hex metin
+ * index tuple'ında ~65 bayt + collation'lı karşılaştırma demek; uuid 16 bayt sabit genişlik ve memcmp ile
+ * karşılaştırılır. Index'ler ~3 kat küçülür, en sıcak sorgu (inbox IN listesi) daha az sayfa okur. 128 bit yeterli:
+ * 7 gün × 172M ≈ 1.2 milyar key için çakışma olasılığı ~1e-21. Uygulama key'i SHA-256 özetinin ilk 16 baytı olarak
+ * üretir; bu, eski hex key'in ilk 32 karakteriyle aynı değerdir, böylece geçiş öncesi ve sonrası tekrarlar yakalanır.
+ *
+ * <p>ALTER COLUMN TYPE tabloları ve index'lerini ACCESS EXCLUSIVE altında yeniden yazardı; geçiş bunun yerine:
+ * <ol>
+ *   <li>inbox ve events'e nullable idempotency_key_uuid kolonu ekler (katalog işlemi); trigger, hâlâ hex yazan eski
+ *   sürüm instance'larının insert'lerinde kolonu doldurur (dual-write).</li>
+ *   <li>Mevcut satırları tablo / partition başına blok aralıklarıyla (TID range scan) doldurur; her parça ayrı
+ *   transaction'da commit olur.</li>
+ *   <li>Unique index'leri CONCURRENTLY kurar; events'te partition başına kurup partition'lı index'e ATTACH eder.
+ *   NOT NULL için doğrulanmış bir CHECK ekler (VALIDATE yazmaları bloklamaz).</li>
+ *   <li>Tek kısa transaction'da takas eder: eski PK / index ve hex kolonu düşer, yeni kolon idempotency_key olur.
+ *   SET NOT NULL CHECK sayesinde tablo taramaz; DROP COLUMN yeniden yazmaz, alan satırlar yeniden yazıldıkça geri
+ *   kazanılır.</li>
+ * </ol>
+ *
+ * <p>CONCURRENTLY transaction içinde çalışamadığı için migration transaction dışında yürür (Flyway'in transactional
+ * lock'u kapalı: spring.flyway.postgresql.transactional-lock=false). Adımlar yeniden çalıştırılabilir; yarıda kalırsa
+ * flyway repair sonrası kaldığı yerden devam eder. Takastan sonra eski sürümün hex insert'leri hata verir; batch'ler
+ * Kafka'dan yeni sürümde yeniden işlenir.
+ */
+@Slf4j
+public class V9__IdempotencyKeyUuid extends BaseJavaMigration {
+
+    /** Doldurma parçası: 1000 blok (~8 MB) tek transaction'da. */
+    private static final int BACKFILL_BLOCKS = 1_000;
+
+    private static final String NOT_NULL_CHECK = "idempotency_key_uuid_not_null";
+    private static final String INBOX_INDEX = "inbox_idempotency_key_uuid_idx";
+    private static final String EVENTS_INDEX = "events_idempotency_key_uuid_idx";
+
+    /** Takas kilidi uzun bir transaction'ın arkasında beklerken tüm yazmaları kuyruğa sokmasın; zaman aşımında tekrar. */
+    private static final int SWAP_ATTEMPTS = 5;
+
+    private static final String ADD_SHADOW_COLUMNS_SQL = """
+            ALTER TABLE inbox ADD COLUMN IF NOT EXISTS idempotency_key_uuid UUID;
+            ALTER TABLE events ADD COLUMN IF NOT EXISTS idempotency_key_uuid UUID;
+            CREATE OR REPLACE FUNCTION idempotency_key_uuid_fill() RETURNS trigger LANGUAGE plpgsql AS $$
+            BEGIN
+                NEW.idempotency_key_uuid := SUBSTRING(NEW.idempotency_key, 1, 32)::uuid;
+                RETURN NEW;
+            END $$;
+            CREATE OR REPLACE TRIGGER inbox_idempotency_key_uuid
+                BEFORE INSERT OR UPDATE OF idempotency_key ON inbox
+                FOR EACH ROW EXECUTE FUNCTION idempotency_key_uuid_fill();
+            CREATE OR REPLACE TRIGGER events_idempotency_key_uuid
+                BEFORE INSERT OR UPDATE OF idempotency_key ON events
+                FOR EACH ROW EXECUTE FUNCTION idempotency_key_uuid_fill();
+            """;
+
+    private static final String BACKFILL_SQL = """
+            UPDATE %s SET idempotency_key_uuid = SUBSTRING(idempotency_key, 1, 32)::uuid
+            WHERE ctid >= ?::tid AND ctid < ?::tid AND idempotency_key_uuid IS NULL
+            """;
+
+    private static final String INDEX_ATTACHED_SQL = """
+            SELECT COUNT(*) FROM pg_inherits i JOIN pg_index x ON x.indexrelid = i.inhrelid
+            WHERE i.inhparent = ?::regclass AND x.indrelid = ?::regclass
+            """;
+
+    private static final String SWAP_SQL = """
+            SET LOCAL lock_timeout = '5s';
+            DROP TRIGGER inbox_idempotency_key_uuid ON inbox;
+            DROP TRIGGER events_idempotency_key_uuid ON events;
+            DROP FUNCTION idempotency_key_uuid_fill();
+            ALTER TABLE inbox DROP CONSTRAINT inbox_pkey;
+            ALTER TABLE inbox DROP COLUMN idempotency_key;
+            ALTER TABLE inbox RENAME COLUMN idempotency_key_uuid TO idempotency_key;
+            ALTER TABLE inbox ALTER COLUMN idempotency_key SET NOT NULL;
+            ALTER TABLE inbox ADD CONSTRAINT inbox_pkey PRIMARY KEY USING INDEX inbox_idempotency_key_uuid_idx;
+            ALTER TABLE events DROP COLUMN idempotency_key;
+            ALTER TABLE events RENAME COLUMN idempotency_key_uuid TO idempotency_key;
+            ALTER TABLE events ALTER COLUMN idempotency_key SET NOT NULL;
+            ALTER INDEX events_idempotency_key_uuid_idx RENAME TO idx_events_idempotency;
+            """;
+
+    @Override
+    public boolean canExecuteInTransaction() {
+        return false;
+    }
+
+    @Override
+    public void migrate(Context context) throws Exception {
+        Connection connection = context.getConnection();
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(true);
+        try {
+            SingleConnectionDataSource dataSource = new SingleConnectionDataSource(connection, true);
+            JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+
+            jdbcTemplate.execute(ADD_SHADOW_COLUMNS_SQL);
+            for (String table : leafTables(jdbcTemplate)) {
+                backfill(jdbcTemplate, table);
+            }
+            createIndexes(jdbcTemplate);
+            for (String table : leafTables(jdbcTemplate)) {
+                addNotNullCheck(jdbcTemplate, table);
+            }
+            swap(jdbcTemplate, new TransactionTemplate(new DataSourceTransactionManager(dataSource)));
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    /** inbox ve events'in partition'ları (veri taşıyan tablolar). */
+    private static List<String> leafTables(JdbcTemplate jdbcTemplate) {
+        List<String> tables = new ArrayList<>();
+        tables.add("inbox");
+        tables.addAll(eventPartitions(jdbcTemplate));
+        return tables;
+    }
+
+    private static List<String> eventPartitions(JdbcTemplate jdbcTemplate) {
+        return jdbcTemplate.queryForList(
+                "SELECT relid::text FROM pg_partition_tree('events') WHERE isleaf ORDER BY 1", String.class);
+    }
+
+    /**
+     * Tablonun bloklarını BACKFILL_BLOCKS'luk aralıklarla doldurur. Güncellenen satırın yeni sürümü başka bir bloğa
+     * düşse de kolonu dolu olduğu için tekrar güncellenmez; doldurma sırasında eklenen satırları trigger doldurur.
+     */
+    private static void backfill(JdbcTemplate jdbcTemplate, String table) {
+        Long blocks = jdbcTemplate.queryForObject(
+                "SELECT pg_relation_size(?::regclass) / current_setting('block_size')::int", Long.class, table);
+        String sql = String.format(BACKFILL_SQL, table);
+        long rows = 0;
+        for (long from = 0; blocks != null && from < blocks; from += BACKFILL_BLOCKS) {
+            rows += jdbcTemplate.update(sql, "(" + from + ",0)", "(" + (from + BACKFILL_BLOCKS) + ",0)");
+        }
+        if (rows > 0) {
+            log.info("V9: {} rows backfilled in {}", rows, table);
+        }
+    }
+
+    private static void createIndexes(JdbcTemplate jdbcTemplate) {
+        createUniqueIndexConcurrently(jdbcTemplate, INBOX_INDEX, "inbox (idempotency_key_uuid)");
+
+        // Partition'lı index önce yalnızca parent'ta (geçersiz) oluşur; tüm partition index'leri bağlanınca geçerli olur
+        jdbcTemplate.execute("CREATE UNIQUE INDEX IF NOT EXISTS " + EVENTS_INDEX
+                + " ON ONLY events (idempotency_key_uuid, event_date)");
+        for (String partition : eventPartitions(jdbcTemplate)) {
+            Integer attached = jdbcTemplate.queryForObject(INDEX_ATTACHED_SQL, Integer.class, EVENTS_INDEX, partition);
+            if (attached != null && attached > 0) {
+                continue;
+            }
+            String index = partition + "_idempotency_key_uuid_idx";
+            createUniqueIndexConcurrently(jdbcTemplate, index, partition + " (idempotency_key_uuid, event_date)");
+            jdbcTemplate.execute("ALTER INDEX " + EVENTS_INDEX + " ATTACH PARTITION " + index);
+        }
+    }
+
+    /** Yarıda kalmış bir CONCURRENTLY kurulumu geçersiz index bırakır; IF NOT EXISTS onu atlamasın diye önce silinir. */
+    private static void createUniqueIndexConcurrently(JdbcTemplate jdbcTemplate, String index, String target) {
+        Integer invalid = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM pg_index WHERE indexrelid = to_regclass(?) AND NOT indisvalid",
+                Integer.class, index);
+        if (invalid != null && invalid > 0) {
+            jdbcTemplate.execute("DROP INDEX CONCURRENTLY " + index);
+        }
+        jdbcTemplate.execute("CREATE UNIQUE INDEX CONCURRENTLY IF NOT EXISTS " + index + " ON " + target);
+    }
+
+    /** NOT VALID ekleme katalog işlemidir; VALIDATE tabloyu SHARE UPDATE EXCLUSIVE altında tarar, yazmalar sürer. */
+    private static void addNotNullCheck(JdbcTemplate jdbcTemplate, String table) {
+        Integer exists = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM pg_constraint WHERE conrelid = ?::regclass AND conname = ?",
+                Integer.class, table, NOT_NULL_CHECK);
+        if (exists == null || exists == 0) {
+            jdbcTemplate.execute("ALTER TABLE " + table + " ADD CONSTRAINT " + NOT_NULL_CHECK
+                    + " CHECK (idempotency_key_uuid IS NOT NULL) NOT VALID");
+        }
+        jdbcTemplate.execute("ALTER TABLE " + table + " VALIDATE CONSTRAINT " + NOT_NULL_CHECK);
+    }
+
+    private static void swap(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    jdbcTemplate.execute(SWAP_SQL);
+                    for (String table : leafTables(jdbcTemplate)) {
+                        jdbcTemplate.execute("ALTER TABLE " + table + " DROP CONSTRAINT IF EXISTS " + NOT_NULL_CHECK);
+                    }
+                });
+                return;
+            } catch (CannotAcquireLockException e) {
+                if (attempt == SWAP_ATTEMPTS) {
+                    throw e;
+                }
+                log.warn("V9: swap lock not acquired (attempt {}/{}), retrying", attempt, SWAP_ATTEMPTS);
+            }
+        }
+    }
+}
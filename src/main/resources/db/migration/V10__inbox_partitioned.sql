@@ -0,0 +1,60 @@
+-- =============================================================================
+-- V10: Inbox tablosu received_at'e göre günlük range partition
+--
+-- Neden: Retention saatlik "DELETE FROM inbox WHERE received_at < ..." ile
+-- yapılıyordu. ~1.2 milyar satırda her çalışma ~172M satır siler: büyük WAL,
+-- PK index'inde şişme ve vacuum baskısı; findExistingKeys gecikmesi artar.
+-- Partition'lı tabloda retention, süresi dolan günün partition'ını
+-- DETACH CONCURRENTLY + DROP ile atmaktır (katalog işlemi, satır sayısından
+-- bağımsız). Partition'lar PartitionMaintenanceScheduler ile önceden oluşturulur.
+--
+-- PK: Partition'lı tabloda unique constraint partition kolonunu içermek zorunda;
+-- PK (idempotency_key, received_at) olur. Key'in tekilliğini findExistingKeys
+-- sağlar (tüm partition'lara bakar); aynı key'in tekrarları aynı Kafka
+-- partition'ına ve aynı consumer parçasına düştüğü için eşzamanlı iki insert
+-- yarışmaz. events tablosundaki (idempotency_key, event_date) unique index'i
+-- DB tarafındaki son güvence olarak kalır.
+--
+-- Online geçiş: Mevcut tablo yeniden yazılmaz ve index kurulmaz; yalnızca
+-- inbox_legacy olarak yeniden adlandırılır (anlık, kısa ACCESS EXCLUSIVE).
+-- Yeni yazmalar partition'lı inbox'a gider; key sorguları her iki tabloyu
+-- inbox_lookup view'ı üzerinden okur, böylece dedup penceresi kesintisiz kalır.
+-- inbox_legacy artık büyümez; son satırı retention'ı aştığında scheduler view'ı
+-- yalnızca inbox'a çevirir ve tabloyu tek DROP ile siler.
+--
+-- Sınırlar UTC gece yarısı olarak açıkça yazılır ('... 00:00:00+00'); aksi halde
+-- timestamptz literal'i oturum saat dilimine göre yorumlanırdı.
+-- =============================================================================
+
+ALTER TABLE inbox RENAME TO inbox_legacy;
+ALTER TABLE inbox_legacy RENAME CONSTRAINT inbox_pkey TO inbox_legacy_pkey;
+ALTER INDEX idx_inbox_received_at RENAME TO idx_inbox_legacy_received_at;
+
+CREATE TABLE inbox (
+    idempotency_key UUID            NOT NULL,
+    received_at     TIMESTAMPTZ     NOT NULL DEFAULT NOW(),
+    kafka_partition SMALLINT,
+    PRIMARY KEY (idempotency_key, received_at)
+) PARTITION BY RANGE (received_at);
+
+-- Dün (saat dilimi farkı için) ile bugün + 7 gün; sonrası scheduler'da.
+DO $$
+DECLARE
+    today DATE := (NOW() AT TIME ZONE 'UTC')::date;
+    d     DATE := today - 1;
+BEGIN
+    WHILE d <= today + 7 LOOP
+        EXECUTE format(
+            'CREATE TABLE IF NOT EXISTS inbox_%s PARTITION OF inbox FOR VALUES FROM (%L) TO (%L)',
+            TO_CHAR(d, 'YYYY_MM_DD'),
+            d::text || ' 00:00:00+00',
+            (d + 1)::text || ' 00:00:00+00'
+        );
+        d := d + 1;
+    END LOOP;
+END $$;
+
+CREATE VIEW inbox_lookup AS
+    SELECT idempotency_key, received_at, kafka_partition FROM inbox
+    UNION ALL
+    SELECT idempotency_key, received_at, kafka_partition FROM inbox_legacy;
@@ -0,0 +1,56 @@
+-- =============================================================================
+-- V12: Çok çözünürlüklü rollup (1 dk → 15 dk → 1 saat → 1 gün)
+--
+-- Neden: Sorgular yalnızca saatlik kovalardan okunuyordu; dakika grafikleri
+-- mümkün değildi, günlük/haftalık grafikler ise pencere uzadıkça saatlik satır
+-- sayısı kadar (yıl için 8760 satır/seri) iş yapıyordu. event_metrics_hourly'nin
+-- yanına aynı şekilde üç tablo eklenir; consumer batch delta'larını dakikadan
+-- güne kadar tüm tablolara aynı transaction'da yazar. Sorgu, group_by'ın kova
+-- genişliğini tam bölen en kaba çözünürlükten okur; pencere kenarları bir alt
+-- çözünürlükten tamamlanır.
+--
+-- Dakika ve 15 dakikalık kovalar sınırlı süre tutulur (app.metrics.rollup.*-retention);
+-- saatlik ve günlük kovalar süresizdir.
+--
+-- Tablolar varsayılan kapalıdır (app.metrics.rollup.*) ve boş oluşturulur:
+-- migration içi ilk doldurma events'in son 35 gününü ve tüm saatlik rollup'ı
+-- tek transaction'da tarardı. Açılan çözünürlük rollup_synced_tables'ta
+-- olmadığından RollupRebuildRunner tarafından arka planda, saat saat kurulur.
+-- =============================================================================
+
+CREATE TABLE event_metrics_minute (
+    event_name_id     INTEGER         NOT NULL,
+    channel_id        INTEGER         NOT NULL DEFAULT 0,
+    bucket_start      TIMESTAMPTZ     NOT NULL,
+    event_date        DATE            NOT NULL,
+    total_count       BIGINT          NOT NULL DEFAULT 0,
+    unique_user_count BIGINT          NOT NULL DEFAULT 0,
+    user_sketch       BYTEA,
+    PRIMARY KEY (event_name_id, bucket_start, channel_id)
+);
+
+CREATE TABLE event_metrics_15m (
+    event_name_id     INTEGER         NOT NULL,
+    channel_id        INTEGER         NOT NULL DEFAULT 0,
+    bucket_start      TIMESTAMPTZ     NOT NULL,
+    event_date        DATE            NOT NULL,
+    total_count       BIGINT          NOT NULL DEFAULT 0,
+    unique_user_count BIGINT          NOT NULL DEFAULT 0,
+    user_sketch       BYTEA,
+    PRIMARY KEY (event_name_id, bucket_start, channel_id)
+);
+
+CREATE TABLE event_metrics_daily (
+    event_name_id     INTEGER         NOT NULL,
+    channel_id        INTEGER         NOT NULL DEFAULT 0,
+    bucket_start      TIMESTAMPTZ     NOT NULL,
+    event_date        DATE            NOT NULL,
+    total_count       BIGINT          NOT NULL DEFAULT 0,
+    unique_user_count BIGINT          NOT NULL DEFAULT 0,
+    user_sketch       BYTEA,
+    PRIMARY KEY (event_name_id, bucket_start, channel_id)
+);
+
+-- Retention temizliği için
+CREATE INDEX idx_event_metrics_minute_bucket ON event_metrics_minute (bucket_start);
+CREATE INDEX idx_event_metrics_15m_bucket ON event_metrics_15m (bucket_start);
@@ -0,0 +1,44 @@
+-- =============================================================================
+-- V13: campaign_id kırılımlı rollup (saatlik + günlük)
+--
+-- Neden: Kampanya raporları campaign_id'ye göre kırılım istiyor; MV ve rollup
+-- tabloları yalnızca (event_name, channel, kova) tutuyordu, her kampanya raporu
+-- ham partition'ları tarıyordu. Aynı şekilde iki tablo eklenir; anahtar
+-- (event_name_id, bucket_start, campaign_id, channel_id). Channel filtresi
+-- verilmezse kampanya satırları channel'lar üzerinden birleştirilir. campaign_id'si
+-- olmayan event'ler bu tablolara yazılmaz.
+--
+-- Top-N: "pencerede en çok event alan N kampanya" sıralaması PK'nin
+-- (event_name_id, bucket_start) önekiyle okunur; sketch'ler yalnızca seçilen N
+-- kampanyanın kovaları için okunur. PK total_count'u INCLUDE etmez: her delta
+-- total_count'u günceller ve index'teki bir sütun değişirse güncelleme HOT
+-- olamaz (her satır güncellemesi PK'ye yeni bir giriş yazar).
+--
+-- İlk doldurma yok: events'in tamamını iki kez taramak yerine tablolar boş
+-- oluşturulur; kampanya rollup'ı açık instance'ta RollupRebuildRunner onları
+-- saat saat, saat kilidi altında arka planda kurar.
+-- =============================================================================
+
+CREATE TABLE event_metrics_campaign_hourly (
+    event_name_id     INTEGER         NOT NULL,
+    campaign_id       INTEGER         NOT NULL,
+    channel_id        INTEGER         NOT NULL DEFAULT 0,
+    bucket_start      TIMESTAMPTZ     NOT NULL,
+    event_date        DATE            NOT NULL,
+    total_count       BIGINT          NOT NULL DEFAULT 0,
+    unique_user_count BIGINT          NOT NULL DEFAULT 0,
+    user_sketch       BYTEA,
+    PRIMARY KEY (event_name_id, bucket_start, campaign_id, channel_id)
+);
+
+CREATE TABLE event_metrics_campaign_daily (
+    event_name_id     INTEGER         NOT NULL,
+    campaign_id       INTEGER         NOT NULL,
+    channel_id        INTEGER         NOT NULL DEFAULT 0,
+    bucket_start      TIMESTAMPTZ     NOT NULL,
+    event_date        DATE            NOT NULL,
+    total_count       BIGINT          NOT NULL DEFAULT 0,
+    unique_user_count BIGINT          NOT NULL DEFAULT 0,
+    user_sketch       BYTEA,
+    PRIMARY KEY (event_name_id, bucket_start, campaign_id, channel_id)
+);
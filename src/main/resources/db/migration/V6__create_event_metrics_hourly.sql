@@ -0,0 +1,38 @@
+-- =============================================================================
+-- V6: Artımlı saatlik rollup (event_metrics_hourly)
+--
+-- Neden: event_metrics MV her REFRESH'te son mv_retention_days günü baştan
+-- hesaplıyor (~1.2B satır). Rollup tablosu consumer tarafından, inbox insert'i
+-- ile AYNI transaction'da (event_name, channel, saat) delta'larıyla güncellenir;
+-- metrikler bir consumer batch'i kadar tazedir ve maliyet retention'dan bağımsızdır.
+--
+-- unique_user_count: saatin tekil kullanıcıları Java'da üretilen, birleştirilebilir
+-- bir HyperLogLog sketch'inde (user_sketch BYTEA) tutulur; saatlik değerleri
+-- toplamak birden çok saatte aktif kullanıcıyı birden çok kez sayardı. Toplamlar
+-- ve günlük/özel aralık kırılımları sketch'ler birleştirilerek O(kova) sürede,
+-- sınırlı hatayla hesaplanır. unique_user_count kovanın kendi tahminini tutar.
+--
+-- channel NULL yerine '' saklanır (PK kolonu NULL olamaz).
+--
+-- İlk doldurma migration'da yapılmaz (events'in tam taraması tabloyu kilitli
+-- tutardı): rollup_synced_tables boş başlar ve uygulama rollup modunda açılınca
+-- RollupRebuildRunner kovaları arka planda, saat saat events'ten kurar.
+-- =============================================================================
+
+CREATE TABLE event_metrics_hourly (
+    event_name        VARCHAR(255)    NOT NULL,
+    channel           VARCHAR(100)    NOT NULL DEFAULT '',
+    date_hour         TIMESTAMPTZ     NOT NULL,
+    event_date        DATE            NOT NULL,
+    total_count       BIGINT          NOT NULL DEFAULT 0,
+    unique_user_count BIGINT          NOT NULL DEFAULT 0,
+    user_sketch       BYTEA,
+    PRIMARY KEY (event_name, date_hour, channel)
+);
+
+-- Yeniden kurulumda günün saatlik kovalarını okumak için (günlük kovalar bunlardan birleştirilir)
+CREATE INDEX idx_event_metrics_hourly_hour ON event_metrics_hourly (date_hour);
+
+-- Consumer'ın eksiksiz güncellediği rollup tabloları (virgülle ayrılmış); eksik tablo açılışta yeniden kurulur
+INSERT INTO app_config (key, value) VALUES ('rollup_synced_tables', '')
+ON CONFLICT (key) DO NOTHING;
@@ -0,0 +1,17 @@
+-- =============================================================================
+-- V8: Inbox kayıtlarında Kafka partition bilgisi
+--
+-- Neden: Consumer, inbox sorgusunun önüne partition başına bellek içi bir dedup
+-- filtresi (zaman pencereli Bloom filter + son key'ler LRU) koyar. Partition
+-- yeniden atandığında filtre inbox'tan yeniden kurulur; bunun için her key'in
+-- hangi partition'dan geldiği bilinmeli. Producer partition key'i user_id olduğu
+-- ve idempotency key user_id'yi içerdiği için aynı event'in tekrarları her zaman
+-- aynı partition'a düşer.
+--
+-- Mevcut satırlarda kafka_partition NULL'dır; yeniden kurulumda NULL satırlar
+-- her partition'ın filtresine eklenir ve retention ile kendiliğinden temizlenir.
+-- Yeniden kurulum partition'ın tüm key'lerini okuduğu için index eklenmez
+-- (seçicilik ~1/partition sayısı; sıralı tarama daha ucuz).
+-- =============================================================================
+
+ALTER TABLE inbox ADD COLUMN kafka_partition SMALLINT;
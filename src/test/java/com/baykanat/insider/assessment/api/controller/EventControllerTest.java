@@ -1,6 +1,11 @@
 package com.baykanat.insider.assessment.api.controller;
 
+import com.baykanat.insider.assessment.api.dto.StreamIngestResponse;
+import com.baykanat.insider.assessment.domain.service.EventStreamIngestionService;
+import com.baykanat.insider.assessment.infrastructure.kafka.EventGroupCommitDispatcher;
 import com.baykanat.insider.assessment.infrastructure.kafka.EventKafkaProducer;
+import com.baykanat.insider.assessment.infrastructure.kafka.IngestionAdmissionControl;
+import com.baykanat.insider.assessment.infrastructure.kafka.IngestionAdmissionControl.AdmissionRejectedException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -10,8 +15,19 @@ import org.springframework.http.MediaType;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
 
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -25,6 +41,8 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
  *   <li>Request validation (400 on invalid payloads)</li>
  *   <li>Happy path response (202 Accepted)</li>
  *   <li>Response body structure</li>
+ *   <li>NDJSON stream: gzip decoding, 202 with per-line counts, 503 when Kafka sends failed, 429 when throttled</li>
+ *   <li>Admission control: 429 with Retry-After before anything is sent to Kafka</li>
  * </ul>
  *
  * <p>Integration tests with real Kafka and PostgreSQL are handled separately
@@ -42,6 +60,15 @@ class EventControllerTest {
     @MockitoBean
     private EventKafkaProducer kafkaProducer;
 
+    @MockitoBean
+    private EventStreamIngestionService streamIngestionService;
+
+    @MockitoBean
+    private EventGroupCommitDispatcher groupCommitDispatcher;
+
+    @MockitoBean
+    private IngestionAdmissionControl admissionControl;
+
     @Test
     @DisplayName("POST /events - valid event should return 202 Accepted")
     void validEventReturns202() throws Exception {
@@ -203,4 +230,84 @@ class EventControllerTest {
                         .content("{}"))
                 .andExpect(status().isBadRequest());
     }
+
+    @Test
+    @DisplayName("POST /events/stream - gzip body is decoded and counts are returned with 202")
+    void gzipStreamReturns202() throws Exception {
+        String ndjson = "{\"event_name\":\"product_view\",\"user_id\":\"user_1\",\"timestamp\":1771156800}\n";
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(ndjson.getBytes(StandardCharsets.UTF_8));
+        }
+        when(streamIngestionService.ingest(any())).thenAnswer(invocation -> {
+            InputStream in = invocation.getArgument(0);
+            String body = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            return StreamIngestResponse.builder()
+                    .status("accepted").lineCount(body.lines().count()).acceptedCount(1).build();
+        });
+
+        mockMvc.perform(post("/events/stream")
+                        .contentType("application/x-ndjson")
+                        .header("Content-Encoding", "gzip")
+                        .content(compressed.toByteArray()))
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.status").value("accepted"))
+                .andExpect(jsonPath("$.lineCount").value(1))
+                .andExpect(jsonPath("$.acceptedCount").value(1));
+    }
+
+    @Test
+    @DisplayName("POST /events/stream - Kafka send failures return 503 with Retry-After")
+    void failedStreamReturns503() throws Exception {
+        when(streamIngestionService.ingest(any())).thenReturn(StreamIngestResponse.builder()
+                .status("aborted").lineCount(2).acceptedCount(1).failedCount(1)
+                .errors(List.of(StreamIngestResponse.LineError.builder().line(2).message("Kafka send failed").build()))
+                .build());
+
+        mockMvc.perform(post("/events/stream")
+                        .contentType("application/x-ndjson")
+                        .content("{}\n{}\n"))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "30"))
+                .andExpect(jsonPath("$.status").value("aborted"))
+                .andExpect(jsonPath("$.errors[0].line").value(2));
+    }
+
+    @Test
+    @DisplayName("POST /events/stream - a throttled stream returns 429 with Retry-After and the resume line")
+    void throttledStreamReturns429() throws Exception {
+        when(streamIngestionService.ingest(any())).thenReturn(StreamIngestResponse.builder()
+                .status("throttled").lineCount(1000).acceptedCount(1000)
+                .errors(List.of(StreamIngestResponse.LineError.builder().line(1001).message("Throttled").build()))
+                .build());
+        when(admissionControl.getRetryAfterSeconds()).thenReturn(7);
+
+        mockMvc.perform(post("/events/stream")
+                        .contentType("application/x-ndjson")
+                        .content("{}\n"))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string("Retry-After", "7"))
+                .andExpect(jsonPath("$.status").value("throttled"))
+                .andExpect(jsonPath("$.errors[0].line").value(1001));
+    }
+
+    @Test
+    @DisplayName("POST /events/bulk - throttled request returns 429 with Retry-After and is not sent")
+    void throttledBulkReturns429() throws Exception {
+        doThrow(new AdmissionRejectedException("Event ingestion is throttled", 12))
+                .when(admissionControl).acquire(anyInt());
+        String payload = objectMapper.writeValueAsString(Map.of("events", List.of(
+                Map.of("event_name", "product_view", "user_id", "user_1", "timestamp", 1771156800),
+                Map.of("event_name", "add_to_cart", "user_id", "user_2", "timestamp", 1771156801)
+        )));
+
+        mockMvc.perform(post("/events/bulk")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(payload))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string("Retry-After", "12"));
+
+        verify(admissionControl).acquire(2);
+        verify(kafkaProducer, never()).sendBatch(any());
+    }
 }
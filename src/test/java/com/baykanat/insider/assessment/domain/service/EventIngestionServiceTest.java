@@ -1,9 +1,15 @@
 package com.baykanat.insider.assessment.domain.service;
 
 import com.baykanat.insider.assessment.api.dto.EventRequest;
+import com.baykanat.insider.assessment.config.AppProperties;
 import com.baykanat.insider.assessment.domain.mapper.EventMapper;
+import com.baykanat.insider.assessment.infrastructure.metrics.IngestionMetrics;
+import com.baykanat.insider.assessment.infrastructure.persistence.CampaignRollupJdbcRepository;
 import com.baykanat.insider.assessment.infrastructure.persistence.EventJdbcRepository;
 import com.baykanat.insider.assessment.infrastructure.persistence.InboxJdbcRepository;
+import com.baykanat.insider.assessment.infrastructure.persistence.MetricsRollupJdbcRepository;
+import com.baykanat.insider.assessment.infrastructure.persistence.TagRollupJdbcRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -15,6 +21,7 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import java.util.Collections;
 import java.util.List;
 import java.util.Set;
+import java.util.UUID;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.anyCollection;
@@ -25,7 +32,7 @@ import static org.mockito.Mockito.*;
  *
  * <p>Verifies the batch processing logic with mocked repositories:
  * <ul>
- *   <li>Deduplication via inbox check</li>
+ *   <li>Deduplication via inbox check; rollup deltas only for rows the events insert accepted</li>
  *   <li>Proper delegation to event repository</li>
  *   <li>Edge cases (empty batch, all duplicates)</li>
  * </ul>
@@ -39,14 +46,34 @@ class EventIngestionServiceTest {
     @Mock
     private InboxJdbcRepository inboxRepository;
 
+    @Mock
+    private MetricsRollupJdbcRepository metricsRollupRepository;
+
+    @Mock
+    private CampaignRollupJdbcRepository campaignRollupRepository;
+
+    @Mock
+    private TagRollupJdbcRepository tagRollupRepository;
+
+    @Mock
+    private InboxDedupCache inboxDedupCache;
+
+    @Mock
+    private HotWindowMetrics hotWindowMetrics;
+
     private EventIngestionService service;
 
     @BeforeEach
     void setUp() {
-        IdempotencyService idempotencyService = new IdempotencyService();
+        IdempotencyService idempotencyService = new IdempotencyService(new AppProperties());
         EventMapper eventMapper = Mappers.getMapper(EventMapper.class);
+        AppProperties appProperties = new AppProperties();
+        appProperties.getMetrics().getRollup().setCampaignEnabled(true);
+        appProperties.getMetrics().getRollup().setTagEnabled(true);
         service = new EventIngestionService(eventRepository, inboxRepository,
-                idempotencyService, eventMapper);
+                idempotencyService, eventMapper, metricsRollupRepository, campaignRollupRepository,
+                tagRollupRepository, appProperties, inboxDedupCache, hotWindowMetrics,
+                new IngestionMetrics(new SimpleMeterRegistry(), new AppProperties()));
     }
 
     @Test
@@ -60,12 +87,17 @@ class EventIngestionServiceTest {
                 .build();
 
         when(inboxRepository.findExistingKeys(anyCollection())).thenReturn(Collections.emptySet());
+        when(eventRepository.batchInsert(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
 
         int inserted = service.processBatch(List.of(event));
 
         assertThat(inserted).isEqualTo(1);
         verify(inboxRepository).batchInsert(anyCollection());
         verify(eventRepository).batchInsert(anyList());
+        verify(metricsRollupRepository).applyBatch(anyList());
+        verify(campaignRollupRepository).applyBatch(anyList());
+        verify(tagRollupRepository).applyBatch(anyList());
+        verify(hotWindowMetrics).recordAfterCommit(anyList());
     }
 
     @Test
@@ -79,14 +111,17 @@ class EventIngestionServiceTest {
                 .build();
 
         // Simulate: this event's key already exists in inbox
-        IdempotencyService idempotencyService = new IdempotencyService();
-        String key = idempotencyService.generateKey(event);
+        IdempotencyService idempotencyService = new IdempotencyService(new AppProperties());
+        UUID key = idempotencyService.generateKey(event);
         when(inboxRepository.findExistingKeys(anyCollection())).thenReturn(Set.of(key));
 
         int inserted = service.processBatch(List.of(event));
 
         assertThat(inserted).isEqualTo(0);
         verify(eventRepository, never()).batchInsert(anyList());
+        verify(metricsRollupRepository, never()).applyBatch(anyList());
+        verify(campaignRollupRepository, never()).applyBatch(anyList());
+        verify(tagRollupRepository, never()).applyBatch(anyList());
     }
 
     @Test
@@ -106,9 +141,10 @@ class EventIngestionServiceTest {
                 .campaignId("cmp_789")
                 .build();
 
-        IdempotencyService idempotencyService = new IdempotencyService();
-        String dupKey = idempotencyService.generateKey(duplicateEvent);
+        IdempotencyService idempotencyService = new IdempotencyService(new AppProperties());
+        UUID dupKey = idempotencyService.generateKey(duplicateEvent);
         when(inboxRepository.findExistingKeys(anyCollection())).thenReturn(Set.of(dupKey));
+        when(eventRepository.batchInsert(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
 
         int inserted = service.processBatch(List.of(newEvent, duplicateEvent));
 
@@ -116,12 +152,66 @@ class EventIngestionServiceTest {
         verify(eventRepository).batchInsert(argThat(list -> list.size() == 1));
     }
 
+    @Test
+    @DisplayName("Process partition batch - dedup goes through the partition cache and keys are stored with the partition")
+    void processPartitionBatchUsesDedupCache() {
+        EventRequest newEvent = EventRequest.builder()
+                .eventName("product_view")
+                .userId("user_123")
+                .timestamp(1771156800L)
+                .campaignId("cmp_987")
+                .build();
+
+        EventRequest duplicateEvent = EventRequest.builder()
+                .eventName("add_to_cart")
+                .userId("user_456")
+                .timestamp(1771156810L)
+                .campaignId("cmp_789")
+                .build();
+
+        IdempotencyService idempotencyService = new IdempotencyService(new AppProperties());
+        UUID newKey = idempotencyService.generateKey(newEvent);
+        UUID dupKey = idempotencyService.generateKey(duplicateEvent);
+        when(inboxDedupCache.findExistingKeys(eq(2), anyCollection())).thenReturn(Set.of(dupKey));
+        when(eventRepository.batchInsert(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        int inserted = service.processBatch(2, List.of(newEvent, duplicateEvent));
+
+        assertThat(inserted).isEqualTo(1);
+        verify(inboxRepository, never()).findExistingKeys(anyCollection());
+        verify(inboxRepository).batchInsert(Set.of(newKey), 2);
+        verify(inboxDedupCache).recordInserted(2, Set.of(newKey));
+        verify(eventRepository).batchInsert(argThat(list -> list.size() == 1));
+    }
+
+    @Test
+    @DisplayName("Process batch - a duplicate missed by the inbox check but rejected by events gets no rollup delta")
+    void processBatchSkipsRollupForRowsNotInserted() {
+        EventRequest event = EventRequest.builder()
+                .eventName("product_view")
+                .userId("user_123")
+                .timestamp(1771156800L)
+                .campaignId("cmp_987")
+                .build();
+
+        // Dedup önbelleği kaçırdı; events unique index'i satırı reddetti
+        when(inboxDedupCache.findExistingKeys(eq(2), anyCollection())).thenReturn(Collections.emptySet());
+        when(eventRepository.batchInsert(anyList())).thenReturn(List.of());
+
+        int inserted = service.processBatch(2, List.of(event));
+
+        assertThat(inserted).isEqualTo(0);
+        verify(eventRepository).batchInsert(argThat(list -> list.size() == 1));
+        verifyNoInteractions(metricsRollupRepository, campaignRollupRepository, tagRollupRepository,
+                hotWindowMetrics);
+    }
+
     @Test
     @DisplayName("Process batch - empty list should return 0 without DB calls")
     void processBatchHandlesEmptyList() {
         int inserted = service.processBatch(Collections.emptyList());
 
         assertThat(inserted).isEqualTo(0);
-        verifyNoInteractions(eventRepository, inboxRepository);
+        verifyNoInteractions(eventRepository, inboxRepository, metricsRollupRepository);
     }
 }
@@ -0,0 +1,162 @@
+package com.baykanat.insider.assessment.domain.service;
+
+import com.baykanat.insider.assessment.api.dto.EventRequest;
+import com.baykanat.insider.assessment.api.dto.StreamIngestResponse;
+import com.baykanat.insider.assessment.config.AppProperties;
+import com.baykanat.insider.assessment.infrastructure.kafka.EventKafkaProducer;
+import com.baykanat.insider.assessment.infrastructure.kafka.IngestionAdmissionControl;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.kafka.support.SendResult;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for EventStreamIngestionService.
+ *
+ * <p>The Kafka producer is mocked with already-completed futures; parsing and validation are real:
+ * <ul>
+ *   <li>Valid lines are sent, invalid ones are reported with their 1-based line numbers</li>
+ *   <li>Blank lines and CRLF line endings are tolerated</li>
+ *   <li>Overlong lines are rejected without stopping the stream</li>
+ *   <li>A failed Kafka send stops reading and is reported as failed</li>
+ *   <li>The per-request event limit and error list cap are enforced</li>
+ *   <li>Admission permits are taken per chunk of lines; a refused chunk stops reading as throttled</li>
+ * </ul>
+ */
+@ExtendWith(MockitoExtension.class)
+class EventStreamIngestionServiceTest {
+
+    private static final String VALID = "{\"event_name\":\"product_view\",\"user_id\":\"user_%d\",\"timestamp\":1771156800}";
+
+    @Mock
+    private EventKafkaProducer kafkaProducer;
+
+    @Mock
+    private IngestionAdmissionControl admissionControl;
+
+    private AppProperties appProperties;
+    private EventStreamIngestionService service;
+
+    @BeforeEach
+    void setUp() {
+        appProperties = new AppProperties();
+        service = new EventStreamIngestionService(kafkaProducer, new ObjectMapper(),
+                Validation.buildDefaultValidatorFactory().getValidator(), appProperties, admissionControl);
+        lenient().when(kafkaProducer.sendAsync(any()))
+                .thenReturn(CompletableFuture.completedFuture(new SendResult<>(null, null)));
+        lenient().when(admissionControl.tryAcquire(anyInt())).thenReturn(true);
+    }
+
+    private StreamIngestResponse ingest(String body) throws Exception {
+        return service.ingest(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static String valid(int i) {
+        return VALID.formatted(i);
+    }
+
+    @Test
+    @DisplayName("Valid lines are sent; invalid lines are rejected with line numbers")
+    void countsAndLineNumbers() throws Exception {
+        String body = valid(1) + "\n"
+                + "{\"event_name\":\"product_view\",\"timestamp\":1771156800}\n"
+                + "\n"
+                + "{not json\n"
+                + valid(2) + "\r\n"
+                + valid(3);
+
+        StreamIngestResponse response = ingest(body);
+
+        assertThat(response.getStatus()).isEqualTo("accepted");
+        assertThat(response.getLineCount()).isEqualTo(5);
+        assertThat(response.getAcceptedCount()).isEqualTo(3);
+        assertThat(response.getRejectedCount()).isEqualTo(2);
+        assertThat(response.getFailedCount()).isZero();
+        assertThat(response.getErrors()).extracting(StreamIngestResponse.LineError::getLine).containsExactly(2L, 4L);
+        assertThat(response.getErrors().get(0).getMessage()).isEqualTo("user_id is required");
+        assertThat(response.getErrors().get(1).getMessage()).startsWith("Malformed JSON");
+        verify(kafkaProducer, times(3)).sendAsync(any(EventRequest.class));
+    }
+
+    @Test
+    @DisplayName("Overlong lines are rejected and the next line is still processed")
+    void overlongLineIsSkipped() throws Exception {
+        appProperties.getIngestion().getStream().setMaxLineBytes(128);
+        String longLine = "{\"event_name\":\"" + "x".repeat(500) + "\",\"user_id\":\"u\",\"timestamp\":1}";
+
+        StreamIngestResponse response = ingest(longLine + "\n" + valid(1) + "\n");
+
+        assertThat(response.getAcceptedCount()).isEqualTo(1);
+        assertThat(response.getErrors()).extracting(StreamIngestResponse.LineError::getLine,
+                        StreamIngestResponse.LineError::getMessage)
+                .containsExactly(tuple(1L, "Line exceeds 128 bytes"));
+    }
+
+    @Test
+    @DisplayName("A failed Kafka send stops reading the stream")
+    void kafkaFailureAborts() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        when(kafkaProducer.sendAsync(any())).thenAnswer(invocation -> calls.incrementAndGet() == 2
+                ? CompletableFuture.failedFuture(new IllegalStateException("broker down"))
+                : CompletableFuture.completedFuture(new SendResult<>(null, null)));
+
+        StreamIngestResponse response = ingest(valid(1) + "\n" + valid(2) + "\n" + valid(3) + "\n" + valid(4) + "\n");
+
+        assertThat(response.getStatus()).isEqualTo("aborted");
+        assertThat(response.getLineCount()).isEqualTo(2);
+        assertThat(response.getAcceptedCount()).isEqualTo(1);
+        assertThat(response.getFailedCount()).isEqualTo(1);
+        assertThat(response.getErrors()).extracting(StreamIngestResponse.LineError::getLine).containsExactly(2L);
+        verify(kafkaProducer, times(2)).sendAsync(any());
+    }
+
+    @Test
+    @DisplayName("Event limit stops the stream and error list is capped")
+    void limitsAreEnforced() throws Exception {
+        appProperties.getIngestion().getStream().setMaxEvents(5);
+        appProperties.getIngestion().getStream().setMaxErrors(2);
+
+        StreamIngestResponse response = ingest("{}\n{}\n{}\n" + valid(1) + "\n" + valid(2) + "\n" + valid(3) + "\n");
+
+        assertThat(response.getStatus()).isEqualTo("aborted");
+        assertThat(response.getAcceptedCount()).isEqualTo(2);
+        assertThat(response.getRejectedCount()).isEqualTo(4);
+        assertThat(response.getErrors()).extracting(StreamIngestResponse.LineError::getLine).containsExactly(1L, 2L);
+        verify(kafkaProducer, times(2)).sendAsync(any());
+    }
+
+    @Test
+    @DisplayName("Admission permits are taken per chunk; a refused chunk stops the stream as throttled")
+    void admissionIsCheckedPerChunk() throws Exception {
+        appProperties.getIngestion().getStream().setAdmissionChunk(2);
+        when(admissionControl.tryAcquire(2)).thenReturn(true, true, false);
+
+        StreamIngestResponse response = ingest(valid(1) + "\n" + valid(2) + "\n\n" + valid(3) + "\n" + "{}\n"
+                + valid(5) + "\n" + valid(6) + "\n");
+
+        assertThat(response.getStatus()).isEqualTo("throttled");
+        assertThat(response.getLineCount()).isEqualTo(4);
+        assertThat(response.getAcceptedCount()).isEqualTo(3);
+        assertThat(response.getRejectedCount()).isEqualTo(1);
+        assertThat(response.getErrors()).extracting(StreamIngestResponse.LineError::getLine).containsExactly(5L, 6L);
+        assertThat(response.getErrors().get(1).getMessage()).startsWith("Throttled");
+        verify(admissionControl, times(3)).tryAcquire(2);
+        verify(kafkaProducer, times(3)).sendAsync(any());
+    }
+}
@@ -0,0 +1,240 @@
+package com.baykanat.insider.assessment.domain.service;
+
+import com.baykanat.insider.assessment.config.AppProperties;
+import com.baykanat.insider.assessment.domain.model.Event;
+import com.baykanat.insider.assessment.infrastructure.persistence.MetricsCell;
+import com.baykanat.insider.assessment.infrastructure.persistence.MetricsJdbcRepository.SeriesSelection;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * Unit tests for HotWindowMetrics.
+ *
+ * <p>Events are stamped relative to the current hour so they stay inside the default two-hour window:
+ * <ul>
+ *   <li>Parallel writers lose no counts; hourly cells carry a unique estimate close to the exact distinct count</li>
+ *   <li>Channel selections split cells by channel id; unselected names and channels are skipped</li>
+ *   <li>Events older than the window are not tracked; a rolled back batch is never recorded</li>
+ *   <li>A refresh waits for commits that chose an older layer, so their events are dropped only once in the MV</li>
+ *   <li>Batches whose commit starts after the new layer opened survive the refresh; hotFrom follows it</li>
+ *   <li>A refresh whose in-flight commits did not drain keeps the layers and the previous hotFrom</li>
+ *   <li>Nothing is recorded or scanned outside materialized-view mode</li>
+ * </ul>
+ */
+class HotWindowMetricsTest {
+
+    private AppProperties appProperties;
+    private SimpleMeterRegistry registry;
+    private HotWindowMetrics hotWindow;
+    private long hour;
+
+    @BeforeEach
+    void setUp() {
+        appProperties = new AppProperties();
+        appProperties.getMetrics().setSource(AppProperties.MetricsSource.MATERIALIZED_VIEW);
+        appProperties.getMetrics().getHotWindow().setEnabled(true);
+        registry = new SimpleMeterRegistry();
+        hotWindow = new HotWindowMetrics(appProperties, registry);
+        hour = Instant.now().getEpochSecond() / 3600 * 3600;
+    }
+
+    private static Event event(String eventName, String channel, String userId, long timestamp) {
+        return Event.builder().eventName(eventName).channel(channel).userId(userId).eventTimestamp(timestamp).build();
+    }
+
+    private List<MetricsCell> scan(SeriesSelection selection) {
+        List<MetricsCell> cells = new ArrayList<>();
+        hotWindow.scanCells(selection, hour - 7200, hour + 3600, 3600, cells::add);
+        return cells;
+    }
+
+    private double events(String result) {
+        return registry.get("metrics.hot.window.events").tag("result", result).counter().count();
+    }
+
+    @Test
+    @DisplayName("Parallel writers lose no counts and the hourly unique estimate stays close to exact")
+    void countsParallelWritesWithoutLoss() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> writers = new ArrayList<>();
+            for (int thread = 0; thread < 8; thread++) {
+                int offset = thread;
+                writers.add(executor.submit(() -> {
+                    for (int batch = 0; batch < 50; batch++) {
+                        int first = batch * 100;
+                        hotWindow.recordAfterCommit(IntStream.range(first, first + 100)
+                                .mapToObj(i -> event("purchase", "web", "user_" + (i + offset * 1000) % 4000,
+                                        hour + i % 3600))
+                                .toList());
+                    }
+                }));
+            }
+            for (Future<?> writer : writers) {
+                writer.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        List<MetricsCell> cells = scan(new SeriesSelection(Map.of(1, "purchase"), null));
+
+        assertThat(cells).singleElement().satisfies(cell -> {
+            assertThat(cell.bucketStart()).isEqualTo(hour);
+            assertThat(cell.totalCount()).isEqualTo(8 * 50 * 100);
+            assertThat((double) cell.uniqueUserCount()).isCloseTo(4000, within(4000 * 0.05));
+            assertThat(cell.users()).isNull();
+        });
+        assertThat(events("recorded")).isEqualTo(8 * 50 * 100);
+    }
+
+    @Test
+    @DisplayName("Channel selections split cells by channel id and skip unselected series")
+    void splitsByChannel() {
+        hotWindow.recordAfterCommit(List.of(
+                event("purchase", "web", "user_1", hour),
+                event("purchase", "web", "user_2", hour - 3600),
+                event("purchase", "mobile_app", "user_1", hour + 60),
+                event("purchase", null, "user_3", hour),
+                event("product_view", "web", "user_1", hour)));
+
+        List<MetricsCell> cells = scan(new SeriesSelection(Map.of(1, "purchase"), Map.of(7, "web", 8, "mobile_app")));
+
+        assertThat(cells).extracting(MetricsCell::dimensionId, MetricsCell::bucketStart, MetricsCell::totalCount)
+                .containsExactlyInAnyOrder(
+                        tuple(7, hour - 3600, 1L),
+                        tuple(7, hour, 1L),
+                        tuple(8, hour, 1L));
+    }
+
+    @Test
+    @DisplayName("Events older than the window are skipped; a rolled back batch is never recorded")
+    void skipsOldAndRolledBackEvents() {
+        hotWindow.recordAfterCommit(List.of(event("purchase", "web", "user_1", hour - 4 * 3600)));
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            hotWindow.recordAfterCommit(List.of(event("purchase", "web", "user_2", hour)));
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertThat(scan(new SeriesSelection(Map.of(1, "purchase"), null))).isEmpty();
+        assertThat(events("too_old")).isEqualTo(1);
+        assertThat(events("recorded")).isZero();
+    }
+
+    @Test
+    @DisplayName("A refresh waits for commits that chose the previous layer before it is dropped")
+    void refreshWaitsForInFlightCommits() throws Exception {
+        SeriesSelection selection = new SeriesSelection(Map.of(1, "purchase"), null);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            hotWindow.recordAfterCommit(List.of(event("purchase", "web", "user_1", hour)));
+            List<TransactionSynchronization> batch = TransactionSynchronizationManager.getSynchronizations();
+            batch.forEach(sync -> sync.beforeCommit(false));
+
+            Future<HotWindowMetrics.Refresh> refresh = executor.submit(hotWindow::beginRefresh);
+            Thread.sleep(100);
+            assertThat(refresh).isNotDone();
+
+            batch.forEach(TransactionSynchronization::afterCommit);
+            assertThat(scan(selection)).singleElement().extracting(MetricsCell::totalCount).isEqualTo(1L);
+            batch.forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+            hotWindow.completeRefresh(refresh.get(5, TimeUnit.SECONDS));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+            executor.shutdownNow();
+        }
+
+        assertThat(scan(selection)).isEmpty();
+        assertThat(events("recorded")).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Batches committing after the new layer opened survive the refresh; hotFrom follows it")
+    void laterCommitsSurviveRefresh() {
+        SeriesSelection selection = new SeriesSelection(Map.of(1, "purchase"), null);
+        assertThat(hotWindow.hotFrom()).isEqualTo(Long.MAX_VALUE);
+
+        HotWindowMetrics.Refresh refresh = hotWindow.beginRefresh();
+        long opened = Instant.now().getEpochSecond();
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            hotWindow.recordAfterCommit(List.of(event("purchase", "web", "user_1", hour)));
+            List<TransactionSynchronization> batch = TransactionSynchronizationManager.getSynchronizations();
+            batch.forEach(sync -> sync.beforeCommit(false));
+            batch.forEach(TransactionSynchronization::afterCommit);
+            batch.forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        hotWindow.completeRefresh(refresh);
+
+        assertThat(scan(selection)).singleElement().extracting(MetricsCell::totalCount).isEqualTo(1L);
+        long hotFrom = hotWindow.hotFrom();
+        assertThat(hotFrom % 60).isZero();
+        assertThat(hotFrom).isBetween(opened - 60, opened + 60);
+    }
+
+    @Test
+    @DisplayName("A refresh that times out waiting for commits keeps the old layers and hotFrom")
+    void undrainedRefreshKeepsLayers() {
+        SeriesSelection selection = new SeriesSelection(Map.of(1, "purchase"), null);
+        appProperties.getMetrics().getHotWindow().setCommitDrainTimeout(Duration.ofMillis(50));
+        hotWindow.completeRefresh(hotWindow.beginRefresh());
+        long hotFrom = hotWindow.hotFrom();
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            hotWindow.recordAfterCommit(List.of(event("purchase", "web", "user_1", hour)));
+            List<TransactionSynchronization> batch = TransactionSynchronizationManager.getSynchronizations();
+            batch.forEach(sync -> sync.beforeCommit(false));
+
+            HotWindowMetrics.Refresh refresh = hotWindow.beginRefresh();
+            assertThat(refresh.drained()).isFalse();
+            hotWindow.completeRefresh(refresh);
+
+            batch.forEach(TransactionSynchronization::afterCommit);
+            batch.forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertThat(scan(selection)).singleElement().extracting(MetricsCell::totalCount).isEqualTo(1L);
+        assertThat(hotWindow.hotFrom()).isEqualTo(hotFrom);
+    }
+
+    @Test
+    @DisplayName("Outside materialized-view mode nothing is recorded or scanned")
+    void inactiveInRollupMode() {
+        appProperties.getMetrics().setSource(AppProperties.MetricsSource.ROLLUP);
+
+        hotWindow.recordAfterCommit(List.of(event("purchase", "web", "user_1", hour)));
+
+        assertThat(hotWindow.isActive()).isFalse();
+        assertThat(hotWindow.overlaps(hour, hour + 3600)).isFalse();
+        appProperties.getMetrics().setSource(AppProperties.MetricsSource.MATERIALIZED_VIEW);
+        assertThat(scan(new SeriesSelection(Map.of(1, "purchase"), null))).isEmpty();
+    }
+}
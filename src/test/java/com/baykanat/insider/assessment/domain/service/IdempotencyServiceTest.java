@@ -1,10 +1,23 @@
 package com.baykanat.insider.assessment.domain.service;
 
 import com.baykanat.insider.assessment.api.dto.EventRequest;
+import com.baykanat.insider.assessment.config.AppProperties;
+import com.baykanat.insider.assessment.domain.hash.Murmur3;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
 import static org.assertj.core.api.Assertions.assertThat;
 
 /**
@@ -20,7 +33,7 @@ class IdempotencyServiceTest {
 
     @BeforeEach
     void setUp() {
-        idempotencyService = new IdempotencyService();
+        idempotencyService = new IdempotencyService(new AppProperties());
     }
 
     @Test
@@ -40,11 +53,25 @@ class IdempotencyServiceTest {
                 .campaignId("cmp_987")
                 .build();
 
-        String key1 = idempotencyService.generateKey(event1);
-        String key2 = idempotencyService.generateKey(event2);
+        UUID key1 = idempotencyService.generateKey(event1);
+        UUID key2 = idempotencyService.generateKey(event2);
 
         assertThat(key1).isEqualTo(key2);
-        assertThat(key1).hasSize(64); // SHA-256 produces 64 hex characters
+    }
+
+    @Test
+    @DisplayName("Key is the first 128 bits of the SHA-256 digest (same as the legacy hex key prefix)")
+    void keyIsTruncatedSha256() {
+        EventRequest event = EventRequest.builder()
+                .eventName("product_view")
+                .userId("user_123")
+                .timestamp(1771156800L)
+                .campaignId("cmp_987")
+                .build();
+
+        // SHA-256("product_view|user_123|1771156800|cmp_987") = b1a84c038bc6a3cf10d06e74d0ff2466c18b98fa...
+        assertThat(idempotencyService.generateKey(event))
+                .isEqualTo(UUID.fromString("b1a84c03-8bc6-a3cf-10d0-6e74d0ff2466"));
     }
 
     @Test
@@ -141,9 +168,9 @@ class IdempotencyServiceTest {
                 .campaignId(null)
                 .build();
 
-        String key = idempotencyService.generateKey(event);
+        UUID key = idempotencyService.generateKey(event);
 
-        assertThat(key).isNotNull().hasSize(64);
+        assertThat(key).isNotNull();
     }
 
     @Test
@@ -156,10 +183,72 @@ class IdempotencyServiceTest {
                 .campaignId("cmp_987")
                 .build();
 
-        String key1 = idempotencyService.generateKey(event);
-        String key2 = idempotencyService.generateKey(event);
-        String key3 = idempotencyService.generateKey(event);
+        UUID key1 = idempotencyService.generateKey(event);
+        UUID key2 = idempotencyService.generateKey(event);
+        UUID key3 = idempotencyService.generateKey(event);
 
         assertThat(key1).isEqualTo(key2).isEqualTo(key3);
     }
+
+    @Test
+    @DisplayName("Non-ASCII fields hash the same UTF-8 bytes as the joined string")
+    void nonAsciiFieldsMatchJoinedString() throws Exception {
+        EventRequest event = EventRequest.builder()
+                .eventName("ürün_görüntüleme")
+                .userId("kullanıcı_😀")
+                .timestamp(1771156800L)
+                .campaignId("kampanya_€")
+                .build();
+
+        byte[] digest = MessageDigest.getInstance("SHA-256").digest(
+                "ürün_görüntüleme|kullanıcı_😀|1771156800|kampanya_€".getBytes(StandardCharsets.UTF_8));
+        ByteBuffer expected = ByteBuffer.wrap(digest);
+
+        assertThat(idempotencyService.generateKey(event))
+                .isEqualTo(new UUID(expected.getLong(), expected.getLong()));
+    }
+
+    @Test
+    @DisplayName("murmur3 algorithm yields the MurmurHash3 x64_128 of the same input")
+    void murmur3AlgorithmIsSelectable() {
+        AppProperties properties = new AppProperties();
+        properties.getIdempotency().setKeyAlgorithm(AppProperties.KeyAlgorithm.MURMUR3);
+        IdempotencyService murmurService = new IdempotencyService(properties);
+        EventRequest event = EventRequest.builder()
+                .eventName("product_view")
+                .userId("user_123")
+                .timestamp(1771156800L)
+                .build();
+
+        byte[] input = "product_view|user_123|1771156800|".getBytes(StandardCharsets.UTF_8);
+        long[] hash = Murmur3.hash128(input, 0, input.length, 0);
+
+        assertThat(murmurService.generateKey(event)).isEqualTo(new UUID(hash[0], hash[1]));
+        assertThat(murmurService.generateKey(event)).isNotEqualTo(idempotencyService.generateKey(event));
+    }
+
+    @Test
+    @DisplayName("Concurrent virtual threads sharing pooled buffers produce the same keys as sequential calls")
+    void pooledBuffersAreSafeAcrossVirtualThreads() throws Exception {
+        List<EventRequest> events = IntStream.range(0, 2000)
+                .mapToObj(i -> EventRequest.builder()
+                        .eventName(i % 2 == 0 ? "product_view" : "add_to_cart")
+                        .userId("user_" + i + "_" + "é".repeat(i % 50))
+                        .timestamp(1771156800L + i)
+                        .campaignId("cmp_" + i % 7)
+                        .build())
+                .toList();
+        List<UUID> sequential = events.stream().map(idempotencyService::generateKey).toList();
+
+        List<Future<UUID>> concurrent = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (EventRequest event : events) {
+                concurrent.add(executor.submit(() -> idempotencyService.generateKey(event)));
+            }
+        }
+
+        for (int i = 0; i < events.size(); i++) {
+            assertThat(concurrent.get(i).get()).isEqualTo(sequential.get(i));
+        }
+    }
 }
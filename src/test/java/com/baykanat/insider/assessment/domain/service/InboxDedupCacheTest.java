@@ -0,0 +1,215 @@
+package com.baykanat.insider.assessment.domain.service;
+
+import com.baykanat.insider.assessment.config.AppProperties;
+import com.baykanat.insider.assessment.infrastructure.persistence.InboxJdbcRepository;
+import com.baykanat.insider.assessment.infrastructure.persistence.InboxJdbcRepository.KeyHandler;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for InboxDedupCache.
+ *
+ * <p>The inbox repository is mocked; the rebuild streams a fixed key set:
+ * <ul>
+ *   <li>DB fallback while the partition filter is not ready or the cache is disabled</li>
+ *   <li>Definitely-new keys skip the DB round-trip</li>
+ *   <li>Known keys are confirmed by the DB once, then served from the recent-keys LRU</li>
+ *   <li>Hit/false-positive counters</li>
+ *   <li>One inbox scan per assignment, keys routed by partition, partition-less keys in every filter</li>
+ *   <li>Owned partitions are kept; a partition revoked and reassigned only catches up</li>
+ *   <li>Concurrent rebuilds are limited by rebuild-parallelism</li>
+ * </ul>
+ */
+@ExtendWith(MockitoExtension.class)
+class InboxDedupCacheTest {
+
+    @Mock
+    private InboxJdbcRepository inboxRepository;
+
+    private AppProperties appProperties;
+    private SimpleMeterRegistry registry;
+    private InboxDedupCache cache;
+
+    @BeforeEach
+    void setUp() {
+        appProperties = new AppProperties();
+        appProperties.getDedupCache().setEnabled(true);
+        appProperties.getDedupCache().setExpectedKeysPerDay(10_000);
+        registry = new SimpleMeterRegistry();
+        cache = new InboxDedupCache(inboxRepository, appProperties, registry);
+    }
+
+    private void assignAndAwaitRebuild(int partition, String... existingKeys) {
+        when(inboxRepository.streamKeys(eq(Set.of(partition)), any())).thenAnswer(invocation -> {
+            KeyHandler handler = invocation.getArgument(1);
+            for (String name : existingKeys) {
+                handler.accept(key(name), Instant.now(), partition);
+            }
+            return (long) existingKeys.length;
+        });
+        cache.onPartitionsAssigned(List.of(partition));
+        await().atMost(Duration.ofSeconds(5)).until(() -> cache.isReady(partition));
+    }
+
+    private static UUID key(String name) {
+        return UUID.nameUUIDFromBytes(name.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private double lookups(String result) {
+        return registry.get("inbox.dedup.lookups").tag("result", result).counter().count();
+    }
+
+    @Test
+    @DisplayName("Unassigned partition falls back to the inbox query")
+    void unassignedPartitionUsesDb() {
+        when(inboxRepository.findExistingKeys(anyCollection())).thenReturn(Set.of(key("k1")));
+
+        Set<UUID> existing = cache.findExistingKeys(0, List.of(key("k1"), key("k2")));
+
+        assertThat(existing).containsExactly(key("k1"));
+        verify(inboxRepository).findExistingKeys(List.of(key("k1"), key("k2")));
+    }
+
+    @Test
+    @DisplayName("Definitely-new keys skip the DB round-trip")
+    void newKeysSkipDb() {
+        assignAndAwaitRebuild(0, "old_1", "old_2");
+        List<UUID> fresh = IntStream.range(0, 1000).mapToObj(i -> key("new_" + i)).toList();
+        lenient().when(inboxRepository.findExistingKeys(anyCollection())).thenReturn(Set.of());
+
+        Set<UUID> existing = cache.findExistingKeys(0, fresh);
+
+        assertThat(existing).isEmpty();
+        // fpp %1 ile 1000 yeni key'in yalnızca birkaçı DB'ye gidebilir
+        assertThat(lookups("filter_negative")).isGreaterThan(950);
+        assertThat(lookups("filter_negative") + lookups("false_positive")).isEqualTo(1000);
+    }
+
+    @Test
+    @DisplayName("Rebuilt keys are confirmed by the DB once, then served from the recent-keys LRU")
+    void knownKeysAreConfirmedThenCached() {
+        assignAndAwaitRebuild(1, "old_1", "old_2");
+        when(inboxRepository.findExistingKeys(List.of(key("old_1")))).thenReturn(Set.of(key("old_1")));
+
+        assertThat(cache.findExistingKeys(1, List.of(key("old_1")))).containsExactly(key("old_1"));
+        assertThat(cache.findExistingKeys(1, List.of(key("old_1")))).containsExactly(key("old_1"));
+
+        verify(inboxRepository, times(1)).findExistingKeys(anyCollection());
+        assertThat(lookups("db_duplicate")).isEqualTo(1);
+        assertThat(lookups("recent_hit")).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Inserted keys are recognised as duplicates without a DB query")
+    void insertedKeysAreDuplicates() {
+        assignAndAwaitRebuild(2);
+
+        cache.recordInserted(2, List.of(key("k1")));
+
+        assertThat(cache.findExistingKeys(2, List.of(key("k1")))).containsExactly(key("k1"));
+        verify(inboxRepository, never()).findExistingKeys(anyCollection());
+    }
+
+    @Test
+    @DisplayName("Revoked partition and disabled cache fall back to the DB")
+    void revokedAndDisabledUseDb() {
+        assignAndAwaitRebuild(3);
+        cache.onPartitionsRevoked(List.of(3));
+        appProperties.getDedupCache().setEnabled(false);
+        cache.onPartitionsAssigned(List.of(4));
+        when(inboxRepository.findExistingKeys(anyCollection())).thenReturn(Set.of());
+
+        cache.findExistingKeys(3, List.of(key("k1")));
+        cache.findExistingKeys(4, List.of(key("k1")));
+
+        assertThat(cache.isReady(3)).isFalse();
+        assertThat(cache.isReady(4)).isFalse();
+        verify(inboxRepository, times(2)).findExistingKeys(List.of(key("k1")));
+    }
+
+    @Test
+    @DisplayName("One inbox scan fills every assigned partition; keys without a partition go into all filters")
+    void singleScanRoutesKeysByPartition() {
+        when(inboxRepository.streamKeys(eq(Set.of(5, 6)), any())).thenAnswer(invocation -> {
+            KeyHandler handler = invocation.getArgument(1);
+            handler.accept(key("p5"), Instant.now(), 5);
+            handler.accept(key("p6"), Instant.now(), 6);
+            handler.accept(key("legacy"), Instant.now(), null);
+            return 3L;
+        });
+        cache.onPartitionsAssigned(List.of(5, 6));
+        await().atMost(Duration.ofSeconds(5)).until(() -> cache.isReady(5) && cache.isReady(6));
+        when(inboxRepository.findExistingKeys(List.of(key("p5"), key("legacy"))))
+                .thenReturn(Set.of(key("p5"), key("legacy")));
+
+        Set<UUID> existing = cache.findExistingKeys(5, List.of(key("p5"), key("p6"), key("legacy")));
+
+        assertThat(existing).containsExactlyInAnyOrder(key("p5"), key("legacy"));
+        verify(inboxRepository, times(1)).streamKeys(anyCollection(), any());
+        assertThat(lookups("filter_negative")).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Owned partitions are not rebuilt; a revoked partition that comes back only catches up")
+    void reassignedPartitionCatchesUp() {
+        assignAndAwaitRebuild(7, "old_1");
+        cache.onPartitionsAssigned(List.of(7));
+        cache.onPartitionsRevoked(List.of(7));
+        assertThat(cache.isReady(7)).isFalse();
+
+        Instant revokedAt = Instant.now();
+        when(inboxRepository.streamKeysSince(eq(Set.of(7)), any(), any())).thenAnswer(invocation -> {
+            KeyHandler handler = invocation.getArgument(2);
+            handler.accept(key("new_1"), Instant.now(), 7);
+            return 1L;
+        });
+        cache.onPartitionsAssigned(List.of(7));
+        await().atMost(Duration.ofSeconds(5)).until(() -> cache.isReady(7));
+
+        verify(inboxRepository, times(1)).streamKeys(anyCollection(), any());
+        verify(inboxRepository).streamKeysSince(eq(Set.of(7)), argThat(since -> since.isBefore(revokedAt)), any());
+        when(inboxRepository.findExistingKeys(List.of(key("old_1"), key("new_1"))))
+                .thenReturn(Set.of(key("old_1"), key("new_1")));
+        assertThat(cache.findExistingKeys(7, List.of(key("old_1"), key("new_1"))))
+                .containsExactlyInAnyOrder(key("old_1"), key("new_1"));
+    }
+
+    @Test
+    @DisplayName("With rebuild-parallelism 1 the next inbox scan waits for the running one")
+    void rebuildsAreLimited() {
+        CountDownLatch release = new CountDownLatch(1);
+        when(inboxRepository.streamKeys(eq(Set.of(8)), any())).thenAnswer(invocation -> {
+            release.await();
+            return 0L;
+        });
+        when(inboxRepository.streamKeys(eq(Set.of(9)), any())).thenReturn(0L);
+
+        cache.onPartitionsAssigned(List.of(8));
+        cache.onPartitionsAssigned(List.of(9));
+
+        verify(inboxRepository, after(200).never()).streamKeys(eq(Set.of(9)), any());
+        release.countDown();
+        await().atMost(Duration.ofSeconds(5)).until(() -> cache.isReady(8) && cache.isReady(9));
+    }
+}
@@ -0,0 +1,164 @@
+package com.baykanat.insider.assessment.domain.service;
+
+import com.baykanat.insider.assessment.domain.model.GroupBy;
+import com.baykanat.insider.assessment.domain.service.MetricsQueryPlanner.Level;
+import com.baykanat.insider.assessment.domain.service.MetricsQueryPlanner.Segment;
+import com.baykanat.insider.assessment.domain.service.MetricsQueryPlanner.Tier;
+import com.baykanat.insider.assessment.infrastructure.persistence.RollupResolution;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Unit tests for MetricsQueryPlanner and the group_by bucket arithmetic it relies on.
+ *
+ * <p>Windows are expressed relative to a fixed UTC midnight:
+ * <ul>
+ *   <li>Whole buckets of the coarsest resolution form one segment; edges cascade to finer resolutions</li>
+ *   <li>Sub-bucket edges no resolution covers go to raw partitions, one segment per day</li>
+ *   <li>Archived days replace raw segments; segments always tile the window without gaps</li>
+ *   <li>Whole minutes after the hot window start are read from the hot window instead of raw partitions</li>
+ *   <li>With the router disabled only the archive boundary splits the window</li>
+ *   <li>Weekly buckets start on Monday</li>
+ * </ul>
+ */
+class MetricsQueryPlannerTest {
+
+    /** 2026-02-15, a Sunday. */
+    private static final long DAY = 1771113600L;
+    private static final long HOUR = 3600;
+    private static final Level HOURLY = new Level(RollupResolution.HOUR, Long.MIN_VALUE);
+
+    private static Segment preaggregated(RollupResolution resolution, long from, long to) {
+        return new Segment(Tier.PREAGGREGATED, resolution, from, to);
+    }
+
+    private static Segment raw(long from, long to) {
+        return new Segment(Tier.RAW, null, from, to);
+    }
+
+    @Test
+    @DisplayName("Hour-aligned window inside the rollup is a single pre-aggregated segment")
+    void alignedWindowIsPreaggregated() {
+        List<Segment> plan = MetricsQueryPlanner.plan(DAY, DAY + 5 * HOUR, List.of(HOURLY), null, true);
+
+        assertThat(plan).containsExactly(preaggregated(RollupResolution.HOUR, DAY, DAY + 5 * HOUR));
+    }
+
+    @Test
+    @DisplayName("Sub-hour edges are read from the raw partition of their day")
+    void edgesGoToRaw() {
+        long from = DAY + 2 * HOUR + 600;
+        long to = DAY + 5 * HOUR + 60;
+
+        List<Segment> plan = MetricsQueryPlanner.plan(from, to, List.of(HOURLY), null, true);
+
+        assertThat(plan).containsExactly(
+                raw(from, DAY + 3 * HOUR),
+                preaggregated(RollupResolution.HOUR, DAY + 3 * HOUR, DAY + 5 * HOUR),
+                raw(DAY + 5 * HOUR, to));
+    }
+
+    @Test
+    @DisplayName("Edges cascade from days to hours to minutes before falling back to raw")
+    void edgesCascadeToFinerResolutions() {
+        List<Level> levels = List.of(
+                new Level(RollupResolution.DAY, Long.MIN_VALUE),
+                HOURLY,
+                new Level(RollupResolution.MINUTE, DAY));
+        long from = DAY + 22 * HOUR + 90;
+        long to = DAY + 2 * 86400 + HOUR + 30;
+
+        List<Segment> plan = MetricsQueryPlanner.plan(from, to, levels, null, true);
+
+        assertThat(plan).containsExactly(
+                raw(from, DAY + 22 * HOUR + 120),
+                preaggregated(RollupResolution.MINUTE, DAY + 22 * HOUR + 120, DAY + 23 * HOUR),
+                preaggregated(RollupResolution.HOUR, DAY + 23 * HOUR, DAY + 86400),
+                preaggregated(RollupResolution.DAY, DAY + 86400, DAY + 2 * 86400),
+                preaggregated(RollupResolution.HOUR, DAY + 2 * 86400, DAY + 2 * 86400 + HOUR),
+                raw(DAY + 2 * 86400 + HOUR, to));
+    }
+
+    @Test
+    @DisplayName("A window shorter than an hour never touches the hourly tier")
+    void shortWindowIsRawOnly() {
+        List<Segment> plan = MetricsQueryPlanner.plan(DAY + 60, DAY + 1800, List.of(HOURLY), null, true);
+
+        assertThat(plan).containsExactly(raw(DAY + 60, DAY + 1800));
+    }
+
+    @Test
+    @DisplayName("Days before the MV retention are split per day; archived days come from the archive")
+    void outsideRetentionSplitsPerDay() {
+        long preaggregatedStart = DAY + 3 * 86400;
+        long archiveEnd = DAY + 86400;
+
+        List<Segment> plan = MetricsQueryPlanner.plan(DAY, DAY + 4 * 86400,
+                List.of(new Level(RollupResolution.HOUR, preaggregatedStart)), archiveEnd, true);
+
+        assertThat(plan).containsExactly(
+                new Segment(Tier.ARCHIVE, null, DAY, archiveEnd),
+                raw(DAY + 86400, DAY + 2 * 86400),
+                raw(DAY + 2 * 86400, DAY + 3 * 86400),
+                preaggregated(RollupResolution.HOUR, preaggregatedStart, DAY + 4 * 86400));
+        assertThat(plan.get(2).day()).isEqualTo(plan.get(1).day().plusDays(1));
+    }
+
+    @Test
+    @DisplayName("Disabled router only splits at the archive boundary and keeps unaligned bounds")
+    void disabledRouterKeepsLegacySplit() {
+        long from = DAY + 600;
+        long to = DAY + 3 * 86400 + 60;
+        List<Level> retained = List.of(new Level(RollupResolution.HOUR, DAY + 86400));
+
+        assertThat(MetricsQueryPlanner.plan(from, to, retained, DAY + 2 * 86400, false)).containsExactly(
+                new Segment(Tier.ARCHIVE, null, from, DAY + 2 * 86400),
+                preaggregated(RollupResolution.HOUR, DAY + 2 * 86400, to));
+        assertThat(MetricsQueryPlanner.plan(from, to, List.of(HOURLY), DAY + 2 * 86400, false))
+                .containsExactly(preaggregated(RollupResolution.HOUR, from, to));
+        assertThat(MetricsQueryPlanner.plan(to, from, List.of(HOURLY), null, true)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Without any resolution the whole window is read from raw partitions")
+    void noResolutionReadsRaw() {
+        assertThat(MetricsQueryPlanner.plan(DAY + 60, DAY + 86400 + 60, List.of(), null, false)).containsExactly(
+                raw(DAY + 60, DAY + 86400),
+                raw(DAY + 86400, DAY + 86400 + 60));
+    }
+
+    @Test
+    @DisplayName("Whole raw minutes after the hot window start are hot; earlier and sub-minute parts stay raw")
+    void tailAfterRefreshIsHot() {
+        long from = DAY + 2 * HOUR + 600;
+        long to = DAY + 3 * HOUR + 1230;
+        long hotFrom = DAY + 3 * HOUR + 300;
+
+        List<Segment> plan = MetricsQueryPlanner.plan(from, to, List.of(HOURLY), null, true, hotFrom);
+
+        assertThat(plan).containsExactly(
+                raw(from, hotFrom),
+                new Segment(Tier.HOT, null, hotFrom, DAY + 3 * HOUR + 1200),
+                raw(DAY + 3 * HOUR + 1200, to));
+        assertThat(MetricsQueryPlanner.plan(from, to, List.of(HOURLY), null, true, Long.MAX_VALUE))
+                .containsExactly(raw(from, to));
+        assertThat(MetricsQueryPlanner.plan(DAY + 60, DAY + 90, List.of(), null, true, DAY))
+                .containsExactly(raw(DAY + 60, DAY + 90));
+    }
+
+    @Test
+    @DisplayName("group_by parses case-insensitively and floors weekly buckets to Monday")
+    void groupByBuckets() {
+        assertThat(GroupBy.of(null)).isEqualTo(GroupBy.HOURLY);
+        assertThat(GroupBy.of("15M")).isEqualTo(GroupBy.QUARTER_HOUR);
+        assertThat(GroupBy.FIVE_MINUTES.floor(DAY + 7 * 60 + 5)).isEqualTo(DAY + 5 * 60);
+        assertThat(GroupBy.WEEKLY.floor(DAY + HOUR)).isEqualTo(DAY - 6 * 86400);
+        assertThat(GroupBy.WEEKLY.floor(DAY + 86400)).isEqualTo(DAY + 86400);
+        assertThatThrownBy(() -> GroupBy.of("monthly")).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,640 @@
+package com.baykanat.insider.assessment.domain.service;
+
+import com.baykanat.insider.assessment.api.dto.MetricsBatchQueryRequest;
+import com.baykanat.insider.assessment.api.dto.MetricsBatchResponse;
+import com.baykanat.insider.assessment.api.dto.MetricsQueryParams;
+import com.baykanat.insider.assessment.api.dto.MetricsResponse;
+import com.baykanat.insider.assessment.config.AppProperties;
+import com.baykanat.insider.assessment.domain.hash.Murmur3;
+import com.baykanat.insider.assessment.domain.model.Event;
+import com.baykanat.insider.assessment.domain.sketch.HyperLogLog;
+import com.baykanat.insider.assessment.infrastructure.archive.ArchiveMetricsScanner;
+import com.baykanat.insider.assessment.infrastructure.persistence.CampaignRollupJdbcRepository;
+import com.baykanat.insider.assessment.infrastructure.persistence.CampaignRollupJdbcRepository.BucketRange;
+import com.baykanat.insider.assessment.infrastructure.persistence.CampaignRollupJdbcRepository.RankedCampaign;
+import com.baykanat.insider.assessment.infrastructure.persistence.MetricsJdbcRepository;
+import com.baykanat.insider.assessment.infrastructure.persistence.MetricsCell;
+import com.baykanat.insider.assessment.infrastructure.persistence.MetricsJdbcRepository.MetricsSeries;
+import com.baykanat.insider.assessment.infrastructure.persistence.MetricsJdbcRepository.SeriesSelection;
+import com.baykanat.insider.assessment.infrastructure.persistence.RawEventMetricsJdbcRepository;
+import com.baykanat.insider.assessment.infrastructure.persistence.RawEventMetricsJdbcRepository.TagFilter;
+import com.baykanat.insider.assessment.infrastructure.persistence.RollupResolution;
+import com.baykanat.insider.assessment.infrastructure.persistence.TagRollupJdbcRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for the metrics query cache in MetricsService.
+ *
+ * <p>The repository is mocked and its refresh generation is driven by the test:
+ * <ul>
+ *   <li>Repeated queries within one MV refresh generation hit PostgreSQL once</li>
+ *   <li>A new generation invalidates cached responses exactly once</li>
+ *   <li>Different parameters are cached separately; group_by is case-insensitive</li>
+ *   <li>Hits and misses are published through Micrometer; a disabled cache always queries</li>
+ *   <li>Batch queries return one result per requested series in request order, zero-filled</li>
+ *   <li>Windows reaching into archived days are split at the archive boundary and merged</li>
+ *   <li>With the router enabled, sub-hour edges are read from raw partitions and merged with the rollup</li>
+ *   <li>Raw segments whose estimated size exceeds the row budget are rejected before any scan</li>
+ *   <li>The coarsest rollup resolution that divides group_by serves whole buckets, finer ones the edges</li>
+ *   <li>split_by=channel returns the largest channels first; split_by=campaign_id ranks campaigns in the campaign
+ *   rollup and reads only the winners' buckets, never raw partitions</li>
+ *   <li>split_by/top combinations the sources cannot serve are rejected before any query</li>
+ *   <li>A single tag reads whole hours from the tag rollup and edges from raw partitions with the tag filter</li>
+ *   <li>Tag combinations scan raw partitions only when the tag rollup's match estimate fits the row budget</li>
+ *   <li>Tag filters the sources cannot serve are rejected before any query</li>
+ *   <li>In MV mode the hot window tops up MV hours until the refresh that covers it completes</li>
+ *   <li>Whole minutes after the last refresh are read from the hot window ahead of raw partitions</li>
+ * </ul>
+ */
+@ExtendWith(MockitoExtension.class)
+class MetricsServiceTest {
+
+    @Mock
+    private MetricsJdbcRepository metricsRepository;
+
+    @Mock
+    private RawEventMetricsJdbcRepository rawRepository;
+
+    @Mock
+    private ArchiveMetricsScanner archiveScanner;
+
+    @Mock
+    private CampaignRollupJdbcRepository campaignRepository;
+
+    @Mock
+    private TagRollupJdbcRepository tagRepository;
+
+    private AppProperties appProperties;
+    private SimpleMeterRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        appProperties = new AppProperties();
+        appProperties.getMetrics().setSource(AppProperties.MetricsSource.MATERIALIZED_VIEW);
+        appProperties.getMetrics().getRouter().setEnabled(false);
+        enableAllRollups();
+        registry = new SimpleMeterRegistry();
+        lenient().when(archiveScanner.coverageEnd()).thenReturn(null);
+        lenient().when(metricsRepository.queryTotals(any(), anyLong(), anyLong(), any()))
+                .thenReturn(new long[]{10, 4});
+        lenient().when(metricsRepository.queryBreakdowns(any(), anyLong(), anyLong(), any(), any()))
+                .thenReturn(List.of(MetricsResponse.TimeBucket.builder()
+                        .bucket("2026-02-15T10:00:00Z").totalCount(10).uniqueUserCount(4).build()));
+    }
+
+    private MetricsService newService() {
+        return newService(new HotWindowMetrics(appProperties, registry));
+    }
+
+    private MetricsService newService(HotWindowMetrics hotWindow) {
+        return new MetricsService(metricsRepository, rawRepository, archiveScanner, campaignRepository, tagRepository,
+                hotWindow, appProperties, registry);
+    }
+
+    private static MetricsQueryParams params(String channel, String groupBy) {
+        return MetricsQueryParams.builder()
+                .eventName("product_view").from(1771113600L).to(1771200000L)
+                .channel(channel).groupBy(groupBy)
+                .build();
+    }
+
+    private double gets(String result) {
+        return registry.get("cache.gets").tag("cache", MetricsService.CACHE_NAME).tag("result", result)
+                .functionCounter().count();
+    }
+
+    @Test
+    @DisplayName("Queries between MV refreshes are served from the cache")
+    void cachesWithinGeneration() {
+        MetricsService service = newService();
+        when(metricsRepository.getRefreshGeneration()).thenReturn(3L);
+
+        MetricsResponse first = service.getMetrics(params("web", "hourly"));
+        MetricsResponse second = service.getMetrics(params("web", "HOURLY"));
+
+        assertThat(second).isSameAs(first);
+        assertThat(first.getTotalCount()).isEqualTo(10);
+        verify(metricsRepository, times(1)).queryTotals(any(), anyLong(), anyLong(), any());
+        verify(metricsRepository, times(1)).queryBreakdowns(any(), anyLong(), anyLong(), any(), any());
+        assertThat(gets("hit")).isEqualTo(1);
+        assertThat(gets("miss")).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("A new refresh generation invalidates cached responses")
+    void newGenerationInvalidates() {
+        MetricsService service = newService();
+        when(metricsRepository.getRefreshGeneration()).thenReturn(1L, 1L, 2L, 2L);
+
+        service.getMetrics(params(null, null));
+        service.getMetrics(params(null, null));
+        service.getMetrics(params(null, null));
+        service.getMetrics(params(null, null));
+
+        verify(metricsRepository, times(2)).queryTotals(any(), anyLong(), anyLong(), any());
+    }
+
+    @Test
+    @DisplayName("Different channels and groupings are cached separately")
+    void differentParametersAreSeparateEntries() {
+        MetricsService service = newService();
+        when(metricsRepository.getRefreshGeneration()).thenReturn(0L);
+
+        service.getMetrics(params("web", "hourly"));
+        service.getMetrics(params("mobile", "hourly"));
+        service.getMetrics(params("web", "daily"));
+
+        verify(metricsRepository).queryTotals(any(), anyLong(), anyLong(), eq("web"));
+        verify(metricsRepository).queryTotals(any(), anyLong(), anyLong(), eq("mobile"));
+        verify(metricsRepository).queryBreakdowns(any(), anyLong(), anyLong(), eq("web"), eq("daily"));
+    }
+
+    @Test
+    @DisplayName("Disabled cache (or rollup with zero staleness) always queries the repository")
+    void disabledCacheAlwaysQueries() {
+        appProperties.getMetrics().setSource(AppProperties.MetricsSource.ROLLUP);
+        appProperties.getMetrics().getCache().setRollupMaxStaleness(Duration.ZERO);
+        MetricsService service = newService();
+
+        service.getMetrics(params("web", "hourly"));
+        service.getMetrics(params("web", "hourly"));
+
+        verify(metricsRepository, times(2)).queryTotals(any(), anyLong(), anyLong(), any());
+        verify(metricsRepository, never()).getRefreshGeneration();
+        assertThat(registry.find("cache.gets").functionCounters()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Batch query returns every requested series in order with one repository call")
+    void batchQueryFillsMissingSeries() {
+        MetricsService service = newService();
+        MetricsResponse.TimeBucket bucket = MetricsResponse.TimeBucket.builder()
+                .bucket("2026-02-15T10:00:00Z").totalCount(7).uniqueUserCount(3).build();
+        when(metricsRepository.queryBatch(List.of("purchase", "product_view"), 1771113600L, 1771200000L,
+                List.of("web", "mobile_app"), "hourly"))
+                .thenReturn(List.of(new MetricsSeries("product_view", "mobile_app", 7, 3, List.of(bucket))));
+
+        MetricsBatchResponse response = service.queryBatch(MetricsBatchQueryRequest.builder()
+                .eventNames(List.of("purchase", "product_view", "purchase"))
+                .from(1771113600L).to(1771200000L)
+                .channels(List.of("web", "mobile_app"))
+                .build());
+
+        assertThat(response.getResults()).extracting(MetricsResponse::getEventName, MetricsResponse::getChannel)
+                .containsExactly(
+                        tuple("purchase", "web"),
+                        tuple("purchase", "mobile_app"),
+                        tuple("product_view", "web"),
+                        tuple("product_view", "mobile_app"));
+        assertThat(response.getResults().get(0).getTotalCount()).isZero();
+        assertThat(response.getResults().get(0).getBreakdowns()).isEmpty();
+        assertThat(response.getResults().get(3).getTotalCount()).isEqualTo(7);
+        assertThat(response.getResults().get(3).getBreakdowns()).containsExactly(bucket);
+        verify(metricsRepository, times(1)).queryBatch(any(), anyLong(), anyLong(), any(), any());
+        verify(metricsRepository, never()).queryTotals(any(), anyLong(), anyLong(), any());
+    }
+
+    @Test
+    @DisplayName("Archived days are read from the archive and the rest of the window from the MV")
+    void splitsWindowAtArchiveBoundary() {
+        appProperties.getMetrics().getCache().setEnabled(false);
+        MetricsService service = newService();
+        long boundary = 1771200000L;
+        SeriesSelection selection = new SeriesSelection(Map.of(1, "purchase"), Map.of(2, "web"));
+        when(archiveScanner.coverageEnd()).thenReturn(boundary);
+        when(metricsRepository.resolveSelection(List.of("purchase"), List.of("web"))).thenReturn(selection);
+        when(archiveScanner.scanCells(selection, 1771113600L, boundary, 3600))
+                .thenReturn(List.of(new MetricsCell(1, 2, 1771149600L, 5, 2, null)));
+        emitCells(selection, RollupResolution.HOUR, boundary, 1771286400L,
+                new MetricsCell(1, 2, 1771236000L, 10, 4, null));
+
+        MetricsResponse response = service.getMetrics(MetricsQueryParams.builder()
+                .eventName("purchase").from(1771113600L).to(1771286400L).channel("web").groupBy("hourly").build());
+
+        assertThat(response.getTotalCount()).isEqualTo(15);
+        assertThat(response.getUniqueUserCount()).isEqualTo(6);
+        assertThat(response.getBreakdowns()).extracting(MetricsResponse.TimeBucket::getBucket)
+                .containsExactly("2026-02-15T10:00:00Z", "2026-02-16T10:00:00Z");
+        verify(metricsRepository, never()).queryTotals(any(), anyLong(), anyLong(), any());
+    }
+
+    @Test
+    @DisplayName("Rollup source never reads the archive when the router is disabled")
+    void rollupSkipsArchive() {
+        appProperties.getMetrics().setSource(AppProperties.MetricsSource.ROLLUP);
+        appProperties.getMetrics().getCache().setEnabled(false);
+        MetricsService service = newService();
+
+        service.getMetrics(params("web", "hourly"));
+
+        verify(archiveScanner, never()).scanCells(any(), anyLong(), anyLong(), anyLong());
+        verifyNoInteractions(rawRepository);
+    }
+
+    @Test
+    @DisplayName("Sub-hour edges come from raw partitions and merge with rollup sketches")
+    void routesEdgesToRawPartitions() {
+        appProperties.getMetrics().setSource(AppProperties.MetricsSource.ROLLUP);
+        appProperties.getMetrics().getCache().setEnabled(false);
+        appProperties.getMetrics().getRouter().setEnabled(true);
+        disableSubHourRollups();
+        MetricsService service = newService();
+        LocalDate day = LocalDate.now(ZoneOffset.UTC).minusDays(1);
+        long dayStart = day.atStartOfDay(ZoneOffset.UTC).toEpochSecond();
+        long from = dayStart + 10 * 3600 + 1800;
+        long to = dayStart + 12 * 3600 + 900;
+        SeriesSelection selection = new SeriesSelection(Map.of(1, "purchase"), null);
+        when(metricsRepository.resolveSelection(List.of("purchase"), null)).thenReturn(selection);
+        when(rawRepository.estimatePartitionRows(List.of(day, day))).thenReturn(Map.of(day, 1_000L));
+        when(rawRepository.scanDay(selection, null, day, from, dayStart + 11 * 3600, 86400, true))
+                .thenReturn(List.of(new MetricsCell(1, 0, dayStart + 10 * 3600, 3, 2, sketch("u1", "u2"))));
+        when(rawRepository.scanDay(selection, null, day, dayStart + 12 * 3600, to, 86400, true))
+                .thenReturn(List.of(new MetricsCell(1, 0, dayStart + 12 * 3600, 1, 1, sketch("u3"))));
+        emitCells(selection, RollupResolution.HOUR, dayStart + 11 * 3600, dayStart + 12 * 3600,
+                new MetricsCell(1, 0, dayStart + 11 * 3600, 4, 2, sketch("u1", "u3")));
+
+        MetricsResponse response = service.getMetrics(MetricsQueryParams.builder()
+                .eventName("purchase").from(from).to(to).groupBy("daily").build());
+
+        assertThat(response.getTotalCount()).isEqualTo(8);
+        assertThat(response.getUniqueUserCount()).isEqualTo(3);
+        assertThat(response.getBreakdowns()).singleElement()
+                .extracting(MetricsResponse.TimeBucket::getTotalCount).isEqualTo(8L);
+        assertThat(registry.get("metrics.query.segments").tag("tier", "raw").counter().count()).isEqualTo(2);
+        verify(metricsRepository, never()).queryTotals(any(), anyLong(), anyLong(), any());
+    }
+
+    @Test
+    @DisplayName("Raw segments above the row budget are rejected without scanning")
+    void rejectsQueriesAboveRawBudget() {
+        appProperties.getMetrics().setSource(AppProperties.MetricsSource.ROLLUP);
+        appProperties.getMetrics().getCache().setEnabled(false);
+        appProperties.getMetrics().getRouter().setEnabled(true);
+        appProperties.getMetrics().getRouter().setRawRowBudget(1_000);
+        disableSubHourRollups();
+        MetricsService service = newService();
+        LocalDate day = LocalDate.now(ZoneOffset.UTC).minusDays(1);
+        long dayStart = day.atStartOfDay(ZoneOffset.UTC).toEpochSecond();
+        when(metricsRepository.resolveSelection(List.of("purchase"), null))
+                .thenReturn(new SeriesSelection(Map.of(1, "purchase"), null));
+        when(rawRepository.estimatePartitionRows(List.of(day))).thenReturn(Map.of(day, 1_000_000L));
+
+        assertThatThrownBy(() -> service.getMetrics(MetricsQueryParams.builder()
+                .eventName("purchase").from(dayStart + 60).to(dayStart + 1800).groupBy("hourly").build()))
+                .isInstanceOf(MetricsService.QueryBudgetExceededException.class);
+
+        verify(rawRepository, never()).scanDay(any(), any(), any(), anyLong(), anyLong(), anyLong(), anyBoolean());
+        assertThat(registry.get("metrics.query.budget.rejected").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Daily grouping reads whole days from the daily rollup and the partial day from hourly buckets")
+    void picksCoarsestResolution() {
+        appProperties.getMetrics().setSource(AppProperties.MetricsSource.ROLLUP);
+        appProperties.getMetrics().getCache().setEnabled(false);
+        appProperties.getMetrics().getRouter().setEnabled(true);
+        MetricsService service = newService();
+        long dayStart = LocalDate.now(ZoneOffset.UTC).minusDays(3).atStartOfDay(ZoneOffset.UTC).toEpochSecond();
+        SeriesSelection selection = new SeriesSelection(Map.of(1, "purchase"), null);
+        when(metricsRepository.resolveSelection(List.of("purchase"), null)).thenReturn(selection);
+        emitCells(selection, RollupResolution.HOUR, dayStart + 6 * 3600, dayStart + 86400,
+                new MetricsCell(1, 0, dayStart + 6 * 3600, 2, 1, sketch("u1")),
+                new MetricsCell(1, 0, dayStart + 20 * 3600, 3, 1, sketch("u1")));
+        emitCells(selection, RollupResolution.DAY, dayStart + 86400, dayStart + 2 * 86400,
+                new MetricsCell(1, 0, dayStart + 86400, 10, 2, sketch("u2", "u3")));
+
+        MetricsResponse response = service.getMetrics(MetricsQueryParams.builder()
+                .eventName("purchase").from(dayStart + 6 * 3600).to(dayStart + 2 * 86400).groupBy("daily").build());
+
+        assertThat(response.getTotalCount()).isEqualTo(15);
+        assertThat(response.getUniqueUserCount()).isEqualTo(3);
+        assertThat(response.getBreakdowns()).extracting(MetricsResponse.TimeBucket::getTotalCount)
+                .containsExactly(5L, 10L);
+        verifyNoInteractions(rawRepository);
+    }
+
+    @Test
+    @DisplayName("Channel split returns the largest channels first, limited to top")
+    void splitsByChannel() {
+        appProperties.getMetrics().getCache().setEnabled(false);
+        MetricsService service = newService();
+        SeriesSelection selection = new SeriesSelection(Map.of(1, "product_view"),
+                Map.of(2, "web", 3, "mobile_app", 4, "email"));
+        when(metricsRepository.resolveChannelSplit(List.of("product_view"))).thenReturn(selection);
+        emitCells(selection, RollupResolution.HOUR, 1771113600L, 1771200000L,
+                new MetricsCell(1, 2, 1771149600L, 5, 2, null),
+                new MetricsCell(1, 3, 1771149600L, 9, 3, null),
+                new MetricsCell(1, 4, 1771153200L, 1, 1, null));
+
+        MetricsResponse response = service.getMetrics(MetricsQueryParams.builder()
+                .eventName("product_view").from(1771113600L).to(1771200000L).groupBy("hourly")
+                .splitBy("channel").top(2).build());
+
+        assertThat(response.getTotalCount()).isEqualTo(10);
+        assertThat(response.getSplitBy()).isEqualTo("channel");
+        assertThat(response.getSplits())
+                .extracting(MetricsResponse.Split::getValue, MetricsResponse.Split::getTotalCount)
+                .containsExactly(tuple("mobile_app", 9L), tuple("web", 5L));
+    }
+
+    @Test
+    @DisplayName("Campaign split ranks campaigns in the rollup and merges the winners' daily and hourly buckets")
+    void splitsByCampaign() {
+        appProperties.getMetrics().setSource(AppProperties.MetricsSource.ROLLUP);
+        appProperties.getMetrics().getCache().setEnabled(false);
+        MetricsService service = newService();
+        long dayStart = LocalDate.now(ZoneOffset.UTC).minusDays(3).atStartOfDay(ZoneOffset.UTC).toEpochSecond();
+        when(metricsRepository.resolveSelection(List.of("purchase"), null))
+                .thenReturn(new SeriesSelection(Map.of(1, "purchase"), null));
+        List<BucketRange> ranges = List.of(
+                new BucketRange(RollupResolution.HOUR, dayStart + 3600, dayStart + 86400),
+                new BucketRange(RollupResolution.DAY, dayStart + 86400, dayStart + 2 * 86400));
+        when(campaignRepository.topCampaigns(1, null, ranges, 2))
+                .thenReturn(List.of(new RankedCampaign(7, "summer", 10), new RankedCampaign(9, "winter", 1)));
+        emitCampaignCells(RollupResolution.HOUR,
+                new MetricsCell(1, 7, dayStart + 5 * 3600, 4, 2, sketch("u1", "u2")),
+                new MetricsCell(1, 9, dayStart + 6 * 3600, 1, 1, sketch("u3")));
+        emitCampaignCells(RollupResolution.DAY,
+                new MetricsCell(1, 7, dayStart + 86400, 6, 2, sketch("u2", "u4")));
+
+        MetricsResponse response = service.getMetrics(MetricsQueryParams.builder()
+                .eventName("purchase").from(dayStart + 1800).to(dayStart + 2 * 86400).groupBy("daily")
+                .splitBy("campaign_id").top(2).build());
+
+        assertThat(response.getSplitBy()).isEqualTo("campaign_id");
+        assertThat(response.getSplits())
+                .extracting(MetricsResponse.Split::getValue, MetricsResponse.Split::getTotalCount,
+                        MetricsResponse.Split::getUniqueUserCount)
+                .containsExactly(tuple("summer", 10L, 3L), tuple("winter", 1L, 1L));
+        assertThat(response.getSplits().get(0).getBreakdowns()).extracting(MetricsResponse.TimeBucket::getTotalCount)
+                .containsExactly(4L, 6L);
+        verifyNoInteractions(rawRepository);
+    }
+
+    @Test
+    @DisplayName("split_by and top combinations the sources cannot serve are rejected before querying")
+    void rejectsUnsupportedSplits() {
+        MetricsService service = newService();
+        MetricsQueryParams.MetricsQueryParamsBuilder base = MetricsQueryParams.builder()
+                .eventName("purchase").from(1771113600L).to(1771200000L);
+
+        assertThatThrownBy(() -> service.getMetrics(base.top(5).build()))
+                .isInstanceOf(MetricsService.UnsupportedQueryException.class)
+                .hasMessageContaining("top requires split_by");
+        assertThatThrownBy(() -> service.getMetrics(base.top(null).splitBy("channel").channel("web").build()))
+                .isInstanceOf(MetricsService.UnsupportedQueryException.class);
+        assertThatThrownBy(() -> service.getMetrics(base.splitBy("campaign_id").channel(null).build()))
+                .isInstanceOf(MetricsService.UnsupportedQueryException.class)
+                .hasMessageContaining("campaign rollup");
+
+        appProperties.getMetrics().setSource(AppProperties.MetricsSource.ROLLUP);
+        assertThatThrownBy(() -> service.getMetrics(base.groupBy("15m").build()))
+                .isInstanceOf(MetricsService.UnsupportedQueryException.class)
+                .hasMessageContaining("group_by");
+
+        verifyNoInteractions(metricsRepository, campaignRepository);
+    }
+
+    @Test
+    @DisplayName("A single tag reads whole hours from the tag rollup and the sub-hour edge from raw partitions")
+    void filtersBySingleTag() {
+        appProperties.getMetrics().setSource(AppProperties.MetricsSource.ROLLUP);
+        appProperties.getMetrics().getCache().setEnabled(false);
+        appProperties.getMetrics().getRouter().setEnabled(true);
+        MetricsService service = newService();
+        LocalDate day = LocalDate.now(ZoneOffset.UTC).minusDays(1);
+        long dayStart = day.atStartOfDay(ZoneOffset.UTC).toEpochSecond();
+        SeriesSelection selection = new SeriesSelection(Map.of(1, "purchase"), null);
+        when(metricsRepository.resolveSelection(List.of("purchase"), null)).thenReturn(selection);
+        when(tagRepository.findTagIds(List.of("flash_sale"))).thenReturn(Map.of("flash_sale", 5));
+        when(rawRepository.estimatePartitionRows(List.of(day))).thenReturn(Map.of(day, 1_000L));
+        when(rawRepository.scanDay(selection, new TagFilter(List.of("flash_sale"), true), day, dayStart + 1800,
+                dayStart + 3600, 3600, true))
+                .thenReturn(List.of(new MetricsCell(1, 0, dayStart, 2, 2, sketch("u1", "u2"))));
+        doAnswer(invocation -> {
+            Consumer<MetricsCell> consumer = invocation.getArgument(5);
+            consumer.accept(new MetricsCell(1, 0, dayStart + 3600, 3, 2, sketch("u2", "u3")));
+            return null;
+        }).when(tagRepository).scanCells(eq(1), isNull(), eq(5), eq(dayStart + 3600), eq(dayStart + 3 * 3600),
+                any());
+
+        MetricsResponse response = service.getMetrics(MetricsQueryParams.builder()
+                .eventName("purchase").from(dayStart + 1800).to(dayStart + 3 * 3600).groupBy("hourly")
+                .tag("flash_sale").build());
+
+        assertThat(response.getTotalCount()).isEqualTo(5);
+        assertThat(response.getUniqueUserCount()).isEqualTo(3);
+        assertThat(response.getTags()).containsExactly("flash_sale");
+        assertThat(response.getTagMatch()).isNull();
+        assertThat(response.getBreakdowns()).extracting(MetricsResponse.TimeBucket::getTotalCount)
+                .containsExactly(2L, 3L);
+        verify(metricsRepository, never()).scanCells(any(), any(), anyLong(), anyLong(), any());
+    }
+
+    @Test
+    @DisplayName("Tag combinations scan raw partitions with the tag filter when the rollup estimate fits the budget")
+    void filtersByTagCombination() {
+        appProperties.getMetrics().setSource(AppProperties.MetricsSource.ROLLUP);
+        appProperties.getMetrics().getCache().setEnabled(false);
+        appProperties.getMetrics().getRouter().setRawRowBudget(1_000);
+        MetricsService service = newService();
+        LocalDate day = LocalDate.now(ZoneOffset.UTC).minusDays(1);
+        long dayStart = day.atStartOfDay(ZoneOffset.UTC).toEpochSecond();
+        SeriesSelection selection = new SeriesSelection(Map.of(1, "purchase"), null);
+        when(metricsRepository.resolveSelection(List.of("purchase"), null)).thenReturn(selection);
+        when(tagRepository.findTagIds(List.of("flash_sale", "homepage", "unknown")))
+                .thenReturn(Map.of("flash_sale", 5, "homepage", 6));
+        when(tagRepository.tagCounts(1, null, List.of(5, 6), dayStart, dayStart + 2 * 3600))
+                .thenReturn(Map.of(5, 400L, 6, 500L));
+        // Partition tahmini bütçeyi aşsa da GIN taramasının maliyeti etiket rollup'ından gelir
+        when(rawRepository.estimatePartitionRows(List.of(day))).thenReturn(Map.of(day, 10_000_000L));
+        when(rawRepository.scanDay(selection, new TagFilter(List.of("flash_sale", "homepage"), false), day,
+                dayStart + 1800, dayStart + 5400, 3600, true))
+                .thenReturn(List.of(new MetricsCell(1, 0, dayStart, 4, 3, sketch("u1", "u2", "u3"))));
+
+        MetricsResponse response = service.getMetrics(MetricsQueryParams.builder()
+                .eventName("purchase").from(dayStart + 1800).to(dayStart + 5400).groupBy("hourly")
+                .tag("flash_sale, homepage,unknown").tagMatch("any").build());
+
+        assertThat(response.getTotalCount()).isEqualTo(4);
+        assertThat(response.getTagMatch()).isEqualTo("any");
+        verify(tagRepository, never()).scanCells(anyInt(), any(), anyInt(), anyLong(), anyLong(), any());
+
+        when(tagRepository.findTagIds(List.of("flash_sale", "homepage")))
+                .thenReturn(Map.of("flash_sale", 5, "homepage", 6));
+        appProperties.getMetrics().getRouter().setRawRowBudget(300);
+        assertThatThrownBy(() -> service.getMetrics(MetricsQueryParams.builder()
+                .eventName("purchase").from(dayStart + 1800).to(dayStart + 5400).groupBy("hourly")
+                .tag("flash_sale,homepage").tagMatch("all").build()))
+                .isInstanceOf(MetricsService.QueryBudgetExceededException.class)
+                .hasMessageContaining("single tag");
+        verify(rawRepository, times(1)).scanDay(any(), any(), any(), anyLong(), anyLong(), anyLong(), anyBoolean());
+
+        MetricsResponse unknown = service.getMetrics(MetricsQueryParams.builder()
+                .eventName("purchase").from(dayStart + 1800).to(dayStart + 5400).groupBy("hourly")
+                .tag("flash_sale,homepage,unknown").tagMatch("all").build());
+        assertThat(unknown.getTotalCount()).isZero();
+    }
+
+    @Test
+    @DisplayName("Tag filters the sources cannot serve are rejected before querying")
+    void rejectsUnsupportedTagQueries() {
+        MetricsService service = newService();
+        MetricsQueryParams.MetricsQueryParamsBuilder base = MetricsQueryParams.builder()
+                .eventName("purchase").from(1771113600L).to(1771200000L);
+
+        assertThatThrownBy(() -> service.getMetrics(base.tag("flash_sale").build()))
+                .isInstanceOf(MetricsService.UnsupportedQueryException.class)
+                .hasMessageContaining("tag rollup");
+
+        appProperties.getMetrics().setSource(AppProperties.MetricsSource.ROLLUP);
+        assertThatThrownBy(() -> service.getMetrics(base.tag(null).tagMatch("any").build()))
+                .isInstanceOf(MetricsService.UnsupportedQueryException.class)
+                .hasMessageContaining("tag_match requires tag");
+        assertThatThrownBy(() -> service.getMetrics(base.tag("flash_sale").tagMatch(null).splitBy("channel").build()))
+                .isInstanceOf(MetricsService.UnsupportedQueryException.class)
+                .hasMessageContaining("split_by");
+        assertThatThrownBy(() -> service.getMetrics(base.splitBy(null).groupBy("minute").build()))
+                .isInstanceOf(MetricsService.UnsupportedQueryException.class)
+                .hasMessageContaining("group_by");
+        assertThatThrownBy(() -> service.getMetrics(base.groupBy("hourly").tag("a,b,c,d,e,f,g,h,i,j,k").build()))
+                .isInstanceOf(MetricsService.UnsupportedQueryException.class)
+                .hasMessageContaining("at most");
+
+        verifyNoInteractions(metricsRepository, tagRepository, rawRepository);
+    }
+
+    @Test
+    @DisplayName("MV hours are topped up with hot window cells until the next refresh completes")
+    void mergesHotWindowUntilRefresh() {
+        appProperties.getMetrics().getCache().setEnabled(false);
+        appProperties.getMetrics().getHotWindow().setEnabled(true);
+        HotWindowMetrics hotWindow = new HotWindowMetrics(appProperties, registry);
+        MetricsService service = newService(hotWindow);
+        long hour = Instant.now().getEpochSecond() / 3600 * 3600;
+        long from = hour - 3600;
+        long to = hour + 3600;
+        SeriesSelection selection = new SeriesSelection(Map.of(1, "purchase"), null);
+        when(metricsRepository.resolveSelection(List.of("purchase"), null)).thenReturn(selection);
+        emitCells(selection, RollupResolution.HOUR, from, to, new MetricsCell(1, 0, from, 10, 4, null));
+        MetricsQueryParams query = MetricsQueryParams.builder()
+                .eventName("purchase").from(from).to(to).groupBy("hourly").build();
+
+        hotWindow.recordAfterCommit(List.of(event("user_1", hour), event("user_2", hour + 61),
+                event("user_1", hour + 62), event("user_9", from - 3 * 3600)));
+        MetricsResponse merged = service.getMetrics(query);
+        HotWindowMetrics.Refresh refresh = hotWindow.beginRefresh();
+        hotWindow.recordAfterCommit(List.of(event("user_3", hour)));
+        long duringRefresh = service.getMetrics(query).getTotalCount();
+        hotWindow.completeRefresh(refresh);
+        long afterRefresh = service.getMetrics(query).getTotalCount();
+
+        assertThat(merged.getTotalCount()).isEqualTo(13);
+        assertThat(merged.getUniqueUserCount()).isEqualTo(6);
+        assertThat(merged.getBreakdowns()).extracting(MetricsResponse.TimeBucket::getTotalCount)
+                .containsExactly(10L, 3L);
+        assertThat(duringRefresh).isEqualTo(14);
+        assertThat(afterRefresh).isEqualTo(11);
+        verify(metricsRepository, never()).queryTotals(any(), anyLong(), anyLong(), any());
+    }
+
+    @Test
+    @DisplayName("Whole minutes after the last refresh are read from the hot window instead of raw partitions")
+    void servesTailFromHotWindow() {
+        appProperties.getMetrics().getCache().setEnabled(false);
+        appProperties.getMetrics().getRouter().setEnabled(true);
+        appProperties.getMetrics().getHotWindow().setEnabled(true);
+        HotWindowMetrics hotWindow = new HotWindowMetrics(appProperties, registry);
+        MetricsService service = newService(hotWindow);
+        SeriesSelection selection = new SeriesSelection(Map.of(1, "purchase"), null);
+        when(metricsRepository.resolveSelection(List.of("purchase"), null)).thenReturn(selection);
+        hotWindow.completeRefresh(hotWindow.beginRefresh());
+        long hotFrom = hotWindow.hotFrom();
+        hotWindow.recordAfterCommit(List.of(event("user_1", hotFrom), event("user_2", hotFrom + 60),
+                event("user_1", hotFrom + 125)));
+
+        MetricsResponse response = service.getMetrics(MetricsQueryParams.builder()
+                .eventName("purchase").from(hotFrom).to(hotFrom + 180).groupBy("minute").build());
+
+        assertThat(response.getTotalCount()).isEqualTo(3);
+        assertThat(response.getBreakdowns()).extracting(MetricsResponse.TimeBucket::getTotalCount)
+                .containsExactly(1L, 1L, 1L);
+        assertThat(registry.get("metrics.query.segments").tag("tier", "hot").counter().count()).isPositive();
+        verifyNoInteractions(rawRepository);
+    }
+
+    private static Event event(String userId, long timestamp) {
+        return Event.builder().eventName("purchase").channel("web").userId(userId).eventTimestamp(timestamp).build();
+    }
+
+    /** Saatlik dışındaki rollup'lar varsayılan kapalı; testler tüm katmanları kapsar. */
+    private void enableAllRollups() {
+        AppProperties.RollupProperties rollup = appProperties.getMetrics().getRollup();
+        rollup.setMinuteRetention(Duration.ofHours(48));
+        rollup.setQuarterHourRetention(Duration.ofDays(35));
+        rollup.setDailyEnabled(true);
+        rollup.setCampaignEnabled(true);
+        rollup.setTagEnabled(true);
+    }
+
+    private void disableSubHourRollups() {
+        appProperties.getMetrics().getRollup().setMinuteRetention(Duration.ZERO);
+        appProperties.getMetrics().getRollup().setQuarterHourRetention(Duration.ZERO);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void emitCells(SeriesSelection selection, RollupResolution resolution, long from, long to,
+                           MetricsCell... cells) {
+        doAnswer(invocation -> {
+            Consumer<MetricsCell> consumer = invocation.getArgument(4);
+            for (MetricsCell cell : cells) {
+                consumer.accept(cell);
+            }
+            return null;
+        }).when(metricsRepository).scanCells(eq(selection), eq(resolution), eq(from), eq(to), any(Consumer.class));
+    }
+
+    @SuppressWarnings("unchecked")
+    private void emitCampaignCells(RollupResolution resolution, MetricsCell... cells) {
+        doAnswer(invocation -> {
+            Consumer<MetricsCell> consumer = invocation.getArgument(6);
+            for (MetricsCell cell : cells) {
+                consumer.accept(cell);
+            }
+            return null;
+        }).when(campaignRepository).scanCells(eq(1), isNull(), any(), eq(resolution), anyLong(), anyLong(),
+                any(Consumer.class));
+    }
+
+    private static HyperLogLog sketch(String... users) {
+        HyperLogLog sketch = new HyperLogLog(14);
+        for (String user : users) {
+            sketch.addHash(Murmur3.hash64(user));
+        }
+        return sketch;
+    }
+}
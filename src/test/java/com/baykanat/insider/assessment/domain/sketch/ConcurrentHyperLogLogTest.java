@@ -0,0 +1,35 @@
+package com.baykanat.insider.assessment.domain.sketch;
+
+import com.baykanat.insider.assessment.domain.hash.Murmur3;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for the lock-free HyperLogLog used by the in-memory hot window.
+ *
+ * <ul>
+ *   <li>Snapshots are register-for-register identical to a sequential HyperLogLog fed the same hashes, also when
+ *   many threads add concurrently</li>
+ * </ul>
+ */
+class ConcurrentHyperLogLogTest {
+
+    @ParameterizedTest(name = "p={0}")
+    @ValueSource(ints = {4, 12, 14})
+    @DisplayName("Concurrent adds produce the same registers as a sequential sketch")
+    void concurrentAddsMatchSequentialSketch(int precision) {
+        ConcurrentHyperLogLog concurrent = new ConcurrentHyperLogLog(precision);
+        HyperLogLog sequential = new HyperLogLog(precision);
+
+        IntStream.range(0, 200_000).parallel().forEach(i -> concurrent.addHash(Murmur3.hash64("user_" + i % 50_000)));
+        IntStream.range(0, 50_000).forEach(i -> sequential.addHash(Murmur3.hash64("user_" + i)));
+
+        assertThat(concurrent.snapshot().toBytes()).isEqualTo(sequential.toBytes());
+        assertThat(concurrent.snapshot().estimate()).isEqualTo(sequential.estimate());
+    }
+}
@@ -0,0 +1,140 @@
+package com.baykanat.insider.assessment.domain.sketch;
+
+import com.baykanat.insider.assessment.domain.hash.Murmur3;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Accuracy and merge tests for the HyperLogLog sketch used by the metrics rollup.
+ *
+ * <p>Inputs are deterministic (fixed user id sequences), so the bounds below are checked against
+ * the theoretical standard error 1.04/sqrt(2^p) without flakiness:
+ * <ul>
+ *   <li>Single-sketch estimates across small, transition and large cardinalities</li>
+ *   <li>Merged hourly sketches vs. a sketch of the whole window (no double counting)</li>
+ *   <li>Sparse/dense serialization round trips and precision folding</li>
+ * </ul>
+ */
+class HyperLogLogTest {
+
+    /** Tahmin hatası sınırı: 4 standart hata. */
+    private static double tolerance(int precision) {
+        return 4 * 1.04 / Math.sqrt(1 << precision);
+    }
+
+    private static HyperLogLog sketchOf(int precision, String prefix, int from, int to) {
+        HyperLogLog sketch = new HyperLogLog(precision);
+        for (int i = from; i < to; i++) {
+            sketch.addHash(Murmur3.hash64(prefix + i));
+        }
+        return sketch;
+    }
+
+    @ParameterizedTest(name = "p={0}, n={1}")
+    @CsvSource({
+            "10, 100", "10, 5000", "10, 200000",
+            "12, 100", "12, 10000", "12, 200000",
+            "14, 10", "14, 1000", "14, 30000", "14, 500000"
+    })
+    @DisplayName("Estimate stays within 4 standard errors of the true cardinality")
+    void estimateIsWithinErrorBound(int precision, int cardinality) {
+        HyperLogLog sketch = sketchOf(precision, "user_", 0, cardinality);
+
+        double relativeError = Math.abs(sketch.estimate() - cardinality) / (double) cardinality;
+
+        assertThat(relativeError).isLessThanOrEqualTo(tolerance(precision));
+    }
+
+    @Test
+    @DisplayName("Small cardinalities are (almost) exact")
+    void smallCardinalitiesAreExact() {
+        assertThat(new HyperLogLog(14).estimate()).isZero();
+        assertThat(sketchOf(14, "user_", 0, 1).estimate()).isEqualTo(1);
+        assertThat(sketchOf(14, "user_", 0, 50).estimate()).isBetween(49L, 51L);
+    }
+
+    @Test
+    @DisplayName("Re-adding the same users does not change the estimate")
+    void duplicatesAreIgnored() {
+        HyperLogLog sketch = sketchOf(14, "user_", 0, 20000);
+        long before = sketch.estimate();
+
+        for (int round = 0; round < 5; round++) {
+            for (int i = 0; i < 20000; i++) {
+                sketch.addHash(Murmur3.hash64("user_" + i));
+            }
+        }
+
+        assertThat(sketch.estimate()).isEqualTo(before);
+    }
+
+    @Test
+    @DisplayName("Merging hourly sketches counts a user active in many hours once")
+    void mergedHoursDoNotDoubleCount() {
+        // 24 saat, her saatte aynı 1000 kullanıcının kayan bir alt kümesi: toplam 3000 tekil kullanıcı
+        HyperLogLog day = new HyperLogLog(14);
+        long sumOfHourlyUniques = 0;
+        for (int hour = 0; hour < 24; hour++) {
+            HyperLogLog hourly = sketchOf(14, "user_", hour * 83, hour * 83 + 1000);
+            sumOfHourlyUniques += hourly.estimate();
+            day.merge(HyperLogLog.fromBytes(hourly.toBytes()));
+        }
+
+        int trueUniques = 23 * 83 + 1000;
+        assertThat(sumOfHourlyUniques).isGreaterThan(20_000);
+        assertThat(Math.abs(day.estimate() - trueUniques) / (double) trueUniques)
+                .isLessThanOrEqualTo(tolerance(14));
+    }
+
+    @Test
+    @DisplayName("Merge of two sketches equals the sketch of the union")
+    void mergeEqualsUnion() {
+        HyperLogLog left = sketchOf(12, "user_", 0, 60000);
+        HyperLogLog right = sketchOf(12, "user_", 30000, 90000);
+        HyperLogLog union = sketchOf(12, "user_", 0, 90000);
+
+        assertThat(left.merge(right).toBytes()).isEqualTo(union.toBytes());
+    }
+
+    @Test
+    @DisplayName("Sketches of different precision merge by folding to the lower precision")
+    void mergeFoldsToLowerPrecision() {
+        HyperLogLog fine = sketchOf(14, "user_", 0, 50000);
+        HyperLogLog coarse = sketchOf(12, "user_", 25000, 90000);
+        HyperLogLog union = sketchOf(12, "user_", 0, 90000);
+
+        HyperLogLog merged = fine.merge(coarse);
+
+        assertThat(merged.getPrecision()).isEqualTo(12);
+        assertThat(merged.toBytes()).isEqualTo(union.toBytes());
+    }
+
+    @Test
+    @DisplayName("Sparse and dense encodings round-trip and sparse stays small")
+    void serializationRoundTrip() {
+        HyperLogLog sparse = sketchOf(14, "user_", 0, 100);
+        HyperLogLog dense = sketchOf(14, "user_", 0, 100000);
+
+        byte[] sparseBytes = sparse.toBytes();
+        byte[] denseBytes = dense.toBytes();
+
+        assertThat(sparseBytes.length).isLessThan(400);
+        assertThat(denseBytes.length).isEqualTo(2 + (1 << 14));
+        assertThat(HyperLogLog.fromBytes(sparseBytes).toBytes()).isEqualTo(sparseBytes);
+        assertThat(HyperLogLog.fromBytes(denseBytes).estimate()).isEqualTo(dense.estimate());
+    }
+
+    @Test
+    @DisplayName("Invalid precision and corrupt payloads are rejected")
+    void invalidInputIsRejected() {
+        assertThatThrownBy(() -> new HyperLogLog(3)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new HyperLogLog(19)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> HyperLogLog.fromBytes(new byte[]{9, 14})).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> HyperLogLog.fromBytes(new byte[]{1, 14, 0})).isInstanceOf(IllegalArgumentException.class);
+    }
+}
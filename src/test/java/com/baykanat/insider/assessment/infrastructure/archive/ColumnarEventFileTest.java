@@ -0,0 +1,127 @@
+package com.baykanat.insider.assessment.infrastructure.archive;
+
+import com.baykanat.insider.assessment.infrastructure.archive.ColumnarEventReader.RowGroup;
+import com.baykanat.insider.assessment.infrastructure.archive.ColumnarEventWriter.RowGroupMeta;
+import com.baykanat.insider.assessment.infrastructure.archive.ColumnarFormat.Column;
+import com.baykanat.insider.assessment.infrastructure.persistence.EventJdbcRepository.EventRow;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Unit tests for the columnar archive file format (ColumnarEventWriter / ColumnarEventReader).
+ *
+ * <p>Files are written to a temporary directory with a small row group size:
+ * <ul>
+ *   <li>Every column round-trips, including null strings, empty ids and multi-byte UTF-8</li>
+ *   <li>Row groups carry min/max statistics usable for pruning</li>
+ *   <li>Only the requested columns are decoded</li>
+ *   <li>Files without a valid trailer are rejected</li>
+ * </ul>
+ */
+class ColumnarEventFileTest {
+
+    private static final long BASE_TS = 1771113600L;
+
+    @TempDir
+    Path dir;
+
+    private static List<EventRow> rows(int count) {
+        List<EventRow> rows = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int eventNameId = 1 + i / 40;
+            rows.add(new EventRow(eventNameId, i % 3, i % 5 == 0 ? 0 : 7, "user_" + (i % 17),
+                    BASE_TS + i * 13L, i % 2 == 0 ? "[\"çağrı\",\"a\"]" : null, i % 4 == 0 ? "{\"k\":1}" : null,
+                    UUID.nameUUIDFromBytes(("key" + i).getBytes())));
+        }
+        return rows;
+    }
+
+    private Path write(List<EventRow> rows, int rowGroupSize) throws IOException {
+        Path file = dir.resolve("events_2026_02_15.evcol");
+        try (ColumnarEventWriter writer = new ColumnarEventWriter(file, rowGroupSize)) {
+            for (EventRow row : rows) {
+                writer.append(row);
+            }
+            assertThat(writer.rows()).isEqualTo(rows.size());
+        }
+        return file;
+    }
+
+    @Test
+    @DisplayName("All columns round-trip across row groups")
+    void roundTrip() throws IOException {
+        List<EventRow> expected = rows(250);
+        Path file = write(expected, 64);
+
+        List<EventRow> actual = new ArrayList<>();
+        try (ColumnarEventReader reader = new ColumnarEventReader(file)) {
+            assertThat(reader.rowGroups()).extracting(RowGroupMeta::rows).containsExactly(64, 64, 64, 58);
+            for (RowGroupMeta meta : reader.rowGroups()) {
+                RowGroup group = reader.read(meta, EnumSet.allOf(Column.class));
+                for (int i = 0; i < group.rows; i++) {
+                    actual.add(new EventRow(group.eventNameIds[i], group.channelIds[i], group.campaignIds[i],
+                            group.userIds[i], group.timestamps[i], group.tags[i], group.metadata[i], group.keys[i]));
+                }
+            }
+        }
+        assertThat(actual).isEqualTo(expected);
+    }
+
+    @Test
+    @DisplayName("Row group statistics allow pruning by event name and timestamp")
+    void rowGroupStatistics() throws IOException {
+        Path file = write(rows(250), 64);
+
+        try (ColumnarEventReader reader = new ColumnarEventReader(file)) {
+            RowGroupMeta first = reader.rowGroups().get(0);
+            assertThat(first.mins()[Column.EVENT_NAME_ID.ordinal()]).isEqualTo(1);
+            assertThat(first.maxs()[Column.EVENT_NAME_ID.ordinal()]).isEqualTo(2);
+            assertThat(first.mins()[Column.EVENT_TIMESTAMP.ordinal()]).isEqualTo(BASE_TS);
+            assertThat(first.maxs()[Column.EVENT_TIMESTAMP.ordinal()]).isEqualTo(BASE_TS + 63 * 13L);
+            assertThat(first.overlaps(Column.EVENT_NAME_ID, 5, 5)).isFalse();
+            assertThat(reader.rowGroups().stream().filter(meta -> meta.overlaps(Column.EVENT_NAME_ID, 5, 5)))
+                    .hasSize(2);
+        }
+    }
+
+    @Test
+    @DisplayName("Only requested columns are decoded")
+    void columnPruning() throws IOException {
+        Path file = write(rows(10), 64);
+
+        try (ColumnarEventReader reader = new ColumnarEventReader(file)) {
+            RowGroup group = reader.read(reader.rowGroups().get(0), EnumSet.of(Column.EVENT_TIMESTAMP));
+            assertThat(group.timestamps).hasSize(10);
+            assertThat(group.userIds).isNull();
+            assertThat(group.tags).isNull();
+            assertThat(group.keys).isNull();
+        }
+    }
+
+    @Test
+    @DisplayName("An empty file has no row groups; a truncated file is rejected")
+    void emptyAndTruncatedFiles() throws IOException {
+        Path file = write(List.of(), 64);
+        try (ColumnarEventReader reader = new ColumnarEventReader(file)) {
+            assertThat(reader.rowGroups()).isEmpty();
+        }
+
+        Path truncated = dir.resolve("truncated.evcol");
+        byte[] bytes = Files.readAllBytes(write(rows(10), 64));
+        Files.write(truncated, Arrays.copyOf(bytes, bytes.length - 3));
+        assertThatThrownBy(() -> new ColumnarEventReader(truncated)).isInstanceOf(IOException.class);
+    }
+}
@@ -0,0 +1,145 @@
+package com.baykanat.insider.assessment.infrastructure.archive;
+
+import com.baykanat.insider.assessment.config.AppProperties;
+import com.baykanat.insider.assessment.infrastructure.persistence.EventJdbcRepository;
+import com.baykanat.insider.assessment.infrastructure.persistence.EventJdbcRepository.EventRow;
+import com.baykanat.insider.assessment.infrastructure.persistence.PartitionJdbcRepository.PartitionInfo;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for EventArchiver's write path and archive catalog.
+ *
+ * <p>The repository is mocked; files are written to a temporary directory:
+ * <ul>
+ *   <li>A day is archived only when the written rows match the count of the same read snapshot</li>
+ *   <li>Each write uses its own temp file; temp files left by interrupted runs are removed and the moved file's
+ *   footer carries the snapshot's row count</li>
+ *   <li>The catalog is cached between refreshes; files added by another instance appear after catalog-refresh</li>
+ *   <li>Days archived by this instance appear in the catalog immediately</li>
+ * </ul>
+ */
+@ExtendWith(MockitoExtension.class)
+class EventArchiverTest {
+
+    private static final LocalDate DAY = LocalDate.of(2026, 2, 15);
+
+    @TempDir
+    Path dir;
+
+    @Mock
+    private EventJdbcRepository eventRepository;
+
+    private AppProperties appProperties;
+
+    @BeforeEach
+    void setUp() {
+        appProperties = new AppProperties();
+        appProperties.getArchive().setDirectory(dir.toString());
+        appProperties.getArchive().setCatalogRefresh(Duration.ofHours(1));
+    }
+
+    @Test
+    @DisplayName("Day is archived when the written rows match the snapshot count")
+    void archivesMatchingDay() {
+        stubStream(3, 3);
+        EventArchiver archiver = new EventArchiver(eventRepository, appProperties);
+
+        assertThat(archiver.archive(partition())).isTrue();
+
+        assertThat(Files.exists(archiver.fileFor(DAY))).isTrue();
+        assertThat(archiver.archivedDays()).containsExactly(DAY);
+    }
+
+    @Test
+    @DisplayName("Day is not archived when the written rows differ from the snapshot count")
+    void skipsMismatchedDay() throws Exception {
+        stubStream(2, 3);
+        EventArchiver archiver = new EventArchiver(eventRepository, appProperties);
+
+        assertThat(archiver.archive(partition())).isFalse();
+
+        try (var files = Files.list(dir)) {
+            assertThat(files).isEmpty();
+        }
+        assertThat(archiver.archivedDays()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Stale temp files of the day are removed and the archived footer matches the snapshot")
+    void replacesStaleTempFilesAndVerifiesFooter() throws Exception {
+        Path stale = dir.resolve("events_2026_02_15" + EventArchiver.FILE_SUFFIX + "." + UUID.randomUUID() + ".tmp");
+        Files.writeString(stale, "partial");
+        Path otherDay = dir.resolve("events_2026_02_14" + EventArchiver.FILE_SUFFIX + "." + UUID.randomUUID() + ".tmp");
+        Files.writeString(otherDay, "partial");
+        stubStream(3, 3);
+        EventArchiver archiver = new EventArchiver(eventRepository, appProperties);
+
+        assertThat(archiver.archive(partition())).isTrue();
+
+        assertThat(Files.exists(stale)).isFalse();
+        assertThat(Files.exists(otherDay)).isTrue();
+        try (ColumnarEventReader reader = new ColumnarEventReader(archiver.fileFor(DAY))) {
+            assertThat(reader.rows()).isEqualTo(3);
+        }
+    }
+
+    @Test
+    @DisplayName("Catalog is cached until catalog-refresh; files from other instances appear after it")
+    void catalogIsCached() throws Exception {
+        EventArchiver archiver = new EventArchiver(eventRepository, appProperties);
+        assertThat(archiver.archivedDays()).isEmpty();
+
+        Files.createFile(dir.resolve("events_2026_02_14" + EventArchiver.FILE_SUFFIX));
+        assertThat(archiver.archivedDays()).isEmpty();
+
+        appProperties.getArchive().setCatalogRefresh(Duration.ZERO);
+        assertThat(archiver.archivedDays()).containsExactly(DAY.minusDays(1));
+    }
+
+    @Test
+    @DisplayName("Days archived by this instance are visible immediately")
+    void ownArchiveRefreshesCatalog() throws Exception {
+        EventArchiver archiver = new EventArchiver(eventRepository, appProperties);
+        assertThat(archiver.archivedDays()).isEmpty();
+        Files.createFile(dir.resolve("events_2026_02_14" + EventArchiver.FILE_SUFFIX));
+        stubStream(1, 1);
+
+        assertThat(archiver.archive(partition())).isTrue();
+
+        assertThat(archiver.archivedDays()).containsExactly(DAY.minusDays(1), DAY);
+        assertThat(archiver.coverageEnd()).isEqualTo(DAY.plusDays(1).atStartOfDay(ZoneOffset.UTC).toEpochSecond());
+    }
+
+    private void stubStream(int rows, long snapshotCount) {
+        when(eventRepository.streamDay(eq(DAY), any())).thenAnswer(invocation -> {
+            Consumer<EventRow> handler = invocation.getArgument(1);
+            for (int i = 0; i < rows; i++) {
+                handler.accept(new EventRow(1, 0, 0, "user_" + i, 1771113600L + i, null, null, UUID.randomUUID()));
+            }
+            return snapshotCount;
+        });
+    }
+
+    private static PartitionInfo partition() {
+        return new PartitionInfo("events_2026_02_15", DAY, DAY.plusDays(1), 0, false);
+    }
+}
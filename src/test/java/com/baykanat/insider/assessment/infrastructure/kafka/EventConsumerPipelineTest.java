@@ -0,0 +1,244 @@
+package com.baykanat.insider.assessment.infrastructure.kafka;
+
+import com.baykanat.insider.assessment.api.dto.EventRequest;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.awaitility.Awaitility.await;
+
+/**
+ * Unit tests for EventConsumerPipeline.
+ *
+ * <p>Stages are in-memory fakes; the stage threads are real:
+ * <ul>
+ *   <li>Polls are acknowledged in submission order</li>
+ *   <li>A key still in flight is not persisted twice by a later poll and is counted as a duplicate</li>
+ *   <li>A stage failure discards unacknowledged polls and returns their first offsets for rewinding</li>
+ *   <li>Recovery fails hard, keeping the failure and in-flight keys, while a stage has not drained</li>
+ *   <li>Stage busy time and queue depth are published as metrics</li>
+ * </ul>
+ */
+class EventConsumerPipelineTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final FakeStages stages = new FakeStages();
+    private final List<Long> acknowledged = Collections.synchronizedList(new ArrayList<>());
+    private EventConsumerPipeline pipeline;
+
+    @AfterEach
+    void tearDown() {
+        if (pipeline != null) {
+            pipeline.close();
+        }
+    }
+
+    private EventConsumerPipeline start() {
+        pipeline = new EventConsumerPipeline("test-pipeline", stages, 2, registry);
+        return pipeline;
+    }
+
+    private static ConsumerRecord<String, Object> record(int partition, long offset, String userId) {
+        EventRequest event = EventRequest.builder()
+                .eventName("product_view")
+                .userId(userId)
+                .timestamp(1771156800L)
+                .build();
+        return new ConsumerRecord<>("events-ingestion", partition, offset, userId, event);
+    }
+
+    /** Poll'u ilk kaydın offset'iyle ack listesine yazan Acknowledgment ile verir. */
+    @SafeVarargs
+    private void submit(ConsumerRecord<String, Object>... records) throws InterruptedException {
+        long id = records[0].offset();
+        pipeline.submit(List.of(records), () -> acknowledged.add(id));
+    }
+
+    @Test
+    @DisplayName("Polls are acknowledged in submission order")
+    void acknowledgesInOrder() throws Exception {
+        stages.slowFirstPersist = new CountDownLatch(1);
+        stages.deduped = new CountDownLatch(3);
+        start();
+
+        submit(record(0, 1, "user_1"));
+        submit(record(0, 2, "user_2"));
+        submit(record(1, 3, "user_3"));
+        assertThat(stages.deduped.await(5, TimeUnit.SECONDS)).isTrue();
+        stages.slowFirstPersist.countDown();
+
+        assertThat(pipeline.awaitIdle(TIMEOUT)).isTrue();
+        assertThat(acknowledged).containsExactly(1L, 2L, 3L);
+        assertThat(stages.persisted).hasSize(3);
+    }
+
+    @Test
+    @DisplayName("A key in flight is not persisted again by a later poll")
+    void deduplicatesInFlightKeys() throws Exception {
+        stages.slowFirstPersist = new CountDownLatch(1);
+        stages.deduped = new CountDownLatch(2);
+        start();
+
+        submit(record(0, 1, "user_1"));
+        submit(record(0, 2, "user_1"));
+        // İkinci poll, ilki hâlâ persist'te beklerken dedup'tan geçer
+        assertThat(stages.deduped.await(5, TimeUnit.SECONDS)).isTrue();
+        stages.slowFirstPersist.countDown();
+
+        assertThat(pipeline.awaitIdle(TIMEOUT)).isTrue();
+        assertThat(acknowledged).containsExactly(1L, 2L);
+        assertThat(stages.persisted).containsExactly(FakeStages.key("user_1"));
+        assertThat(stages.duplicates).hasValue(1);
+    }
+
+    @Test
+    @DisplayName("A failed stage discards unacknowledged polls and reports their offsets")
+    void failureRewindsUnacknowledgedPolls() throws Exception {
+        stages.failingUser = "user_2";
+        start();
+
+        submit(record(0, 1, "user_1"));
+        assertThat(pipeline.awaitIdle(TIMEOUT)).isTrue();
+        submit(record(0, 5, "user_2"), record(1, 7, "user_3"));
+        submit(record(0, 6, "user_4"), record(2, 9, "user_5"));
+
+        assertThat(pipeline.awaitIdle(TIMEOUT)).isTrue();
+        assertThat(pipeline.hasFailed()).isTrue();
+        assertThat(acknowledged).containsExactly(1L);
+
+        EventConsumerPipeline.Recovery recovery = pipeline.recover(TIMEOUT);
+
+        assertThat(recovery.failure()).hasMessage("db down");
+        assertThat(recovery.offsets()).containsOnly(
+                Map.entry(new TopicPartition("events-ingestion", 0), 5L),
+                Map.entry(new TopicPartition("events-ingestion", 1), 7L),
+                Map.entry(new TopicPartition("events-ingestion", 2), 9L));
+        assertThat(pipeline.hasFailed()).isFalse();
+
+        stages.failingUser = null;
+        submit(record(0, 5, "user_2"));
+        assertThat(pipeline.awaitIdle(TIMEOUT)).isTrue();
+        assertThat(acknowledged).containsExactly(1L, 5L);
+    }
+
+    @Test
+    @DisplayName("Recovery fails without releasing in-flight state while a stage is still busy")
+    void recoveryFailsWhileStageBusy() throws Exception {
+        stages.slowFirstPersist = new CountDownLatch(1);
+        start();
+
+        submit(record(0, 1, "user_1"));
+        // Çözülemeyen değer decode aşamasını düşürür; ilk poll persist'te beklemeye devam eder
+        pipeline.submit(List.of(new ConsumerRecord<>("events-ingestion", 0, 2L, "bad", "not-an-event")),
+                () -> acknowledged.add(2L));
+        await().atMost(TIMEOUT).until(pipeline::hasFailed);
+
+        assertThatThrownBy(() -> pipeline.recover(Duration.ofMillis(100)))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("did not drain");
+        assertThat(pipeline.hasFailed()).isTrue();
+
+        stages.slowFirstPersist.countDown();
+        EventConsumerPipeline.Recovery recovery = pipeline.recover(TIMEOUT);
+
+        assertThat(recovery.failure()).isInstanceOf(ClassCastException.class);
+        assertThat(recovery.offsets()).containsOnly(Map.entry(new TopicPartition("events-ingestion", 0), 2L));
+        assertThat(acknowledged).containsExactly(1L);
+        assertThat(stages.persisted).containsExactly(FakeStages.key("user_1"));
+        assertThat(pipeline.hasFailed()).isFalse();
+    }
+
+    @Test
+    @DisplayName("Stage busy time and queue depth are registered per stage")
+    void registersStageMetrics() throws Exception {
+        start();
+
+        submit(record(0, 1, "user_1"));
+        assertThat(pipeline.awaitIdle(TIMEOUT)).isTrue();
+
+        for (String stage : List.of("decode", "dedup", "persist")) {
+            assertThat(registry.get("kafka.consumer.pipeline.stage").tag("stage", stage).timer().count())
+                    .isEqualTo(1);
+            assertThat(registry.get("kafka.consumer.pipeline.queue.depth").tag("stage", stage).gauge().value())
+                    .isZero();
+        }
+    }
+
+    /** Key = user_id'den türetilir; persist edilen key'leri sırayla tutar. */
+    private static final class FakeStages implements EventConsumerPipeline.Stages {
+        private final List<UUID> persisted = Collections.synchronizedList(new ArrayList<>());
+        private final AtomicInteger duplicates = new AtomicInteger();
+        private volatile CountDownLatch slowFirstPersist;
+        private volatile CountDownLatch deduped = new CountDownLatch(0);
+        private volatile String failingUser;
+
+        static UUID key(String userId) {
+            return UUID.nameUUIDFromBytes(userId.getBytes());
+        }
+
+        @Override
+        public Map<Integer, Map<UUID, EventRequest>> decode(List<ConsumerRecord<String, Object>> records) {
+            Map<Integer, Map<UUID, EventRequest>> decoded = new LinkedHashMap<>();
+            for (ConsumerRecord<String, Object> record : records) {
+                EventRequest event = (EventRequest) record.value();
+                decoded.computeIfAbsent(record.partition(), p -> new LinkedHashMap<>())
+                        .put(key(event.getUserId()), event);
+            }
+            return decoded;
+        }
+
+        @Override
+        public Set<UUID> findExistingKeys(int partition, Collection<UUID> keys) {
+            deduped.countDown();
+            return Set.of();
+        }
+
+        @Override
+        public void countDuplicates(int partition, int count) {
+            duplicates.addAndGet(count);
+        }
+
+        @Override
+        public int persist(Map<Integer, Map<UUID, EventRequest>> newEvents, long receivedNanos) {
+            CountDownLatch latch = slowFirstPersist;
+            if (latch != null) {
+                try {
+                    latch.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            int inserted = 0;
+            for (Map<UUID, EventRequest> events : newEvents.values()) {
+                for (EventRequest event : events.values()) {
+                    if (event.getUserId().equals(failingUser)) {
+                        throw new IllegalStateException("db down");
+                    }
+                }
+                persisted.addAll(events.keySet());
+                inserted += events.size();
+            }
+            return inserted;
+        }
+    }
+}
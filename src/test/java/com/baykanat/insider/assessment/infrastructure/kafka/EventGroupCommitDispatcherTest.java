@@ -0,0 +1,159 @@
+package com.baykanat.insider.assessment.infrastructure.kafka;
+
+import com.baykanat.insider.assessment.api.dto.EventRequest;
+import com.baykanat.insider.assessment.config.AppProperties;
+import com.baykanat.insider.assessment.infrastructure.kafka.EventKafkaProducer.ServiceUnavailableException;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for EventGroupCommitDispatcher.
+ *
+ * <p>KafkaTemplate is mocked with completed futures; the dispatcher thread is real:
+ * <ul>
+ *   <li>Concurrent requests are sent as one batch with a single flush</li>
+ *   <li>A failed send fails only its own request with 503</li>
+ *   <li>An open circuit breaker fails the batch without touching Kafka</li>
+ *   <li>Requests are rejected with 503 when the dispatcher is not running</li>
+ * </ul>
+ */
+@ExtendWith(MockitoExtension.class)
+class EventGroupCommitDispatcherTest {
+
+    @Mock
+    private KafkaTemplate<String, Object> kafkaTemplate;
+
+    private AppProperties appProperties;
+    private CircuitBreakerRegistry circuitBreakerRegistry;
+    private SimpleMeterRegistry registry;
+    private EventGroupCommitDispatcher dispatcher;
+
+    @BeforeEach
+    void setUp() {
+        appProperties = new AppProperties();
+        AppProperties.GroupCommitProperties groupCommit = appProperties.getIngestion().getGroupCommit();
+        groupCommit.setEnabled(true);
+        groupCommit.setMaxBatchSize(4);
+        groupCommit.setMaxWait(Duration.ofSeconds(5));
+        circuitBreakerRegistry = CircuitBreakerRegistry.ofDefaults();
+        registry = new SimpleMeterRegistry();
+        lenient().when(kafkaTemplate.send(anyString(), anyString(), any()))
+                .thenReturn(CompletableFuture.completedFuture(new SendResult<>(null, null)));
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (dispatcher != null) {
+            dispatcher.stop();
+        }
+    }
+
+    private EventGroupCommitDispatcher start() {
+        dispatcher = new EventGroupCommitDispatcher(kafkaTemplate, appProperties, circuitBreakerRegistry, registry);
+        dispatcher.start();
+        return dispatcher;
+    }
+
+    private static EventRequest event(String userId) {
+        return EventRequest.builder().eventName("product_view").userId(userId).timestamp(1771156800L).build();
+    }
+
+    /** Her event'i ayrı virtual thread'den gönderir; her isteğin sonucunu (null veya exception) döner. */
+    private List<Throwable> sendConcurrently(String... userIds) throws Exception {
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<Throwable>> futures = new ArrayList<>();
+            for (String userId : userIds) {
+                futures.add(executor.submit(() -> {
+                    try {
+                        dispatcher.send(event(userId));
+                        return null;
+                    } catch (Exception e) {
+                        return e;
+                    }
+                }));
+            }
+            List<Throwable> results = new ArrayList<>();
+            for (Future<Throwable> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        }
+    }
+
+    @Test
+    @DisplayName("Concurrent requests share one batch and one flush")
+    void batchesConcurrentRequests() throws Exception {
+        start();
+
+        List<Throwable> results = sendConcurrently("u1", "u2", "u3", "u4");
+
+        assertThat(results).containsOnlyNulls();
+        verify(kafkaTemplate, times(4)).send(anyString(), anyString(), any());
+        verify(kafkaTemplate, times(1)).flush();
+        assertThat(registry.get("ingestion.group_commit.batch.size").summary().max()).isEqualTo(4);
+    }
+
+    @Test
+    @DisplayName("A failed send fails only its own request")
+    void failedSendFailsOwnRequest() throws Exception {
+        when(kafkaTemplate.send(anyString(), eq("u2"), any()))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("broker down")));
+        start();
+
+        List<Throwable> results = sendConcurrently("u1", "u2", "u3", "u4");
+
+        assertThat(results).filteredOn(result -> result != null)
+                .singleElement()
+                .isInstanceOf(ServiceUnavailableException.class)
+                .extracting(Throwable::getMessage)
+                .asString()
+                .contains("broker down");
+    }
+
+    @Test
+    @DisplayName("Open circuit breaker fails the batch without sending")
+    void openCircuitBreakerSkipsKafka() throws Exception {
+        circuitBreakerRegistry.circuitBreaker("kafkaProducer").transitionToOpenState();
+        start();
+
+        List<Throwable> results = sendConcurrently("u1", "u2", "u3", "u4");
+
+        assertThat(results).allSatisfy(result -> assertThat(result).isInstanceOf(ServiceUnavailableException.class));
+        verify(kafkaTemplate, never()).send(anyString(), anyString(), any());
+    }
+
+    @Test
+    @DisplayName("Requests are rejected when the dispatcher is not running")
+    void rejectsWhenStopped() {
+        dispatcher = new EventGroupCommitDispatcher(kafkaTemplate, appProperties, circuitBreakerRegistry, registry);
+
+        assertThatThrownBy(() -> dispatcher.send(event("u1")))
+                .isInstanceOf(ServiceUnavailableException.class)
+                .satisfies(e -> assertThat(((ServiceUnavailableException) e).getRetryAfterSeconds()).isEqualTo(1));
+        assertThat(registry.get("ingestion.group_commit.rejected").counter().count()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,226 @@
+package com.baykanat.insider.assessment.infrastructure.kafka;
+
+import com.baykanat.insider.assessment.api.dto.EventRequest;
+import com.baykanat.insider.assessment.config.AppProperties;
+import com.baykanat.insider.assessment.domain.mapper.EventMapper;
+import com.baykanat.insider.assessment.domain.service.EventIngestionService;
+import com.baykanat.insider.assessment.domain.service.IdempotencyService;
+import com.baykanat.insider.assessment.domain.service.InboxDedupCache;
+import com.baykanat.insider.assessment.infrastructure.metrics.IngestionMetrics;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mapstruct.factory.Mappers;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.kafka.KafkaException;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.Acknowledgment;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for EventKafkaConsumer sub-batch processing.
+ *
+ * <p>The ingestion service is mocked; records are built directly:
+ * <ul>
+ *   <li>Partition mode: one sub-batch (and transaction) per partition</li>
+ *   <li>Key-hash mode: a user's events always land in the same sub-batch</li>
+ *   <li>The batch is acknowledged only when every sub-batch succeeds</li>
+ *   <li>Pipeline mode: the poll is persisted and acknowledged off the listener thread</li>
+ *   <li>Pipeline failure: partitions are rewound, the failure is rethrown to the container's error handler and the
+ *   rewound poll is processed synchronously</li>
+ * </ul>
+ */
+@ExtendWith(MockitoExtension.class)
+class EventKafkaConsumerTest {
+
+    @Mock
+    private EventIngestionService eventIngestionService;
+
+    @Mock
+    private KafkaTemplate<String, Object> kafkaTemplate;
+
+    @Mock
+    private InboxDedupCache inboxDedupCache;
+
+    @Mock
+    private Acknowledgment acknowledgment;
+
+    @Mock
+    private Consumer<String, Object> kafkaConsumer;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private AppProperties appProperties;
+    private EventKafkaConsumer consumer;
+
+    @BeforeEach
+    void setUp() {
+        appProperties = new AppProperties();
+        consumer = new EventKafkaConsumer(eventIngestionService, Mappers.getMapper(EventMapper.class),
+                kafkaTemplate, inboxDedupCache, appProperties, new IdempotencyService(appProperties),
+                registry, new IngestionMetrics(new SimpleMeterRegistry(), appProperties));
+    }
+
+    private static ConsumerRecord<String, Object> record(int partition, long offset, String userId) {
+        EventRequest event = EventRequest.builder()
+                .eventName("product_view")
+                .userId(userId)
+                .timestamp(1771156800L + offset)
+                .build();
+        return new ConsumerRecord<>("events-ingestion", partition, offset, userId, event);
+    }
+
+    @Test
+    @DisplayName("Partition mode - each partition is processed as its own sub-batch")
+    void partitionModeProcessesEachPartition() {
+        appProperties.getKafka().getConsumer().setParallelism(AppProperties.ConsumerParallelism.PARTITION);
+        when(eventIngestionService.processBatch(anyInt(), anyList()))
+                .thenAnswer(invocation -> invocation.<List<?>>getArgument(1).size());
+
+        consumer.consume(List.of(record(0, 1, "user_1"), record(1, 1, "user_2"), record(0, 2, "user_3")),
+                acknowledgment, null);
+
+        verify(eventIngestionService).processBatch(eq(0), argThat(events -> events.size() == 2));
+        verify(eventIngestionService).processBatch(eq(1), argThat(events -> events.size() == 1));
+        verify(acknowledgment).acknowledge();
+    }
+
+    @Test
+    @DisplayName("Key-hash mode - a user's events stay in one sub-batch of their partition")
+    @SuppressWarnings("unchecked")
+    void keyHashModeKeepsUsersTogether() {
+        appProperties.getKafka().getConsumer().setParallelism(AppProperties.ConsumerParallelism.KEY_HASH);
+        appProperties.getKafka().getConsumer().setSubBatches(4);
+        List<ConsumerRecord<String, Object>> records = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            records.add(record(0, i, "user_" + (i % 50)));
+        }
+        when(eventIngestionService.processBatch(anyInt(), anyList())).thenReturn(0);
+
+        consumer.consume(records, acknowledgment, null);
+
+        ArgumentCaptor<List<EventRequest>> captor = ArgumentCaptor.forClass(List.class);
+        verify(eventIngestionService, atLeast(2)).processBatch(eq(0), captor.capture());
+        List<List<EventRequest>> subBatches = captor.getAllValues();
+        assertThat(subBatches).hasSizeLessThanOrEqualTo(4);
+        assertThat(subBatches.stream().mapToInt(List::size).sum()).isEqualTo(200);
+        Set<String> seenUsers = new HashSet<>();
+        for (List<EventRequest> subBatch : subBatches) {
+            Set<String> users = new HashSet<>();
+            subBatch.forEach(event -> users.add(event.getUserId()));
+            assertThat(users).doesNotContainAnyElementsOf(seenUsers);
+            seenUsers.addAll(users);
+        }
+        verify(acknowledgment).acknowledge();
+    }
+
+    @Test
+    @DisplayName("A failing sub-batch fails the poll without acknowledgment after the others finish")
+    void failingSubBatchSkipsAcknowledgment() {
+        appProperties.getKafka().getConsumer().setParallelism(AppProperties.ConsumerParallelism.PARTITION);
+        when(eventIngestionService.processBatch(eq(0), anyList())).thenReturn(1);
+        when(eventIngestionService.processBatch(eq(1), anyList())).thenThrow(new IllegalStateException("db down"));
+
+        assertThatThrownBy(() -> consumer.consume(List.of(record(0, 1, "user_1"), record(1, 1, "user_2")),
+                acknowledgment, null))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("db down");
+
+        verify(eventIngestionService).processBatch(eq(0), anyList());
+        verify(acknowledgment, never()).acknowledge();
+    }
+
+    @Test
+    @DisplayName("No parallelism - partitions are processed sequentially on the listener thread")
+    void sequentialModeProcessesInOrder() {
+        when(eventIngestionService.processBatch(anyInt(), anyList())).thenReturn(1);
+
+        consumer.consume(List.of(record(2, 1, "user_1"), record(3, 1, "user_2")), acknowledgment, null);
+
+        var inOrder = inOrder(eventIngestionService);
+        inOrder.verify(eventIngestionService).processBatch(eq(2), anyList());
+        inOrder.verify(eventIngestionService).processBatch(eq(3), anyList());
+        verify(acknowledgment).acknowledge();
+    }
+
+    @Test
+    @DisplayName("Pipeline mode - poll is deduplicated, persisted and acknowledged by the pipeline")
+    void pipelineModePersistsAndAcknowledges() {
+        appProperties.getKafka().getConsumer().getPipeline().setEnabled(true);
+        when(inboxDedupCache.findExistingKeys(anyInt(), anyCollection())).thenReturn(Set.of());
+        when(eventIngestionService.persistNewEvents(anyInt(), anyMap())).thenReturn(1);
+
+        try {
+            consumer.consume(List.of(record(0, 1, "user_1"), record(1, 1, "user_2")), acknowledgment, null);
+
+            verify(acknowledgment, timeout(5000)).acknowledge();
+            verify(eventIngestionService).persistNewEvents(eq(0), anyMap());
+            verify(eventIngestionService).persistNewEvents(eq(1), anyMap());
+            verify(eventIngestionService, never()).processBatch(anyInt(), anyList());
+        } finally {
+            consumer.destroy();
+        }
+    }
+
+    @Test
+    @DisplayName("Pipeline mode - a stage failure rewinds, is rethrown and the rewound poll is processed synchronously")
+    void pipelineFailureRewindsAndReplaysSynchronously() {
+        appProperties.getKafka().getConsumer().getPipeline().setEnabled(true);
+        TopicPartition partition = new TopicPartition("events-ingestion", 0);
+        when(inboxDedupCache.findExistingKeys(anyInt(), anyCollection())).thenReturn(Set.of());
+        when(eventIngestionService.persistNewEvents(anyInt(), anyMap())).thenThrow(new IllegalStateException("db down"));
+        when(eventIngestionService.processBatch(anyInt(), anyList())).thenReturn(2);
+        when(kafkaConsumer.assignment()).thenReturn(Set.of(partition));
+
+        try {
+            consumer.consume(List.of(record(0, 1, "user_1")), acknowledgment, kafkaConsumer);
+            // Persist aşamasının süresi hata işlendikten sonra kaydedilir
+            await().atMost(Duration.ofSeconds(5)).until(() -> {
+                Timer persist = registry.find("kafka.consumer.pipeline.stage").tag("stage", "persist").timer();
+                return persist != null && persist.count() == 1;
+            });
+
+            List<ConsumerRecord<String, Object>> fetchedBeforeRewind = List.of(record(0, 2, "user_2"));
+            assertThatThrownBy(() -> consumer.consume(fetchedBeforeRewind, acknowledgment, kafkaConsumer))
+                    .isInstanceOf(KafkaException.class)
+                    .hasRootCauseMessage("db down");
+            verify(kafkaConsumer).seek(partition, 1L);
+
+            // Hata işleyicisinin bellekten yeniden denemesi: kayıtlar konumun ilerisinde, ack'siz atlanır
+            when(kafkaConsumer.position(partition)).thenReturn(1L);
+            consumer.consume(fetchedBeforeRewind, acknowledgment, kafkaConsumer);
+            verify(eventIngestionService, never()).processBatch(anyInt(), anyList());
+            verify(acknowledgment, never()).acknowledge();
+
+            // Seek sonrası çekilen poll listener thread'inde işlenir
+            when(kafkaConsumer.position(partition)).thenReturn(3L);
+            consumer.consume(List.of(record(0, 1, "user_1"), record(0, 2, "user_2")), acknowledgment, kafkaConsumer);
+            verify(eventIngestionService).processBatch(eq(0), argThat(events -> events.size() == 2));
+            verify(acknowledgment).acknowledge();
+        } finally {
+            consumer.destroy();
+        }
+    }
+}
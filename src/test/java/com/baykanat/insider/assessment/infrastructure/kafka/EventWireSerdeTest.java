@@ -0,0 +1,112 @@
+package com.baykanat.insider.assessment.infrastructure.kafka;
+
+import com.baykanat.insider.assessment.api.dto.EventRequest;
+import com.baykanat.insider.assessment.config.AppProperties;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.support.serializer.JsonDeserializer;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Unit tests for the binary event wire format and the JSON/binary serde pair.
+ *
+ * <p>Serializer and deserializer are used directly, without a broker:
+ * <ul>
+ *   <li>Binary round trip preserves every field, including null and negative values</li>
+ *   <li>The deserializer reads JSON and binary records side by side (migration)</li>
+ *   <li>Unknown fields from a newer schema are skipped; unknown versions and truncated records fail</li>
+ *   <li>Binary records are smaller than JSON and carry no type header</li>
+ * </ul>
+ */
+class EventWireSerdeTest {
+
+    private static final String TOPIC = "events-ingestion";
+
+    private EventWireDeserializer deserializer;
+
+    @BeforeEach
+    void setUp() {
+        deserializer = new EventWireDeserializer();
+        deserializer.configure(Map.of(JsonDeserializer.TRUSTED_PACKAGES, "com.baykanat.insider.assessment.*"), false);
+    }
+
+    private static EventRequest fullEvent() {
+        return EventRequest.builder()
+                .eventName("product_view")
+                .userId("user_123")
+                .timestamp(1771156800L)
+                .channel("web")
+                .campaignId("cmp_987")
+                .tags(List.of("electronics", "homepage", "ürün"))
+                .metadata(Map.of("product_id", "prod-789", "price", 129.99))
+                .build();
+    }
+
+    @Test
+    @DisplayName("Binary round trip preserves all fields")
+    void binaryRoundTrip() {
+        EventRequest minimal = EventRequest.builder().eventName("x").userId("u").timestamp(-5L).build();
+
+        assertThat(EventBinaryCodec.decode(EventBinaryCodec.encode(fullEvent()))).isEqualTo(fullEvent());
+        assertThat(EventBinaryCodec.decode(EventBinaryCodec.encode(minimal))).isEqualTo(minimal);
+    }
+
+    @Test
+    @DisplayName("Deserializer reads JSON and binary records from the same topic")
+    void readsBothFormats() {
+        RecordHeaders jsonHeaders = new RecordHeaders();
+        byte[] json = new EventWireSerializer(AppProperties.WireFormat.JSON).serialize(TOPIC, jsonHeaders, fullEvent());
+        RecordHeaders binaryHeaders = new RecordHeaders();
+        byte[] binary = new EventWireSerializer(AppProperties.WireFormat.BINARY)
+                .serialize(TOPIC, binaryHeaders, fullEvent());
+
+        assertThat(deserializer.deserialize(TOPIC, jsonHeaders, json)).isEqualTo(fullEvent());
+        assertThat(deserializer.deserialize(TOPIC, binaryHeaders, binary)).isEqualTo(fullEvent());
+        assertThat(binaryHeaders.toArray()).isEmpty();
+        assertThat(binary.length).isLessThan(json.length);
+    }
+
+    @Test
+    @DisplayName("Non-event values are still written as JSON in binary mode")
+    void nonEventValuesUseJson() {
+        byte[] bytes = new EventWireSerializer(AppProperties.WireFormat.BINARY)
+                .serialize(TOPIC, new RecordHeaders(), Map.of("reason", "dlt"));
+
+        assertThat(EventBinaryCodec.isBinary(bytes)).isFalse();
+    }
+
+    @Test
+    @DisplayName("Fields from a newer schema are skipped")
+    void unknownFieldsAreSkipped() {
+        byte[] encoded = EventBinaryCodec.encode(fullEvent());
+        byte[] extended = Arrays.copyOf(encoded, encoded.length + 5);
+        // alan 42, uzunluk 3
+        extended[encoded.length] = 42;
+        extended[encoded.length + 1] = 3;
+
+        assertThat(EventBinaryCodec.decode(extended)).isEqualTo(fullEvent());
+    }
+
+    @Test
+    @DisplayName("Unknown versions and truncated records are rejected")
+    void invalidRecordsFail() {
+        byte[] encoded = EventBinaryCodec.encode(fullEvent());
+        byte[] newerVersion = encoded.clone();
+        newerVersion[1] = 2;
+
+        assertThatThrownBy(() -> EventBinaryCodec.decode(newerVersion))
+                .isInstanceOf(SerializationException.class)
+                .hasMessageContaining("version 2");
+        assertThatThrownBy(() -> EventBinaryCodec.decode(Arrays.copyOf(encoded, encoded.length - 3)))
+                .isInstanceOf(SerializationException.class);
+    }
+}
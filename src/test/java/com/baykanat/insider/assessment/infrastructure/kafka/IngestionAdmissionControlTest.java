@@ -0,0 +1,153 @@
+package com.baykanat.insider.assessment.infrastructure.kafka;
+
+import com.baykanat.insider.assessment.config.AppProperties;
+import com.baykanat.insider.assessment.infrastructure.kafka.IngestionAdmissionControl.AdmissionRejectedException;
+import io.github.resilience4j.ratelimiter.RateLimiterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.kafka.core.KafkaAdmin;
+import org.springframework.kafka.core.KafkaTemplate;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Unit tests for IngestionAdmissionControl.
+ *
+ * <p>Lag samples are fed directly to the AIMD step; Kafka is never contacted:
+ * <ul>
+ *   <li>High lag or a full producer buffer cuts the limit multiplicatively, down to min-limit</li>
+ *   <li>Low lag raises it additively, up to max-limit</li>
+ *   <li>Requests over the limit are rejected with a Retry-After derived from the drain rate</li>
+ *   <li>Disabled control admits everything</li>
+ * </ul>
+ */
+@ExtendWith(MockitoExtension.class)
+class IngestionAdmissionControlTest {
+
+    @Mock
+    private KafkaTemplate<String, Object> kafkaTemplate;
+
+    @Mock
+    private KafkaAdmin kafkaAdmin;
+
+    private AppProperties appProperties;
+    private AppProperties.AdmissionProperties admission;
+    private SimpleMeterRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        appProperties = new AppProperties();
+        admission = appProperties.getIngestion().getAdmission();
+        admission.setEnabled(true);
+        admission.setMaxLimit(10_000);
+        admission.setMinLimit(1_000);
+        admission.setLagHigh(500_000);
+        admission.setLagLow(100_000);
+        admission.setAdditiveIncrease(1_000);
+        admission.setDecreaseFactor(0.5);
+        admission.setSampleRate(5_000);
+        admission.setMaxRetryAfter(Duration.ofSeconds(60));
+        registry = new SimpleMeterRegistry();
+    }
+
+    private IngestionAdmissionControl control() {
+        return new IngestionAdmissionControl(kafkaTemplate, kafkaAdmin, appProperties, RateLimiterRegistry.ofDefaults(),
+                registry, "event-ingestion-group");
+    }
+
+    @Test
+    @DisplayName("High lag halves the limit on every sample but never below min-limit")
+    void highLagDecreasesMultiplicatively() {
+        IngestionAdmissionControl control = control();
+
+        control.update(600_000, 0, 0.1);
+        assertThat(control.getLimit()).isEqualTo(5_000);
+        control.update(600_000, 0, 0.1);
+        control.update(600_000, 0, 0.1);
+        control.update(600_000, 0, 0.1);
+
+        assertThat(control.getLimit()).isEqualTo(1_000);
+        assertThat(registry.get("ingestion.admission.limit").gauge().value()).isEqualTo(1_000);
+    }
+
+    @Test
+    @DisplayName("A full producer buffer decreases the limit even when lag is low")
+    void fullBufferDecreases() {
+        IngestionAdmissionControl control = control();
+
+        control.update(0, 0, 0.95);
+
+        assertThat(control.getLimit()).isEqualTo(5_000);
+    }
+
+    @Test
+    @DisplayName("Low lag recovers the limit additively up to max-limit; lag between thresholds holds it")
+    void lowLagIncreasesAdditively() {
+        IngestionAdmissionControl control = control();
+        control.update(600_000, 0, 0);
+
+        control.update(200_000, 0, 0);
+        assertThat(control.getLimit()).isEqualTo(5_000);
+        control.update(50_000, 0, 0);
+        assertThat(control.getLimit()).isEqualTo(6_000);
+        for (int i = 0; i < 10; i++) {
+            control.update(50_000, 0, 0);
+        }
+
+        assertThat(control.getLimit()).isEqualTo(10_000);
+    }
+
+    @Test
+    @DisplayName("Retry-After is the time for lag to drain to lag-low at the observed commit rate")
+    void retryAfterFollowsDrainRate() {
+        IngestionAdmissionControl control = control();
+
+        control.update(600_000, 1_000_000, 0);
+        assertThat(control.getRetryAfterSeconds()).isEqualTo(60);
+
+        // 5 sn'de 100K offset commit → 20K/sn; 500K fazla lag → 25 sn
+        control.update(600_000, 1_100_000, 0);
+        assertThat(control.getRetryAfterSeconds()).isEqualTo(25);
+
+        control.update(10_000, 1_200_000, 0);
+        assertThat(control.getRetryAfterSeconds()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Requests beyond the per-second limit are rejected with 429 and Retry-After")
+    void rejectsOverLimit() {
+        IngestionAdmissionControl control = control();
+        // Lag eşikler arasında: limit sabit; 5 sn'de 20K commit → 4K/sn, 100K fazla lag → 25 sn
+        control.update(200_000, 1_000_000, 0);
+        control.update(200_000, 1_020_000, 0);
+
+        control.acquire(10_000);
+
+        assertThatThrownBy(() -> control.acquire(1))
+                .isInstanceOf(AdmissionRejectedException.class)
+                .satisfies(e -> assertThat(((AdmissionRejectedException) e).getRetryAfterSeconds()).isEqualTo(25));
+        assertThat(registry.get("ingestion.admission.rejected").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Disabled admission control admits every request")
+    void disabledAdmitsEverything() {
+        admission.setEnabled(false);
+        IngestionAdmissionControl control = control();
+
+        assertThatCode(() -> {
+            for (int i = 0; i < 5; i++) {
+                control.acquire(10_000);
+            }
+        }).doesNotThrowAnyException();
+    }
+}
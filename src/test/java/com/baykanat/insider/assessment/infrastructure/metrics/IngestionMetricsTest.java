@@ -0,0 +1,86 @@
+package com.baykanat.insider.assessment.infrastructure.metrics;
+
+import com.baykanat.insider.assessment.config.AppProperties;
+import com.baykanat.insider.assessment.infrastructure.metrics.IngestionMetrics.Stage;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for IngestionMetrics.
+ *
+ * <p>Meters are read back from a SimpleMeterRegistry:
+ * <ul>
+ *   <li>Partitioned stages get one timer per Kafka partition; others carry no partition tag</li>
+ *   <li>With partition tagging off all partitions share one series</li>
+ *   <li>Disabled metrics record nothing and register no meter, gauges included</li>
+ * </ul>
+ */
+class IngestionMetricsTest {
+
+    private AppProperties appProperties;
+    private SimpleMeterRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        appProperties = new AppProperties();
+        registry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    @DisplayName("Partitioned stages are tagged by partition, others are not")
+    void tagsByPartition() {
+        IngestionMetrics metrics = new IngestionMetrics(registry, appProperties);
+
+        metrics.recordNanos(Stage.INBOX_LOOKUP, 0, 1_000_000);
+        metrics.recordNanos(Stage.INBOX_LOOKUP, 3, 2_000_000);
+        metrics.recordNanos(Stage.INBOX_LOOKUP, 3, 4_000_000);
+        metrics.record(Stage.DESERIALIZE, metrics.start());
+        metrics.countDuplicates(3, 5);
+        metrics.countInserted(3, 7);
+
+        assertThat(registry.get("ingestion.inbox.lookup").tag("partition", "0").timer().count()).isEqualTo(1);
+        Timer partition3 = registry.get("ingestion.inbox.lookup").tag("partition", "3").timer();
+        assertThat(partition3.count()).isEqualTo(2);
+        assertThat(partition3.max(TimeUnit.MILLISECONDS)).isEqualTo(4);
+        assertThat(registry.get("ingestion.deserialize").timer().getId().getTag("partition")).isNull();
+        assertThat(registry.get("ingestion.duplicates").tag("partition", "3").counter().count()).isEqualTo(5);
+        assertThat(registry.get("ingestion.rows.inserted").tag("partition", "3").counter().count()).isEqualTo(7);
+    }
+
+    @Test
+    @DisplayName("Partition tagging off - all partitions share one series")
+    void partitionTagOff() {
+        appProperties.getObservability().setPartitionTag(false);
+        IngestionMetrics metrics = new IngestionMetrics(registry, appProperties);
+
+        metrics.recordNanos(Stage.EVENTS_INSERT, 0, 1_000);
+        metrics.recordNanos(Stage.EVENTS_INSERT, 5, 1_000);
+
+        assertThat(registry.get("ingestion.events.insert").timers()).hasSize(1);
+        assertThat(registry.get("ingestion.events.insert").tag("partition", "all").timer().count()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Disabled metrics record nothing and register no meters")
+    void disabledRecordsNothing() {
+        appProperties.getObservability().setEnabled(false);
+        IngestionMetrics metrics = new IngestionMetrics(registry, appProperties);
+
+        long start = metrics.start();
+        metrics.record(Stage.KEY_HASH, 1, start);
+        metrics.countDuplicates(1, 3);
+        metrics.countDltSend();
+        metrics.batchSize(500);
+        metrics.mvRefreshDuration(1_000_000);
+
+        assertThat(start).isZero();
+        assertThat(registry.getMeters()).isEmpty();
+    }
+}
@@ -0,0 +1,205 @@
+package com.baykanat.insider.assessment.integration;
+
+import com.baykanat.insider.assessment.config.AppProperties;
+import com.baykanat.insider.assessment.domain.model.Event;
+import com.baykanat.insider.assessment.infrastructure.persistence.CampaignRollupJdbcRepository;
+import com.baykanat.insider.assessment.infrastructure.persistence.CampaignRollupJdbcRepository.BucketRange;
+import com.baykanat.insider.assessment.infrastructure.persistence.CampaignRollupJdbcRepository.RankedCampaign;
+import com.baykanat.insider.assessment.infrastructure.persistence.DimensionDictionary;
+import com.baykanat.insider.assessment.infrastructure.persistence.DimensionDictionary.Dimension;
+import com.baykanat.insider.assessment.infrastructure.persistence.EventJdbcRepository;
+import com.baykanat.insider.assessment.infrastructure.persistence.MetricsCell;
+import com.baykanat.insider.assessment.infrastructure.persistence.RollupResolution;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * Integration tests for the campaign_id rollup (V13) against a real PostgreSQL container.
+ *
+ * <p>One day of events with skewed campaign shares is written through the consumer path:
+ * <ul>
+ *   <li>Top-N ranking returns the largest campaigns first, limited, with totals equal to COUNT(*) on events</li>
+ *   <li>Hourly ranges rank like the daily bucket; a channel filter ranks within that channel</li>
+ *   <li>Cells of the selected campaigns merge channels and carry user sketches close to the exact distinct count</li>
+ *   <li>Events without campaign_id are not written to the campaign rollup</li>
+ *   <li>Rebuilding the hours from events and the day from hourly rows reproduces the consumer's rows</li>
+ * </ul>
+ */
+class CampaignRollupIntegrationTest extends PostgresIntegrationTest {
+
+    private static final List<String> CAMPAIGNS = List.of("cmp_a", "cmp_a", "cmp_a", "cmp_a", "cmp_b", "cmp_b",
+            "cmp_b", "cmp_c", "cmp_c", "cmp_d");
+
+    private static JdbcTemplate jdbcTemplate;
+    private static TransactionTemplate transactionTemplate;
+    private static CampaignRollupJdbcRepository repository;
+    private static DimensionDictionary dictionary;
+    private static LocalDate today;
+    private static long from;
+    private static long to;
+
+    @BeforeAll
+    static void seed() {
+        DriverManagerDataSource dataSource = migratedDatabase(CampaignRollupIntegrationTest.class);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+
+        today = LocalDate.now(ZoneOffset.UTC);
+        from = today.atStartOfDay(ZoneOffset.UTC).toEpochSecond();
+        to = from + 86400;
+
+        List<Event> events = new ArrayList<>();
+        for (int i = 0; i < 4000; i++) {
+            events.add(Event.builder()
+                    .eventName("purchase")
+                    .channel(i % 3 == 0 ? null : (i % 2 == 0 ? "web" : "mobile_app"))
+                    .campaignId(i % 20 == 19 ? null : CAMPAIGNS.get(i % CAMPAIGNS.size()))
+                    .userId("user_" + (i % 700))
+                    .eventTimestamp(from + (i * 53L) % 86400)
+                    .eventDate(today)
+                    .idempotencyKey(UUID.randomUUID())
+                    .build());
+        }
+
+        AppProperties properties = new AppProperties();
+        dictionary = new DimensionDictionary(jdbcTemplate);
+        EventJdbcRepository eventRepository = new EventJdbcRepository(jdbcTemplate, properties, dictionary);
+        repository = new CampaignRollupJdbcRepository(jdbcTemplate, properties, dictionary);
+        transactionTemplate.executeWithoutResult(status -> {
+            eventRepository.batchInsert(events.subList(0, 2500));
+            repository.applyBatch(events.subList(0, 2500));
+        });
+        transactionTemplate.executeWithoutResult(status -> {
+            eventRepository.batchInsert(events.subList(2500, events.size()));
+            repository.applyBatch(events.subList(2500, events.size()));
+        });
+    }
+
+    private static int eventNameId() {
+        return dictionary.findId(Dimension.EVENT_NAME, "purchase");
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @EnumSource(value = RollupResolution.class, names = {"HOUR", "DAY"})
+    @DisplayName("Top campaigns come back largest first, limited, and match COUNT(*) on events")
+    void ranksTopCampaigns(RollupResolution resolution) {
+        List<RankedCampaign> top = repository.topCampaigns(eventNameId(), null,
+                List.of(new BucketRange(resolution, from, to)), 3);
+
+        Map<String, Long> exact = new HashMap<>();
+        jdbcTemplate.query("""
+                SELECT d.name, COUNT(*) AS total_count
+                FROM events e JOIN campaign_dim d ON d.id = e.campaign_id
+                GROUP BY d.name
+                """, rs -> {
+            exact.put(rs.getString("name"), rs.getLong("total_count"));
+        });
+
+        assertThat(top).extracting(RankedCampaign::name).containsExactly("cmp_a", "cmp_b", "cmp_c");
+        for (RankedCampaign campaign : top) {
+            assertThat(campaign.totalCount()).isEqualTo(exact.get(campaign.name()));
+        }
+    }
+
+    @Test
+    @DisplayName("Hourly ranges rank like the daily bucket; a channel filter ranks within the channel")
+    void combinesRangesAndFiltersChannel() {
+        List<BucketRange> split = List.of(
+                new BucketRange(RollupResolution.HOUR, from, from + 3600),
+                new BucketRange(RollupResolution.HOUR, from + 3600, to));
+        List<RankedCampaign> whole = repository.topCampaigns(eventNameId(), null,
+                List.of(new BucketRange(RollupResolution.DAY, from, to)), 10);
+        int webId = dictionary.findId(Dimension.CHANNEL, "web");
+        List<RankedCampaign> web = repository.topCampaigns(eventNameId(), webId,
+                List.of(new BucketRange(RollupResolution.DAY, from, to)), 10);
+        Long webExact = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM events WHERE campaign_id IS NOT NULL AND channel_id = ?", Long.class, webId);
+
+        assertThat(repository.topCampaigns(eventNameId(), null, split, 10)).isEqualTo(whole);
+        assertThat(web.stream().mapToLong(RankedCampaign::totalCount).sum()).isEqualTo(webExact);
+        assertThat(web.get(0).totalCount()).isLessThan(whole.get(0).totalCount());
+    }
+
+    @Test
+    @DisplayName("Cells merge channels per campaign and carry sketches close to the exact distinct count")
+    void scansCellsOfSelectedCampaigns() {
+        List<RankedCampaign> top = repository.topCampaigns(eventNameId(), null,
+                List.of(new BucketRange(RollupResolution.DAY, from, to)), 2);
+        List<MetricsCell> cells = new ArrayList<>();
+        repository.scanCells(eventNameId(), null, top.stream().map(RankedCampaign::id).toList(),
+                RollupResolution.DAY, from, to, cells::add);
+
+        assertThat(cells).hasSize(2);
+        for (MetricsCell cell : cells) {
+            RankedCampaign campaign = top.stream().filter(c -> c.id() == cell.dimensionId()).findFirst().orElseThrow();
+            Long distinct = jdbcTemplate.queryForObject(
+                    "SELECT COUNT(DISTINCT user_id) FROM events WHERE campaign_id = ?", Long.class, campaign.id());
+            assertThat(cell.bucketStart()).isEqualTo(from);
+            assertThat(cell.totalCount()).isEqualTo(campaign.totalCount());
+            assertThat(cell.users()).isNotNull();
+            assertThat((double) cell.users().estimate()).isCloseTo(distinct, within(distinct * 0.05));
+        }
+    }
+
+    @Test
+    @DisplayName("Events without campaign_id are not written to the campaign rollup")
+    void skipsEventsWithoutCampaign() {
+        Long withCampaign = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM events WHERE campaign_id IS NOT NULL", Long.class);
+        Long hourly = jdbcTemplate.queryForObject(
+                "SELECT SUM(total_count) FROM event_metrics_campaign_hourly", Long.class);
+        Long daily = jdbcTemplate.queryForObject(
+                "SELECT SUM(total_count) FROM event_metrics_campaign_daily", Long.class);
+
+        assertThat(withCampaign).isEqualTo(3800);
+        assertThat(hourly).isEqualTo(withCampaign);
+        assertThat(daily).isEqualTo(withCampaign);
+    }
+
+    @Test
+    @DisplayName("Rebuilding from events reproduces the rows written by the consumer")
+    void rebuildMatchesConsumerRows() {
+        String rows = """
+                SELECT '%s|' || event_name_id || '|' || campaign_id || '|' || channel_id || '|'
+                       || EXTRACT(EPOCH FROM bucket_start)::bigint || '|' || total_count || '|' || unique_user_count
+                FROM %s
+                """;
+        List<String> before = new ArrayList<>();
+        for (String table : repository.tables()) {
+            before.addAll(jdbcTemplate.queryForList(String.format(rows, table, table), String.class));
+        }
+
+        transactionTemplate.executeWithoutResult(status -> {
+            for (long hour = from; hour < to; hour += 3600) {
+                repository.rebuildHour(hour);
+            }
+            repository.rebuildDay(today);
+        });
+
+        List<String> after = new ArrayList<>();
+        for (String table : repository.tables()) {
+            after.addAll(jdbcTemplate.queryForList(String.format(rows, table, table), String.class));
+        }
+        assertThat(before).isNotEmpty();
+        assertThat(after).containsExactlyInAnyOrderElementsOf(before);
+        assertThat(repository.findRollupDays()).containsExactly(today);
+    }
+}
@@ -0,0 +1,154 @@
+package com.baykanat.insider.assessment.integration;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Order;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Integration tests for the online dictionary encoding migration (V11).
+ *
+ * <p>The schema is migrated to V10 and seeded with text dimensions in events and event_metrics_hourly, then migrated
+ * to V11:
+ * <ul>
+ *   <li>Every event and rollup row carries the dictionary ids of its former text values (no channel = 0 in the
+ *   rollup, NULL in events)</li>
+ *   <li>The text columns are gone and campaign_id is an integer dictionary id</li>
+ *   <li>The partitioned id indexes, the rollup primary key and the event_metrics view are valid</li>
+ *   <li>No shadow column, trigger, function or check constraint is left behind</li>
+ *   <li>The later migrations apply on top of the encoded schema</li>
+ * </ul>
+ */
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+class DictionaryEncodingMigrationIntegrationTest extends PostgresIntegrationTest {
+
+    private static final int EVENTS = 300;
+    private static final String[] NAMES = {"product_view", "add_to_cart", "purchase"};
+    private static final String[] CHANNELS = {"web", "mobile_app", null};
+
+    private static final List<String> EXPECTED = new ArrayList<>();
+
+    private static DriverManagerDataSource dataSource;
+    private static JdbcTemplate jdbcTemplate;
+
+    @BeforeAll
+    static void migrate() {
+        dataSource = emptyDatabase(DictionaryEncodingMigrationIntegrationTest.class);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        flyway(dataSource).target("10").load().migrate();
+
+        LocalDate today = LocalDate.now(ZoneOffset.UTC);
+        long timestamp = today.atStartOfDay(ZoneOffset.UTC).toEpochSecond();
+        for (int i = 0; i < EVENTS; i++) {
+            String name = NAMES[i % NAMES.length];
+            String channel = CHANNELS[i % CHANNELS.length];
+            String campaign = i % 2 == 0 ? "campaign_" + (i % 10) : null;
+            jdbcTemplate.update("""
+                    INSERT INTO events (event_name, channel, campaign_id, user_id, event_timestamp, event_date,
+                                        idempotency_key)
+                    VALUES (?, ?, ?, ?, ?, ?, gen_random_uuid())
+                    """, name, channel, campaign, "user_" + i, timestamp + i, today);
+            EXPECTED.add(name + "|" + channel + "|" + campaign);
+        }
+        Timestamp hour = Timestamp.from(today.atStartOfDay(ZoneOffset.UTC).toInstant());
+        jdbcTemplate.update("""
+                INSERT INTO event_metrics_hourly (event_name, channel, date_hour, event_date, total_count)
+                VALUES ('product_view', 'web', ?, ?, 5), ('product_view', '', ?, ?, 3)
+                """, hour, today, hour, today);
+
+        flyway(dataSource).target("11").load().migrate();
+    }
+
+    @Test
+    @Order(1)
+    @DisplayName("Event and rollup rows carry the dictionary ids of their text values")
+    void idsMatchDictionaries() {
+        assertThat(jdbcTemplate.queryForList("""
+                SELECT n.name || '|' || COALESCE(c.name, 'null') || '|' || COALESCE(cmp.name, 'null')
+                FROM events e
+                JOIN event_name_dim n ON n.id = e.event_name_id
+                LEFT JOIN channel_dim c ON c.id = e.channel_id
+                LEFT JOIN campaign_dim cmp ON cmp.id = e.campaign_id
+                """, String.class)).containsExactlyInAnyOrderElementsOf(EXPECTED);
+        assertThat(jdbcTemplate.queryForList("""
+                SELECT n.name || '|' || h.channel_id || '|' || h.total_count
+                FROM event_metrics_hourly h JOIN event_name_dim n ON n.id = h.event_name_id
+                """, String.class)).containsExactlyInAnyOrder(
+                "product_view|" + channelId("web") + "|5", "product_view|0|3");
+    }
+
+    @Test
+    @Order(2)
+    @DisplayName("Text columns are dropped and campaign_id is an integer id")
+    void textColumnsAreDropped() {
+        assertThat(jdbcTemplate.queryForList("""
+                SELECT table_name || '.' || column_name FROM information_schema.columns
+                WHERE table_name IN ('events', 'event_metrics_hourly') AND column_name IN ('event_name', 'channel')
+                """, String.class)).isEmpty();
+        assertThat(jdbcTemplate.queryForList("""
+                SELECT column_name || ':' || data_type || ':' || is_nullable FROM information_schema.columns
+                WHERE table_name = 'events' AND column_name IN ('event_name_id', 'channel_id', 'campaign_id')
+                """, String.class)).containsExactlyInAnyOrder(
+                "event_name_id:integer:NO", "channel_id:integer:YES", "campaign_id:integer:YES");
+    }
+
+    @Test
+    @Order(3)
+    @DisplayName("Id indexes, the rollup primary key and the event_metrics view are valid")
+    void indexesAndViewAreValid() {
+        assertThat(jdbcTemplate.queryForList("""
+                SELECT c.relname FROM pg_index x JOIN pg_class c ON c.oid = x.indexrelid
+                WHERE c.relname IN ('idx_events_name_date', 'idx_events_channel', 'event_metrics_hourly_pkey',
+                                    'idx_event_metrics_unique', 'idx_event_metrics_date_range')
+                  AND x.indisvalid
+                """, String.class)).containsExactlyInAnyOrder("idx_events_name_date", "idx_events_channel",
+                "event_metrics_hourly_pkey", "idx_event_metrics_unique", "idx_event_metrics_date_range");
+
+        jdbcTemplate.execute("REFRESH MATERIALIZED VIEW event_metrics");
+        assertThat(jdbcTemplate.queryForObject("SELECT SUM(total_count) FROM event_metrics", Long.class))
+                .isEqualTo(EVENTS);
+    }
+
+    @Test
+    @Order(4)
+    @DisplayName("No shadow column, trigger, function or check constraint is left behind")
+    void noShadowObjectsRemain() {
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM information_schema.columns WHERE column_name = 'campaign_id_new'",
+                Long.class)).isZero();
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM pg_trigger WHERE tgname LIKE '%v11_ids'", Long.class)).isZero();
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM pg_proc WHERE proname LIKE 'v11_%'", Long.class)).isZero();
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM pg_constraint WHERE conname = 'event_name_id_not_null'", Long.class))
+                .isZero();
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM pg_class WHERE relname = 'event_metrics_next'", Long.class)).isZero();
+    }
+
+    @Test
+    @Order(5)
+    @DisplayName("Later migrations apply on top of the encoded schema")
+    void laterMigrationsApply() {
+        flyway(dataSource).load().migrate();
+
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM events", Long.class)).isEqualTo(EVENTS);
+    }
+
+    private static int channelId(String name) {
+        return jdbcTemplate.queryForObject("SELECT id FROM channel_dim WHERE name = ?", Integer.class, name);
+    }
+}
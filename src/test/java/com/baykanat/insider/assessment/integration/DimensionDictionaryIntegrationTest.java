@@ -0,0 +1,86 @@
+package com.baykanat.insider.assessment.integration;
+
+import com.baykanat.insider.assessment.infrastructure.persistence.DimensionDictionary;
+import com.baykanat.insider.assessment.infrastructure.persistence.DimensionDictionary.Dimension;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Integration tests for the dimension dictionaries (V11) against a real PostgreSQL container.
+ *
+ * <p>Ids are resolved through DimensionDictionary as the insert path does:
+ * <ul>
+ *   <li>Unknown values are created once; later resolutions, from any instance, return the same ids</li>
+ *   <li>Ids created in a rolled-back transaction are not cached and are re-created on the next resolve</li>
+ *   <li>Lookups never create values; nulls are skipped</li>
+ * </ul>
+ */
+class DimensionDictionaryIntegrationTest extends PostgresIntegrationTest {
+
+    private static JdbcTemplate jdbcTemplate;
+    private static TransactionTemplate transactionTemplate;
+
+    @BeforeAll
+    static void migrate() {
+        DriverManagerDataSource dataSource = migratedDatabase(DimensionDictionaryIntegrationTest.class);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+    }
+
+    @Test
+    @DisplayName("Values are created once and resolve to the same ids on every instance")
+    void createsOnceAndResolvesStably() {
+        DimensionDictionary first = new DimensionDictionary(jdbcTemplate);
+        DimensionDictionary second = new DimensionDictionary(jdbcTemplate);
+
+        Map<String, Integer> created = transactionTemplate.execute(status ->
+                first.resolve(Dimension.CHANNEL, List.of("web", "mobile_app", "web")));
+        Map<String, Integer> again = transactionTemplate.execute(status ->
+                second.resolve(Dimension.CHANNEL, List.of("mobile_app", "web")));
+
+        assertThat(created).containsOnlyKeys("web", "mobile_app");
+        assertThat(again).isEqualTo(created);
+        assertThat(second.findIds(Dimension.CHANNEL, List.of("web", "mobile_app"))).isEqualTo(created);
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM channel_dim WHERE name IN ('web', 'mobile_app')", Long.class)).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Ids from a rolled-back transaction are not cached")
+    void rollbackDoesNotCache() {
+        DimensionDictionary dictionary = new DimensionDictionary(jdbcTemplate);
+
+        transactionTemplate.executeWithoutResult(status -> {
+            dictionary.resolve(Dimension.EVENT_NAME, List.of("rolled_back_event"));
+            status.setRollbackOnly();
+        });
+
+        assertThat(dictionary.findId(Dimension.EVENT_NAME, "rolled_back_event")).isNull();
+        Map<String, Integer> recreated = transactionTemplate.execute(status ->
+                dictionary.resolve(Dimension.EVENT_NAME, List.of("rolled_back_event")));
+        assertThat(dictionary.findId(Dimension.EVENT_NAME, "rolled_back_event"))
+                .isEqualTo(recreated.get("rolled_back_event"));
+    }
+
+    @Test
+    @DisplayName("Lookups skip nulls and never create values")
+    void lookupsDoNotCreate() {
+        DimensionDictionary dictionary = new DimensionDictionary(jdbcTemplate);
+
+        assertThat(dictionary.findIds(Dimension.CAMPAIGN, Arrays.asList("cmp_unknown", null))).isEmpty();
+        assertThat(dictionary.resolve(Dimension.CAMPAIGN, Arrays.asList((String) null))).isEmpty();
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM campaign_dim WHERE name = 'cmp_unknown'", Long.class)).isZero();
+    }
+}
@@ -0,0 +1,158 @@
+package com.baykanat.insider.assessment.integration;
+
+import com.baykanat.insider.assessment.config.AppProperties;
+import com.baykanat.insider.assessment.domain.model.Event;
+import com.baykanat.insider.assessment.infrastructure.persistence.DimensionDictionary;
+import com.baykanat.insider.assessment.infrastructure.persistence.EventJdbcRepository;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Integration tests comparing the two events insert modes (JDBC batch vs binary COPY).
+ *
+ * <p>Both modes run against the same Flyway schema in a real PostgreSQL container:
+ * <ul>
+ *   <li>Row contents and ON CONFLICT dedup must be identical</li>
+ *   <li>Wall-clock time per mode is logged for the 1000-event consumer batch size</li>
+ * </ul>
+ */
+class EventInsertModeIntegrationTest extends PostgresIntegrationTest {
+
+    private static final Logger log = LoggerFactory.getLogger(EventInsertModeIntegrationTest.class);
+
+    private static final int BATCH_SIZE = 1000;
+    private static final int ROUNDS = 20;
+
+    private static JdbcTemplate jdbcTemplate;
+    private static TransactionTemplate transactionTemplate;
+
+    @BeforeAll
+    static void migrate() {
+        DriverManagerDataSource dataSource = migratedDatabase(EventInsertModeIntegrationTest.class);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+    }
+
+    @BeforeEach
+    void truncate() {
+        jdbcTemplate.execute("TRUNCATE events");
+    }
+
+    @Test
+    @DisplayName("COPY mode stores the same rows as batch mode")
+    void copyModeMatchesBatchMode() {
+        List<Event> events = generateEvents(BATCH_SIZE);
+
+        insert(AppProperties.EventsInsertMode.BATCH, events);
+        List<Map<String, Object>> batchRows = snapshot();
+
+        jdbcTemplate.execute("TRUNCATE events");
+        insert(AppProperties.EventsInsertMode.COPY, events);
+        List<Map<String, Object>> copyRows = snapshot();
+
+        assertThat(copyRows).hasSize(BATCH_SIZE).isEqualTo(batchRows);
+    }
+
+    @Test
+    @DisplayName("COPY mode keeps ON CONFLICT dedup semantics")
+    void copyModeSkipsDuplicates() {
+        List<Event> events = generateEvents(BATCH_SIZE);
+
+        int first = insert(AppProperties.EventsInsertMode.COPY, events);
+        int second = insert(AppProperties.EventsInsertMode.COPY, events);
+
+        assertThat(first).isEqualTo(BATCH_SIZE);
+        assertThat(second).isZero();
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM events", Long.class)).isEqualTo(BATCH_SIZE);
+    }
+
+    @Test
+    @DisplayName("Batch vs COPY throughput comparison (logged)")
+    void compareThroughput() {
+        // Isınma: JIT ve PostgreSQL plan/cache etkisini iki mod için de eşitler
+        insert(AppProperties.EventsInsertMode.BATCH, generateEvents(BATCH_SIZE));
+        insert(AppProperties.EventsInsertMode.COPY, generateEvents(BATCH_SIZE));
+
+        long batchNanos = timeRounds(AppProperties.EventsInsertMode.BATCH);
+        long copyNanos = timeRounds(AppProperties.EventsInsertMode.COPY);
+
+        double batchRate = ROUNDS * BATCH_SIZE / (batchNanos / 1e9);
+        double copyRate = ROUNDS * BATCH_SIZE / (copyNanos / 1e9);
+        log.info("events insert: batch={} rows/s, copy={} rows/s ({}x)", Math.round(batchRate), Math.round(copyRate),
+                String.format(Locale.ROOT, "%.2f", copyRate / batchRate));
+
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM events", Long.class))
+                .isEqualTo((long) (2 * ROUNDS + 2) * BATCH_SIZE);
+    }
+
+    private long timeRounds(AppProperties.EventsInsertMode mode) {
+        long total = 0;
+        for (int i = 0; i < ROUNDS; i++) {
+            List<Event> events = generateEvents(BATCH_SIZE);
+            long start = System.nanoTime();
+            insert(mode, events);
+            total += System.nanoTime() - start;
+        }
+        return total;
+    }
+
+    private int insert(AppProperties.EventsInsertMode mode, List<Event> events) {
+        AppProperties properties = new AppProperties();
+        properties.getPersistence().setEventsInsertMode(mode);
+        EventJdbcRepository repository =
+                new EventJdbcRepository(jdbcTemplate, properties, new DimensionDictionary(jdbcTemplate));
+        List<Event> inserted = transactionTemplate.execute(status -> repository.batchInsert(events));
+        return inserted != null ? inserted.size() : 0;
+    }
+
+    private List<Map<String, Object>> snapshot() {
+        return jdbcTemplate.queryForList("""
+                SELECT n.name AS event_name, c.name AS channel, cmp.name AS campaign_id, e.user_id,
+                       e.event_timestamp, e.event_date, e.tags::text AS tags, e.metadata::text AS metadata,
+                       e.idempotency_key
+                FROM events e
+                JOIN event_name_dim n ON n.id = e.event_name_id
+                LEFT JOIN channel_dim c ON c.id = e.channel_id
+                LEFT JOIN campaign_dim cmp ON cmp.id = e.campaign_id
+                ORDER BY e.idempotency_key
+                """);
+    }
+
+    private static List<Event> generateEvents(int count) {
+        long now = Instant.now().getEpochSecond();
+        List<Event> events = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            long ts = now - i;
+            events.add(Event.builder()
+                    .eventName(i % 2 == 0 ? "product_view" : "add_to_cart")
+                    .channel(i % 3 == 0 ? null : "web")
+                    .campaignId(i % 5 == 0 ? null : "cmp_" + (i % 7))
+                    .userId("user_" + i)
+                    .eventTimestamp(ts)
+                    .eventDate(Instant.ofEpochSecond(ts).atOffset(ZoneOffset.UTC).toLocalDate())
+                    .tags(i % 4 == 0 ? null : "[\"electronics\", \"homepage\"]")
+                    .metadata(i % 4 == 0 ? null : "{\"price\": 129.99, \"product_id\": \"prod-" + i + "\"}")
+                    .idempotencyKey(UUID.randomUUID())
+                    .build());
+        }
+        return events;
+    }
+}
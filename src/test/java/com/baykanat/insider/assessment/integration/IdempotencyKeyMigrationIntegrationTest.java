@@ -0,0 +1,135 @@
+package com.baykanat.insider.assessment.integration;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Order;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Integration tests for the online hex → UUID idempotency key migration (V9).
+ *
+ * <p>The schema is migrated to V8 and seeded with hex keys in inbox and events, then migrated to V9:
+ * <ul>
+ *   <li>Every key is converted to the UUID the application generates (first 128 bits of the digest)</li>
+ *   <li>The inbox primary key and the partitioned events unique index are valid and still reject duplicates</li>
+ *   <li>No shadow column, trigger or check constraint is left behind</li>
+ *   <li>The later migrations apply on top of the converted schema</li>
+ * </ul>
+ */
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+class IdempotencyKeyMigrationIntegrationTest extends PostgresIntegrationTest {
+
+    private static final int KEYS = 500;
+
+    private static final List<UUID> EXPECTED = new ArrayList<>();
+
+    private static DriverManagerDataSource dataSource;
+    private static JdbcTemplate jdbcTemplate;
+
+    @BeforeAll
+    static void migrate() {
+        dataSource = emptyDatabase(IdempotencyKeyMigrationIntegrationTest.class);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        flyway(dataSource).target("8").load().migrate();
+
+        LocalDate today = LocalDate.now(ZoneOffset.UTC);
+        long timestamp = today.atStartOfDay(ZoneOffset.UTC).toEpochSecond();
+        for (int i = 0; i < KEYS; i++) {
+            byte[] digest = sha256("event_" + i);
+            String hex = HexFormat.of().formatHex(digest);
+            jdbcTemplate.update("INSERT INTO inbox (idempotency_key) VALUES (?)", hex);
+            jdbcTemplate.update("""
+                    INSERT INTO events (event_name, user_id, event_timestamp, event_date, idempotency_key)
+                    VALUES ('product_view', ?, ?, ?, ?)
+                    """, "user_" + i, timestamp + i, today, hex);
+            ByteBuffer buffer = ByteBuffer.wrap(digest);
+            EXPECTED.add(new UUID(buffer.getLong(), buffer.getLong()));
+        }
+
+        flyway(dataSource).target("9").load().migrate();
+    }
+
+    @Test
+    @Order(1)
+    @DisplayName("Hex keys are converted to the UUIDs the application generates")
+    void keysAreConverted() {
+        assertThat(jdbcTemplate.queryForList("SELECT idempotency_key FROM inbox", UUID.class))
+                .containsExactlyInAnyOrderElementsOf(EXPECTED);
+        assertThat(jdbcTemplate.queryForList("SELECT idempotency_key FROM events", UUID.class))
+                .containsExactlyInAnyOrderElementsOf(EXPECTED);
+        assertThat(jdbcTemplate.queryForList("""
+                SELECT data_type || ':' || is_nullable FROM information_schema.columns
+                WHERE table_name IN ('inbox', 'events') AND column_name = 'idempotency_key'
+                """, String.class)).containsOnly("uuid:NO");
+    }
+
+    @Test
+    @Order(2)
+    @DisplayName("Inbox primary key and the events unique index are valid and reject duplicates")
+    void indexesRejectDuplicates() {
+        assertThat(jdbcTemplate.queryForList("""
+                SELECT c.relname FROM pg_index x JOIN pg_class c ON c.oid = x.indexrelid
+                WHERE c.relname IN ('inbox_pkey', 'idx_events_idempotency') AND x.indisvalid AND x.indisunique
+                """, String.class)).containsExactlyInAnyOrder("inbox_pkey", "idx_events_idempotency");
+
+        int inbox = jdbcTemplate.update("INSERT INTO inbox (idempotency_key) VALUES (?) ON CONFLICT DO NOTHING",
+                EXPECTED.get(0));
+        int events = jdbcTemplate.update("""
+                INSERT INTO events (event_name, user_id, event_timestamp, event_date, idempotency_key)
+                SELECT event_name, user_id, event_timestamp, event_date, idempotency_key FROM events
+                WHERE idempotency_key = ?
+                ON CONFLICT (idempotency_key, event_date) DO NOTHING
+                """, EXPECTED.get(0));
+
+        assertThat(inbox).isZero();
+        assertThat(events).isZero();
+    }
+
+    @Test
+    @Order(3)
+    @DisplayName("No shadow column, trigger or check constraint is left behind")
+    void noShadowObjectsRemain() {
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM information_schema.columns WHERE column_name = 'idempotency_key_uuid'",
+                Long.class)).isZero();
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM pg_trigger WHERE tgname LIKE '%idempotency_key_uuid'", Long.class)).isZero();
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM pg_constraint WHERE conname = 'idempotency_key_uuid_not_null'", Long.class))
+                .isZero();
+    }
+
+    @Test
+    @Order(4)
+    @DisplayName("Later migrations apply on top of the converted schema")
+    void laterMigrationsApply() {
+        flyway(dataSource).load().migrate();
+
+        assertThat(jdbcTemplate.queryForList("SELECT idempotency_key FROM inbox_lookup", UUID.class))
+                .containsExactlyInAnyOrderElementsOf(EXPECTED);
+    }
+
+    private static byte[] sha256(String value) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.baykanat.insider.assessment.integration;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Storage benchmark for idempotency key representations: legacy VARCHAR(64) hex vs. UUID (first 128 bits).
+ *
+ * <p>Both tables mirror the inbox (key as primary key) and hold the same keys:
+ * <ul>
+ *   <li>Primary key index size is measured with pg_relation_size after VACUUM</li>
+ *   <li>Lookup latency of 1000-key IN batches (the consumer's query) is logged per representation</li>
+ *   <li>The hex → UUID migration expression maps each legacy key to the key the application generates</li>
+ * </ul>
+ */
+class IdempotencyKeyStorageBenchmarkTest extends PostgresIntegrationTest {
+
+    private static final Logger log = LoggerFactory.getLogger(IdempotencyKeyStorageBenchmarkTest.class);
+
+    private static final int KEY_COUNT = 500_000;
+    private static final int LOOKUP_BATCH = 1000;
+    private static final int LOOKUP_ROUNDS = 200;
+
+    private static JdbcTemplate jdbcTemplate;
+
+    @BeforeAll
+    static void load() {
+        jdbcTemplate = new JdbcTemplate(emptyDatabase(IdempotencyKeyStorageBenchmarkTest.class));
+
+        jdbcTemplate.execute("CREATE TABLE inbox_hex (idempotency_key VARCHAR(64) PRIMARY KEY)");
+        jdbcTemplate.execute("CREATE TABLE inbox_uuid (idempotency_key UUID PRIMARY KEY)");
+        // Aynı key'ler: hex = SHA-256 tam özet, uuid = ilk 128 bit (V9 dönüşümü)
+        jdbcTemplate.execute("""
+                INSERT INTO inbox_hex
+                SELECT encode(sha256(('event_' || g)::bytea), 'hex') FROM generate_series(1, %d) g
+                """.formatted(KEY_COUNT));
+        jdbcTemplate.execute("""
+                INSERT INTO inbox_uuid
+                SELECT SUBSTRING(idempotency_key, 1, 32)::uuid FROM inbox_hex
+                """);
+        jdbcTemplate.execute("VACUUM ANALYZE inbox_hex");
+        jdbcTemplate.execute("VACUUM ANALYZE inbox_uuid");
+    }
+
+    @Test
+    @DisplayName("UUID primary key index is much smaller than the hex VARCHAR(64) index")
+    void uuidIndexIsSmaller() {
+        long hexBytes = indexSize("inbox_hex_pkey");
+        long uuidBytes = indexSize("inbox_uuid_pkey");
+        log.info("inbox pk index: hex={} KB, uuid={} KB ({}x smaller)", hexBytes / 1024, uuidBytes / 1024,
+                String.format(Locale.ROOT, "%.2f", (double) hexBytes / uuidBytes));
+
+        assertThat(uuidBytes * 2).isLessThan(hexBytes);
+    }
+
+    @Test
+    @DisplayName("1000-key IN lookup latency: hex vs uuid (logged)")
+    void compareLookupLatency() {
+        List<List<String>> hexBatches = new ArrayList<>();
+        List<List<UUID>> uuidBatches = new ArrayList<>();
+        for (int round = 0; round < LOOKUP_ROUNDS; round++) {
+            List<String> hex = new ArrayList<>(LOOKUP_BATCH);
+            List<UUID> uuid = new ArrayList<>(LOOKUP_BATCH);
+            for (int i = 0; i < LOOKUP_BATCH; i++) {
+                // Yarısı mevcut, yarısı yeni key: consumer'daki tipik karışım
+                String raw = (i % 2 == 0 ? "event_" : "missing_") + (round * LOOKUP_BATCH + i + 1);
+                byte[] digest = sha256(raw);
+                hex.add(HexFormat.of().formatHex(digest));
+                ByteBuffer buffer = ByteBuffer.wrap(digest);
+                uuid.add(new UUID(buffer.getLong(), buffer.getLong()));
+            }
+            hexBatches.add(hex);
+            uuidBatches.add(uuid);
+        }
+
+        // Isınma
+        lookup("inbox_hex", hexBatches.get(0));
+        lookup("inbox_uuid", uuidBatches.get(0));
+
+        long hexNanos = 0;
+        long uuidNanos = 0;
+        int found = 0;
+        for (int round = 0; round < LOOKUP_ROUNDS; round++) {
+            long start = System.nanoTime();
+            int hexFound = lookup("inbox_hex", hexBatches.get(round));
+            hexNanos += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            int uuidFound = lookup("inbox_uuid", uuidBatches.get(round));
+            uuidNanos += System.nanoTime() - start;
+
+            assertThat(uuidFound).isEqualTo(hexFound);
+            found += uuidFound;
+        }
+        log.info("inbox IN lookup ({} keys): hex={} ms, uuid={} ms per batch", LOOKUP_BATCH,
+                String.format(Locale.ROOT, "%.2f", hexNanos / 1e6 / LOOKUP_ROUNDS),
+                String.format(Locale.ROOT, "%.2f", uuidNanos / 1e6 / LOOKUP_ROUNDS));
+
+        assertThat(found).isEqualTo(LOOKUP_ROUNDS * LOOKUP_BATCH / 2);
+    }
+
+    private static long indexSize(String index) {
+        Long size = jdbcTemplate.queryForObject("SELECT pg_relation_size(?::regclass)", Long.class, index);
+        return size != null ? size : 0;
+    }
+
+    private static int lookup(String table, List<?> keys) {
+        String placeholders = String.join(",", keys.stream().map(k -> "?").toList());
+        return jdbcTemplate.queryForList(
+                "SELECT idempotency_key FROM " + table + " WHERE idempotency_key IN (" + placeholders + ")",
+                Object.class, keys.toArray()).size();
+    }
+
+    private static byte[] sha256(String value) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.baykanat.insider.assessment.integration;
+
+import com.baykanat.insider.assessment.infrastructure.persistence.InboxJdbcRepository;
+import com.baykanat.insider.assessment.infrastructure.persistence.PartitionJdbcRepository;
+import com.baykanat.insider.assessment.infrastructure.persistence.PartitionJdbcRepository.PartitionInfo;
+import com.baykanat.insider.assessment.infrastructure.persistence.PartitionJdbcRepository.PartitionKeyType;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Order;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Properties;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Integration tests for the time-partitioned inbox (V10) against a real PostgreSQL container.
+ *
+ * <p>The schema is migrated to V9 first and seeded with pre-partitioning keys, then migrated to the latest version:
+ * <ul>
+ *   <li>Existence checks see both legacy and partitioned keys through the inbox_lookup view</li>
+ *   <li>timestamptz partition bounds are read back as UTC days regardless of the session time zone</li>
+ *   <li>Daily inbox partitions are created and dropped without row deletes</li>
+ *   <li>inbox_legacy is dropped only once all of its keys are outside the retention window, and only under the
+ *   partition maintenance lock</li>
+ * </ul>
+ */
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+class InboxPartitioningIntegrationTest extends PostgresIntegrationTest {
+
+    private static final UUID LEGACY_OLD = UUID.randomUUID();
+    private static final UUID LEGACY_RECENT = UUID.randomUUID();
+
+    private static DriverManagerDataSource dataSource;
+    private static JdbcTemplate jdbcTemplate;
+    private static InboxJdbcRepository inboxRepository;
+
+    @BeforeAll
+    static void migrate() {
+        dataSource = emptyDatabase(InboxPartitioningIntegrationTest.class);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+
+        flyway(dataSource).target("9").load().migrate();
+        jdbcTemplate.update("INSERT INTO inbox (idempotency_key, received_at) VALUES (?, NOW() - INTERVAL '10 days')",
+                LEGACY_OLD);
+        jdbcTemplate.update("INSERT INTO inbox (idempotency_key, received_at) VALUES (?, NOW() - INTERVAL '1 day')",
+                LEGACY_RECENT);
+        flyway(dataSource).load().migrate();
+
+        inboxRepository = new InboxJdbcRepository(jdbcTemplate);
+    }
+
+    @Test
+    @Order(1)
+    @DisplayName("Lookups cover legacy and partitioned keys")
+    void lookupsCoverLegacyAndPartitionedKeys() {
+        UUID fresh = UUID.randomUUID();
+        inboxRepository.batchInsert(List.of(fresh), 2);
+
+        assertThat(inboxRepository.findExistingKeys(List.of(LEGACY_OLD, LEGACY_RECENT, fresh, UUID.randomUUID())))
+                .containsExactlyInAnyOrder(LEGACY_OLD, LEGACY_RECENT, fresh);
+        assertThat(inboxRepository.exists(LEGACY_RECENT)).isTrue();
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM ONLY inbox_legacy", Long.class)).isEqualTo(2);
+
+        LocalDate today = LocalDate.now(ZoneOffset.UTC);
+        String partition = jdbcTemplate.queryForObject(
+                "SELECT tableoid::regclass::text FROM inbox WHERE idempotency_key = ?", String.class, fresh);
+        assertThat(partition).isEqualTo(PartitionJdbcRepository.dailyPartitionName("inbox", today));
+    }
+
+    @Test
+    @Order(2)
+    @DisplayName("timestamptz bounds are parsed as UTC days in any session time zone")
+    void boundsAreUtcDays() {
+        Properties properties = new Properties();
+        properties.setProperty("options", "-c TimeZone=America/New_York");
+        DriverManagerDataSource newYork = dataSource(databaseName(InboxPartitioningIntegrationTest.class));
+        newYork.setConnectionProperties(properties);
+        PartitionJdbcRepository repository = new PartitionJdbcRepository(new JdbcTemplate(newYork));
+
+        for (PartitionInfo info : repository.listPartitions("inbox")) {
+            assertThat(info.name()).isEqualTo(PartitionJdbcRepository.dailyPartitionName("inbox", info.from()));
+            assertThat(info.to()).isEqualTo(info.from().plusDays(1));
+        }
+    }
+
+    @Test
+    @Order(3)
+    @DisplayName("Inbox partitions are created and dropped as whole days")
+    void partitionsAreCreatedAndDropped() {
+        PartitionJdbcRepository repository = new PartitionJdbcRepository(jdbcTemplate);
+        LocalDate day = LocalDate.now(ZoneOffset.UTC).plusDays(30);
+
+        repository.createDailyPartition("inbox", PartitionKeyType.TIMESTAMPTZ, day);
+        jdbcTemplate.update("INSERT INTO inbox (idempotency_key, received_at) VALUES (?, ?::timestamptz)",
+                UUID.randomUUID(), day + " 12:00:00+00");
+        PartitionInfo created = repository.listPartitions("inbox").stream()
+                .filter(info -> day.equals(info.from()))
+                .findFirst()
+                .orElseThrow();
+
+        repository.dropPartition("inbox", created);
+
+        assertThat(repository.listPartitions("inbox")).noneMatch(info -> day.equals(info.from()));
+        assertThat(jdbcTemplate.queryForObject("SELECT to_regclass(?) IS NULL", Boolean.class, created.name()))
+                .isTrue();
+    }
+
+    @Test
+    @Order(4)
+    @DisplayName("inbox_legacy is kept while it holds keys inside the window or the lock is not held, then dropped")
+    void legacyTableIsDroppedAfterRetention() {
+        assertThat(dropLegacyUnderLock(7)).isFalse();
+        assertThat(inboxRepository.exists(LEGACY_RECENT)).isTrue();
+        // retention 0 ama bakım kilidi yok: dokunulmaz
+        assertThat(inboxRepository.dropExpiredLegacyTable(0)).isFalse();
+        assertThat(jdbcTemplate.queryForObject("SELECT to_regclass('inbox_legacy') IS NULL", Boolean.class))
+                .isFalse();
+
+        // retention 0: tüm eski key'ler pencere dışında
+        assertThat(dropLegacyUnderLock(0)).isTrue();
+
+        assertThat(jdbcTemplate.queryForObject("SELECT to_regclass('inbox_legacy') IS NULL", Boolean.class)).isTrue();
+        assertThat(inboxRepository.exists(LEGACY_RECENT)).isFalse();
+        assertThat(dropLegacyUnderLock(0)).isFalse();
+    }
+
+    private static boolean dropLegacyUnderLock(int retentionDays) {
+        boolean[] dropped = {false};
+        assertThat(new PartitionJdbcRepository(jdbcTemplate)
+                .runExclusively(() -> dropped[0] = inboxRepository.dropExpiredLegacyTable(retentionDays))).isTrue();
+        return dropped[0];
+    }
+}
@@ -0,0 +1,177 @@
+package com.baykanat.insider.assessment.integration;
+
+import com.baykanat.insider.assessment.api.dto.MetricsResponse;
+import com.baykanat.insider.assessment.config.AppProperties;
+import com.baykanat.insider.assessment.domain.model.Event;
+import com.baykanat.insider.assessment.infrastructure.persistence.DimensionDictionary;
+import com.baykanat.insider.assessment.infrastructure.persistence.EventJdbcRepository;
+import com.baykanat.insider.assessment.infrastructure.persistence.MetricsJdbcRepository;
+import com.baykanat.insider.assessment.infrastructure.persistence.MetricsJdbcRepository.MetricsSeries;
+import com.baykanat.insider.assessment.infrastructure.persistence.MetricsRollupJdbcRepository;
+import com.baykanat.insider.assessment.infrastructure.persistence.RollupResolution;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Integration tests for the set-based batch metrics query against a real PostgreSQL container.
+ *
+ * <p>The same events feed both the materialized view and the hourly rollup; for each source:
+ * <ul>
+ *   <li>Totals and breakdowns from the single GROUPING SETS / scan query equal the per-event-name queries</li>
+ *   <li>Channel lists split every event name into one series per channel</li>
+ *   <li>Event names without data are simply absent from the repository result</li>
+ *   <li>Names missing from the dimension dictionaries read as no data and are never created by queries</li>
+ *   <li>Every rollup resolution receives the same events in buckets aligned to its width</li>
+ * </ul>
+ */
+class MetricsBatchQueryIntegrationTest extends PostgresIntegrationTest {
+
+    private static final List<String> EVENT_NAMES = List.of("product_view", "add_to_cart", "purchase");
+    private static final List<String> CHANNELS = List.of("web", "mobile_app");
+
+    private static JdbcTemplate jdbcTemplate;
+    private static long from;
+    private static long to;
+
+    @BeforeAll
+    static void seed() {
+        DriverManagerDataSource dataSource = migratedDatabase(MetricsBatchQueryIntegrationTest.class);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        TransactionTemplate transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+
+        LocalDate today = LocalDate.now(ZoneOffset.UTC);
+        from = today.atStartOfDay(ZoneOffset.UTC).toEpochSecond();
+        to = from + 86400;
+
+        List<Event> events = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            long ts = from + (i * 37L) % 86400;
+            events.add(Event.builder()
+                    .eventName(EVENT_NAMES.get(i % 3))
+                    .channel(i % 5 == 0 ? null : CHANNELS.get(i % 2))
+                    .userId("user_" + (i % 400))
+                    .eventTimestamp(ts)
+                    .eventDate(today)
+                    .idempotencyKey(UUID.randomUUID())
+                    .build());
+        }
+
+        AppProperties properties = allRollups();
+        DimensionDictionary dictionary = new DimensionDictionary(jdbcTemplate);
+        EventJdbcRepository eventRepository = new EventJdbcRepository(jdbcTemplate, properties, dictionary);
+        MetricsRollupJdbcRepository rollupRepository =
+                new MetricsRollupJdbcRepository(jdbcTemplate, properties, dictionary);
+        transactionTemplate.executeWithoutResult(status -> {
+            eventRepository.batchInsert(events);
+            rollupRepository.applyBatch(events);
+        });
+        jdbcTemplate.execute("REFRESH MATERIALIZED VIEW event_metrics");
+    }
+
+    private static MetricsJdbcRepository repository(AppProperties.MetricsSource source) {
+        AppProperties properties = allRollups();
+        properties.getMetrics().setSource(source);
+        return new MetricsJdbcRepository(jdbcTemplate, properties, new DimensionDictionary(jdbcTemplate));
+    }
+
+    /** Saatlik dışındaki çözünürlükler varsayılan kapalı; test hepsini yazar ve okur. */
+    private static AppProperties allRollups() {
+        AppProperties properties = new AppProperties();
+        properties.getMetrics().getRollup().setMinuteRetention(Duration.ofHours(48));
+        properties.getMetrics().getRollup().setQuarterHourRetention(Duration.ofDays(35));
+        properties.getMetrics().getRollup().setDailyEnabled(true);
+        return properties;
+    }
+
+    @ParameterizedTest(name = "{0}, {1}")
+    @CsvSource({"ROLLUP, hourly", "ROLLUP, daily", "MATERIALIZED_VIEW, hourly", "MATERIALIZED_VIEW, daily"})
+    @DisplayName("Batch query matches the per-event-name queries")
+    void batchMatchesSingleQueries(AppProperties.MetricsSource source, String groupBy) {
+        MetricsJdbcRepository repository = repository(source);
+
+        List<MetricsSeries> all = repository.queryBatch(EVENT_NAMES, from, to, null, groupBy);
+        List<MetricsSeries> byChannel = repository.queryBatch(EVENT_NAMES, from, to, CHANNELS, groupBy);
+
+        assertThat(all).hasSize(EVENT_NAMES.size());
+        for (MetricsSeries series : all) {
+            assertThat(series.channel()).isNull();
+            assertMatchesSingle(repository, series, null, groupBy);
+        }
+        assertThat(byChannel).hasSize(EVENT_NAMES.size() * CHANNELS.size());
+        for (MetricsSeries series : byChannel) {
+            assertThat(CHANNELS).contains(series.channel());
+            assertMatchesSingle(repository, series, series.channel(), groupBy);
+        }
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @CsvSource({"ROLLUP", "MATERIALIZED_VIEW"})
+    @DisplayName("Event names without data are absent from the result")
+    void unknownEventNamesAreAbsent(AppProperties.MetricsSource source) {
+        List<MetricsSeries> series = repository(source)
+                .queryBatch(List.of("purchase", "no_such_event"), from, to, null, "hourly");
+
+        assertThat(series).extracting(MetricsSeries::eventName).containsExactly("purchase");
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @CsvSource({"ROLLUP", "MATERIALIZED_VIEW"})
+    @DisplayName("Unknown event names and channels yield empty results without creating dictionary entries")
+    void unknownNamesDoNotCreateDictionaryEntries(AppProperties.MetricsSource source) {
+        MetricsJdbcRepository repository = repository(source);
+
+        assertThat(repository.queryTotals("no_such_event", from, to, null)).containsExactly(0, 0);
+        assertThat(repository.queryTotals("purchase", from, to, "no_such_channel")).containsExactly(0, 0);
+        assertThat(repository.queryBreakdowns("no_such_event", from, to, null, "hourly")).isEmpty();
+        assertThat(repository.queryBatch(List.of("purchase"), from, to, List.of("no_such_channel"), "hourly"))
+                .isEmpty();
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM event_name_dim WHERE name = 'no_such_event'", Long.class)).isZero();
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM channel_dim WHERE name = 'no_such_channel'", Long.class)).isZero();
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @EnumSource(RollupResolution.class)
+    @DisplayName("Every rollup resolution holds all events in aligned buckets")
+    void rollupResolutionsAreConsistent(RollupResolution resolution) {
+        Long total = jdbcTemplate.queryForObject(
+                String.format("SELECT SUM(total_count) FROM %s", resolution.table()), Long.class);
+        Long misaligned = jdbcTemplate.queryForObject(String.format(
+                "SELECT COUNT(*) FROM %s WHERE EXTRACT(EPOCH FROM %s)::bigint %% %d <> 0",
+                resolution.table(), resolution.bucketColumn(), resolution.seconds()), Long.class);
+        Long withoutSketch = jdbcTemplate.queryForObject(
+                String.format("SELECT COUNT(*) FROM %s WHERE user_sketch IS NULL", resolution.table()), Long.class);
+
+        assertThat(total).isEqualTo(3000);
+        assertThat(misaligned).isZero();
+        assertThat(withoutSketch).isZero();
+    }
+
+    private static void assertMatchesSingle(MetricsJdbcRepository repository, MetricsSeries series, String channel,
+                                            String groupBy) {
+        long[] totals = repository.queryTotals(series.eventName(), from, to, channel);
+        List<MetricsResponse.TimeBucket> breakdowns =
+                repository.queryBreakdowns(series.eventName(), from, to, channel, groupBy);
+
+        assertThat(series.totalCount()).isEqualTo(totals[0]).isPositive();
+        assertThat(series.uniqueUserCount()).isEqualTo(totals[1]);
+        assertThat(series.breakdowns()).isEqualTo(breakdowns);
+    }
+}
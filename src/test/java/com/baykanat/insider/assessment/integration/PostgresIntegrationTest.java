@@ -0,0 +1,81 @@
+package com.baykanat.insider.assessment.integration;
+
+import org.flywaydb.core.Flyway;
+import org.flywaydb.core.api.configuration.FluentConfiguration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import javax.sql.DataSource;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Shared PostgreSQL fixture for the integration tests.
+ *
+ * <p>Test classes extend this base instead of declaring their own container:
+ * <ul>
+ *   <li>One postgres:16 container is started on first use and reused by every test class in the JVM; Testcontainers
+ *   removes it when the JVM exits</li>
+ *   <li>The migrations run once into a template database; {@link #migratedDatabase(Class)} clones it per test class,
+ *   so rows written by one class never leak into another</li>
+ *   <li>{@link #emptyDatabase(Class)} is for tests that migrate step by step (e.g. to a target version first)</li>
+ * </ul>
+ */
+abstract class PostgresIntegrationTest {
+
+    private static final String TEMPLATE_DATABASE = "migrated_template";
+
+    private static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:16");
+
+    private static boolean templateReady;
+
+    static {
+        POSTGRES.start();
+    }
+
+    /** A new database for the test class, already migrated to the latest version. */
+    static synchronized DriverManagerDataSource migratedDatabase(Class<?> testClass) {
+        if (!templateReady) {
+            createDatabase(TEMPLATE_DATABASE, null);
+            flyway(dataSource(TEMPLATE_DATABASE)).load().migrate();
+            templateReady = true;
+        }
+        String database = databaseName(testClass);
+        createDatabase(database, TEMPLATE_DATABASE);
+        return dataSource(database);
+    }
+
+    /** A new, empty database for the test class. */
+    static DriverManagerDataSource emptyDatabase(Class<?> testClass) {
+        String database = databaseName(testClass);
+        createDatabase(database, null);
+        return dataSource(database);
+    }
+
+    /** Flyway configured like the application (migration location and options); the caller sets the target. */
+    static FluentConfiguration flyway(DataSource dataSource) {
+        return Flyway.configure().dataSource(dataSource).locations("classpath:db/migration")
+                .configuration(Map.of("flyway.postgresql.transactional.lock", "false"));
+    }
+
+    /** A connection factory for an existing database of the shared container. */
+    static DriverManagerDataSource dataSource(String database) {
+        return new DriverManagerDataSource(jdbcUrl(database), POSTGRES.getUsername(), POSTGRES.getPassword());
+    }
+
+    static String databaseName(Class<?> testClass) {
+        return testClass.getSimpleName().toLowerCase(Locale.ROOT);
+    }
+
+    private static String jdbcUrl(String database) {
+        return "jdbc:postgresql://" + POSTGRES.getHost() + ":"
+                + POSTGRES.getMappedPort(PostgreSQLContainer.POSTGRESQL_PORT) + "/" + database;
+    }
+
+    private static void createDatabase(String database, String template) {
+        JdbcTemplate admin = new JdbcTemplate(dataSource(POSTGRES.getDatabaseName()));
+        admin.execute("DROP DATABASE IF EXISTS " + database);
+        admin.execute("CREATE DATABASE " + database + (template != null ? " TEMPLATE " + template : ""));
+    }
+}
@@ -0,0 +1,204 @@
+package com.baykanat.insider.assessment.integration;
+
+import com.baykanat.insider.assessment.config.AppProperties;
+import com.baykanat.insider.assessment.domain.model.Event;
+import com.baykanat.insider.assessment.infrastructure.persistence.DimensionDictionary;
+import com.baykanat.insider.assessment.infrastructure.persistence.EventJdbcRepository;
+import com.baykanat.insider.assessment.infrastructure.persistence.MetricsRollupJdbcRepository;
+import com.baykanat.insider.assessment.infrastructure.persistence.RollupResolution;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Integration tests checking the rollup tables against COUNT(*) and COUNT(DISTINCT user_id) on events.
+ *
+ * <p>Events span the first four hours of the current UTC day; every active resolution (minute, 15 minutes, hour,
+ * day) is compared bucket by bucket:
+ * <ul>
+ *   <li>Concurrent consumer transactions keep every bucket's total equal to COUNT(*) and its unique estimate close
+ *   to COUNT(DISTINCT)</li>
+ *   <li>Events written without rollup deltas (materialized-view mode) are restored by the hour/day rebuild, also
+ *   while consumer transactions keep writing into the same hours</li>
+ * </ul>
+ */
+class RollupConsistencyIntegrationTest extends PostgresIntegrationTest {
+
+    private static final int HOURS = 4;
+
+    private static JdbcTemplate jdbcTemplate;
+    private static TransactionTemplate transactionTemplate;
+    private static EventJdbcRepository eventRepository;
+    private static MetricsRollupJdbcRepository rollupRepository;
+    private static LocalDate today;
+    private static long dayStart;
+
+    @BeforeAll
+    static void migrate() {
+        DriverManagerDataSource dataSource = migratedDatabase(RollupConsistencyIntegrationTest.class);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+
+        AppProperties properties = new AppProperties();
+        properties.getMetrics().getRollup().setMinuteRetention(Duration.ofHours(48));
+        properties.getMetrics().getRollup().setQuarterHourRetention(Duration.ofDays(35));
+        properties.getMetrics().getRollup().setDailyEnabled(true);
+        DimensionDictionary dictionary = new DimensionDictionary(jdbcTemplate);
+        eventRepository = new EventJdbcRepository(jdbcTemplate, properties, dictionary);
+        rollupRepository = new MetricsRollupJdbcRepository(jdbcTemplate, properties, dictionary);
+        today = LocalDate.now(ZoneOffset.UTC);
+        dayStart = today.atStartOfDay(ZoneOffset.UTC).toEpochSecond();
+    }
+
+    @BeforeEach
+    void truncate() {
+        jdbcTemplate.execute("TRUNCATE events, event_metrics_minute, event_metrics_15m, event_metrics_hourly, "
+                + "event_metrics_daily");
+    }
+
+    private static List<Event> events(Random random, int count) {
+        List<Event> events = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int channel = random.nextInt(3);
+            events.add(Event.builder()
+                    .eventName(random.nextInt(4) == 0 ? "purchase" : "product_view")
+                    .channel(channel == 0 ? null : (channel == 1 ? "web" : "mobile_app"))
+                    .userId("user_" + random.nextInt(600))
+                    .eventTimestamp(dayStart + random.nextInt(HOURS * 3600))
+                    .eventDate(today)
+                    .idempotencyKey(UUID.randomUUID())
+                    .build());
+        }
+        return events;
+    }
+
+    /** Consumer transaction: events insert and rollup deltas together. */
+    private static void consume(List<Event> batch) {
+        transactionTemplate.executeWithoutResult(status -> {
+            eventRepository.batchInsert(batch);
+            rollupRepository.applyBatch(batch);
+        });
+    }
+
+    private static void runConsumers(int threads, int batches, long seed) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> consumers = new ArrayList<>();
+            for (int thread = 0; thread < threads; thread++) {
+                Random random = new Random(seed + thread);
+                consumers.add(executor.submit(() -> {
+                    for (int batch = 0; batch < batches; batch++) {
+                        consume(events(random, 200));
+                    }
+                }));
+            }
+            for (Future<?> consumer : consumers) {
+                consumer.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void rebuild() {
+        for (int hour = 0; hour < HOURS; hour++) {
+            long hourStart = dayStart + hour * 3600L;
+            transactionTemplate.executeWithoutResult(status -> rollupRepository.rebuildHour(hourStart));
+        }
+        transactionTemplate.executeWithoutResult(status -> rollupRepository.rebuildDay(today));
+    }
+
+    /** Buckets whose total differs from COUNT(*) (or exist on only one side), as "bucket: rollup != events". */
+    private static List<String> countMismatches(RollupResolution resolution) {
+        return jdbcTemplate.query(String.format("""
+                SELECT COALESCE(e.bucket, r.bucket) AS bucket, r.total_count, e.total_count AS exact
+                FROM (
+                    SELECT event_name_id, COALESCE(channel_id, 0) AS channel_id,
+                           TO_TIMESTAMP(event_timestamp - event_timestamp %% %3$d) AS bucket, COUNT(*) AS total_count
+                    FROM events
+                    GROUP BY 1, 2, 3
+                ) e
+                FULL JOIN (
+                    SELECT event_name_id, channel_id, %2$s AS bucket, total_count FROM %1$s
+                ) r ON r.event_name_id = e.event_name_id AND r.channel_id = e.channel_id AND r.bucket = e.bucket
+                WHERE r.total_count IS DISTINCT FROM e.total_count
+                """, resolution.table(), resolution.bucketColumn(), resolution.seconds()),
+                (rs, rowNum) -> rs.getTimestamp("bucket") + ": " + rs.getObject("total_count") + " != "
+                        + rs.getObject("exact"));
+    }
+
+    /** Largest |estimate - COUNT(DISTINCT)| / COUNT(DISTINCT) over the resolution's buckets. */
+    private static double maxUniqueError(RollupResolution resolution) {
+        Double error = jdbcTemplate.queryForObject(String.format("""
+                SELECT MAX(ABS(r.unique_user_count - e.users)::float8 / e.users)
+                FROM (
+                    SELECT event_name_id, COALESCE(channel_id, 0) AS channel_id,
+                           TO_TIMESTAMP(event_timestamp - event_timestamp %% %3$d) AS bucket,
+                           COUNT(DISTINCT user_id) AS users
+                    FROM events
+                    GROUP BY 1, 2, 3
+                ) e
+                JOIN %1$s r ON r.event_name_id = e.event_name_id AND r.channel_id = e.channel_id AND r.%2$s = e.bucket
+                """, resolution.table(), resolution.bucketColumn(), resolution.seconds()), Double.class);
+        return error != null ? error : 0;
+    }
+
+    private static void assertMatchesEvents() {
+        for (RollupResolution resolution : RollupResolution.values()) {
+            assertThat(countMismatches(resolution)).as(resolution.name()).isEmpty();
+            assertThat(maxUniqueError(resolution)).as(resolution.name()).isLessThan(0.03);
+        }
+    }
+
+    @Test
+    @DisplayName("Concurrent consumer transactions keep every resolution equal to COUNT(*) and COUNT(DISTINCT)")
+    void consumerDeltasMatchEvents() throws Exception {
+        runConsumers(4, 15, 1);
+
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM events", Long.class)).isEqualTo(4 * 15 * 200);
+        assertMatchesEvents();
+    }
+
+    @Test
+    @DisplayName("Rebuild restores events written without deltas, also while consumers keep writing")
+    void rebuildRestoresGapUnderConcurrentWrites() throws Exception {
+        runConsumers(2, 5, 10);
+        // Materialized-view modunda yazılmış gibi: event'ler var, delta'lar yok
+        Random random = new Random(20);
+        transactionTemplate.executeWithoutResult(status -> eventRepository.batchInsert(events(random, 3000)));
+        assertThat(countMismatches(RollupResolution.HOUR)).isNotEmpty();
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> consumers = executor.submit(() -> {
+                runConsumers(3, 10, 30);
+                return null;
+            });
+            rebuild();
+            rebuild();
+            consumers.get();
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertMatchesEvents();
+    }
+}
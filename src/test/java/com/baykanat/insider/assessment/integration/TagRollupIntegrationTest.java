@@ -0,0 +1,222 @@
+package com.baykanat.insider.assessment.integration;
+
+import com.baykanat.insider.assessment.config.AppProperties;
+import com.baykanat.insider.assessment.domain.model.Event;
+import com.baykanat.insider.assessment.infrastructure.persistence.DimensionDictionary;
+import com.baykanat.insider.assessment.infrastructure.persistence.DimensionBucket;
+import com.baykanat.insider.assessment.infrastructure.persistence.DimensionDictionary.Dimension;
+import com.baykanat.insider.assessment.infrastructure.persistence.EventJdbcRepository;
+import com.baykanat.insider.assessment.infrastructure.persistence.MetricsCell;
+import com.baykanat.insider.assessment.infrastructure.persistence.MetricsJdbcRepository.SeriesSelection;
+import com.baykanat.insider.assessment.infrastructure.persistence.RawEventMetricsJdbcRepository;
+import com.baykanat.insider.assessment.infrastructure.persistence.RawEventMetricsJdbcRepository.TagFilter;
+import com.baykanat.insider.assessment.infrastructure.persistence.TagRollupJdbcRepository;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * Integration tests for the tag rollup (V14) and GIN-filtered raw scans against a real PostgreSQL container.
+ *
+ * <p>One day of events with overlapping tags is written through the consumer path:
+ * <ul>
+ *   <li>Per-tag rollup totals equal COUNT(*) on events; a tag repeated in one event counts once</li>
+ *   <li>Rollup cells carry user sketches close to the exact distinct count</li>
+ *   <li>Raw scans with an AND / OR tag filter match the exact counts of the same predicate on events</li>
+ *   <li>Untagged events are not written to the tag rollup</li>
+ *   <li>The migration builds the GIN index per partition and leaves the parent index valid</li>
+ *   <li>Rebuilding the hours from events reproduces the consumer's rows; a missing sketch is backfilled from the
+ *   events carrying the tag</li>
+ * </ul>
+ */
+class TagRollupIntegrationTest extends PostgresIntegrationTest {
+
+    private static final List<String> TAGS = List.of(
+            "[\"flash_sale\", \"homepage\"]",
+            "[\"flash_sale\"]",
+            "[\"homepage\", \"homepage\"]",
+            "[\"electronics\", \"flash_sale\", \"homepage\"]",
+            "[]");
+
+    private static JdbcTemplate jdbcTemplate;
+    private static TransactionTemplate transactionTemplate;
+    private static TagRollupJdbcRepository repository;
+    private static RawEventMetricsJdbcRepository rawRepository;
+    private static DimensionDictionary dictionary;
+    private static LocalDate today;
+    private static long from;
+    private static long to;
+
+    @BeforeAll
+    static void seed() {
+        DriverManagerDataSource dataSource = migratedDatabase(TagRollupIntegrationTest.class);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+
+        today = LocalDate.now(ZoneOffset.UTC);
+        from = today.atStartOfDay(ZoneOffset.UTC).toEpochSecond();
+        to = from + 86400;
+
+        List<Event> events = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            events.add(Event.builder()
+                    .eventName("purchase")
+                    .channel(i % 3 == 0 ? null : (i % 2 == 0 ? "web" : "mobile_app"))
+                    .userId("user_" + (i % 500))
+                    .eventTimestamp(from + (i * 29L) % 86400)
+                    .eventDate(today)
+                    .tags(i % 7 == 6 ? null : TAGS.get(i % TAGS.size()))
+                    .idempotencyKey(UUID.randomUUID())
+                    .build());
+        }
+
+        AppProperties properties = new AppProperties();
+        dictionary = new DimensionDictionary(jdbcTemplate);
+        EventJdbcRepository eventRepository = new EventJdbcRepository(jdbcTemplate, properties, dictionary);
+        repository = new TagRollupJdbcRepository(jdbcTemplate, properties, dictionary);
+        rawRepository = new RawEventMetricsJdbcRepository(jdbcTemplate, properties);
+        transactionTemplate.executeWithoutResult(status -> {
+            eventRepository.batchInsert(events.subList(0, 1800));
+            repository.applyBatch(events.subList(0, 1800));
+        });
+        transactionTemplate.executeWithoutResult(status -> {
+            eventRepository.batchInsert(events.subList(1800, events.size()));
+            repository.applyBatch(events.subList(1800, events.size()));
+        });
+    }
+
+    private static int eventNameId() {
+        return dictionary.findId(Dimension.EVENT_NAME, "purchase");
+    }
+
+    private static long exactCount(String predicate, Object... args) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM events WHERE " + predicate, Long.class, args);
+    }
+
+    @Test
+    @DisplayName("Per-tag rollup totals equal COUNT(*) on events, counting a repeated tag once per event")
+    void countsEachTagOnce() {
+        Map<String, Integer> ids = repository.findTagIds(List.of("flash_sale", "homepage", "electronics"));
+        Map<Integer, Long> counts = repository.tagCounts(eventNameId(), null, ids.values(), from, to);
+
+        for (Map.Entry<String, Integer> tag : ids.entrySet()) {
+            assertThat(counts.get(tag.getValue()))
+                    .as(tag.getKey())
+                    .isEqualTo(exactCount("JSONB_EXISTS(tags, ?)", tag.getKey()));
+        }
+        int webId = dictionary.findId(Dimension.CHANNEL, "web");
+        assertThat(repository.tagCounts(eventNameId(), webId, List.of(ids.get("homepage")), from, to))
+                .containsEntry(ids.get("homepage"),
+                        exactCount("JSONB_EXISTS(tags, 'homepage') AND channel_id = ?", webId));
+    }
+
+    @Test
+    @DisplayName("Rollup cells of a tag carry sketches close to the exact distinct count")
+    void scansTagCells() {
+        int tagId = repository.findTagIds(List.of("flash_sale")).get("flash_sale");
+        List<MetricsCell> cells = new ArrayList<>();
+        repository.scanCells(eventNameId(), null, tagId, from, to, cells::add);
+
+        assertThat(cells).allSatisfy(cell -> assertThat(cell.users()).isNotNull());
+        assertThat(cells.stream().mapToLong(MetricsCell::totalCount).sum())
+                .isEqualTo(exactCount("JSONB_EXISTS(tags, 'flash_sale')"));
+        long distinct = jdbcTemplate.queryForObject(
+                "SELECT COUNT(DISTINCT user_id) FROM events WHERE JSONB_EXISTS(tags, 'flash_sale')", Long.class);
+        long merged = cells.stream().map(MetricsCell::users).reduce((a, b) -> a.copy().merge(b)).orElseThrow()
+                .estimate();
+        assertThat((double) merged).isCloseTo(distinct, within(distinct * 0.05));
+    }
+
+    @Test
+    @DisplayName("Raw scans with AND / OR tag filters match the same predicate on events")
+    void filtersRawScansByTags() {
+        SeriesSelection selection = new SeriesSelection(Map.of(eventNameId(), "purchase"), null);
+
+        List<MetricsCell> all = rawRepository.scanDay(selection,
+                new TagFilter(List.of("flash_sale", "homepage"), true), today, from, to, 86400, true);
+        List<MetricsCell> any = rawRepository.scanDay(selection,
+                new TagFilter(List.of("flash_sale", "electronics"), false), today, from, to, 86400, false);
+
+        assertThat(all).singleElement().extracting(MetricsCell::totalCount)
+                .isEqualTo(exactCount("JSONB_EXISTS_ALL(tags, ARRAY['flash_sale', 'homepage'])"));
+        assertThat(any).singleElement().extracting(MetricsCell::totalCount)
+                .isEqualTo(exactCount("JSONB_EXISTS_ANY(tags, ARRAY['flash_sale', 'electronics'])"));
+        assertThat(any.get(0).uniqueUserCount()).isEqualTo(jdbcTemplate.queryForObject(
+                "SELECT COUNT(DISTINCT user_id) FROM events "
+                        + "WHERE JSONB_EXISTS_ANY(tags, ARRAY['flash_sale', 'electronics'])",
+                Long.class));
+    }
+
+    @Test
+    @DisplayName("Untagged events are not written to the tag rollup")
+    void skipsUntaggedEvents() {
+        long perTagRows = jdbcTemplate.queryForObject("""
+                SELECT COUNT(*) FROM events e, LATERAL (
+                    SELECT DISTINCT name FROM JSONB_ARRAY_ELEMENTS_TEXT(e.tags) AS t(name)
+                ) t
+                WHERE JSONB_TYPEOF(e.tags) = 'array'
+                """, Long.class);
+        Long rolledUp = jdbcTemplate.queryForObject(
+                "SELECT SUM(total_count) FROM event_metrics_tag_hourly", Long.class);
+
+        assertThat(rolledUp).isEqualTo(perTagRows);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM tag_dim", Long.class)).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("The GIN index is built per partition and the parent index is valid")
+    void tagsIndexIsAttachedPerPartition() {
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT indisvalid FROM pg_index WHERE indexrelid = 'idx_events_tags'::regclass", Boolean.class))
+                .isTrue();
+        assertThat(jdbcTemplate.queryForObject("""
+                SELECT COUNT(*) FROM pg_partition_tree('events') t
+                WHERE t.isleaf AND NOT EXISTS (
+                    SELECT 1 FROM pg_inherits i JOIN pg_index x ON x.indexrelid = i.inhrelid
+                    WHERE i.inhparent = 'idx_events_tags'::regclass AND x.indrelid = t.relid)
+                """, Long.class)).isZero();
+    }
+
+    @Test
+    @DisplayName("Rebuilding from events reproduces the consumer's rows and backfills a missing sketch")
+    void rebuildAndBackfillMatchConsumerRows() {
+        String rows = """
+                SELECT event_name_id || '|' || tag_id || '|' || channel_id || '|'
+                       || EXTRACT(EPOCH FROM bucket_start)::bigint || '|' || total_count || '|' || unique_user_count
+                FROM event_metrics_tag_hourly
+                """;
+        List<String> before = jdbcTemplate.queryForList(rows, String.class);
+
+        transactionTemplate.executeWithoutResult(status -> {
+            for (long hour = from; hour < to; hour += 3600) {
+                repository.rebuildHour(hour);
+            }
+        });
+        assertThat(before).isNotEmpty();
+        assertThat(jdbcTemplate.queryForList(rows, String.class)).containsExactlyInAnyOrderElementsOf(before);
+
+        int homepage = repository.findTagIds(List.of("homepage")).get("homepage");
+        jdbcTemplate.update("UPDATE event_metrics_tag_hourly SET user_sketch = NULL, unique_user_count = 0 "
+                + "WHERE tag_id = ? AND bucket_start = TO_TIMESTAMP(?)", homepage, from);
+        List<DimensionBucket> pending = repository.findBucketsPendingBackfill(100);
+        assertThat(pending).isNotEmpty().allMatch(bucket -> bucket.dimensionId() == homepage);
+        pending.forEach(bucket -> assertThat(repository.backfillSketch(bucket)).isTrue());
+
+        assertThat(repository.findBucketsPendingBackfill(100)).isEmpty();
+        assertThat(jdbcTemplate.queryForList(rows, String.class)).containsExactlyInAnyOrderElementsOf(before);
+    }
+}
@@ -0,0 +1,214 @@
+package com.baykanat.insider.assessment.scheduler;
+
+import com.baykanat.insider.assessment.config.AppProperties;
+import com.baykanat.insider.assessment.infrastructure.archive.EventArchiver;
+import com.baykanat.insider.assessment.infrastructure.persistence.InboxJdbcRepository;
+import com.baykanat.insider.assessment.infrastructure.persistence.PartitionJdbcRepository;
+import com.baykanat.insider.assessment.infrastructure.persistence.PartitionJdbcRepository.PartitionInfo;
+import com.baykanat.insider.assessment.infrastructure.persistence.PartitionJdbcRepository.PartitionKeyType;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for PartitionMaintenanceScheduler.
+ *
+ * <p>The partition repository is mocked with a fixed set of daily partitions:
+ * <ul>
+ *   <li>Missing days in the pre-create window are created, existing ones are left alone</li>
+ *   <li>Partitions entirely older than the retention are dropped; retention never goes below the MV window</li>
+ *   <li>Inbox partitions use timestamptz bounds and the inbox retention; inbox_legacy cleanup is attempted</li>
+ *   <li>Partition count and size gauges reflect the listing, per table</li>
+ *   <li>With archiving enabled, partitions are archived before being dropped; a failed archive stops dropping</li>
+ *   <li>Scheduled runs skip maintenance while another instance holds the maintenance lock</li>
+ * </ul>
+ */
+@ExtendWith(MockitoExtension.class)
+class PartitionMaintenanceSchedulerTest {
+
+    private static final LocalDate TODAY = LocalDate.of(2026, 3, 10);
+
+    @Mock
+    private PartitionJdbcRepository partitionRepository;
+
+    @Mock
+    private InboxJdbcRepository inboxRepository;
+
+    @Mock
+    private EventArchiver archiver;
+
+    private AppProperties appProperties;
+    private SimpleMeterRegistry registry;
+    private PartitionMaintenanceScheduler scheduler;
+
+    @BeforeEach
+    void setUp() {
+        appProperties = new AppProperties();
+        appProperties.getScheduler().setEventsPartitionPrecreateDays(3);
+        appProperties.getScheduler().setEventsRetentionDays(5);
+        appProperties.getScheduler().setMvRetentionDays(2);
+        registry = new SimpleMeterRegistry();
+        scheduler = new PartitionMaintenanceScheduler(partitionRepository, inboxRepository, archiver, appProperties,
+                registry);
+    }
+
+    private static List<PartitionInfo> days(LocalDate from, LocalDate toExclusive) {
+        return days("events", from, toExclusive);
+    }
+
+    private static List<PartitionInfo> days(String table, LocalDate from, LocalDate toExclusive) {
+        List<PartitionInfo> partitions = new ArrayList<>();
+        for (LocalDate day = from; day.isBefore(toExclusive); day = day.plusDays(1)) {
+            partitions.add(new PartitionInfo(PartitionJdbcRepository.dailyPartitionName(table, day),
+                    day, day.plusDays(1), 1000, false));
+        }
+        return partitions;
+    }
+
+    @Test
+    @DisplayName("Missing days in the pre-create window are created")
+    void createsMissingPartitions() {
+        // bugün ve yarın var; +2 ve +3 eksik
+        when(partitionRepository.listPartitions("events")).thenReturn(days(TODAY.minusDays(1), TODAY.plusDays(2)));
+
+        scheduler.maintain(TODAY);
+
+        verify(partitionRepository).createDailyPartition("events", PartitionKeyType.DATE, TODAY.plusDays(2));
+        verify(partitionRepository).createDailyPartition("events", PartitionKeyType.DATE, TODAY.plusDays(3));
+        verify(partitionRepository, times(2)).createDailyPartition(eq("events"), any(), any());
+        verify(partitionRepository, never()).dropPartition(eq("events"), any());
+    }
+
+    @Test
+    @DisplayName("Partitions older than the retention are dropped, newer ones are kept")
+    void dropsExpiredPartitions() {
+        List<PartitionInfo> partitions = days(TODAY.minusDays(8), TODAY.plusDays(4));
+        when(partitionRepository.listPartitions("events")).thenReturn(partitions);
+
+        scheduler.maintain(TODAY);
+
+        // retention 5: TODAY-5 ve sonrası kalır; TODAY-8, -7, -6 silinir
+        verify(partitionRepository).dropPartition("events", partitions.get(0));
+        verify(partitionRepository).dropPartition("events", partitions.get(1));
+        verify(partitionRepository).dropPartition("events", partitions.get(2));
+        verify(partitionRepository, times(3)).dropPartition(eq("events"), any());
+        verify(partitionRepository, never()).createDailyPartition(eq("events"), any(), any());
+    }
+
+    @Test
+    @DisplayName("With archiving enabled, partitions are archived first and a failed archive stops dropping")
+    void archivesBeforeDropping() {
+        appProperties.getArchive().setEnabled(true);
+        appProperties.getArchive().setHotRetentionDays(5);
+        appProperties.getScheduler().setEventsRetentionDays(30);
+        List<PartitionInfo> partitions = days(TODAY.minusDays(8), TODAY.plusDays(4));
+        when(partitionRepository.listPartitions("events")).thenReturn(partitions);
+        when(archiver.archive(partitions.get(0))).thenReturn(true);
+        when(archiver.archive(partitions.get(1))).thenReturn(false);
+
+        scheduler.maintain(TODAY);
+
+        // hot retention 5: TODAY-8 arşivlenip silinir; TODAY-7 arşivlenemez, o ve TODAY-6 kalır
+        InOrder order = inOrder(archiver, partitionRepository);
+        order.verify(archiver).archive(partitions.get(0));
+        order.verify(partitionRepository).dropPartition("events", partitions.get(0));
+        verify(partitionRepository, times(1)).dropPartition(eq("events"), any());
+        verify(archiver, never()).archive(partitions.get(2));
+    }
+
+    @Test
+    @DisplayName("Retention is clamped to the MV window and 0 disables dropping")
+    void retentionIsClampedAndCanBeDisabled() {
+        appProperties.getScheduler().setMvRetentionDays(7);
+        List<PartitionInfo> partitions = days(TODAY.minusDays(8), TODAY.plusDays(4));
+        when(partitionRepository.listPartitions("events")).thenReturn(partitions);
+
+        scheduler.maintain(TODAY);
+        verify(partitionRepository).dropPartition("events", partitions.get(0));
+        verify(partitionRepository, times(1)).dropPartition(eq("events"), any());
+
+        appProperties.getScheduler().setEventsRetentionDays(0);
+        scheduler.maintain(TODAY);
+        verify(partitionRepository, times(1)).dropPartition(eq("events"), any());
+    }
+
+    @Test
+    @DisplayName("Gauges report partition count and total size")
+    void gaugesReflectPartitions() {
+        when(partitionRepository.listPartitions("events")).thenReturn(days(TODAY, TODAY.plusDays(4)));
+
+        scheduler.maintain(TODAY);
+
+        assertThat(registry.get("db.partitions.count").tag("table", "events").gauge().value()).isEqualTo(4);
+        assertThat(registry.get("db.partitions.size").tag("table", "events").gauge().value()).isEqualTo(4000);
+    }
+
+    @Test
+    @DisplayName("Inbox partitions use timestamptz bounds and the inbox retention")
+    void maintainsInboxPartitions() {
+        appProperties.getScheduler().setInboxRetentionDays(2);
+        appProperties.getScheduler().setInboxPartitionPrecreateDays(1);
+        List<PartitionInfo> inbox = days("inbox", TODAY.minusDays(4), TODAY.plusDays(1));
+        when(partitionRepository.listPartitions("inbox")).thenReturn(inbox);
+
+        scheduler.maintain(TODAY);
+
+        // retention 2: TODAY-2 ve sonrası kalır; TODAY-4, -3 silinir. TODAY+1 eksik
+        verify(partitionRepository).dropPartition("inbox", inbox.get(0));
+        verify(partitionRepository).dropPartition("inbox", inbox.get(1));
+        verify(partitionRepository, times(2)).dropPartition(eq("inbox"), any());
+        verify(partitionRepository).createDailyPartition("inbox", PartitionKeyType.TIMESTAMPTZ, TODAY.plusDays(1));
+        verify(partitionRepository, times(1)).createDailyPartition(eq("inbox"), any(), any());
+        verify(inboxRepository).dropExpiredLegacyTable(2);
+    }
+
+    @Test
+    @DisplayName("Inbox failures do not stop events maintenance")
+    void inboxFailureIsIsolated() {
+        holdLock(true);
+        when(partitionRepository.listPartitions("events")).thenReturn(days(TODAY, TODAY.plusDays(4)));
+        when(partitionRepository.listPartitions("inbox")).thenThrow(new IllegalStateException("boom"));
+
+        scheduler.maintainPartitions();
+
+        assertThat(registry.get("db.partitions.count").tag("table", "events").gauge().value()).isEqualTo(4);
+        verify(inboxRepository, never()).dropExpiredLegacyTable(anyInt());
+    }
+
+    @Test
+    @DisplayName("A scheduled run is skipped while another instance holds the maintenance lock")
+    void skipsWhenLockIsHeldElsewhere() {
+        holdLock(false);
+
+        scheduler.maintainPartitions();
+
+        verify(partitionRepository, never()).listPartitions(any());
+        verify(partitionRepository, never()).createDailyPartition(any(), any(), any());
+        verifyNoInteractions(inboxRepository, archiver);
+    }
+
+    /** runExclusively: kilit alındıysa task'ı çalıştırır. */
+    private void holdLock(boolean acquired) {
+        when(partitionRepository.runExclusively(any())).thenAnswer(invocation -> {
+            if (acquired) {
+                invocation.<Runnable>getArgument(0).run();
+            }
+            return acquired;
+        });
+    }
+}